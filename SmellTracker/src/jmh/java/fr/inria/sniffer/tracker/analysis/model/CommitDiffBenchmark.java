@@ -0,0 +1,108 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the hash indexed introductions and refactorings computation of {@link Commit}
+ * with the former list based one, on two commits sharing most of their smells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CommitDiffBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    private int smellCount;
+
+    // One smell out of this value is refactored, and replaced by an introduced one.
+    private static final int CHANGE_RATIO = 20;
+    // One smell out of this value has been renamed at some point.
+    private static final int RENAME_RATIO = 10;
+
+    private Commit previous;
+    private Commit current;
+    private List<Smell> previousSmells;
+    private List<Smell> currentSmells;
+
+    @Setup
+    public void setUp() {
+        previous = new Commit("previous", 1);
+        current = new Commit("current", 2);
+        previousSmells = new ArrayList<>();
+        currentSmells = new ArrayList<>();
+
+        for (int i = 0; i < smellCount; i++) {
+            Smell smell = smell(i);
+            previousSmells.add(smell);
+            if (i % CHANGE_RATIO == 0) {
+                currentSmells.add(smell(i + smellCount));
+            } else {
+                // Another instance, as read from the persistence or detector.
+                currentSmells.add(smell(i));
+            }
+        }
+        previous.addSmells(previousSmells);
+        current.addSmells(currentSmells);
+    }
+
+    private static Smell smell(int index) {
+        String file = "src/main/java/fr/inria/sample/Class" + index + ".java";
+        Smell smell = new Smell("MIM", "method" + index + "#fr.inria.sample.Class" + index, file);
+        if (index % RENAME_RATIO == 0) {
+            smell.parent = new Smell("MIM", "method" + index + "#fr.inria.old.Class" + index,
+                    "src/main/java/fr/inria/old/Class" + index + ".java");
+            smell.parent.parent = new Smell("MIM", "method" + index + "#fr.inria.older.Class" + index,
+                    "src/main/java/fr/inria/older/Class" + index + ".java");
+        }
+        return smell;
+    }
+
+    @Benchmark
+    public void hashIndexedDiff(Blackhole blackhole) {
+        blackhole.consume(current.getIntroduced(previous));
+        blackhole.consume(current.getRefactored(previous));
+    }
+
+    /**
+     * The former implementation, copying the lists and calling removeAll on other lists.
+     */
+    @Benchmark
+    public void listDiff(Blackhole blackhole) {
+        List<Smell> introduction = new ArrayList<>(currentSmells);
+        introduction.removeAll(previousSmells);
+        blackhole.consume(introduction);
+
+        List<Smell> refactoring = new ArrayList<>(previousSmells);
+        refactoring.removeAll(currentSmells);
+        blackhole.consume(refactoring);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the single pass {@link GitSummaryParser} with the former parsing of each line
+ * through the three exception based parsers, on the 'git show -M50% --stat=800 --summary'
+ * output of the commits of this repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GitSummaryParserBenchmark {
+    // Commits summaries, separated by an empty line.
+    private static final String SUMMARIES = "/git-show-stat.txt";
+
+    private List<List<String>> commits;
+    private GitSummaryParser parser;
+
+    @Setup
+    public void setUp() throws IOException {
+        commits = new ArrayList<>();
+        parser = new GitSummaryParser();
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                GitSummaryParserBenchmark.class.getResourceAsStream(SUMMARIES), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    commits.add(lines);
+                    lines = new ArrayList<>();
+                } else {
+                    lines.add(line);
+                }
+            }
+        }
+        if (!lines.isEmpty()) {
+            commits.add(lines);
+        }
+    }
+
+    @Benchmark
+    public void singlePassParser(Blackhole blackhole) {
+        for (List<String> lines : commits) {
+            blackhole.consume(parser.parse(lines));
+        }
+    }
+
+    @Benchmark
+    public void exceptionParsers(Blackhole blackhole) {
+        for (List<String> lines : commits) {
+            blackhole.consume(parseWithExceptions(lines));
+        }
+    }
+
+    private static CommitDetails parseWithExceptions(List<String> lines) {
+        List<GitRename> renames = new ArrayList<>();
+        List<GitChangedFile> changedFiles = new ArrayList<>();
+        GitDiff diff = GitDiff.EMPTY;
+
+        for (String line : lines) {
+            try {
+                renames.add(GitRename.parseRenamed(line));
+            } catch (Exception ignored) {
+                // Not a rename.
+            }
+            try {
+                diff = GitDiff.parse(line);
+            } catch (Exception ignored) {
+                // Not a diff.
+            }
+            try {
+                changedFiles.add(GitChangedFile.parseFileChange(line));
+            } catch (Exception ignored) {
+                // Not a changed file.
+            }
+        }
+        return new CommitDetails(diff, renames, changedFiles);
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis;
+
+import fr.inria.sniffer.tracker.analysis.model.CloneCache;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.nio.file.Paths;
+
+/**
+ * Tuning options of the analyses, shared by the single, supplementary, and multiple apps analyses.
+ * <p>
+ * The default options reproduce the original sequential analysis of the whole history.
+ */
+public final class AnalysisOptions {
+    public static final int DEFAULT_COPY_FLUSH_SIZE = 10000;
+    public static final AnalysisOptions DEFAULT = builder().build();
+
+    private final boolean presenceIntervals;
+    private final boolean logStream;
+    private final int commitThreads;
+    private final boolean incremental;
+    private final CloneCache cloneCache;
+    private final int smellThreads;
+    private final boolean fusedSmells;
+    private final int deletionThreads;
+    private final int copyFlushSize;
+
+    private AnalysisOptions(Builder builder) {
+        this.presenceIntervals = builder.presenceIntervals;
+        this.logStream = builder.logStream;
+        this.commitThreads = builder.commitThreads;
+        this.incremental = builder.incremental;
+        this.cloneCache = builder.cloneCache;
+        this.smellThreads = builder.smellThreads;
+        this.fusedSmells = builder.fusedSmells;
+        this.deletionThreads = builder.deletionThreads;
+        this.copyFlushSize = builder.copyFlushSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Read the options from the command line arguments.
+     * <p>
+     * The options not defined by the analysis parser keep their default value.
+     *
+     * @param arguments The command line arguments.
+     * @return The parsed options.
+     */
+    static AnalysisOptions fromArguments(Namespace arguments) {
+        Builder builder = builder();
+        if (arguments.getBoolean("presenceIntervals") != null) {
+            builder.presenceIntervals(arguments.getBoolean("presenceIntervals"));
+        }
+        if (arguments.getBoolean("logStream") != null) {
+            builder.logStream(arguments.getBoolean("logStream"));
+        }
+        if (arguments.getInt("commitThreads") != null) {
+            builder.commitThreads(arguments.getInt("commitThreads"));
+        }
+        if (arguments.getBoolean("incremental") != null) {
+            builder.incremental(arguments.getBoolean("incremental"));
+        }
+        if (arguments.getString("cloneCache") != null) {
+            builder.cloneCache(new CloneCache(Paths.get(arguments.getString("cloneCache"))));
+        }
+        if (arguments.getInt("smellThreads") != null) {
+            builder.smellThreads(arguments.getInt("smellThreads"));
+        }
+        if (arguments.getBoolean("fusedSmells") != null) {
+            builder.fusedSmells(arguments.getBoolean("fusedSmells"));
+        }
+        if (arguments.getInt("deletionThreads") != null) {
+            builder.deletionThreads(arguments.getInt("deletionThreads"));
+        }
+        if (arguments.getInt("copyFlushSize") != null) {
+            builder.copyFlushSize(arguments.getInt("copyFlushSize"));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Defines the repositories cache input, common to every analysis cloning Github repositories.
+     *
+     * @param parser The parser to configure
+     */
+    static void setCloneCacheArgument(Subparser parser) {
+        parser.addArgument("--clone-cache")
+                .help("Directory keeping the cloned Github repositories, only fetched on later analyses")
+                .dest("cloneCache")
+                .type(String.class)
+                .required(false);
+    }
+
+    /**
+     * @return Store the smells presence as intervals of consecutive branch commits.
+     */
+    public boolean isPresenceIntervals() {
+        return presenceIntervals;
+    }
+
+    /**
+     * @return Read the commits details from a single 'git log' execution.
+     */
+    public boolean isLogStream() {
+        return logStream;
+    }
+
+    /**
+     * @return Number of threads retrieving the commits details.
+     */
+    public int getCommitThreads() {
+        return commitThreads;
+    }
+
+    /**
+     * @return Only analyze the commits added since the project's previous analysis.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @return Cache of the Github repositories, null to clone them in a temporary directory.
+     */
+    public CloneCache getCloneCache() {
+        return cloneCache;
+    }
+
+    /**
+     * @return Number of smell types analyzed at once, each on its own database connection.
+     */
+    public int getSmellThreads() {
+        return smellThreads;
+    }
+
+    /**
+     * @return Analyze every smell type in a single pass over the commits.
+     */
+    public boolean isFusedSmells() {
+        return fusedSmells;
+    }
+
+    /**
+     * @return Number of threads checking the refactored smells deletion at once.
+     */
+    public int getDeletionThreads() {
+        return deletionThreads;
+    }
+
+    /**
+     * @return Number of rows buffered by the smells COPY streams before sending them.
+     */
+    public int getCopyFlushSize() {
+        return copyFlushSize;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisOptions{" +
+                "presenceIntervals=" + presenceIntervals +
+                ", logStream=" + logStream +
+                ", commitThreads=" + commitThreads +
+                ", incremental=" + incremental +
+                ", cloneCache=" + (cloneCache != null) +
+                ", smellThreads=" + smellThreads +
+                ", fusedSmells=" + fusedSmells +
+                ", deletionThreads=" + deletionThreads +
+                ", copyFlushSize=" + copyFlushSize +
+                '}';
+    }
+
+    public static final class Builder {
+        private boolean presenceIntervals = false;
+        private boolean logStream = false;
+        private int commitThreads = 1;
+        private boolean incremental = false;
+        private CloneCache cloneCache = null;
+        private int smellThreads = 1;
+        private boolean fusedSmells = false;
+        private int deletionThreads = 1;
+        private int copyFlushSize = DEFAULT_COPY_FLUSH_SIZE;
+
+        private Builder() {
+        }
+
+        public Builder presenceIntervals(boolean presenceIntervals) {
+            this.presenceIntervals = presenceIntervals;
+            return this;
+        }
+
+        public Builder logStream(boolean logStream) {
+            this.logStream = logStream;
+            return this;
+        }
+
+        public Builder commitThreads(int commitThreads) {
+            this.commitThreads = checkThreads("commitThreads", commitThreads);
+            return this;
+        }
+
+        public Builder incremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        public Builder cloneCache(CloneCache cloneCache) {
+            this.cloneCache = cloneCache;
+            return this;
+        }
+
+        public Builder smellThreads(int smellThreads) {
+            this.smellThreads = checkThreads("smellThreads", smellThreads);
+            return this;
+        }
+
+        public Builder fusedSmells(boolean fusedSmells) {
+            this.fusedSmells = fusedSmells;
+            return this;
+        }
+
+        public Builder deletionThreads(int deletionThreads) {
+            this.deletionThreads = checkThreads("deletionThreads", deletionThreads);
+            return this;
+        }
+
+        public Builder copyFlushSize(int copyFlushSize) {
+            this.copyFlushSize = copyFlushSize;
+            return this;
+        }
+
+        public AnalysisOptions build() {
+            return new AnalysisOptions(this);
+        }
+
+        private static int checkThreads(String option, int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("At least one thread is needed for " + option + ": " + threads);
+            }
+            return threads;
+        }
+    }
+}
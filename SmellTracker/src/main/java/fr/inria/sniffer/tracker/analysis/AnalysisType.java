@@ -24,18 +24,22 @@ public enum AnalysisType {
     SINGLE_APP {
         @Override
         public Callable<Void> getCallable(String application, String repository, String paprikaDB,
-                                          String githubToken, String url, DataSource connections) {
-            return new SingleAppAnalysisCallable(application, repository, paprikaDB, githubToken, url, connections);
+                                          String githubToken, String url, DataSource connections,
+                                          AnalysisOptions options) {
+            return new SingleAppAnalysisCallable(application, repository, paprikaDB, githubToken, url, connections,
+                    options);
         }
     },
     SUPPLEMENTARY {
         @Override
         public Callable<Void> getCallable(String application, String repository, String paprikaDB,
-                                          String githubToken, String url, DataSource connections) {
-            return new SupplementaryAnalysisCallable(application, repository, paprikaDB, connections);
+                                          String githubToken, String url, DataSource connections,
+                                          AnalysisOptions options) {
+            return new SupplementaryAnalysisCallable(application, repository, paprikaDB, connections, options);
         }
     };
 
     public abstract Callable<Void> getCallable(String application, String repository, String paprikaDB,
-                                               String githubToken, String url, DataSource connections);
+                                               String githubToken, String url, DataSource connections,
+                                               AnalysisOptions options);
 }
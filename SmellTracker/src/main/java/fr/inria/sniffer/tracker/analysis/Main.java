@@ -28,7 +28,8 @@ import org.slf4j.LoggerFactory;
 
 public class Main {
     // TODO: tidy up this part
-    public static final String DATABASE_URL = "//127.0.0.1:5432/tracker";
+    // Letting the driver rewrite our batched inserts into multi-values statements.
+    public static final String DATABASE_URL = "//127.0.0.1:5432/tracker?reWriteBatchedInserts=true";
     public static final String DATABASE_USERNAME = "tracker";
     public static final String DATABASE_PASSWORD = "tracker";
     public static final String GITHUB_URL = "https://github.com/";
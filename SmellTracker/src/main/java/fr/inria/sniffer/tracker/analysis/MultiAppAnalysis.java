@@ -52,6 +52,7 @@ public class MultiAppAnalysis {
     private final String appLocalRepositories;
     private AnalysisType analysisType;
     private final DataSource connectionPool;
+    private final AnalysisOptions options;
 
     /**
      * Start a simultaneous analysis on multiple projects.
@@ -63,11 +64,27 @@ public class MultiAppAnalysis {
      * @param appLocalRepositories Path to the git remoteRepositories of applications to avoid cloning them, under the form repos/$appName.
      */
     MultiAppAnalysis(String appsFile, String paprikaDBs, String githubToken, int threadsCount, String appLocalRepositories, AnalysisType analysisType) {
+        this(appsFile, paprikaDBs, githubToken, threadsCount, appLocalRepositories, analysisType, AnalysisOptions.DEFAULT);
+    }
+
+    /**
+     * Start a simultaneous analysis on multiple projects.
+     *
+     * @param appsFile             CSV file containing the app names and Github remoteRepositories.
+     * @param paprikaDBs           Path to the Paprika databases under the form paprika_db/$appName.
+     * @param githubToken          Github API token to query on developers.
+     * @param threadsCount         Number of available threads for the analysis.
+     * @param appLocalRepositories Path to the git remoteRepositories of applications to avoid cloning them, under the form repos/$appName.
+     * @param options              Tuning options of each project analysis, their clone cache being shared.
+     */
+    MultiAppAnalysis(String appsFile, String paprikaDBs, String githubToken, int threadsCount, String appLocalRepositories,
+                     AnalysisType analysisType, AnalysisOptions options) {
         this.paprikaDBs = paprikaDBs;
         this.githubToken = githubToken;
         this.threadsCount = threadsCount;
         this.appLocalRepositories = appLocalRepositories;
         this.analysisType = analysisType;
+        this.options = options;
 
         applications = new ArrayList<>();
         remoteRepositories = new HashMap<>();
@@ -117,7 +134,8 @@ public class MultiAppAnalysis {
         for (String app : applications) {
             repository = chooseRepository(app);
             paprikaDB = Paths.get(paprikaDBs, app, "databases", "graph.db").toString();
-            analysis = analysisType.getCallable(app, repository, paprikaDB, githubToken, remoteRepositories.get(app), connectionPool);
+            analysis = analysisType.getCallable(app, repository, paprikaDB, githubToken, remoteRepositories.get(app), connectionPool,
+                    options);
             logger.info("New app analysis: " + analysis);
             executorService.submit(analysis);
         }
@@ -148,7 +166,8 @@ public class MultiAppAnalysis {
                 arguments.getString("githubToken"),
                 arguments.getInt("threads"),
                 arguments.getString("repositories"),
-                arguments.get("type") != null ? arguments.get("type") : AnalysisType.SINGLE_APP
+                arguments.get("type") != null ? arguments.get("type") : AnalysisType.SINGLE_APP,
+                AnalysisOptions.fromArguments(arguments)
         );
     }
 
@@ -190,5 +209,7 @@ public class MultiAppAnalysis {
                 .type(String.class)
                 .required(false);
 
+        AnalysisOptions.setCloneCacheArgument(parser);
+
     }
 }
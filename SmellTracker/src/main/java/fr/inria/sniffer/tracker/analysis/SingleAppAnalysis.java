@@ -23,6 +23,9 @@ import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCCommitQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCProjectQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.AsyncPersistence;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.PostgresqlPersistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
@@ -35,6 +38,7 @@ import fr.inria.sniffer.tracker.analysis.query.QueryException;
 import fr.inria.sniffer.tracker.analysis.query.branch.BranchQuery;
 import fr.inria.sniffer.tracker.analysis.query.commit.CommitsQuery;
 import fr.inria.sniffer.tracker.analysis.query.smell.SmellQuery;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import org.slf4j.LoggerFactory;
@@ -42,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import static fr.inria.sniffer.tracker.analysis.Main.DATABASE_PASSWORD;
 import static fr.inria.sniffer.tracker.analysis.Main.DATABASE_URL;
@@ -58,6 +63,8 @@ public class SingleAppAnalysis implements Analysis {
     private final String paprikaDB;
     private final String githubToken;
     private final String projectUrl;
+    private final AnalysisOptions options;
+    private final Supplier<Persistence> persistences;
 
     private List<Query> getAnalysisProcess(int appId, Repository repository, Persistence persistence,
                                            ProjectQueries projectQueries, DeveloperQueries developerQueries,
@@ -65,9 +72,25 @@ public class SingleAppAnalysis implements Analysis {
                                            BranchQueries branchQueries) {
         List<Query> analysisProcess = new ArrayList<>();
 
-        analysisProcess.add(new CommitsQuery(appId, paprikaDB, repository, persistence, developerQueries, commitQueries));
-        analysisProcess.add(new BranchQuery(appId, repository, persistence, commitQueries, branchQueries));
-        analysisProcess.add(new SmellQuery(appId, paprikaDB, persistence, commitQueries, smellQueries, branchQueries));
+        // Loaded on first use, thus once the commits are persisted.
+        CommitIdDictionary commitIds = new CommitIdDictionary(appId, persistence, commitQueries);
+        // Loaded right away, thus before the new commits are persisted.
+        AnalysisCheckpoint checkpoint = null;
+        if (options.isIncremental()) {
+            checkpoint = new AnalysisCheckpoint(appId, persistence, commitQueries, branchQueries);
+            checkpoint.load();
+            if (!checkpoint.isAnalyzed()) {
+                logger.info("[" + appId + "] No previous analysis found, analyzing the whole history");
+                checkpoint = null;
+            }
+        }
+
+        analysisProcess.add(new CommitsQuery(appId, paprikaDB, repository, persistence, developerQueries, commitQueries,
+                options, checkpoint));
+        analysisProcess.add(new BranchQuery(appId, repository, persistence, commitQueries, branchQueries, commitIds,
+                checkpoint));
+        analysisProcess.add(new SmellQuery(appId, paprikaDB, persistence, commitQueries, smellQueries, branchQueries, commitIds,
+                options, checkpoint, persistences));
 
         // if (githubToken != null) {
         //     analysisProcess.add(new DevelopersQuery(appRepo, githubToken));
@@ -84,11 +107,43 @@ public class SingleAppAnalysis implements Analysis {
      * @param githubToken Github API token to query on developers.
      */
     SingleAppAnalysis(String appName, String appRepo, String paprikaDB, String githubToken, String url) {
+        this(appName, appRepo, paprikaDB, githubToken, url, AnalysisOptions.DEFAULT);
+    }
+
+    /**
+     * Compute a single project analysis.
+     *
+     * @param appName     Name of the application under analysis.
+     * @param appRepo     Github repository as "username/repository" or local path.
+     * @param paprikaDB   Path to paprika database.
+     * @param githubToken Github API token to query on developers.
+     * @param options     Tuning options of the analysis.
+     */
+    SingleAppAnalysis(String appName, String appRepo, String paprikaDB, String githubToken, String url,
+                      AnalysisOptions options) {
+        this(appName, appRepo, paprikaDB, githubToken, url, options, SingleAppAnalysis::openPersistence);
+    }
+
+    /**
+     * Compute a single project analysis.
+     *
+     * @param appName      Name of the application under analysis.
+     * @param appRepo      Github repository as "username/repository" or local path.
+     * @param paprikaDB    Path to paprika database.
+     * @param githubToken  Github API token to query on developers.
+     * @param options      Tuning options of the analysis.
+     * @param persistences Open the connections of the threads analyzing smell types in parallel,
+     *                     at most one per smell thread at once.
+     */
+    SingleAppAnalysis(String appName, String appRepo, String paprikaDB, String githubToken, String url,
+                      AnalysisOptions options, Supplier<Persistence> persistences) {
         this.appName = appName;
         this.appRepo = appRepo;
         this.paprikaDB = paprikaDB;
         this.githubToken = githubToken;
         projectUrl = url;
+        this.options = options;
+        this.persistences = persistences;
     }
 
     /**
@@ -111,10 +166,21 @@ public class SingleAppAnalysis implements Analysis {
         return (int) result.get(0).get("id");
     }
 
+    /**
+     * Open a new connection to the analysis database.
+     * <p>
+     * The statements are executed on a writer thread while the analysis goes on.
+     *
+     * @return The opened {@link Persistence}.
+     */
+    private static Persistence openPersistence() {
+        return new AsyncPersistence(new PostgresqlPersistence(DATABASE_URL, DATABASE_USERNAME, DATABASE_PASSWORD));
+    }
+
     public void analyze() throws AnalysisException {
         // TODO: Use dependency injection someday
         // Persistence persistence = new SQLitePersistence("output.sqlite");
-        Persistence persistence = new PostgresqlPersistence(DATABASE_URL, DATABASE_USERNAME, DATABASE_PASSWORD);
+        Persistence persistence = openPersistence();
         ProjectQueries projectQueries = new JDBCProjectQueries();
         DeveloperQueries developerQueries = new JDBCDeveloperQueries();
         CommitQueries commitQueries = new JDBCCommitQueries(developerQueries);
@@ -130,7 +196,7 @@ public class SingleAppAnalysis implements Analysis {
         persistence.initialize();
         int appId = persistApp(appName, projectUrl, persistence, projectQueries);
 
-        Repository repository = new Repository(appRepo);
+        Repository repository = new Repository(appRepo, options.getCloneCache());
         try {
             repository.initializeRepository();
         } catch (Repository.RepositoryException e) {
@@ -163,7 +229,8 @@ public class SingleAppAnalysis implements Analysis {
                 arguments.getString("repository"),
                 arguments.getString("database"),
                 arguments.getString("githubToken"),
-                arguments.getString("url")
+                arguments.getString("url"),
+                AnalysisOptions.fromArguments(arguments)
         );
     }
 
@@ -197,5 +264,51 @@ public class SingleAppAnalysis implements Analysis {
                 .help("Repository complete path to log in database")
                 .type(String.class)
                 .required(false);
+
+        parser.addArgument("--presence-intervals")
+                .help("Store the smells presence as intervals of consecutive commits in each branch")
+                .dest("presenceIntervals")
+                .action(Arguments.storeTrue());
+
+        parser.addArgument("--log-stream")
+                .help("Read the commits details from a single 'git log' execution (requires git 2.13)")
+                .dest("logStream")
+                .action(Arguments.storeTrue());
+
+        parser.addArgument("--commit-threads")
+                .help("Number of threads retrieving the commits details")
+                .dest("commitThreads")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(1)
+                .required(false);
+
+        parser.addArgument("--incremental")
+                .help("Only analyze the commits added since the project's previous analysis")
+                .dest("incremental")
+                .action(Arguments.storeTrue());
+
+        parser.addArgument("--smell-threads")
+                .help("Number of smell types analyzed at once, each on its own database connection")
+                .dest("smellThreads")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(1)
+                .required(false);
+
+        parser.addArgument("--fused-smells")
+                .help("Analyze every smell type in a single pass over the commits history")
+                .dest("fusedSmells")
+                .action(Arguments.storeTrue());
+
+        parser.addArgument("--copy-flush-size")
+                .help("Number of rows buffered by the smells COPY streams before sending them")
+                .dest("copyFlushSize")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(AnalysisOptions.DEFAULT_COPY_FLUSH_SIZE)
+                .required(false);
+
+        AnalysisOptions.setCloneCacheArgument(parser);
     }
 }
@@ -22,6 +22,8 @@ import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCBranchQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCCommitQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCProjectQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
+import fr.inria.sniffer.tracker.analysis.persistence.AsyncPersistence;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.PostgresqlPersistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
@@ -31,6 +33,7 @@ import fr.inria.sniffer.tracker.analysis.persistence.queries.ProjectQueries;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.sql.SQLException;
 import java.util.concurrent.Callable;
 
 final class SingleAppAnalysisCallable implements Callable<Void> {
@@ -41,9 +44,11 @@ final class SingleAppAnalysisCallable implements Callable<Void> {
     private String githubToken;
     private String url;
     DataSource connections;
+    private final AnalysisOptions options;
 
     public SingleAppAnalysisCallable(String application, String repository, String paprikaDB,
-                                     String githubToken, String url, DataSource connections) {
+                                     String githubToken, String url, DataSource connections,
+                                     AnalysisOptions options) {
         this.application = application;
         this.repository = repository;
         this.paprikaDB = paprikaDB;
@@ -56,11 +61,13 @@ final class SingleAppAnalysisCallable implements Callable<Void> {
             this.url = Main.GITHUB_URL + (url.startsWith("/") ? url.substring(1) : url);
         }
         this.connections = connections;
+        this.options = options;
     }
 
     @Override
     public Void call() throws Exception {
-        SingleAppAnalysis analysis = new SingleAppAnalysis(application, repository, paprikaDB, githubToken, url);
+        SingleAppAnalysis analysis = new SingleAppAnalysis(application, repository, paprikaDB, githubToken, url, options,
+                this::openPersistence);
         PostgresqlPersistence persistence = new PostgresqlPersistence(connections.getConnection());
         ProjectQueries projectQueries = new JDBCProjectQueries();
         DeveloperQueries developerQueries = new JDBCDeveloperQueries();
@@ -75,6 +82,21 @@ final class SingleAppAnalysisCallable implements Callable<Void> {
         return null;
     }
 
+    /**
+     * Open a connection from the pool for a thread analyzing smell types in parallel.
+     * <p>
+     * The statements are executed on a writer thread while the analysis goes on.
+     *
+     * @return The opened {@link Persistence}.
+     */
+    private Persistence openPersistence() {
+        try {
+            return new AsyncPersistence(new PostgresqlPersistence(connections.getConnection()));
+        } catch (SQLException e) {
+            throw new RuntimeException("Unable to get a connection from the pool", e);
+        }
+    }
+
     @Override
     public String toString() {
         return "SingleAnalysisTask{" +
@@ -18,6 +18,7 @@
 package fr.inria.sniffer.tracker.analysis;
 
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.PostgresqlPersistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
@@ -36,6 +37,7 @@ import fr.inria.sniffer.tracker.analysis.query.commit.FilesChangeDetectionQuery;
 import fr.inria.sniffer.tracker.analysis.query.commit.SizeQuery;
 import fr.inria.sniffer.tracker.analysis.query.project.TagQuery;
 import fr.inria.sniffer.tracker.analysis.query.smell.SmellDeletionQuery;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import org.slf4j.LoggerFactory;
@@ -49,15 +51,18 @@ public class SupplementaryAnalysis implements Analysis {
     private final String appName;
     private final String paprikaDB;
     private final String appRepo;
+    private final AnalysisOptions options;
 
     private List<Query> getAnalysisProcess(int appId, Repository repository, Persistence persistence,
                                            CommitQueries commitQueries, SmellQueries smellQueries,
                                            TagQueries tagQueries) {
         List<Query> analysisProcess = new ArrayList<>();
+        CommitIdDictionary commitIds = new CommitIdDictionary(appId, persistence, commitQueries);
         analysisProcess.add(new SizeQuery(appId, paprikaDB, persistence, commitQueries));
-        analysisProcess.add(new TagQuery(appId, repository, persistence, tagQueries));
-        analysisProcess.add(new SmellDeletionQuery(appId, paprikaDB, persistence, smellQueries));
-        analysisProcess.add(new FilesChangeDetectionQuery(appId, repository, persistence, commitQueries));
+        analysisProcess.add(new TagQuery(appId, repository, persistence, tagQueries, commitIds));
+        analysisProcess.add(new SmellDeletionQuery(appId, paprikaDB, persistence, smellQueries,
+                options.getDeletionThreads()));
+        analysisProcess.add(new FilesChangeDetectionQuery(appId, repository, persistence, commitQueries, commitIds));
         return analysisProcess;
     }
 
@@ -67,9 +72,20 @@ public class SupplementaryAnalysis implements Analysis {
      * @param paprikaDB Path to paprika database.
      */
     SupplementaryAnalysis(String appName, String paprikaDB, String appRepo) {
+        this(appName, paprikaDB, appRepo, AnalysisOptions.DEFAULT);
+    }
+
+    /**
+     * Compute a single project analysis.
+     *
+     * @param paprikaDB Path to paprika database.
+     * @param options   Tuning options of the analysis.
+     */
+    SupplementaryAnalysis(String appName, String paprikaDB, String appRepo, AnalysisOptions options) {
         this.appName = appName;
         this.paprikaDB = paprikaDB;
         this.appRepo = appRepo;
+        this.options = options;
     }
 
     /**
@@ -105,7 +121,7 @@ public class SupplementaryAnalysis implements Analysis {
         persistence.initialize();
         int appId = appId(appName, persistence, projectQueries);
         logger.info("[" + appId + "] Starting supplementary analysis");
-        Repository repository = new Repository(appRepo);
+        Repository repository = new Repository(appRepo, options.getCloneCache());
         try {
             repository.initializeRepository();
         } catch (Repository.RepositoryException e) {
@@ -135,7 +151,8 @@ public class SupplementaryAnalysis implements Analysis {
         this(
                 arguments.getString("name"),
                 arguments.getString("database"),
-                arguments.getString("repository")
+                arguments.getString("repository"),
+                AnalysisOptions.fromArguments(arguments)
         );
     }
 
@@ -159,5 +176,15 @@ public class SupplementaryAnalysis implements Analysis {
                 .help("Github repository as \"username/repository\" or local path")
                 .type(String.class)
                 .required(true);
+
+        AnalysisOptions.setCloneCacheArgument(parser);
+
+        parser.addArgument("--deletion-threads")
+                .help("Number of threads checking the refactored smells deletion at once")
+                .dest("deletionThreads")
+                .type(Integer.class)
+                .choices(Arguments.range(1, Integer.MAX_VALUE))
+                .setDefault(1)
+                .required(false);
     }
 }
@@ -39,17 +39,20 @@ final class SupplementaryAnalysisCallable implements Callable<Void> {
     private final String repository;
     private final String paprikaDB;
     private final DataSource connections;
+    private final AnalysisOptions options;
 
-    public SupplementaryAnalysisCallable(String appName, String repository, String paprikaDB, DataSource connections) {
+    public SupplementaryAnalysisCallable(String appName, String repository, String paprikaDB, DataSource connections,
+                                         AnalysisOptions options) {
         this.appName = appName;
         this.repository = repository;
         this.paprikaDB = paprikaDB;
         this.connections = connections;
+        this.options = options;
     }
 
     @Override
     public Void call() throws Exception {
-        SupplementaryAnalysis analysis = new SupplementaryAnalysis(appName, paprikaDB, repository);
+        SupplementaryAnalysis analysis = new SupplementaryAnalysis(appName, paprikaDB, repository, options);
         PostgresqlPersistence persistence = new PostgresqlPersistence(connections.getConnection());
         ProjectQueries projectQueries = new JDBCProjectQueries();
         DeveloperQueries developerQueries = new JDBCDeveloperQueries();
@@ -31,39 +31,6 @@ public class Branch {
     private Commit mergedInto;
     private final int ordinal;
 
-    /**
-     * Create the new current branch from its mother,
-     * setting if it's either the master branch and the branch ordinal.
-     *
-     * @param mother  The {@link Branch}'s mother (if null, the new branch will be set as master).
-     * @param ordinal The new {@link Branch}h ordinal, i.e. the counter of seen branches.
-     * @return A new {@link Branch}.
-     */
-    public static Branch fromMother(Branch mother, int ordinal) {
-        Commit mergedInto = null;
-        if (mother != null) {
-            mergedInto = mother.getMergedInto();
-        }
-        return new Branch(ordinal, mergedInto);
-    }
-
-    /**
-     * Embed all previously seen commits in the new mother branch to avoid infinite loops.
-     *
-     * @param mother  The mother {@link Branch}, may be null.
-     * @param current The current {@link Branch}, can't be null.
-     * @return A new mother {@link Branch} with an ordinal set to -1, isMaster to false
-     * and the commits of the two branches given in parameters.
-     */
-    public static Branch newMother(Branch mother, Branch current) {
-        Branch branch = new Branch();
-        if (mother != null) {
-            branch.addCommits(mother.getCommits());
-        }
-        branch.addCommits(current.getCommits());
-        return branch;
-    }
-
     public Branch() {
         this(-1, null);
     }
@@ -132,16 +99,6 @@ public class Branch {
         this.mergedInto = mergedInto;
     }
 
-    /**
-     * Determine if the branch contains the given commit.
-     *
-     * @param commit The commit to check.
-     * @return True if is contained, false otherwise.
-     */
-    public boolean contains(Commit commit) {
-        return commits.contains(commit);
-    }
-
     /**
      * Return the number identifier of the branch for the project.
      *
@@ -0,0 +1,191 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import fr.inria.sniffer.tracker.analysis.FilesUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TagOpt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keep a bare mirror of each remote repository in a local directory, keyed by its '$user/$project' slug.
+ * <p>
+ * A mirror is cloned on first use, then only refreshed by a fetch. The analyses work on a disposable
+ * repository borrowing the mirror objects through Git alternates, thus nothing is copied
+ * and deleting it once done leaves the mirror untouched.
+ */
+public class CloneCache {
+    private static final Logger logger = LoggerFactory.getLogger(CloneCache.class.getName());
+    private static final String DEFAULT_REMOTE = "https://github.com/";
+    private static final RefSpec HEADS = new RefSpec("+refs/heads/*:refs/heads/*");
+    private static final RefSpec TAGS = new RefSpec("+refs/tags/*:refs/tags/*");
+    // Shared by all caches, so that concurrent analyses never clone or fetch the same mirror at once.
+    private static final ConcurrentMap<Path, Object> mirrorLocks = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final String remote;
+
+    /**
+     * Cache the repositories cloned from Github.
+     *
+     * @param directory Directory holding the mirrors.
+     */
+    public CloneCache(Path directory) {
+        this(directory, DEFAULT_REMOTE);
+    }
+
+    /**
+     * @param directory Directory holding the mirrors.
+     * @param remote    Prefix of the slugs to form the remote URI, e.g. 'https://github.com/'.
+     */
+    public CloneCache(Path directory, String remote) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.remote = remote;
+    }
+
+    /**
+     * Return the up to date mirror of the given repository, cloning it if not yet cached.
+     *
+     * @param slug The repository as '$user/$project'.
+     * @return Path to the bare mirror.
+     * @throws IOException If the repository can't be cloned.
+     */
+    public Path mirror(String slug) throws IOException {
+        Path mirror = directory.resolve(slug + Constants.DOT_GIT_EXT).normalize();
+        synchronized (mirrorLocks.computeIfAbsent(mirror, path -> new Object())) {
+            if (Files.exists(mirror)) {
+                refresh(slug, mirror);
+            } else {
+                cloneMirror(slug, mirror);
+            }
+        }
+        return mirror;
+    }
+
+    /**
+     * Create a bare repository sharing the objects of the repository mirror,
+     * with the same branches, tags and HEAD.
+     *
+     * @param slug      The repository as '$user/$project'.
+     * @param workspace Empty directory to create the repository into.
+     * @return The created {@link Git} repository.
+     * @throws IOException If the mirror can't be updated or the repository created.
+     */
+    public Git workspace(String slug, Path workspace) throws IOException {
+        Path mirror = mirror(slug);
+        try {
+            Git.init().setBare(true).setDirectory(workspace.toFile()).call().close();
+        } catch (GitAPIException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        Path alternates = workspace.resolve("objects").resolve("info").resolve("alternates");
+        Files.createDirectories(alternates.getParent());
+        Files.write(alternates, Collections.singletonList(mirror.resolve("objects").toString()), StandardCharsets.UTF_8);
+
+        Git git = Git.open(workspace.toFile());
+        try (Git source = Git.open(mirror.toFile())) {
+            copyRefs(source, git);
+        } catch (IOException | GitAPIException e) {
+            git.close();
+            throw new IOException("Unable to copy references from mirror: " + mirror, e);
+        }
+        return git;
+    }
+
+    private void cloneMirror(String slug, Path mirror) throws IOException {
+        logger.info("Cloning " + slug + " into cache: " + mirror);
+        try {
+            Git.cloneRepository()
+                    .setBare(true)
+                    .setCloneAllBranches(true)
+                    .setDirectory(mirror.toFile())
+                    .setURI(remote + slug)
+                    .call()
+                    .close();
+        } catch (GitAPIException | RuntimeException e) {
+            // A partial mirror would be taken for a valid one on next use.
+            FilesUtils.recursiveDeletion(mirror);
+            throw new IOException("Unable to clone repository: " + slug, e);
+        }
+    }
+
+    private static void refresh(String slug, Path mirror) throws IOException {
+        logger.info("Fetching " + slug + " in cache: " + mirror);
+        try (Git git = Git.open(mirror.toFile())) {
+            git.fetch()
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRefSpecs(HEADS, TAGS)
+                    .setTagOpt(TagOpt.FETCH_TAGS)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+        } catch (GitAPIException e) {
+            // The cached state is still consistent, only missing the latest commits.
+            logger.warn("Unable to fetch " + slug + ", analyzing the cached mirror", e);
+        }
+    }
+
+    private static void copyRefs(Git source, Git target) throws IOException, GitAPIException {
+        List<Ref> refs = new ArrayList<>(source.branchList().call());
+        refs.addAll(source.tagList().call());
+        for (Ref ref : refs) {
+            RefUpdate update = target.getRepository().updateRef(ref.getName());
+            update.setNewObjectId(ref.getObjectId());
+            checkUpdate(ref.getName(), update.forceUpdate());
+        }
+
+        Ref head = source.getRepository().exactRef(Constants.HEAD);
+        if (head == null) {
+            return;
+        }
+        if (head.isSymbolic()) {
+            checkUpdate(Constants.HEAD, target.getRepository().updateRef(Constants.HEAD).link(head.getTarget().getName()));
+        } else if (head.getObjectId() != null) {
+            RefUpdate update = target.getRepository().updateRef(Constants.HEAD, true);
+            update.setNewObjectId(head.getObjectId());
+            checkUpdate(Constants.HEAD, update.forceUpdate());
+        }
+    }
+
+    private static void checkUpdate(String ref, RefUpdate.Result result) throws IOException {
+        switch (result) {
+            case NEW:
+            case FORCED:
+            case FAST_FORWARD:
+            case NO_CHANGE:
+                return;
+            default:
+                throw new IOException("Unable to update " + ref + ": " + result);
+        }
+    }
+}
@@ -26,6 +26,8 @@ import java.util.*;
  * Represents a commit.
  */
 public class Commit {
+    private static final DateTime EPOCH = new DateTime(0);
+
     public final String sha;
     public int ordinal;
     private int branchOrdinal;
@@ -36,9 +38,17 @@ public class Commit {
 
     private boolean inPaprika;
 
-    private final List<Smell> smells;
-    private final List<Smell> mergedSmells;
-    private final Map<Smell, Smell> renamedSmells;
+    // Smells are indexed by key to compute the introductions and refactorings in linear time.
+    // All smell collections are created on their first insertion, since most of the commits
+    // (e.g. parents handles or history walks) never hold any smell.
+    private Map<SmellKey, Smell> smells;
+    private Map<SmellKey, Smell> mergedSmells;
+    // Smells indexed by instance, regardless of their parent, to retrieve their previous instance.
+    private Map<String, List<Smell>> smellsByInstance;
+    private Map<String, List<Smell>> mergedSmellsByInstance;
+    private Map<Smell, Smell> renamedSmells;
+    private Set<SmellKey> renamedSmellsOrigins;
+    private Set<SmellKey> renamedSmellsKeys;
 
     /**
      * Create a new, empty commit with an empty sha and an invalid ordinal.
@@ -49,6 +59,19 @@ public class Commit {
         return new Commit("", -1);
     }
 
+    /**
+     * Create a lightweight commit only referencing a sha1, with an invalid ordinal and no parents.
+     * <p>
+     * The parents list of this commit is immutable, it is meant to be used as a parent reference
+     * in the commits returned by {@link #commitWithParents(RevCommit)} or {@link CommitGraph}.
+     *
+     * @param sha The commit sha1.
+     * @return A new {@link Commit}.
+     */
+    public static Commit handle(String sha) {
+        return new Commit(sha, -1, EPOCH, "", "", Collections.emptyList());
+    }
+
     /**
      * Minimal constructor for a commit, ordering it using an ordinal.
      *
@@ -67,7 +90,7 @@ public class Commit {
      * @param parents The commit parents.
      */
     public Commit(String sha, int ordinal, List<Commit> parents) {
-        this(sha, ordinal, new DateTime(0), "", "", parents);
+        this(sha, ordinal, EPOCH, "", "", parents);
     }
 
     /**
@@ -90,9 +113,6 @@ public class Commit {
         this.message = message;
         this.authorEmail = authorEmail;
         this.parents = parents;
-        this.smells = new ArrayList<>();
-        this.renamedSmells = new HashMap<>();
-        this.mergedSmells = new ArrayList<>();
     }
 
     /**
@@ -153,11 +173,13 @@ public class Commit {
      */
     public static Commit commitWithParents(RevCommit revCommit) {
         // JGit only returns 1 level of parent commits.
-        List<Commit> parents = new ArrayList<>();
+        RevCommit[] revParents = revCommit.getParents();
+        List<Commit> parents = new ArrayList<>(revParents == null ? 0 : revParents.length);
 
-        if (revCommit.getParents() != null) {
-            for (RevCommit commit : revCommit.getParents()) {
-                parents.add(Commit.commitWithParents(commit));
+        if (revParents != null) {
+            // The parents may have been parsed by a shared RevWalk, we only keep their sha1.
+            for (RevCommit commit : revParents) {
+                parents.add(handle(commit.name()));
             }
         }
 
@@ -165,7 +187,7 @@ public class Commit {
         // 1. It saves processing time and memory
         // 2. We can't call RevCommit#getFullMessage on the parent commits.
         // 2. We can't call RevCommit#getAuthorIdent on the parent commits.
-        return new Commit(revCommit.name(), -1, new DateTime(0), "", "", parents);
+        return new Commit(revCommit.name(), -1, EPOCH, "", "", parents);
     }
 
     @Override
@@ -258,7 +280,7 @@ public class Commit {
      * @return true in case of a merge commit, false otherwise.
      */
     public boolean isMerge() {
-        return this.mergedSmells != null && !this.mergedSmells.isEmpty();
+        return mergedSmells != null && !mergedSmells.isEmpty();
     }
 
     public void addSmell(Smell smell) {
@@ -266,11 +288,19 @@ public class Commit {
     }
 
     public void addSmells(Collection<Smell> smells) {
-        this.smells.addAll(smells);
+        if (this.smells == null) {
+            this.smells = new LinkedHashMap<>();
+            this.smellsByInstance = new HashMap<>();
+        }
+        for (Smell smell : smells) {
+            if (this.smells.putIfAbsent(SmellKey.of(smell), smell) == null) {
+                index(smellsByInstance, smell);
+            }
+        }
     }
 
     public Collection<Smell> getSmells() {
-        return this.smells;
+        return smells == null ? Collections.emptyList() : smells.values();
     }
 
 
@@ -279,23 +309,41 @@ public class Commit {
     }
 
     public void addMergedSmells(Collection<Smell> smells) {
-        this.mergedSmells.addAll(smells);
+        if (mergedSmells == null) {
+            mergedSmells = new LinkedHashMap<>();
+            mergedSmellsByInstance = new HashMap<>();
+        }
+        for (Smell smell : smells) {
+            if (this.mergedSmells.putIfAbsent(SmellKey.of(smell), smell) == null) {
+                index(mergedSmellsByInstance, smell);
+            }
+        }
     }
 
     public Collection<Smell> getMergedSmells() {
-        return mergedSmells;
+        return mergedSmells == null ? Collections.emptyList() : mergedSmells.values();
     }
 
     public void setRenamedSmell(Smell parent, Smell renamed) {
-        this.renamedSmells.put(parent, renamed);
+        if (renamedSmells == null) {
+            renamedSmells = new HashMap<>();
+            renamedSmellsOrigins = new HashSet<>();
+            renamedSmellsKeys = new HashSet<>();
+        }
+        Smell replaced = this.renamedSmells.put(parent, renamed);
+        if (replaced != null) {
+            renamedSmellsKeys.remove(SmellKey.of(replaced));
+        }
+        renamedSmellsOrigins.add(SmellKey.of(parent));
+        renamedSmellsKeys.add(SmellKey.of(renamed));
     }
 
     public Collection<Smell> getRenamedSmellsOrigins() {
-        return this.renamedSmells.keySet();
+        return renamedSmells == null ? Collections.emptySet() : renamedSmells.keySet();
     }
 
     public Collection<Smell> getRenamedSmells() {
-        return this.renamedSmells.values();
+        return renamedSmells == null ? Collections.emptyList() : renamedSmells.values();
     }
 
     /**
@@ -307,12 +355,17 @@ public class Commit {
      * @return The list of {@link Smell} introduced in the current commit.
      */
     public List<Smell> getIntroduced(Commit previous) {
-        List<Smell> introduction = new ArrayList<>(this.getSmells());
-        introduction.removeAll(previous.getSmells());
-        if (this.isMerge()) {
-            introduction.removeAll(this.getMergedSmells());
+        List<Smell> introduction = new ArrayList<>();
+        if (smells == null) {
+            return introduction;
+        }
+        for (Map.Entry<SmellKey, Smell> smell : this.smells.entrySet()) {
+            SmellKey key = smell.getKey();
+            if (!contains(previous.smells, key) && !contains(this.mergedSmells, key)
+                    && !contains(this.renamedSmellsKeys, key)) {
+                introduction.add(smell.getValue());
+            }
         }
-        introduction.removeAll(this.getRenamedSmells());
         return introduction;
     }
 
@@ -326,46 +379,78 @@ public class Commit {
      * @return The list of {@link Smell} refactored in the current commit.
      */
     public List<Smell> getRefactored(Commit previous) {
-        List<Smell> refactoring = new ArrayList<>(previous.getSmells());
-        if (this.isMerge()) {
-            refactoring.retainAll(this.getMergedSmells());
+        boolean merge = this.isMerge();
+        List<Smell> refactoring = new ArrayList<>();
+        if (previous.smells == null) {
+            return refactoring;
+        }
+        for (Map.Entry<SmellKey, Smell> smell : previous.smells.entrySet()) {
+            SmellKey key = smell.getKey();
+            if (merge && !this.mergedSmells.containsKey(key)) {
+                continue;
+            }
+            // We don't count the Smell as refactoring if its parent Smell
+            // is the origin of a renamed smell in the previous commit.
+            if (!contains(this.smells, key) && !contains(this.renamedSmellsOrigins, key)) {
+                refactoring.add(smell.getValue());
+            }
         }
-        refactoring.removeAll(this.getSmells());
-
-        // We don't count the Smell as refactoring if its parent Smell
-        // is the origin of a renamed smell in the previous commit.
-        refactoring.removeAll(getRenamedSmellsOrigins());
         return refactoring;
     }
 
     /**
      * Try to find the instance of the smell from this commit
      * to fetch its parent and id.
+     * <p>
+     * The tested {@link Smell} parent is not considered, only its type, instance, and file.
      *
      * @param tested The instance to retrieve.
      * @return The previous {@link Smell} if found,the tested {@link Smell} if not found.
      */
     public Smell getPreviousInstance(Smell tested) {
-        for (Smell smell : getSmells()) {
-            if (Smell.copyWithoutParent(smell).equals(tested)) {
-                return smell;
-            }
-
-        }
-        return tested;
+        return findInstance(smellsByInstance, tested);
     }
 
     /**
      * Try to find the instance of the smell from this commit's merged smell
      * to fetch its parent and id.
+     * <p>
+     * The tested {@link Smell} parent is not considered, only its type, instance, and file.
      *
      * @param tested The instance to retrieve.
      * @return The previous {@link Smell} if found,the tested {@link Smell} if not found.
      */
     public Smell getMergedInstance(Smell tested) {
-        for (Smell smell : getMergedSmells()) {
-            if (Smell.copyWithoutParent(smell).equals(tested)) {
-                return smell;
+        return findInstance(mergedSmellsByInstance, tested);
+    }
+
+    private static boolean contains(Map<SmellKey, Smell> smells, SmellKey key) {
+        return smells != null && smells.containsKey(key);
+    }
+
+    private static boolean contains(Set<SmellKey> keys, SmellKey key) {
+        return keys != null && keys.contains(key);
+    }
+
+    private static void index(Map<String, List<Smell>> index, Smell smell) {
+        index.computeIfAbsent(smell.instance, instance -> new ArrayList<>(1)).add(smell);
+    }
+
+    /**
+     * Look for the first indexed {@link Smell} with the same type, instance, and file than the tested one.
+     *
+     * @param index  The smells indexed by instance.
+     * @param tested The instance to retrieve.
+     * @return The indexed {@link Smell} if found, the tested {@link Smell} if not found.
+     */
+    private static Smell findInstance(Map<String, List<Smell>> index, Smell tested) {
+        List<Smell> candidates = index == null ? null : index.get(tested.instance);
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size(); i++) {
+                Smell smell = candidates.get(i);
+                if (Objects.equals(smell.type, tested.type) && Objects.equals(smell.file, tested.file)) {
+                    return smell;
+                }
             }
         }
         return tested;
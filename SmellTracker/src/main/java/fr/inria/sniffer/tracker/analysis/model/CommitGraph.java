@@ -0,0 +1,241 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parents graph of all the commits reachable from a starting commit, parsed at once.
+ * <p>
+ * The commits are numbered from 0 to {@link #size()} - 1 in the walk order,
+ * i.e. children are always numbered before their parents.
+ */
+public final class CommitGraph {
+    public static final int NOT_FOUND = -1;
+    private static final int[] NO_PARENTS = new int[0];
+
+    private final String[] shas;
+    private final int[][] parents;
+    private final Map<String, Integer> index;
+
+    private CommitGraph(String[] shas, int[][] parents, Map<String, Integer> index) {
+        this.shas = shas;
+        this.parents = parents;
+        this.index = index;
+    }
+
+    /**
+     * Parse the graph of all commits reachable from the given start.
+     * The commits bodies are not retained.
+     *
+     * @param repository The git repository.
+     * @param start      The most recent commit to walk from.
+     * @return The parsed {@link CommitGraph}.
+     * @throws IOException If anything goes wrong while parsing Git repository.
+     */
+    static CommitGraph parse(org.eclipse.jgit.lib.Repository repository, AnyObjectId start) throws IOException {
+        List<RevCommit> commits = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(start));
+            for (RevCommit commit : walk) {
+                index.put(commit.name(), commits.size());
+                commits.add(commit);
+            }
+        }
+
+        String[] shas = new String[commits.size()];
+        int[][] parents = new int[commits.size()][];
+        RevCommit commit;
+        for (int i = 0; i < shas.length; i++) {
+            commit = commits.get(i);
+            shas[i] = commit.name();
+            if (commit.getParentCount() == 0) {
+                parents[i] = NO_PARENTS;
+                continue;
+            }
+            parents[i] = new int[commit.getParentCount()];
+            for (int parent = 0; parent < parents[i].length; parent++) {
+                parents[i][parent] = index.get(commit.getParent(parent).name());
+            }
+        }
+        return new CommitGraph(shas, parents, index);
+    }
+
+    /**
+     * Build the graph of all commits reachable from the given start, following the parents
+     * of already linked {@link Commit} instances.
+     *
+     * @param start The most recent commit, linked to its parents.
+     * @return The built {@link CommitGraph}.
+     */
+    public static CommitGraph of(Commit start) {
+        // Depth first post order, without recursion, lists the parents before their children.
+        List<Commit> commits = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<Commit> stack = new ArrayDeque<>();
+        Deque<Integer> nextParents = new ArrayDeque<>();
+        visited.add(start.sha);
+        stack.push(start);
+        nextParents.push(0);
+        while (!stack.isEmpty()) {
+            Commit commit = stack.peek();
+            int nextParent = nextParents.pop();
+            if (nextParent < commit.getParentCount()) {
+                nextParents.push(nextParent + 1);
+                Commit parent = commit.getParent(nextParent);
+                if (visited.add(parent.sha)) {
+                    stack.push(parent);
+                    nextParents.push(0);
+                }
+            } else {
+                commits.add(stack.pop());
+            }
+        }
+        Collections.reverse(commits);
+
+        Map<String, Integer> index = new HashMap<>();
+        String[] shas = new String[commits.size()];
+        for (int i = 0; i < shas.length; i++) {
+            shas[i] = commits.get(i).sha;
+            index.put(shas[i], i);
+        }
+        int[][] parents = new int[shas.length][];
+        Commit commit;
+        for (int i = 0; i < shas.length; i++) {
+            commit = commits.get(i);
+            parents[i] = commit.getParentCount() == 0 ? NO_PARENTS : new int[commit.getParentCount()];
+            for (int parent = 0; parent < parents[i].length; parent++) {
+                parents[i][parent] = index.get(commit.getParent(parent).sha);
+            }
+        }
+        return new CommitGraph(shas, parents, index);
+    }
+
+    /**
+     * @return The number of commits in the graph.
+     */
+    public int size() {
+        return shas.length;
+    }
+
+    /**
+     * @param sha The commit sha1.
+     * @return The commit number, {@link #NOT_FOUND} if not in the graph.
+     */
+    public int indexOf(String sha) {
+        Integer position = index.get(sha);
+        return position == null ? NOT_FOUND : position;
+    }
+
+    /**
+     * @param commit The commit number.
+     * @return The commit sha1.
+     */
+    public String sha(int commit) {
+        return shas[commit];
+    }
+
+    /**
+     * @param commit The commit number.
+     * @return The commit parents numbers, in the git order. Must not be modified.
+     */
+    public int[] parents(int commit) {
+        return parents[commit];
+    }
+
+    /**
+     * Order the commits as 'git log --topo-order' does, most recent first.
+     * <p>
+     * Git emits a commit once all its children are emitted, and always continues with the
+     * last parent made available. This keeps the commits of a merged branch together,
+     * unlike {@link org.eclipse.jgit.revwalk.RevSort#TOPO} which follows the commit dates.
+     *
+     * @return The commits numbers, in topological order.
+     */
+    public int[] topologicalOrder() {
+        // Number of children not yet emitted, plus one for commits still in the graph.
+        int[] indegree = new int[shas.length];
+        Arrays.fill(indegree, 1);
+        for (int[] commitParents : parents) {
+            for (int parent : commitParents) {
+                indegree[parent]++;
+            }
+        }
+
+        int[] order = new int[shas.length];
+        int emitted = 0;
+        int[] stack = new int[shas.length];
+        int top = 0;
+        for (int commit = 0; commit < shas.length; commit++) {
+            if (indegree[commit] == 1) {
+                stack[top++] = commit;
+            }
+        }
+        // The tips are emitted in the walk order.
+        reverse(stack, top);
+        while (top > 0) {
+            int commit = stack[--top];
+            for (int parent : parents[commit]) {
+                if (indegree[parent] != 0 && --indegree[parent] == 1) {
+                    stack[top++] = parent;
+                }
+            }
+            indegree[commit] = 0;
+            order[emitted++] = commit;
+        }
+        return order;
+    }
+
+    private static void reverse(int[] array, int length) {
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Create a new {@link Commit} filled with its parents, as {@link Commit#commitWithParents(RevCommit)} does.
+     *
+     * @param commit The commit number.
+     * @return A newly created {@link Commit}.
+     */
+    public Commit commitWithParents(int commit) {
+        List<Commit> commitParents = new ArrayList<>(parents[commit].length);
+        for (int parent : parents[commit]) {
+            commitParents.add(Commit.handle(shas[parent]));
+        }
+        return new Commit(shas[commit], -1, commitParents);
+    }
+}
@@ -24,7 +24,7 @@ public class GitChangedFile {
     public final String name;
     public final int changeSize;
 
-    private static final Pattern FILE_CHANGED = Pattern.compile("^([^\\s]*)\\s*\\|\\s*(\\d+)\\s*[+-]*$");
+    static final Pattern FILE_CHANGED = Pattern.compile("^([^\\s]*)\\s*\\|\\s*(\\d+)\\s*[+-]*$");
 
     public GitChangedFile(String name, int changeSize) {
         this.name = name;
@@ -50,11 +50,19 @@ public class GitChangedFile {
         line = line.trim();
         Matcher matcher = FILE_CHANGED.matcher(line);
         if (matcher.find()) {
-            return new GitChangedFile(matcher.group(1), Integer.valueOf(matcher.group(2)));
+            return fromMatch(matcher);
         }
         throw new Exception("Unable to parse line: " + line);
     }
 
+    /**
+     * @param matcher A successful {@link #FILE_CHANGED} match.
+     * @return The matched {@link GitChangedFile}.
+     */
+    static GitChangedFile fromMatch(Matcher matcher) {
+        return new GitChangedFile(matcher.group(1), Integer.parseInt(matcher.group(2)));
+    }
+
 
     @Override
     public String toString() {
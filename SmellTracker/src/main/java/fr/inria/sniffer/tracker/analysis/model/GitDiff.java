@@ -28,8 +28,8 @@ import java.util.regex.Pattern;
 public class GitDiff {
     private static final Logger logger = LoggerFactory.getLogger(GitDiff.class.getName());
     public static final GitDiff EMPTY = new GitDiff(0, 0, 0); // TODO: See if we set to -1 ?
-    private static final Pattern MODIF_PATTERN = Pattern.compile("(?<number>\\d+)\\s(insertion[s]?|deletion[s]?)\\((?<sign>[+-])\\)");
-    private static final Pattern FILE_PATTERN = Pattern.compile("(?<number>\\d+)\\sfile[s]?\\schanged");
+    static final Pattern MODIF_PATTERN = Pattern.compile("(?<number>\\d+)\\s(insertion[s]?|deletion[s]?)\\((?<sign>[+-])\\)");
+    static final Pattern FILE_PATTERN = Pattern.compile("(?<number>\\d+)\\sfile[s]?\\schanged");
 
     private final int addition;
     private final int deletion;
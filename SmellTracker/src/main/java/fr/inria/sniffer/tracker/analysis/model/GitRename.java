@@ -31,8 +31,8 @@ public final class GitRename {
         this.similarity = similarity;
     }
 
-    private static final Pattern RENAME_WITH_BRACKETS = Pattern.compile("^rename\\s([^{]*)\\{(.*)\\s=>\\s([^}]*)\\}(.*)\\s\\((\\d+)%\\)$");
-    private static final Pattern RENAME_WITHOUT_BRACKETS = Pattern.compile("^rename\\s(.*)\\s=>\\s(.*)\\s\\((\\d+)%\\)$");
+    static final Pattern RENAME_WITH_BRACKETS = Pattern.compile("^rename\\s([^{]*)\\{(.*)\\s=>\\s([^}]*)\\}(.*)\\s\\((\\d+)%\\)$");
+    static final Pattern RENAME_WITHOUT_BRACKETS = Pattern.compile("^rename\\s(.*)\\s=>\\s(.*)\\s\\((\\d+)%\\)$");
 
 
     /**
@@ -70,26 +70,42 @@ public final class GitRename {
         Matcher matcher = RENAME_WITHOUT_BRACKETS.matcher(line);
 
         if (matcher.find()) {
-            return new GitRename(matcher.group(1), matcher.group(2), Integer.valueOf(matcher.group(3)));
+            return fromMatch(matcher);
         }
         return null;
     }
 
-    private static GitRename parseWithBraces(String line) throws Exception {
+    /**
+     * @param matcher A successful {@link #RENAME_WITHOUT_BRACKETS} match.
+     * @return The matched {@link GitRename}.
+     */
+    static GitRename fromMatch(Matcher matcher) {
+        return new GitRename(matcher.group(1), matcher.group(2), Integer.parseInt(matcher.group(3)));
+    }
+
+    private static GitRename parseWithBraces(String line) {
         Matcher matcher = RENAME_WITH_BRACKETS.matcher(line);
         if (matcher.find()) {
-            // Handle edge case where the entry is like 'a/b/{ => d}/C.java', or the other way around
-            String oldfourthGroup = matcher.group(2).isEmpty() ? matcher.group(4).substring(1) : matcher.group(4);
-            String newfourthGroup = matcher.group(3).isEmpty() ? matcher.group(4).substring(1) : matcher.group(4);
-
-            // Taking respectively the left and right arguments in the braces for old and new file.
-            String oldFile = matcher.group(1) + matcher.group(2) + oldfourthGroup;
-            String newFile = matcher.group(1) + matcher.group(3) + newfourthGroup;
-            return new GitRename(oldFile, newFile, Integer.valueOf(matcher.group(5)));
+            return fromBracesMatch(matcher);
         }
         return null;
     }
 
+    /**
+     * @param matcher A successful {@link #RENAME_WITH_BRACKETS} match.
+     * @return The matched {@link GitRename}.
+     */
+    static GitRename fromBracesMatch(Matcher matcher) {
+        // Handle edge case where the entry is like 'a/b/{ => d}/C.java', or the other way around
+        String oldfourthGroup = matcher.group(2).isEmpty() ? matcher.group(4).substring(1) : matcher.group(4);
+        String newfourthGroup = matcher.group(3).isEmpty() ? matcher.group(4).substring(1) : matcher.group(4);
+
+        // Taking respectively the left and right arguments in the braces for old and new file.
+        String oldFile = matcher.group(1) + matcher.group(2) + oldfourthGroup;
+        String newFile = matcher.group(1) + matcher.group(3) + newfourthGroup;
+        return new GitRename(oldFile, newFile, Integer.parseInt(matcher.group(5)));
+    }
+
     @Override
     public String toString() {
         return "GitRename{" +
@@ -0,0 +1,145 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Single pass parser of the '-M50% --stat=800 --summary' output of a commit,
+ * as read by {@link GitRename#parseRenamed(String)}, {@link GitDiff#parse(String)}
+ * and {@link GitChangedFile#parseFileChange(String)}.
+ * <p>
+ * Each line is classified on its content before being matched against the relevant pattern only,
+ * and unrecognized lines are skipped without raising any exception:
+ * <ul>
+ * <li>'rename ...' lines are parsed as a {@link GitRename},</li>
+ * <li>lines containing a '|' are parsed as a {@link GitChangedFile},</li>
+ * <li>other lines starting with a digit are parsed as the {@link GitDiff}.</li>
+ * </ul>
+ * <p>
+ * The matchers are reused from one line to another, thus an instance must not be shared between threads.
+ */
+public final class GitSummaryParser {
+    private final Matcher renameWithBrackets = GitRename.RENAME_WITH_BRACKETS.matcher("");
+    private final Matcher renameWithoutBrackets = GitRename.RENAME_WITHOUT_BRACKETS.matcher("");
+    private final Matcher fileChanged = GitChangedFile.FILE_CHANGED.matcher("");
+    private final Matcher filesCount = GitDiff.FILE_PATTERN.matcher("");
+    private final Matcher modification = GitDiff.MODIF_PATTERN.matcher("");
+
+    /**
+     * Parse the summary lines of a single commit.
+     *
+     * @param lines The '--stat --summary' lines of the commit.
+     * @return The parsed {@link CommitDetails}.
+     */
+    public CommitDetails parse(List<String> lines) {
+        List<GitRename> renames = new ArrayList<>();
+        List<GitChangedFile> changedFiles = new ArrayList<>();
+        GitDiff diff = GitDiff.EMPTY;
+
+        int start;
+        int end;
+        GitRename rename;
+        GitChangedFile changedFile;
+        GitDiff lineDiff;
+        for (String line : lines) {
+            // Same bounds as String#trim, without the copy.
+            start = 0;
+            end = line.length();
+            while (start < end && line.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && line.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                continue;
+            }
+
+            if (line.startsWith("rename", start)) {
+                rename = parseRenamed(line, start, end);
+                if (rename != null) {
+                    renames.add(rename);
+                }
+            }
+            if (line.indexOf('|', start) >= 0) {
+                changedFile = parseFileChange(line, start, end);
+                if (changedFile != null) {
+                    changedFiles.add(changedFile);
+                }
+            } else if (Character.isDigit(line.charAt(start))) {
+                lineDiff = parseDiff(line, start, end);
+                if (lineDiff != null) {
+                    diff = lineDiff;
+                }
+            }
+        }
+        return new CommitDetails(diff, renames, changedFiles);
+    }
+
+    private GitRename parseRenamed(String line, int start, int end) {
+        if (line.indexOf('{', start) >= 0) {
+            renameWithBrackets.reset(line).region(start, end);
+            return renameWithBrackets.find() ? GitRename.fromBracesMatch(renameWithBrackets) : null;
+        }
+        renameWithoutBrackets.reset(line).region(start, end);
+        return renameWithoutBrackets.find() ? GitRename.fromMatch(renameWithoutBrackets) : null;
+    }
+
+    private GitChangedFile parseFileChange(String line, int start, int end) {
+        fileChanged.reset(line).region(start, end);
+        return fileChanged.find() ? GitChangedFile.fromMatch(fileChanged) : null;
+    }
+
+    /**
+     * Same as {@link GitDiff#parse(String)}, matching each comma separated part of the line in place.
+     */
+    private GitDiff parseDiff(String line, int start, int end) {
+        int partEnd = nextPartEnd(line, start, end);
+        filesCount.reset(line).region(start, partEnd);
+        if (!filesCount.find()) {
+            return null;
+        }
+        int changedFiles = Integer.parseInt(filesCount.group("number"));
+
+        int addition = 0;
+        int deletion = 0;
+        int partStart;
+        // Only the two parts following the files count may hold modifications.
+        for (int part = 0; part < 2 && partEnd < end; part++) {
+            partStart = partEnd + 1;
+            partEnd = nextPartEnd(line, partStart, end);
+            modification.reset(line).region(partStart, partEnd);
+            if (modification.find()) {
+                if ("+".equals(modification.group("sign"))) {
+                    addition = Integer.parseInt(modification.group("number"));
+                } else {
+                    deletion = Integer.parseInt(modification.group("number"));
+                }
+            }
+        }
+        return new GitDiff(addition, deletion, changedFiles);
+    }
+
+    private static int nextPartEnd(String line, int start, int end) {
+        int comma = line.indexOf(',', start);
+        return comma < 0 || comma > end ? end : comma;
+    }
+}
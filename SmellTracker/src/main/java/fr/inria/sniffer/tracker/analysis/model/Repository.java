@@ -32,7 +32,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * Abstract a repository concept to choose between cloning or using local path.
@@ -40,10 +45,24 @@ import java.util.List;
 public class Repository {
     private static final Logger logger = LoggerFactory.getLogger(Repository.class.getName());
     private String repository;
+    private final CloneCache cloneCache;
     private Path cloneDir;
     private boolean isRemote = false;
     private Git git;
 
+    // Number of parsed commits kept by the shared walk.
+    private static final int COMMIT_CACHE_SIZE = 10000;
+    // Guarded by this.
+    private RevWalk walk;
+    private int walkedCommits = 0;
+    private final Map<ObjectId, RevCommit> commitCache = new LinkedHashMap<ObjectId, RevCommit>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjectId, RevCommit> eldest) {
+            return size() > COMMIT_CACHE_SIZE;
+        }
+    };
+    private volatile CommitGraph commitGraph;
+
     /**
      * Initialize a new repository.
      * If the given path is a directory on the filesystem, we will use it.
@@ -52,7 +71,18 @@ public class Repository {
      * param repository Path to the local repository or Github identifier '$user/$project'
      */
     public Repository(String repository) {
+        this(repository, null);
+    }
+
+    /**
+     * Initialize a new repository, cloning remote repositories through the given cache.
+     * <p>
+     * param repository Path to the local repository or Github identifier '$user/$project'
+     * param cloneCache The {@link CloneCache} holding the remote repositories, or null to always clone them.
+     */
+    public Repository(String repository, CloneCache cloneCache) {
         this.repository = repository;
+        this.cloneCache = cloneCache;
     }
 
 
@@ -80,6 +110,7 @@ public class Repository {
         if (logger.isDebugEnabled() && cloneDir != null) {
             logger.debug("Repository already initialized, doing nothing (" + repository + ")");
         }
+        clearCommitCache();
         if (Files.exists(Paths.get(this.repository))) {
             this.git = initializeLocalRepository();
         } else {
@@ -96,6 +127,7 @@ public class Repository {
         if (logger.isDebugEnabled() && cloneDir == null) {
             logger.debug("Repository not initialized, doing nothing (" + repository + ")");
         }
+        clearCommitCache();
         // We don't delete files if the repository was there before us.
         // We won't delete anything by default.
         if (isRemote) {
@@ -106,14 +138,21 @@ public class Repository {
     /**
      * Retrieve the commit identified by 'sha' on the {@link org.eclipse.jgit.api.Git} repository.
      * This {@link Commit} will be filled with its parents, but not its details (message, author, date).
+     * <p>
+     * The parents are read from the {@link CommitGraph} if loaded.
      *
      * @param sha identifier of the commit to retrieve, might be a sha as well as 'HEAD'.
      * @return The retrieved {@link Commit}.
      * @throws IOException If anything goes wrong while parsing Git repository.
      */
     public Commit getCommitWithParents(String sha) throws IOException {
+        CommitGraph graph = commitGraph;
+        int position = graph == null ? CommitGraph.NOT_FOUND : graph.indexOf(sha);
+        if (position != CommitGraph.NOT_FOUND) {
+            return graph.commitWithParents(position);
+        }
         ObjectId commitId = ObjectId.fromString(sha);
-        return Commit.commitWithParents(getRevCommit(commitId));
+        return parseCommit(commitId, Commit::commitWithParents);
     }
 
     /**
@@ -126,7 +165,7 @@ public class Repository {
      */
     public Commit getCommitWithDetails(String sha) throws IOException {
         ObjectId commitId = ObjectId.fromString(sha);
-        return Commit.commitWithDetails(getRevCommit(commitId));
+        return parseCommit(commitId, Commit::commitWithDetails);
     }
 
     /**
@@ -140,7 +179,7 @@ public class Repository {
     public Commit getHead() throws IOException {
         org.eclipse.jgit.lib.Repository gitRepo = getGitRepository().getRepository();
         Ref head = gitRepo.findRef("HEAD");
-        return Commit.commitWithParents(getRevCommit(head.getObjectId()));
+        return parseCommit(head.getObjectId(), Commit::commitWithParents);
     }
 
     /**
@@ -162,21 +201,100 @@ public class Repository {
     }
 
     /**
-     * Retrieve the {@link RevCommit} from any object reference in the repository.
+     * Stream the commits reachable from HEAD in reverse topological order,
+     * i.e. the order of 'git log --topo-order --reverse' used to number the commits in Paprika.
+     * <p>
+     * The order is computed on the {@link CommitGraph}, which stays loaded for the branches analysis.
      *
-     * @param commitId Identifier of the {@link RevCommit} to retrieve.
-     * @return The {@link RevCommit}.
+     * @return An iterator of commit SHA1s, from the oldest to HEAD.
      * @throws IOException If anything goes wrong while parsing Git repository.
      */
-    private RevCommit getRevCommit(ObjectId commitId) throws IOException {
-        org.eclipse.jgit.lib.Repository gitRepo = getGitRepository().getRepository();
+    public Iterator<String> getTopologicalLog() throws IOException {
+        CommitGraph graph = loadCommitGraph();
+        int[] order = graph.topologicalOrder();
+        return new Iterator<String>() {
+            private int next = order.length;
+
+            @Override
+            public boolean hasNext() {
+                return next > 0;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return graph.sha(order[--next]);
+            }
+        };
+    }
+
+    /**
+     * Parse the graph of all commits reachable from HEAD at once, if not already loaded.
+     * <p>
+     * The parents of these commits are then served from memory by {@link #getCommitWithParents(String)},
+     * until the repository is finalized.
+     *
+     * @return The {@link CommitGraph} reachable from HEAD.
+     * @throws IOException If anything goes wrong while parsing Git repository.
+     */
+    public synchronized CommitGraph loadCommitGraph() throws IOException {
+        if (commitGraph == null) {
+            org.eclipse.jgit.lib.Repository gitRepo = getGitRepository().getRepository();
+            commitGraph = CommitGraph.parse(gitRepo, gitRepo.resolve("HEAD"));
+            logger.debug("Parsed commit graph of " + commitGraph.size() + " commits (" + repository + ")");
+        }
+        return commitGraph;
+    }
+
+    /**
+     * Retrieve the {@link Commit} from any object reference in the repository.
+     * <p>
+     * The commits are parsed by a long lived {@link RevWalk} and the last {@link #COMMIT_CACHE_SIZE}
+     * used are kept in memory. The walk is replaced every {@link #COMMIT_CACHE_SIZE} parsed commits
+     * so that its own objects pool stays bounded too, the cache being cleared along since a
+     * {@link RevCommit} must not be used once its walk is released.
+     * For the same reason, the {@link RevCommit} is converted before any other parsing.
+     *
+     * @param commitId   Identifier of the {@link RevCommit} to retrieve.
+     * @param conversion Conversion of the {@link RevCommit} to a {@link Commit}.
+     * @return The converted {@link Commit}.
+     * @throws IOException If anything goes wrong while parsing Git repository.
+     */
+    private synchronized Commit parseCommit(ObjectId commitId, Function<RevCommit, Commit> conversion)
+            throws IOException {
+        RevCommit commit = commitCache.get(commitId);
+        if (commit != null) {
+            return conversion.apply(commit);
+        }
+        if (walk != null && walkedCommits >= COMMIT_CACHE_SIZE) {
+            walk.close();
+            walk = null;
+            commitCache.clear();
+        }
+        if (walk == null) {
+            // a RevWalk allows to walk over commits based on some filtering that is defined
+            walk = new RevWalk(getGitRepository().getRepository());
+            walkedCommits = 0;
+        }
+        commit = walk.parseCommit(commitId);
+        walkedCommits++;
+        commitCache.put(commitId.copy(), commit);
+        return conversion.apply(commit);
+    }
 
-        // a RevWalk allows to walk over commits based on some filtering that is defined
-        try (RevWalk walk = new RevWalk(gitRepo)) {
-            RevCommit commit = walk.parseCommit(commitId);
-            walk.dispose();
-            return commit;
+    /**
+     * Release the shared walk and all cached commits.
+     */
+    private synchronized void clearCommitCache() {
+        if (walk != null) {
+            walk.close();
+            walk = null;
         }
+        walkedCommits = 0;
+        commitCache.clear();
+        commitGraph = null;
     }
 
     /**
@@ -192,6 +310,9 @@ public class Repository {
 
     /**
      * Clone the repository from a remote location (github.com)
+     * <p>
+     * With a {@link CloneCache}, the repository is only fetched in the cache
+     * and the temporary directory shares its objects.
      *
      * @return The {@link Git} repository.
      * @throws RepositoryException If anything wrong occurs.
@@ -203,6 +324,13 @@ public class Repository {
         } catch (IOException e) {
             throw new RepositoryException("Unable to create temporary directory", e);
         }
+        if (cloneCache != null) {
+            try {
+                return cloneCache.workspace(repository, cloneDir);
+            } catch (IOException e) {
+                throw new RepositoryException("Unable to clone repository: " + repository, e);
+            }
+        }
         try {
             return Git.cloneRepository()
                     .setDirectory(cloneDir.toFile())
@@ -0,0 +1,70 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of a {@link Smell} equality fields, including its parents chain.
+ * <p>
+ * The hash code is computed once on creation, making the key cheap to use in hash based collections
+ * while {@link Smell#hashCode()} goes through the whole parents chain on each call.
+ */
+public final class SmellKey {
+    private final String type;
+    private final String instance;
+    private final String file;
+    private final SmellKey parent;
+    private final int hash;
+
+    private SmellKey(String type, String instance, String file, SmellKey parent) {
+        this.type = type;
+        this.instance = instance;
+        this.file = file;
+        this.parent = parent;
+        this.hash = Objects.hash(type, instance, file, parent);
+    }
+
+    /**
+     * Create the key of a {@link Smell} from its current values.
+     * Later changes on the smell or its parents are not reflected in the key.
+     *
+     * @param smell The smell to create the key of.
+     * @return A new {@link SmellKey}.
+     */
+    public static SmellKey of(Smell smell) {
+        return new SmellKey(smell.type, smell.instance, smell.file, smell.parent == null ? null : of(smell.parent));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmellKey smellKey = (SmellKey) o;
+        return hash == smellKey.hash &&
+                Objects.equals(type, smellKey.type) &&
+                Objects.equals(instance, smellKey.instance) &&
+                Objects.equals(file, smellKey.file) &&
+                Objects.equals(parent, smellKey.parent);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
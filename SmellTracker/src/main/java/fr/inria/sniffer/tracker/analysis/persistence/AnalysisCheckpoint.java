@@ -0,0 +1,167 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of a project left in the persistence by a previous analysis, used to only analyze the new commits.
+ * <p>
+ * The checkpoint must be loaded before the commits insertion, it then tells which commits were already
+ * analyzed and where the principal branch (ordinal 0) stopped, for its analysis to be resumed from there.
+ * <p>
+ * The analyzed sha1 are kept in a {@link ShaIndex}.
+ */
+public class AnalysisCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisCheckpoint.class.getName());
+    public static final int MAINLINE_ORDINAL = 0;
+
+    private final int projectId;
+    private final Persistence persistence;
+    private final CommitQueries commitQueries;
+    private final BranchQueries branchQueries;
+
+    private ShaIndex commits;
+    private String lastCommitSha;
+    private int mainlineId;
+    private String mainlineHeadSha;
+    private int mainlineHeadOrdinal;
+    private int mainlineHeadBranchOrdinal;
+    private int nextBranchOrdinal;
+
+    public AnalysisCheckpoint(int projectId, Persistence persistence,
+                              CommitQueries commitQueries, BranchQueries branchQueries) {
+        this.projectId = projectId;
+        this.persistence = persistence;
+        this.commitQueries = commitQueries;
+        this.branchQueries = branchQueries;
+        this.commits = new ShaIndex();
+    }
+
+    /**
+     * Load the analyzed commits and the principal branch head from the persistence.
+     * <p>
+     * The project is considered as analyzed only if it has a last commit and
+     * a principal branch referencing at least one commit. Otherwise, e.g. after an
+     * interrupted analysis, the whole history is analyzed again.
+     */
+    public void load() {
+        lastCommitSha = (String) firstValue(commitQueries.lastProjectCommitShaQuery(projectId), "sha1");
+        mainlineHeadSha = null;
+        if (lastCommitSha == null) {
+            return;
+        }
+
+        Object id = firstValue(branchQueries.idFromOrdinalQueryStatement(projectId, MAINLINE_ORDINAL), "id");
+        if (id == null) {
+            logger.warn("[" + projectId + "] No principal branch found, analyzing the whole history");
+            return;
+        }
+        mainlineId = (int) id;
+        String headSha = (String) firstValue(branchQueries.lastCommitShaQuery(projectId, mainlineId), "sha1");
+        if (headSha == null) {
+            logger.warn("[" + projectId + "] Empty principal branch, analyzing the whole history");
+            return;
+        }
+        Object headBranchOrdinal = firstValue(
+                branchQueries.commitOrdinalQuery(projectId, mainlineId, new Commit(headSha, -1)), "ordinal");
+        Object headOrdinal = firstValue(commitQueries.ordinalFromShaQuery(projectId, headSha), "ordinal");
+        Object lastBranchOrdinal = firstValue(branchQueries.lastOrdinalQuery(projectId), "ordinal");
+        if (headBranchOrdinal == null || headOrdinal == null || lastBranchOrdinal == null) {
+            logger.warn("[" + projectId + "] Principal branch head not found (" + headSha
+                    + "), analyzing the whole history");
+            return;
+        }
+        mainlineHeadBranchOrdinal = (int) headBranchOrdinal;
+        mainlineHeadOrdinal = (int) headOrdinal;
+        nextBranchOrdinal = ((Number) lastBranchOrdinal).intValue() + 1;
+
+        List<Map<String, Object>> result = persistence.query(commitQueries.commitIdsQuery(projectId));
+        commits = new ShaIndex(result.size());
+        for (Map<String, Object> row : result) {
+            commits.add((String) row.get("sha1"));
+        }
+        mainlineHeadSha = headSha;
+        logger.info("[" + projectId + "] Resuming analysis after " + commits.size()
+                + " commits, last commit: " + lastCommitSha);
+    }
+
+    /**
+     * @param statement The query to execute.
+     * @param column    The column to read.
+     * @return The column value in the first result row, null if there is no result.
+     */
+    private Object firstValue(String statement, String column) {
+        List<Map<String, Object>> result = persistence.query(statement);
+        return result.isEmpty() ? null : result.get(0).get(column);
+    }
+
+    /**
+     * @return True if a previous analysis of the project was found on load, false otherwise.
+     */
+    public boolean isAnalyzed() {
+        return mainlineHeadSha != null;
+    }
+
+    /**
+     * @param sha The commit sha1.
+     * @return True if the commit was persisted by the previous analysis, false otherwise.
+     */
+    public boolean isAnalyzed(String sha) {
+        return commits.indexOf(sha) != ShaIndex.NOT_FOUND;
+    }
+
+    /**
+     * @return The sha1 of the project's last commit, as given by {@link CommitQueries#lastProjectCommitShaQuery(int)}.
+     */
+    public String getLastCommitSha() {
+        return lastCommitSha;
+    }
+
+    /**
+     * @return The persistence identifier of the principal branch.
+     */
+    public int getMainlineId() {
+        return mainlineId;
+    }
+
+    /**
+     * Create the last commit of the principal branch, with its project and branch ordinals.
+     *
+     * @return A new {@link Commit}.
+     */
+    public Commit getMainlineHead() {
+        Commit head = new Commit(mainlineHeadSha, mainlineHeadOrdinal);
+        head.setBranchOrdinal(mainlineHeadBranchOrdinal);
+        return head;
+    }
+
+    /**
+     * @return The ordinal to give to the next new branch.
+     */
+    public int getNextBranchOrdinal() {
+        return nextBranchOrdinal;
+    }
+}
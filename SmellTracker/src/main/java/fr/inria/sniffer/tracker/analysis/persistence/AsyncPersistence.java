@@ -0,0 +1,312 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind {@link Persistence} decorator, executing the committed statements on a dedicated writer thread.
+ * <p>
+ * The statements are buffered on the caller thread, then handed to the writer on each {@link #commit()}
+ * through a bounded queue, blocking the caller when the writer is late. Every other operation waits for the
+ * previously committed statements to be executed, thus reading all the previous writes.
+ * <p>
+ * The delegate is only used from the writer thread, except while a {@link QueryCursor} is opened:
+ * commits and copy streams rows are then handed synchronously. This decorator itself must be used from a single thread.
+ */
+public class AsyncPersistence implements Persistence {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncPersistence.class.getName());
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    private final Persistence delegate;
+    private final BlockingQueue<FutureTask<?>> queue;
+    private final Thread writer;
+
+    private List<Consumer<Persistence>> pendingStatements;
+    private final List<AsyncCopyStream> copyStreams;
+    private int openedCursors;
+    private volatile boolean closed;
+
+    public AsyncPersistence(Persistence delegate) {
+        this(delegate, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param delegate  The {@link Persistence} to write into.
+     * @param queueSize Number of commits waiting for the writer before blocking the caller.
+     */
+    public AsyncPersistence(Persistence delegate, int queueSize) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.copyStreams = new ArrayList<>();
+        this.openedCursors = 0;
+        this.pendingStatements = new ArrayList<>();
+        this.writer = new Thread(this::write, "persistence-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Writer thread loop, executing the tasks in submission order.
+     */
+    private void write() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                queue.take().run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand a task to the writer thread, blocking if the queue is full.
+     *
+     * @param task The task to run.
+     * @return The submitted task.
+     */
+    private <T> FutureTask<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(() -> {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                logger.error("Unable to write into persistence", e);
+                throw e;
+            }
+        });
+        try {
+            queue.put(future);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the persistence writer", e);
+        }
+        return future;
+    }
+
+    /**
+     * Hand a task to the writer thread, then wait for its result,
+     * thus for every previously submitted task.
+     *
+     * @param task The task to run.
+     * @return The task result.
+     */
+    private <T> T await(Callable<T> task) {
+        FutureTask<T> future = submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the persistence writer", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Unable to write into persistence", e.getCause());
+        }
+    }
+
+    /**
+     * Hand a writing task to the writer thread, waiting for it while a cursor is opened,
+     * since the delegate is then used from the caller thread too.
+     *
+     * @param task The task to run.
+     */
+    private void dispatch(Callable<Void> task) {
+        if (openedCursors > 0) {
+            await(task);
+        } else {
+            submit(task);
+        }
+    }
+
+    @Override
+    public void addStatements(String... statements) {
+        pendingStatements.add(persistence -> persistence.addStatements(statements));
+    }
+
+    @Override
+    public void addStatements(ParameterizedStatement... statements) {
+        pendingStatements.add(persistence -> persistence.addStatements(statements));
+    }
+
+    @Override
+    public void commit() {
+        for (AsyncCopyStream stream : copyStreams) {
+            stream.handOff();
+        }
+        final List<Consumer<Persistence>> committedStatements = pendingStatements;
+        pendingStatements = new ArrayList<>();
+
+        Callable<Void> task = () -> {
+            for (Consumer<Persistence> statement : committedStatements) {
+                statement.accept(delegate);
+            }
+            delegate.commit();
+            return null;
+        };
+        dispatch(task);
+    }
+
+    @Override
+    public List<Map<String, Object>> query(String statement) {
+        return await(() -> delegate.query(statement));
+    }
+
+    @Override
+    public List<Map<String, Object>> query(ParameterizedStatement statement) {
+        return await(() -> delegate.query(statement));
+    }
+
+    @Override
+    public QueryCursor stream(String statement, int fetchSize) {
+        QueryCursor cursor = await(() -> delegate.stream(statement, fetchSize));
+        openedCursors++;
+        return new QueryCursor() {
+            private boolean cursorClosed = false;
+
+            @Override
+            public void close() {
+                if (!cursorClosed) {
+                    cursorClosed = true;
+                    cursor.close();
+                    openedCursors--;
+                }
+            }
+
+            @Override
+            public Iterator<ResultRow> iterator() {
+                return cursor.iterator();
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        await(() -> {
+            delegate.close();
+            return null;
+        });
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void initialize() {
+        await(() -> {
+            delegate.initialize();
+            return null;
+        });
+    }
+
+    @Override
+    public int execute(String statement) {
+        return await(() -> delegate.execute(statement));
+    }
+
+    @Override
+    public int execute(ParameterizedStatement statement) {
+        return await(() -> delegate.execute(statement));
+    }
+
+    @Override
+    public long copyFile(String path, String table, String columns) {
+        return await(() -> delegate.copyFile(path, table, columns));
+    }
+
+    @Override
+    public CopyStream openCopyStream(String table, String columns, int flushSize) {
+        CopyStream stream = await(() -> delegate.openCopyStream(table, columns, flushSize));
+        AsyncCopyStream asyncStream = new AsyncCopyStream(stream, flushSize);
+        copyStreams.add(asyncStream);
+        return asyncStream;
+    }
+
+    /**
+     * {@link CopyStream} buffering the rows on the caller thread,
+     * then handing them to the delegate stream on the writer thread.
+     */
+    private class AsyncCopyStream implements CopyStream {
+        // Bounding the rows kept on the caller side for streams never flushing by themselves.
+        private static final int MAX_BUFFERED_ROWS = 10000;
+
+        private final CopyStream stream;
+        private final int handOffSize;
+        private List<Object[]> rows;
+
+        AsyncCopyStream(CopyStream stream, int flushSize) {
+            this.stream = stream;
+            this.handOffSize = Math.min(flushSize, MAX_BUFFERED_ROWS);
+            this.rows = new ArrayList<>();
+        }
+
+        @Override
+        public void addRow(Object... values) {
+            rows.add(values);
+            if (rows.size() >= handOffSize) {
+                handOff();
+            }
+        }
+
+        @Override
+        public void flush() {
+            handOff();
+            dispatch(() -> {
+                stream.flush();
+                return null;
+            });
+        }
+
+        /**
+         * Give the buffered rows to the delegate stream, which will flush them by itself on reaching its size.
+         */
+        void handOff() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            final List<Object[]> handedRows = rows;
+            rows = new ArrayList<>();
+            dispatch(() -> {
+                for (Object[] row : handedRows) {
+                    stream.addRow(row);
+                }
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per project dictionary of the commits identifiers in the persistence, indexed by sha1.
+ * <p>
+ * The dictionary is filled with a single query on its first lookup, which must then happen
+ * after the commits insertion, and lets the later statements reference commits by literal
+ * identifier instead of a sub query per row.
+ * <p>
+ * The sha1 are kept in a {@link ShaIndex} and the identifiers in a primitive array,
+ * avoiding a String and a boxed Integer per commit.
+ */
+public class CommitIdDictionary {
+    private static final Logger logger = LoggerFactory.getLogger(CommitIdDictionary.class.getName());
+    public static final int NO_ID = -1;
+
+    private final int projectId;
+    private final Persistence persistence;
+    private final CommitQueries commitQueries;
+
+    private ShaIndex shas;
+    private int[] ids;
+    private boolean loaded;
+
+    public CommitIdDictionary(int projectId, Persistence persistence, CommitQueries commitQueries) {
+        this.projectId = projectId;
+        this.persistence = persistence;
+        this.commitQueries = commitQueries;
+        this.shas = new ShaIndex();
+        this.ids = new int[0];
+    }
+
+    /**
+     * (Re)load the whole project commits identifiers from the persistence.
+     */
+    public void load() {
+        List<Map<String, Object>> result = persistence.query(commitQueries.commitIdsQuery(projectId));
+        shas = new ShaIndex(result.size());
+        ids = new int[result.size()];
+        for (Map<String, Object> row : result) {
+            String sha = (String) row.get("sha1");
+            int position = shas.add(sha);
+            if (position == ShaIndex.NOT_FOUND) {
+                logger.warn("[" + projectId + "] Ignoring malformed commit sha: " + sha);
+            } else {
+                ids[position] = (int) row.get("id");
+            }
+        }
+        loaded = true;
+        logger.debug("[" + projectId + "] Loaded " + size() + " commit identifiers");
+    }
+
+    /**
+     * Retrieve the identifier of a commit, loading the dictionary if necessary.
+     *
+     * @param sha The commit sha1.
+     * @return The commit identifier, {@link #NO_ID} if the commit is not in the persistence.
+     */
+    public int idOf(String sha) {
+        if (!loaded) {
+            load();
+        }
+        int position = shas.indexOf(sha);
+        return position == ShaIndex.NOT_FOUND ? NO_ID : ids[position];
+    }
+
+    /**
+     * @return The number of commits in the dictionary.
+     */
+    public int size() {
+        return shas.size();
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Per project index of the commits branch, branch ordinal, and merged commit, indexed by sha1.
+ * <p>
+ * The index is filled with a single query on its first lookup, which must then happen
+ * after the branches insertion, and replaces the per commit queries of the smells analysis.
+ * <p>
+ * The sha1 are kept in a {@link ShaIndex} and the values in primitive arrays.
+ */
+public class CommitTopology {
+    private static final Logger logger = LoggerFactory.getLogger(CommitTopology.class.getName());
+    public static final int NONE = -1;
+    private static final int FETCH_SIZE = 10000;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int projectId;
+    private final Persistence persistence;
+    private final BranchQueries branchQueries;
+
+    private ShaIndex shas;
+    private int[] branchIds;
+    private int[] branchOrdinals;
+    private int[] mergedCommitIds;
+    private boolean loaded;
+
+    public CommitTopology(int projectId, Persistence persistence, BranchQueries branchQueries) {
+        this.projectId = projectId;
+        this.persistence = persistence;
+        this.branchQueries = branchQueries;
+        this.shas = new ShaIndex();
+        this.branchIds = new int[0];
+        this.branchOrdinals = new int[0];
+        this.mergedCommitIds = new int[0];
+    }
+
+    /**
+     * (Re)load the whole project topology from the persistence.
+     */
+    public void load() {
+        shas = new ShaIndex();
+        branchIds = new int[INITIAL_CAPACITY];
+        branchOrdinals = new int[INITIAL_CAPACITY];
+        mergedCommitIds = new int[INITIAL_CAPACITY];
+        try (QueryCursor cursor = persistence.stream(branchQueries.commitTopologyQuery(projectId), FETCH_SIZE)) {
+            for (ResultRow row : cursor) {
+                add(row.getString("sha1"), row.getInt("branch_id"), row.getInt("ordinal"),
+                        row.getInteger("merged_commit_id"));
+            }
+        }
+        loaded = true;
+        logger.debug("[" + projectId + "] Loaded topology of " + size() + " commits");
+    }
+
+    /**
+     * Retrieve the branch of a commit, loading the index if necessary.
+     *
+     * @param sha The commit sha1.
+     * @return The branch identifier, {@link #NONE} if the commit is in no branch.
+     */
+    public int branchOf(String sha) {
+        int position = positionOf(sha);
+        return position == ShaIndex.NOT_FOUND ? NONE : branchIds[position];
+    }
+
+    /**
+     * Retrieve the ordinal of a commit in its branch, loading the index if necessary.
+     *
+     * @param sha The commit sha1.
+     * @return The branch ordinal, {@link #NONE} if the commit is in no branch.
+     */
+    public int branchOrdinalOf(String sha) {
+        int position = positionOf(sha);
+        return position == ShaIndex.NOT_FOUND ? NONE : branchOrdinals[position];
+    }
+
+    /**
+     * Retrieve the commit merged by a commit, loading the index if necessary.
+     *
+     * @param sha The commit sha1.
+     * @return The merged commit identifier, {@link #NONE} if the commit is not a merge commit.
+     */
+    public int mergedCommitIdOf(String sha) {
+        int position = positionOf(sha);
+        return position == ShaIndex.NOT_FOUND ? NONE : mergedCommitIds[position];
+    }
+
+    /**
+     * @return The number of commits in the index.
+     */
+    public int size() {
+        return shas.size();
+    }
+
+    private int positionOf(String sha) {
+        if (!loaded) {
+            load();
+        }
+        return shas.indexOf(sha);
+    }
+
+    private void add(String sha, int branchId, int ordinal, Integer mergedCommitId) {
+        int size = shas.size();
+        int position = shas.add(sha);
+        if (position == ShaIndex.NOT_FOUND) {
+            logger.warn("[" + projectId + "] Ignoring malformed commit sha: " + sha);
+            return;
+        }
+        // Only keep the first branch of a commit.
+        if (position < size) {
+            return;
+        }
+        if (position == branchIds.length) {
+            int capacity = branchIds.length * 2;
+            branchIds = Arrays.copyOf(branchIds, capacity);
+            branchOrdinals = Arrays.copyOf(branchOrdinals, capacity);
+            mergedCommitIds = Arrays.copyOf(mergedCommitIds, capacity);
+        }
+        branchIds[position] = branchId;
+        branchOrdinals[position] = ordinal;
+        mergedCommitIds[position] = mergedCommitId == null ? NONE : mergedCommitId;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+/**
+ * Stream of rows bulk loaded into a single table.
+ * <p>
+ * Rows are buffered in memory and sent to the database either when the buffer
+ * reaches its flush size, or on {@link Persistence#commit()}.
+ */
+public interface CopyStream {
+    /**
+     * Add a row to the stream.
+     *
+     * @param values The row values, ordered as the stream columns.
+     */
+    void addRow(Object... values);
+
+    /**
+     * Send every buffered row to the database.
+     */
+    void flush();
+}
@@ -33,20 +33,44 @@ import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class JDBCPersistence implements Persistence {
     private static final Logger logger = LoggerFactory.getLogger(JDBCPersistence.class.getName());
     private final Connection connection;
     private Statement sqlStatement;
+    /**
+     * Prepared statements are kept open for the connection lifetime and reused across commits.
+     */
+    private final Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<>();
+    /**
+     * Prepared statements having a pending batch, in the order they were first used.
+     * The batches are executed before a statement is added again after another one, thus in the statements order.
+     */
+    private final Set<PreparedStatement> pendingBatches = new LinkedHashSet<>();
+    private PreparedStatement lastPrepared;
+    /**
+     * Opened copy streams, flushed after every other statement on commit.
+     */
+    private final List<CopyStream> copyStreams = new ArrayList<>();
+    /**
+     * Streaming needs a transaction, the auto commit is thus disabled while any cursor is opened.
+     */
+    private int openedCursors = 0;
+    private boolean restoreAutoCommit = false;
     private final String path;
     private final String schemaResourcePath;
 
@@ -103,33 +127,151 @@ public class JDBCPersistence implements Persistence {
         }
     }
 
+    @Override
+    public void addStatements(ParameterizedStatement... statements) {
+        try {
+            for (ParameterizedStatement statement : statements) {
+                logger.trace("Adding new prepared statement: " + statement);
+                PreparedStatement prepared = prepare(statement.getSql());
+                if (prepared != lastPrepared && pendingBatches.contains(prepared)) {
+                    // The statements added since may depend on the pending ones, e.g. through sub queries.
+                    executePendingStatements();
+                }
+                bind(prepared, statement.getParameters());
+                prepared.addBatch();
+                pendingBatches.add(prepared);
+                lastPrepared = prepared;
+            }
+        } catch (SQLException e) {
+            SQLException nextException = e.getNextException();
+            if (nextException != null) {
+                e = nextException;
+            }
+            logger.error("Unable to create prepared statement for database: " + path, e);
+        }
+    }
+
+    /**
+     * Retrieve the cached {@link PreparedStatement} for this SQL text, or prepare a new one.
+     *
+     * @param sql The SQL text to prepare.
+     * @return The {@link PreparedStatement} to use.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement prepared = preparedStatements.get(sql);
+        if (prepared == null) {
+            prepared = connection.prepareStatement(sql);
+            preparedStatements.put(sql, prepared);
+        }
+        return prepared;
+    }
+
+    /**
+     * Bind the parameters values onto the statement placeholders.
+     *
+     * @param prepared   The statement to bind parameters onto.
+     * @param parameters The values to bind, in placeholders order.
+     * @throws SQLException If a value could not be bound.
+     */
+    private static void bind(PreparedStatement prepared, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i] == null) {
+                prepared.setNull(i + 1, Types.NULL);
+            } else {
+                prepared.setObject(i + 1, parameters[i]);
+            }
+        }
+    }
+
     @Override
     public void commit() {
         logger.debug("Committing transaction");
-        if (sqlStatement == null) {
+        if (sqlStatement == null && pendingBatches.isEmpty() && copyStreams.isEmpty()) {
             logger.debug("Nothing to commit, skipping");
             return;
         }
+        executePendingStatements();
+        // Copied rows may reference rows inserted by the statements.
+        for (CopyStream stream : copyStreams) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * Execute the pending plain statements, then the pending prepared batches.
+     */
+    private void executePendingStatements() {
+        if (sqlStatement != null) {
+            try {
+                sqlStatement.executeBatch();
+                sqlStatement.clearBatch();
+            } catch (SQLException e) {
+                SQLException nextException = e.getNextException();
+                if (nextException != null) {
+                    e = nextException;
+                }
+                logger.warn("Unable to commit transaction into database: " + path, e);
+            } finally {
+                closeStatement();
+            }
+        }
+        executePreparedBatches();
+    }
+
+    /**
+     * Execute the pending prepared batches, in the order their statements were first added.
+     */
+    private void executePreparedBatches() {
+        for (PreparedStatement prepared : pendingBatches) {
+            try {
+                prepared.executeBatch();
+            } catch (SQLException e) {
+                SQLException nextException = e.getNextException();
+                if (nextException != null) {
+                    e = nextException;
+                }
+                logger.warn("Unable to commit prepared batch into database: " + path, e);
+            } finally {
+                clearBatch(prepared);
+            }
+        }
+        pendingBatches.clear();
+        lastPrepared = null;
+    }
+
+    private void clearBatch(PreparedStatement prepared) {
         try {
-            sqlStatement.executeBatch();
-            sqlStatement.clearBatch();
+            prepared.clearBatch();
+        } catch (SQLException e) {
+            logger.warn("Unable to clear prepared batch from database: " + path, e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> query(String statement) {
+        logger.debug("Querying database: " + statement);
+
+        try (Statement queryStatement = connection.createStatement()) {
+            ResultSet resultSet = queryStatement.executeQuery(statement);
+            return resultSetToArrayList(resultSet);
         } catch (SQLException e) {
             SQLException nextException = e.getNextException();
             if (nextException != null) {
                 e = nextException;
             }
-            logger.warn("Unable to commit transaction into database: " + path, e);
-        } finally {
-            closeStatement();
+            logger.error("Unable to query database: " + path, e);
         }
+        return new ArrayList<>();
     }
 
     @Override
-    public List<Map<String, Object>> query(String statement) {
+    public List<Map<String, Object>> query(ParameterizedStatement statement) {
         logger.debug("Querying database: " + statement);
 
-        try (Statement queryStatement = connection.createStatement()) {
-            ResultSet resultSet = queryStatement.executeQuery(statement);
+        try (PreparedStatement queryStatement = connection.prepareStatement(statement.getSql())) {
+            bind(queryStatement, statement.getParameters());
+            ResultSet resultSet = queryStatement.executeQuery();
             return resultSetToArrayList(resultSet);
         } catch (SQLException e) {
             SQLException nextException = e.getNextException();
@@ -141,6 +283,58 @@ public class JDBCPersistence implements Persistence {
         return new ArrayList<>();
     }
 
+    @Override
+    public QueryCursor stream(String statement, int fetchSize) {
+        logger.debug("Streaming from database: " + statement);
+
+        Statement queryStatement = null;
+        openedCursors++;
+        try {
+            if (openedCursors == 1 && connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                restoreAutoCommit = true;
+            }
+            queryStatement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            queryStatement.setFetchSize(fetchSize);
+            ResultSet resultSet = queryStatement.executeQuery(statement);
+            return new JDBCQueryCursor(queryStatement, resultSet, this::cursorClosed);
+        } catch (SQLException e) {
+            SQLException nextException = e.getNextException();
+            if (nextException != null) {
+                e = nextException;
+            }
+            logger.error("Unable to stream from database: " + path, e);
+            if (queryStatement != null) {
+                try {
+                    queryStatement.close();
+                } catch (SQLException closeException) {
+                    logger.warn("Unable to close statement from database: " + path, closeException);
+                }
+            }
+            cursorClosed();
+        }
+        return new ListQueryCursor(new ArrayList<>());
+    }
+
+    /**
+     * Restore the auto commit, thus committing the cursors transaction, once the last cursor is closed.
+     */
+    private void cursorClosed() {
+        if (--openedCursors > 0 || !restoreAutoCommit) {
+            return;
+        }
+        restoreAutoCommit = false;
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            SQLException nextException = e.getNextException();
+            if (nextException != null) {
+                e = nextException;
+            }
+            logger.warn("Unable to restore auto commit on database: " + path, e);
+        }
+    }
+
     /**
      * Transform the query result to a {@link List} of {@link Map} containing {@link String} as key and {@link Object}
      * as value.
@@ -182,6 +376,7 @@ public class JDBCPersistence implements Persistence {
     @Override
     public void close() {
         logger.info("Closing database connection");
+        closePreparedStatements();
         if (connection != null) {
             try {
                 connection.close();
@@ -195,6 +390,20 @@ public class JDBCPersistence implements Persistence {
         }
     }
 
+    private void closePreparedStatements() {
+        for (PreparedStatement prepared : preparedStatements.values()) {
+            try {
+                prepared.close();
+            } catch (SQLException e) {
+                logger.warn("Unable to close prepared statement from database: " + path, e);
+            }
+        }
+        preparedStatements.clear();
+        pendingBatches.clear();
+        lastPrepared = null;
+        copyStreams.clear();
+    }
+
     @Override
     public void initialize() {
         logger.info("Initializing database: " + this.path);
@@ -230,6 +439,22 @@ public class JDBCPersistence implements Persistence {
         return -1;
     }
 
+    @Override
+    public int execute(ParameterizedStatement statement) {
+        logger.debug("Executing on database: " + statement);
+        try (PreparedStatement executeStatement = connection.prepareStatement(statement.getSql())) {
+            bind(executeStatement, statement.getParameters());
+            return executeStatement.executeUpdate();
+        } catch (SQLException e) {
+            SQLException nextException = e.getNextException();
+            if (nextException != null) {
+                e = nextException;
+            }
+            logger.error("Unable to execute on database: " + path, e);
+        }
+        return -1;
+    }
+
     public long copyFile(String path, String table, String columns) {
         Reader in = null;
         try {
@@ -257,6 +482,19 @@ public class JDBCPersistence implements Persistence {
         return -1;
     }
 
+    @Override
+    public CopyStream openCopyStream(String table, String columns, int flushSize) {
+        CopyStream stream;
+        try {
+            stream = new PostgresCopyStream(connection, getPgConnection().getCopyAPI(), table, columns, flushSize);
+        } catch (SQLException | ClassCastException e) {
+            logger.info("COPY is not available on database: " + path + ", using insertion statements for " + table);
+            stream = new StatementCopyStream(this, table, columns);
+        }
+        copyStreams.add(stream);
+        return stream;
+    }
+
     /**
      * Select the right {@link PGConnection} to use.
      * This was creating an issue while using c3p0 since it uses a {@link com.mchange.v2.c3p0.impl.NewProxyConnection}.
@@ -0,0 +1,173 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link QueryCursor} reading a {@link ResultSet} row by row.
+ * <p>
+ * The column indexes are resolved once from the result metadata.
+ */
+class JDBCQueryCursor implements QueryCursor, ResultRow {
+    private static final Logger logger = LoggerFactory.getLogger(JDBCQueryCursor.class.getName());
+
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final Runnable onClose;
+    private final Map<String, Integer> columns;
+
+    private boolean fetched;
+    private boolean hasRow;
+    private boolean closed;
+
+    /**
+     * @param statement The statement to close with the cursor.
+     * @param resultSet The result to iterate on.
+     * @param onClose   Action to run once the cursor is closed.
+     * @throws SQLException If the result metadata can't be retrieved.
+     */
+    JDBCQueryCursor(Statement statement, ResultSet resultSet, Runnable onClose) throws SQLException {
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.onClose = onClose;
+        this.columns = new HashMap<>();
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columns.put(metaData.getColumnName(i), i);
+        }
+    }
+
+    @Override
+    public Iterator<ResultRow> iterator() {
+        return new Iterator<ResultRow>() {
+            @Override
+            public boolean hasNext() {
+                if (!fetched) {
+                    hasRow = fetchNext();
+                    fetched = true;
+                }
+                return hasRow;
+            }
+
+            @Override
+            public ResultRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                fetched = false;
+                return JDBCQueryCursor.this;
+            }
+        };
+    }
+
+    private boolean fetchNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            return resultSet.next();
+        } catch (SQLException e) {
+            logger.error("Unable to fetch next row from database", unwrap(e));
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("Unable to close cursor statement", unwrap(e));
+        }
+        onClose.run();
+    }
+
+    private int index(String column) {
+        Integer index = columns.get(column);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column in cursor: " + column);
+        }
+        return index;
+    }
+
+    @Override
+    public Object getObject(String column) {
+        try {
+            return resultSet.getObject(index(column));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read column: " + column, unwrap(e));
+        }
+    }
+
+    @Override
+    public String getString(String column) {
+        try {
+            return resultSet.getString(index(column));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read column: " + column, unwrap(e));
+        }
+    }
+
+    @Override
+    public int getInt(String column) {
+        try {
+            return resultSet.getInt(index(column));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read column: " + column, unwrap(e));
+        }
+    }
+
+    @Override
+    public Integer getInteger(String column) {
+        int value = getInt(column);
+        try {
+            return resultSet.wasNull() ? null : value;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read column: " + column, unwrap(e));
+        }
+    }
+
+    @Override
+    public boolean getBoolean(String column) {
+        try {
+            return resultSet.getBoolean(index(column));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read column: " + column, unwrap(e));
+        }
+    }
+
+    private static SQLException unwrap(SQLException e) {
+        SQLException nextException = e.getNextException();
+        return nextException != null ? nextException : e;
+    }
+}
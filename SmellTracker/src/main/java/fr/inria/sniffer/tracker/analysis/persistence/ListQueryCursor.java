@@ -0,0 +1,88 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link QueryCursor} on rows already loaded in memory.
+ */
+public class ListQueryCursor implements QueryCursor, ResultRow {
+    private final Iterator<Map<String, Object>> rows;
+    private Map<String, Object> current;
+
+    public ListQueryCursor(List<Map<String, Object>> rows) {
+        this.rows = rows.iterator();
+    }
+
+    @Override
+    public Iterator<ResultRow> iterator() {
+        return new Iterator<ResultRow>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public ResultRow next() {
+                if (!rows.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                current = rows.next();
+                return ListQueryCursor.this;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        current = null;
+    }
+
+    @Override
+    public Object getObject(String column) {
+        return current.get(column);
+    }
+
+    @Override
+    public String getString(String column) {
+        Object value = current.get(column);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public int getInt(String column) {
+        Integer value = getInteger(column);
+        return value == null ? 0 : value;
+    }
+
+    @Override
+    public Integer getInteger(String column) {
+        Object value = current.get(column);
+        return value == null ? null : ((Number) value).intValue();
+    }
+
+    @Override
+    public boolean getBoolean(String column) {
+        Object value = current.get(column);
+        return value != null && (Boolean) value;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import java.util.Arrays;
+
+/**
+ * A SQL statement holding '?' placeholders and the values to bind onto them.
+ * <p>
+ * Statements sharing the same SQL text are batched onto a single prepared statement
+ * by the {@link Persistence}, the values being sent apart from the query text.
+ */
+public final class ParameterizedStatement {
+    private final String sql;
+    private final Object[] parameters;
+
+    /**
+     * @param sql        The SQL text, using '?' as placeholders.
+     * @param parameters The values to bind, in placeholders order.
+     */
+    public ParameterizedStatement(String sql, Object... parameters) {
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+
+    public static ParameterizedStatement of(String sql, Object... parameters) {
+        return new ParameterizedStatement(sql, parameters);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ParameterizedStatement that = (ParameterizedStatement) o;
+        return sql.equals(that.sql) && Arrays.equals(parameters, that.parameters);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sql.hashCode() + Arrays.hashCode(parameters);
+    }
+
+    @Override
+    public String toString() {
+        return "ParameterizedStatement{" +
+                "sql='" + sql + '\'' +
+                ", parameters=" + Arrays.toString(parameters) +
+                '}';
+    }
+}
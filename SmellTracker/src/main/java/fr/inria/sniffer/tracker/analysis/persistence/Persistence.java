@@ -28,6 +28,14 @@ public interface Persistence {
      */
     void addStatements(String... statements);
 
+    /**
+     * Add the parameterized statements to execute on the database.
+     * Statements sharing the same SQL text are sent as a single prepared batch.
+     *
+     * @param statements An array of statements to execute on {@link Persistence#commit()}.
+     */
+    void addStatements(ParameterizedStatement... statements);
+
     /**
      * Actually persist all the given statements and remove them from the buffer.
      */
@@ -41,6 +49,28 @@ public interface Persistence {
      */
     List<Map<String, Object>> query(String statement);
 
+    /**
+     * Query the persistence with a parameterized statement, e.g. an insertion returning the generated identifiers.
+     *
+     * @param statement The query statement to execute.
+     * @return Results from database as a {@link List} of {@link Map}, each list item being a row.
+     */
+    List<Map<String, Object>> query(ParameterizedStatement statement);
+
+    /**
+     * Stream the results of a query through a forward only cursor,
+     * keeping at most fetchSize rows in memory.
+     * <p>
+     * The statements committed while a cursor is opened are only made durable once it is closed,
+     * and a single failing statement aborts them all. Writers should thus read the rows they need
+     * and close the cursor before persisting anything.
+     *
+     * @param statement The query statement to execute.
+     * @param fetchSize Number of rows to fetch from the database at once.
+     * @return The opened {@link QueryCursor}, to close once iterated.
+     */
+    QueryCursor stream(String statement, int fetchSize);
+
     /**
      * Close the database connection.
      */
@@ -59,6 +89,14 @@ public interface Persistence {
      */
     int execute(String statement);
 
+    /**
+     * Execute a parameterized statement modifying the database content, either INSERT, UPDATE or DELETE.
+     *
+     * @param statement The statement to execute.
+     * @return -1 if an error occurred, 0 if no modification, the number of affected rows otherwise.
+     */
+    int execute(ParameterizedStatement statement);
+
 
     /**
      * Copy the CSV input file into a table.
@@ -69,4 +107,15 @@ public interface Persistence {
      * @return
      */
     long copyFile(String path, String table, String columns);
+
+    /**
+     * Open a stream bulk loading rows into a table.
+     * The stream is flushed on each {@link Persistence#commit()}.
+     *
+     * @param table     The output table.
+     * @param columns   The ordered columns of each row, coma separated.
+     * @param flushSize Number of rows to buffer in memory before sending them to the database.
+     * @return The opened {@link CopyStream}.
+     */
+    CopyStream openCopyStream(String table, String columns, int flushSize);
 }
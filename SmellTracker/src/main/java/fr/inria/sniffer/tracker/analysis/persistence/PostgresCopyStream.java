@@ -0,0 +1,187 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link CopyStream} buffering rows in the COPY text format,
+ * then sending them through a Postgresql {@link CopyIn} operation.
+ * <p>
+ * The rows are copied into a temporary staging table of the connection, then moved
+ * to their table ignoring the already existing ones, thus a duplicated row
+ * does not abort the copy of its whole chunk.
+ */
+class PostgresCopyStream implements CopyStream {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresCopyStream.class.getName());
+
+    private final Connection connection;
+    private final CopyManager copyManager;
+    private final String stagingTable;
+    private final String createStagingStatement;
+    private final String copyStatement;
+    private final String moveStatement;
+    private final int flushSize;
+    private boolean stagingCreated;
+
+    private StringBuilder buffer;
+    private int bufferedRows;
+
+    /**
+     * @param connection  The connection to use, holding the staging table.
+     * @param copyManager The {@link CopyManager} of the connection.
+     * @param table       The table to insert rows into.
+     * @param columns     The ordered columns of each row, coma separated.
+     * @param flushSize   Number of rows to buffer before sending them.
+     */
+    PostgresCopyStream(Connection connection, CopyManager copyManager, String table, String columns, int flushSize) {
+        this.connection = connection;
+        this.copyManager = copyManager;
+        // Only holding the copied columns, without any constraint.
+        this.stagingTable = "staging_" + table;
+        this.createStagingStatement = "CREATE TEMPORARY TABLE IF NOT EXISTS " + stagingTable
+                + " AS SELECT " + columns + " FROM " + table + " WITH NO DATA";
+        this.copyStatement = "COPY " + stagingTable + " (" + columns + ") FROM STDIN";
+        this.moveStatement = "INSERT INTO " + table + " (" + columns + ") SELECT " + columns
+                + " FROM " + stagingTable + " ON CONFLICT DO NOTHING";
+        this.flushSize = flushSize;
+        this.stagingCreated = false;
+        this.buffer = new StringBuilder();
+        this.bufferedRows = 0;
+    }
+
+    @Override
+    public void addRow(Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                buffer.append('\t');
+            }
+            appendValue(values[i]);
+        }
+        buffer.append('\n');
+
+        if (++bufferedRows >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Append the value to the buffer, escaping characters meaningful for the COPY text format.
+     *
+     * @param value The value to append.
+     */
+    private void appendValue(Object value) {
+        if (value == null) {
+            buffer.append("\\N");
+            return;
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            switch (character) {
+                case '\\':
+                    buffer.append("\\\\");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                default:
+                    buffer.append(character);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (bufferedRows == 0) {
+            return;
+        }
+        logger.debug("Copying " + bufferedRows + " rows: " + copyStatement);
+        byte[] rows = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer = new StringBuilder();
+
+        int rowsCount = bufferedRows;
+        bufferedRows = 0;
+
+        try (Statement statement = connection.createStatement()) {
+            if (!stagingCreated) {
+                statement.execute(createStagingStatement);
+                stagingCreated = true;
+            }
+            copy(rows);
+            int inserted = statement.executeUpdate(moveStatement);
+            if (inserted < rowsCount) {
+                logger.debug("Skipped " + (rowsCount - inserted) + " already existing rows: " + moveStatement);
+            }
+        } catch (SQLException e) {
+            SQLException nextException = e.getNextException();
+            if (nextException != null) {
+                e = nextException;
+            }
+            logger.error("Unable to copy " + rowsCount + " rows into database: " + copyStatement, e);
+        } finally {
+            clearStaging();
+        }
+    }
+
+    private void copy(byte[] rows) throws SQLException {
+        CopyIn copyIn = copyManager.copyIn(copyStatement);
+        try {
+            copyIn.writeToCopy(rows, 0, rows.length);
+            copyIn.endCopy();
+        } catch (SQLException e) {
+            cancel(copyIn);
+            throw e;
+        }
+    }
+
+    private void clearStaging() {
+        if (!stagingCreated) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE " + stagingTable);
+        } catch (SQLException e) {
+            logger.warn("Unable to clear staging table: " + stagingTable, e);
+        }
+    }
+
+    private static void cancel(CopyIn copyIn) {
+        if (copyIn.isActive()) {
+            try {
+                copyIn.cancelCopy();
+            } catch (SQLException e) {
+                logger.warn("Unable to cancel copy operation", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+/**
+ * Typed view on the current row of a {@link QueryCursor}.
+ * <p>
+ * The same instance is reused for every row of the cursor,
+ * thus its values must be read before moving to the next row.
+ */
+public interface ResultRow {
+    /**
+     * @param column The column name.
+     * @return The column value, null if SQL NULL.
+     */
+    Object getObject(String column);
+
+    /**
+     * @param column The column name.
+     * @return The column value, null if SQL NULL.
+     */
+    String getString(String column);
+
+    /**
+     * @param column The column name.
+     * @return The column value, 0 if SQL NULL.
+     */
+    int getInt(String column);
+
+    /**
+     * @param column The column name.
+     * @return The column value, null if SQL NULL.
+     */
+    Integer getInteger(String column);
+
+    /**
+     * @param column The column name.
+     * @return The column value, false if SQL NULL.
+     */
+    boolean getBoolean(String column);
+}
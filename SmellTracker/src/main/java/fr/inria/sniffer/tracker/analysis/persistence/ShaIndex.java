@@ -0,0 +1,174 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import java.util.Arrays;
+
+/**
+ * Index giving each distinct sha1 a dense position, starting at 0 in insertion order,
+ * for the callers to store their values in primitive arrays.
+ * <p>
+ * Each sha1 is stored as two longs and an int in an open addressing table,
+ * avoiding a String and a boxed Integer per commit.
+ */
+class ShaIndex {
+    static final int NOT_FOUND = -1;
+    private static final int SHA_LENGTH = 40;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] heads;
+    private long[] middles;
+    private int[] tails;
+    private int[] positions;
+    private int size;
+
+    ShaIndex() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize Expected number of sha1, to avoid growing the table.
+     */
+    ShaIndex(int expectedSize) {
+        allocate(tableCapacity(expectedSize));
+    }
+
+    /**
+     * Retrieve the position of a sha1.
+     *
+     * @param sha The sha1 to look for.
+     * @return The sha1 position, {@link #NOT_FOUND} if absent or malformed.
+     */
+    int indexOf(String sha) {
+        if (!isFullSha(sha)) {
+            return NOT_FOUND;
+        }
+        long head = parseHex(sha, 0, 16);
+        long middle = parseHex(sha, 16, 32);
+        int tail = (int) parseHex(sha, 32, SHA_LENGTH);
+        int mask = positions.length - 1;
+        for (int slot = slot(head, mask); positions[slot] != NOT_FOUND; slot = (slot + 1) & mask) {
+            if (heads[slot] == head && middles[slot] == middle && tails[slot] == tail) {
+                return positions[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Add a sha1 to the index if not already present.
+     *
+     * @param sha The sha1 to add.
+     * @return The sha1 position, {@link #NOT_FOUND} if malformed.
+     */
+    int add(String sha) {
+        if (!isFullSha(sha)) {
+            return NOT_FOUND;
+        }
+        if ((size + 1) * 2 > positions.length) {
+            grow();
+        }
+        return insert(parseHex(sha, 0, 16), parseHex(sha, 16, 32), (int) parseHex(sha, 32, SHA_LENGTH), size);
+    }
+
+    /**
+     * @return The number of sha1 in the index, which is also the next position.
+     */
+    int size() {
+        return size;
+    }
+
+    private int insert(long head, long middle, int tail, int position) {
+        int mask = positions.length - 1;
+        int slot = slot(head, mask);
+        while (positions[slot] != NOT_FOUND) {
+            if (heads[slot] == head && middles[slot] == middle && tails[slot] == tail) {
+                return positions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        heads[slot] = head;
+        middles[slot] = middle;
+        tails[slot] = tail;
+        positions[slot] = position;
+        size++;
+        return position;
+    }
+
+    private void grow() {
+        long[] oldHeads = heads;
+        long[] oldMiddles = middles;
+        int[] oldTails = tails;
+        int[] oldPositions = positions;
+        allocate(oldPositions.length * 2);
+        // Each insertion will count its entry back.
+        size = 0;
+        for (int slot = 0; slot < oldPositions.length; slot++) {
+            if (oldPositions[slot] != NOT_FOUND) {
+                insert(oldHeads[slot], oldMiddles[slot], oldTails[slot], oldPositions[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        heads = new long[capacity];
+        middles = new long[capacity];
+        tails = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, NOT_FOUND);
+    }
+
+    /**
+     * @param entries Expected number of entries.
+     * @return A power of two capacity keeping the table at most half full.
+     */
+    private static int tableCapacity(int entries) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * The sha1 bits are already uniformly distributed, we only have to fold them.
+     */
+    private static int slot(long head, int mask) {
+        return (int) (head ^ (head >>> 32)) & mask;
+    }
+
+    private static boolean isFullSha(String sha) {
+        if (sha == null || sha.length() != SHA_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < SHA_LENGTH; i++) {
+            if (Character.digit(sha.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String sha, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = (value << 4) | Character.digit(sha.charAt(i), 16);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+/**
+ * {@link CopyStream} falling back to batched insertion statements,
+ * for databases not supporting the COPY protocol.
+ */
+class StatementCopyStream implements CopyStream {
+    private final Persistence persistence;
+    private final String insertStatement;
+
+    /**
+     * @param persistence The {@link Persistence} to add statements to.
+     * @param table       The table to insert rows into.
+     * @param columns     The ordered columns of each row, coma separated.
+     */
+    StatementCopyStream(Persistence persistence, String table, String columns) {
+        this.persistence = persistence;
+        this.insertStatement = "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders(columns) + ");";
+    }
+
+    private static String placeholders(String columns) {
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 0; i < columns.length(); i++) {
+            if (columns.charAt(i) == ',') {
+                placeholders.append(", ?");
+            }
+        }
+        return placeholders.toString();
+    }
+
+    @Override
+    public void addRow(Object... values) {
+        persistence.addStatements(ParameterizedStatement.of(insertStatement, values));
+    }
+
+    @Override
+    public void flush() {
+        // Statements are executed on commit.
+    }
+}
@@ -19,6 +19,7 @@ package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
 import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 
 public interface BranchQueries {
     /**
@@ -30,7 +31,18 @@ public interface BranchQueries {
      * @param mergedInto   The last {@link Commit} into which this branch is merged.
      * @return The generated insertion statement.
      */
-    String branchInsertionStatement(int projectId, int ordinal, Commit parentCommit, Commit mergedInto);
+    ParameterizedStatement branchInsertionStatement(int projectId, int ordinal, Commit parentCommit, Commit mergedInto);
+
+    /**
+     * Create a Branch insertion query referencing commits by identifier.
+     *
+     * @param projectId      Current project.
+     * @param ordinal        Branch ordinal.
+     * @param parentCommitId Identifier of the commit from which this branch forks, -1 if none.
+     * @param mergedIntoId   Identifier of the last commit into which this branch is merged, -1 if none.
+     * @return The generated insertion statement.
+     */
+    ParameterizedStatement branchInsertionStatement(int projectId, int ordinal, int parentCommitId, int mergedIntoId);
 
     /**
      * Create a BranchCommit insertion query.
@@ -41,7 +53,18 @@ public interface BranchQueries {
      * @param ordinal       {@link Commit} ordinal in the branch.
      * @return The generated insertion statement.
      */
-    String branchCommitInsertionQuery(int projectId, int branchOrdinal, String commitSha, int ordinal);
+    ParameterizedStatement branchCommitInsertionQuery(int projectId, int branchOrdinal, String commitSha, int ordinal);
+
+    /**
+     * Create a BranchCommit insertion query referencing the commit by identifier.
+     *
+     * @param projectId     Current project.
+     * @param branchOrdinal Branch ordinal.
+     * @param commitId      Identifier of the commit to insert.
+     * @param ordinal       {@link Commit} ordinal in the branch.
+     * @return The generated insertion statement.
+     */
+    ParameterizedStatement branchCommitInsertionQuery(int projectId, int branchOrdinal, int commitId, int ordinal);
 
     /**
      * Query the identifier of a Branch.
@@ -52,6 +75,14 @@ public interface BranchQueries {
      */
     String idFromOrdinalQueryStatement(int projectId, int branchOrdinal);
 
+    /**
+     * Query the highest branch ordinal of a project.
+     *
+     * @param projectId Current project.
+     * @return The generated query statement, returning a null ordinal if the project has no branch.
+     */
+    String lastOrdinalQuery(int projectId);
+
     /**
      * Return the statement to query branch id for the given project in which the commit is located.
      *
@@ -128,6 +159,15 @@ public interface BranchQueries {
      */
     String commitOrdinalQuery(int projectId, int branchId, Commit commit);
 
+    /**
+     * Retrieve the branch, branch ordinal, and merged commit identifier of every project commit in a branch.
+     * The rows are sorted by branch identifier, a commit being in several branches first appears in the oldest.
+     *
+     * @param projectId The project identifier.
+     * @return The generated query statement, returning the columns sha1, branch_id, ordinal, and merged_commit_id.
+     */
+    String commitTopologyQuery(int projectId);
+
     /**
      * Return the identifier of the second branch this commit is merging, if any.
      *
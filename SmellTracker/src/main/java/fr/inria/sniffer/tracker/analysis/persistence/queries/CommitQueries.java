@@ -21,6 +21,7 @@ import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.GitChangedFile;
 import fr.inria.sniffer.tracker.analysis.model.GitDiff;
 import fr.inria.sniffer.tracker.analysis.model.GitRename;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 
 public interface CommitQueries {
     /**
@@ -31,7 +32,19 @@ public interface CommitQueries {
      * @param diff      {@link GitDiff} for this commit.
      * @return The generated insertion statement.
      */
-    String commitInsertionStatement(int projectId, Commit commit, GitDiff diff);
+    ParameterizedStatement commitInsertionStatement(int projectId, Commit commit, GitDiff diff);
+
+    /**
+     * Generate a statement setting the merged commit of an already inserted merge commit.
+     * <p>
+     * The insertion statement can not resolve a merged commit inserted by the same
+     * multi-values insert, this statement has to be executed after the insertion batch.
+     *
+     * @param projectId The project identifier.
+     * @param commit    The merge commit to update.
+     * @return The generated update statement.
+     */
+    ParameterizedStatement mergedCommitUpdateStatement(int projectId, Commit commit);
 
     /**
      * Generate a statement inserting a {@link GitRename} into the persistence.
@@ -41,7 +54,7 @@ public interface CommitQueries {
      * @param rename    {@link GitRename} instance to persist.
      * @return The generated insertion statement.
      */
-    String fileRenameInsertionStatement(int projectId, String commitSha, GitRename rename);
+    ParameterizedStatement fileRenameInsertionStatement(int projectId, String commitSha, GitRename rename);
 
     /**
      * Query the identifier of a commit.
@@ -52,6 +65,22 @@ public interface CommitQueries {
      */
     String idFromShaQuery(int projectId, String sha);
 
+    /**
+     * Query the identifier of a commit, to be used as a sub query of a {@link ParameterizedStatement}.
+     * The commit sha then the project identifier are left as '?' placeholders.
+     *
+     * @return The generated query statement.
+     */
+    String parameterizedIdFromShaQuery();
+
+    /**
+     * Query the identifier and sha1 of every commit of a project.
+     *
+     * @param projectId Project to look into.
+     * @return The generated query statement.
+     */
+    String commitIdsQuery(int projectId);
+
     /**
      * Query the sha1 of a commit.
      *
@@ -61,6 +90,15 @@ public interface CommitQueries {
      */
     String shaFromOrdinalQuery(int projectId, int ordinal);
 
+    /**
+     * Query the ordinal of a commit.
+     *
+     * @param projectId Project to look into.
+     * @param sha       Commit sha.
+     * @return The generated query statement.
+     */
+    String ordinalFromShaQuery(int projectId, String sha);
+
     /**
      * Query the identifier of a commit.
      *
@@ -133,5 +171,15 @@ public interface CommitQueries {
      * @param changedFile {@link GitRename} instance to persist.
      * @return The generated insertion statement.
      */
-    String fileChangedInsertionStatement(int projectId, String commitSha, GitChangedFile changedFile);
+    ParameterizedStatement fileChangedInsertionStatement(int projectId, String commitSha, GitChangedFile changedFile);
+
+    /**
+     * Generate a statement inserting a {@link GitChangedFile} into the persistence.
+     *
+     * @param projectId   The project identifier.
+     * @param commitId    Identifier of the commit to link.
+     * @param changedFile {@link GitChangedFile} instance to persist.
+     * @return The generated insertion statement.
+     */
+    ParameterizedStatement fileChangedInsertionStatement(int projectId, int commitId, GitChangedFile changedFile);
 }
@@ -17,6 +17,8 @@
  */
 package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
+
 public interface DeveloperQueries {
     /**
      * Generate a statement inserting the developer into the persistence.
@@ -24,7 +26,7 @@ public interface DeveloperQueries {
      * @param developerName The developer name
      * @return The generated insertion statement.
      */
-    String developerInsertStatement(String developerName);
+    ParameterizedStatement developerInsertStatement(String developerName);
 
     /**
      * Generate a statement binding the developer to the project into the persistence.
@@ -33,7 +35,7 @@ public interface DeveloperQueries {
      * @param developerName The developer name (must be in developer table).
      * @return The generated insertion statement.
      */
-    String projectDeveloperInsertStatement(int projectId, String developerName);
+    ParameterizedStatement projectDeveloperInsertStatement(int projectId, String developerName);
 
     /**
      * Query the identifier of a developer.
@@ -43,6 +45,14 @@ public interface DeveloperQueries {
      */
     String idFromEmailQuery(String email);
 
+    /**
+     * Query the identifier of a developer, to be used as a sub query of a {@link ParameterizedStatement}.
+     * The developer email is left as a '?' placeholder.
+     *
+     * @return The generated query statement.
+     */
+    String parameterizedIdFromEmailQuery();
+
     /**
      * Query the identifier of a project_developer.
      *
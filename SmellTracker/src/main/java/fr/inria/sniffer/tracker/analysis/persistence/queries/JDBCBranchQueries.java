@@ -18,6 +18,7 @@
 package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
 import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 
 public class JDBCBranchQueries extends JDBCQueriesHelper implements BranchQueries {
     private CommitQueries commitQueries;
@@ -29,19 +30,38 @@ public class JDBCBranchQueries extends JDBCQueriesHelper implements BranchQuerie
     }
 
     @Override
-    public String branchInsertionStatement(int projectId, int ordinal, Commit parentCommit, Commit mergedInto) {
-        String parentCommitQuery = parentCommit == null ? null : "(" + commitQueries.idFromShaQuery(projectId, parentCommit.sha) + ")";
-        String mergedIntoQuery = mergedInto == null ? null : "(" + commitQueries.idFromShaQuery(projectId, mergedInto.sha) + ")";
-        return "INSERT INTO branch (project_id, ordinal, parent_commit, merged_into) VALUES ('"
-                + projectId + "', '" + ordinal + "', " + parentCommitQuery + ", " + mergedIntoQuery
-                + ") ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement branchInsertionStatement(int projectId, int ordinal, Commit parentCommit, Commit mergedInto) {
+        // A null sha will make the sub query return no id, thus a null column.
+        String parentCommitSha = parentCommit == null ? null : parentCommit.sha;
+        String mergedIntoSha = mergedInto == null ? null : mergedInto.sha;
+        String commitIdQuery = "(" + commitQueries.parameterizedIdFromShaQuery() + ")";
+        return ParameterizedStatement.of("INSERT INTO branch (project_id, ordinal, parent_commit, merged_into) VALUES " +
+                        "(?, ?, " + commitIdQuery + ", " + commitIdQuery + ") ON CONFLICT DO NOTHING;",
+                projectId, ordinal, parentCommitSha, projectId, mergedIntoSha, projectId);
     }
 
     @Override
-    public String branchCommitInsertionQuery(int projectId, int branchOrdinal, String commitSha, int ordinal) {
-        return "INSERT INTO branch_commit (branch_id, commit_id, ordinal) VALUES (" +
-                "(" + idFromOrdinalQueryStatement(projectId, branchOrdinal) + "), " +
-                "(" + commitQueries.idFromShaQuery(projectId, commitSha) + "), " + ordinal + ") ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement branchInsertionStatement(int projectId, int ordinal, int parentCommitId, int mergedIntoId) {
+        Integer parentCommitIdOrNull = parentCommitId > -1 ? parentCommitId : null;
+        Integer mergedIntoIdOrNull = mergedIntoId > -1 ? mergedIntoId : null;
+        return ParameterizedStatement.of("INSERT INTO branch (project_id, ordinal, parent_commit, merged_into) VALUES " +
+                        "(?, ?, ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, ordinal, parentCommitIdOrNull, mergedIntoIdOrNull);
+    }
+
+    @Override
+    public ParameterizedStatement branchCommitInsertionQuery(int projectId, int branchOrdinal, String commitSha, int ordinal) {
+        return ParameterizedStatement.of("INSERT INTO branch_commit (branch_id, commit_id, ordinal) VALUES (" +
+                        "(SELECT id FROM branch WHERE project_id = ? AND ordinal = ?), " +
+                        "(" + commitQueries.parameterizedIdFromShaQuery() + "), ?) ON CONFLICT DO NOTHING;",
+                projectId, branchOrdinal, commitSha, projectId, ordinal);
+    }
+
+    @Override
+    public ParameterizedStatement branchCommitInsertionQuery(int projectId, int branchOrdinal, int commitId, int ordinal) {
+        return ParameterizedStatement.of("INSERT INTO branch_commit (branch_id, commit_id, ordinal) VALUES (" +
+                        "(SELECT id FROM branch WHERE project_id = ? AND ordinal = ?), ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, branchOrdinal, commitId, ordinal);
     }
 
     @Override
@@ -49,6 +69,11 @@ public class JDBCBranchQueries extends JDBCQueriesHelper implements BranchQuerie
         return "SELECT id FROM branch WHERE project_id='" + projectId + "' AND ordinal=" + branchOrdinal;
     }
 
+    @Override
+    public String lastOrdinalQuery(int projectId) {
+        return "SELECT MAX(ordinal) AS ordinal FROM branch WHERE project_id = " + projectId;
+    }
+
     public String idFromCommitQueryStatement(int projectId, Commit commit) {
         return "SELECT branch.id FROM branch " +
                 "RIGHT JOIN branch_commit ON branch.id = branch_commit.branch_id " +
@@ -120,6 +145,16 @@ public class JDBCBranchQueries extends JDBCQueriesHelper implements BranchQuerie
                 "AND commit_entry.sha1 = '" + commit.sha + "'";
     }
 
+    @Override
+    public String commitTopologyQuery(int projectId) {
+        return "SELECT commit_entry.sha1, branch_commit.branch_id, branch_commit.ordinal, " +
+                "commit_entry.merged_commit_id FROM branch_commit " +
+                "JOIN branch ON branch.id = branch_commit.branch_id " +
+                "JOIN commit_entry ON commit_entry.id = branch_commit.commit_id " +
+                "WHERE branch.project_id = " + projectId + " " +
+                "ORDER BY branch_commit.branch_id";
+    }
+
     /**
      * Helper method to fetch a last branch commit's commit_entry specific field.
      *
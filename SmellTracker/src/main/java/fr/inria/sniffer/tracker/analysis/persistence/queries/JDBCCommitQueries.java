@@ -21,6 +21,9 @@ import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.GitChangedFile;
 import fr.inria.sniffer.tracker.analysis.model.GitDiff;
 import fr.inria.sniffer.tracker.analysis.model.GitRename;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
+
+import java.sql.Date;
 
 public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQueries {
 
@@ -31,22 +34,31 @@ public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQuerie
     }
 
     @Override
-    public String commitInsertionStatement(int projectId, Commit commit, GitDiff diff) {
+    public ParameterizedStatement commitInsertionStatement(int projectId, Commit commit, GitDiff diff) {
         logger.trace("[" + projectId + "] Inserting commit: " + commit.sha
                 + " - ordinal: " + commit.ordinal + " - diff: " + diff + " - time: " + commit.date);
 
-        // Escaping double dollars to avoid exiting dollar quoted string too soon.
-        String commitMessage = escapeStringEntry(commit.message);
-
-        String mergedCommit = commit.getParentCount() >= 2 ?
-                "(" + idFromShaQuery(projectId, commit.getParent(1).sha) + ")" : null;
+        // A null sha will make the sub query return no id, thus a null merged_commit_id.
+        String mergedCommitSha = commit.getParentCount() >= 2 ? commit.getParent(1).sha : null;
+
+        String developerQuery = developerQueries.parameterizedIdFromEmailQuery();
+        return ParameterizedStatement.of("INSERT INTO commit_entry (project_id, developer_id, sha1, ordinal, date, " +
+                        "additions, deletions, files_changed, message, merged_commit_id, in_detector) VALUES " +
+                        "(?, (" + developerQuery + "), ?, ?, ?, ?, ?, ?, ?, (" + parameterizedIdFromShaQuery() + "), ?) " +
+                        "ON CONFLICT DO NOTHING;",
+                projectId, escapeStringEntry(commit.authorEmail), commit.sha, commit.ordinal,
+                // Using the commit local date, as the date part of its ISO representation.
+                new Date(commit.date.toLocalDate().toDate().getTime()),
+                diff.getAddition(), diff.getDeletion(), diff.getChangedFiles(),
+                // Values are still escaped and padded to remain consistent with the dollar quoted entries.
+                " " + escapeStringEntry(commit.message) + " ", mergedCommitSha, projectId, commit.isInPaprika());
+    }
 
-        String developerQuery = developerQueries.idFromEmailQuery(commit.authorEmail);
-        return "INSERT INTO commit_entry (project_id, developer_id, sha1, ordinal, date, " +
-                "additions, deletions, files_changed, message, merged_commit_id, in_detector) VALUES ('" +
-                projectId + "', (" + developerQuery + "), '" + commit.sha + "', " + commit.ordinal + ", '" + commit.date.toString() +
-                "', " + diff.getAddition() + ", " + diff.getDeletion() + ", " + diff.getChangedFiles() +
-                ", $$ " + commitMessage + " $$, " + mergedCommit + ", " + commit.isInPaprika() + ") ON CONFLICT DO NOTHING;";
+    @Override
+    public ParameterizedStatement mergedCommitUpdateStatement(int projectId, Commit commit) {
+        return ParameterizedStatement.of("UPDATE commit_entry SET merged_commit_id = (" + parameterizedIdFromShaQuery() + ") " +
+                        "WHERE sha1 = ? AND project_id = ? AND merged_commit_id IS NULL;",
+                commit.getParent(1).sha, projectId, commit.sha, projectId);
     }
 
     @Override
@@ -54,6 +66,16 @@ public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQuerie
         return idFromShaQuery(projectId, sha, false);
     }
 
+    @Override
+    public String parameterizedIdFromShaQuery() {
+        return "SELECT id FROM commit_entry WHERE sha1 = ? AND project_id = ?";
+    }
+
+    @Override
+    public String commitIdsQuery(int projectId) {
+        return "SELECT id, sha1 FROM commit_entry WHERE project_id = " + projectId;
+    }
+
     @Override
     public String shaFromOrdinalQuery(int projectId, int ordinal) {
         return shaFromOrdinalQuery(projectId, ordinal, false);
@@ -68,6 +90,11 @@ public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQuerie
         return query;
     }
 
+    @Override
+    public String ordinalFromShaQuery(int projectId, String sha) {
+        return "SELECT ordinal FROM commit_entry WHERE sha1 = '" + sha + "' AND project_id = " + projectId;
+    }
+
     @Override
     public String shaFromOrdinalQuery(int projectId, int ordinal, boolean paprikaOnly) {
         String query = "SELECT sha1 FROM commit_entry WHERE ordinal = '" + ordinal + "' AND project_id = " + projectId;
@@ -94,10 +121,10 @@ public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQuerie
     }
 
     @Override
-    public String fileRenameInsertionStatement(int projectId, String commitSha, GitRename rename) {
-        return "INSERT INTO file_rename (project_id, commit_id, old_file, new_file, similarity) VALUES ('" +
-                projectId + "', (" + idFromShaQuery(projectId, commitSha) + "), '" + rename.oldFile + "', '" +
-                rename.newFile + "', " + rename.similarity + ") ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement fileRenameInsertionStatement(int projectId, String commitSha, GitRename rename) {
+        return ParameterizedStatement.of("INSERT INTO file_rename (project_id, commit_id, old_file, new_file, similarity) " +
+                        "VALUES (?, (" + parameterizedIdFromShaQuery() + "), ?, ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, commitSha, projectId, rename.oldFile, rename.newFile, rename.similarity);
     }
 
     @Override
@@ -124,10 +151,17 @@ public class JDBCCommitQueries extends JDBCQueriesHelper implements CommitQuerie
     }
 
     @Override
-    public String fileChangedInsertionStatement(int projectId, String commitSha, GitChangedFile changedFile) {
-        return "INSERT INTO file_changed (project_id, commit_id, file_name, modification_size) VALUES ('" +
-                projectId + "', (" + idFromShaQuery(projectId, commitSha) + "), '" + escapeStringEntry(changedFile.name) + "', '" +
-                changedFile.changeSize + "') ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement fileChangedInsertionStatement(int projectId, String commitSha, GitChangedFile changedFile) {
+        return ParameterizedStatement.of("INSERT INTO file_changed (project_id, commit_id, file_name, modification_size) " +
+                        "VALUES (?, (" + parameterizedIdFromShaQuery() + "), ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, commitSha, projectId, changedFile.name, changedFile.changeSize);
+    }
+
+    @Override
+    public ParameterizedStatement fileChangedInsertionStatement(int projectId, int commitId, GitChangedFile changedFile) {
+        return ParameterizedStatement.of("INSERT INTO file_changed (project_id, commit_id, file_name, modification_size) " +
+                        "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, commitId, changedFile.name, changedFile.changeSize);
     }
 
 }
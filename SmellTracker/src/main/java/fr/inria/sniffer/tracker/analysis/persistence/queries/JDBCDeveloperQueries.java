@@ -17,16 +17,20 @@
  */
 package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
+
 public class JDBCDeveloperQueries extends JDBCQueriesHelper implements DeveloperQueries {
     @Override
-    public String developerInsertStatement(String developerName) {
-        return "INSERT INTO developer (username) VALUES ($$" + escapeStringEntry(developerName) + "$$) ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement developerInsertStatement(String developerName) {
+        return ParameterizedStatement.of("INSERT INTO developer (username) VALUES (?) ON CONFLICT DO NOTHING;",
+                escapeStringEntry(developerName));
     }
 
     @Override
-    public String projectDeveloperInsertStatement(int projectId, String developerName) {
-        return "INSERT INTO project_developer (developer_id, project_id) VALUES (" +
-                "(" + idFromEmailQuery(developerName) + "), " + projectId + ") ON CONFLICT DO NOTHING;";
+    public ParameterizedStatement projectDeveloperInsertStatement(int projectId, String developerName) {
+        return ParameterizedStatement.of("INSERT INTO project_developer (developer_id, project_id) VALUES " +
+                "((" + parameterizedIdFromEmailQuery() + "), ?) ON CONFLICT DO NOTHING;",
+                escapeStringEntry(developerName), projectId);
     }
 
     @Override
@@ -34,6 +38,11 @@ public class JDBCDeveloperQueries extends JDBCQueriesHelper implements Developer
         return "SELECT id FROM developer WHERE username = $$" + escapeStringEntry(email) + "$$";
     }
 
+    @Override
+    public String parameterizedIdFromEmailQuery() {
+        return "SELECT id FROM developer WHERE username = ?";
+    }
+
     @Override
     public String projectDeveloperQuery(int projectId, String email) {
         String devQuery = idFromEmailQuery(email);
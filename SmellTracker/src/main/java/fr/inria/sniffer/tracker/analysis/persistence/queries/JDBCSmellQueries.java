@@ -18,8 +18,12 @@
 package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
 
+import java.util.Map;
+import java.util.StringJoiner;
+
 public class JDBCSmellQueries extends JDBCQueriesHelper implements SmellQueries {
 
     private CommitQueries commitQueries;
@@ -29,27 +33,44 @@ public class JDBCSmellQueries extends JDBCQueriesHelper implements SmellQueries
     }
 
     @Override
-    public String smellInsertionStatement(int projectId, Smell smell) {
-        String parentIdOrNull = smell.parent == null ? null : String.valueOf(smell.parent.id);
+    public ParameterizedStatement smellInsertionStatement(int projectId, Smell smell) {
+        Integer parentIdOrNull = smell.parent == null ? null : smell.parent.id;
+
+        return ParameterizedStatement.of("INSERT INTO smell (project_id, instance, type, file, renamed_from) " +
+                        "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING;",
+                projectId, smell.instance, smell.type, smell.file, parentIdOrNull);
+    }
 
-        return "INSERT INTO smell (project_id, instance, type, file, renamed_from) VALUES" +
-                "(" + projectId + ", '" + smell.instance + "', '" + smell.type + "', '"
-                + smell.file + "', " + parentIdOrNull + ") ON CONFLICT DO NOTHING;";
+    @Override
+    public ParameterizedStatement smellInsertionReturningStatement(int projectId, Smell smell) {
+        String statement = "INSERT INTO smell (project_id, instance, type, file, renamed_from) VALUES (?, ?, ?, ?, ";
+        String returning = ") ON CONFLICT DO NOTHING RETURNING id, renamed_from;";
+        if (smell.parent != null && smell.parent.id == -1) {
+            return ParameterizedStatement.of(statement + "(" + smellIdQuery(projectId, smell.parent) + ")" + returning,
+                    projectId, smell.instance, smell.type, smell.file);
+        }
+        Integer parentIdOrNull = smell.parent == null ? null : smell.parent.id;
+        return ParameterizedStatement.of(statement + "?" + returning,
+                projectId, smell.instance, smell.type, smell.file, parentIdOrNull);
     }
 
     @Override
-    public String smellCategoryInsertionStatement(int projectId, String sha1, Smell smell, SmellCategory category) {
-        return "INSERT INTO " + category.getName() + " (project_id, smell_id, commit_id) VALUES " +
-                "(" + projectId + ", " + smell.id + ", (" +
-                commitQueries.idFromShaQuery(projectId, sha1) + "));";
+    public ParameterizedStatement smellCategoryInsertionStatement(int projectId, String sha1, Smell smell, SmellCategory category) {
+        return ParameterizedStatement.of("INSERT INTO " + category.getName() + " (project_id, smell_id, commit_id) " +
+                        "VALUES (?, ?, (" + commitQueries.parameterizedIdFromShaQuery() + "));",
+                projectId, smell.id, sha1, projectId);
     }
 
     @Override
-    public String lostSmellCategoryInsertionStatement(int projectId, Smell smell, SmellCategory category, int since, int until) {
+    public ParameterizedStatement lostSmellCategoryInsertionStatement(int projectId, Smell smell, SmellCategory category, int since, int until) {
         String lostCategory = "lost_" + category.getName();
-        return "INSERT INTO " + lostCategory + " (project_id, smell_id, since, until) VALUES " +
-                "(" + projectId + ", (" + smellIdQuery(projectId, smell) +
-                "), " + "" + since + " , " + until + ");";
+        String statement = "INSERT INTO " + lostCategory + " (project_id, smell_id, since, until) VALUES ";
+        if (smell.id > -1) {
+            return ParameterizedStatement.of(statement + "(?, ?, ?, ?);", projectId, smell.id, since, until);
+        }
+        // Without any known identifier we have to look for the smell in the persistence.
+        return ParameterizedStatement.of(statement + "(?, (" + smellIdQuery(projectId, smell) + "), ?, ?);",
+                projectId, since, until);
     }
 
     @Override
@@ -94,8 +115,8 @@ public class JDBCSmellQueries extends JDBCQueriesHelper implements SmellQueries
     @Override
     public String commitSmellsQuery(int projectId, String commitId, String smellType) {
         String smellsQuery = "SELECT smell.id, type, instance, file, renamed_from FROM smell " +
-                "RIGHT JOIN smell_presence ON smell_presence.smell_id = smell.id " +
-                "WHERE smell_presence.commit_id = " + commitId;
+                "RIGHT JOIN smell_presence_all ON smell_presence_all.smell_id = smell.id " +
+                "WHERE smell_presence_all.commit_id = " + commitId;
         if (smellType != null) {
             smellsQuery += " AND smell.type = '" + smellType + "'";
         }
@@ -116,6 +137,17 @@ public class JDBCSmellQueries extends JDBCQueriesHelper implements SmellQueries
                 "ORDER BY id DESC LIMIT 1";
     }
 
+    @Override
+    public String smellIdentitiesQuery(int projectId, String smellType) {
+        return "SELECT id, type, instance, file, renamed_from FROM smell WHERE project_id = " + projectId +
+                " AND type = '" + smellType + "'";
+    }
+
+    @Override
+    public String reserveSmellIdsQuery(int count) {
+        return "SELECT nextval('smell_id_seq') AS id FROM generate_series(1, " + count + ")";
+    }
+
     public String allRefactoredInstancesWithSha1(int projectId) {
         return "SELECT smell_refactoring.id as id, " +
                 "commit_entry.sha1 as sha1, " +
@@ -124,11 +156,24 @@ public class JDBCSmellQueries extends JDBCQueriesHelper implements SmellQueries
                 "FROM smell_refactoring " +
                 "LEFT JOIN commit_entry ON commit_entry.id = smell_refactoring.commit_id " +
                 "LEFT JOIN smell ON smell.id = smell_refactoring.smell_id " +
-                "WHERE smell_refactoring.project_id = " + projectId;
+                "WHERE smell_refactoring.project_id = " + projectId + " " +
+                "ORDER BY smell_refactoring.commit_id";
     }
 
     public String setAsDeleted(int projectId, int refactoringId, boolean deleted) {
         return "UPDATE smell_refactoring SET deleted = " + deleted + " " +
                 "WHERE id = " + refactoringId;
     }
+
+    @Override
+    public String setAsDeleted(int projectId, Map<Integer, Boolean> deletions) {
+        StringJoiner values = new StringJoiner(", ");
+        for (Map.Entry<Integer, Boolean> deletion : deletions.entrySet()) {
+            values.add("(" + deletion.getKey() + ", " + deletion.getValue() + ")");
+        }
+        return "UPDATE smell_refactoring SET deleted = deletion.deleted " +
+                "FROM (VALUES " + values + ") AS deletion (id, deleted) " +
+                "WHERE smell_refactoring.id = deletion.id " +
+                "AND smell_refactoring.project_id = " + projectId;
+    }
 }
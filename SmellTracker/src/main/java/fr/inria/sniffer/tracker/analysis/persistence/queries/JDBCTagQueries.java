@@ -29,7 +29,15 @@ public class JDBCTagQueries implements TagQueries {
 
     @Override
     public String tagInsertionStatement(int projectId, Tag tag) {
-        String commitId = "(" + commitQueries.idFromShaQuery(projectId, tag.getSha()) + ")";
+        return tagInsertionStatement(projectId, "(" + commitQueries.idFromShaQuery(projectId, tag.getSha()) + ")", tag);
+    }
+
+    @Override
+    public String tagInsertionStatement(int projectId, int commitId, Tag tag) {
+        return tagInsertionStatement(projectId, String.valueOf(commitId), tag);
+    }
+
+    private String tagInsertionStatement(int projectId, String commitId, Tag tag) {
         return "INSERT INTO tag (project_id, commit_id, name, date) " +
                 "VALUES " +
                 "(" + projectId + ", " + commitId + ",  '"
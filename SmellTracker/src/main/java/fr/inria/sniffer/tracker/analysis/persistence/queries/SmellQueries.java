@@ -18,15 +18,28 @@
 package fr.inria.sniffer.tracker.analysis.persistence.queries;
 
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
 
+import java.util.Map;
+
 public interface SmellQueries {
     /**
      * @param projectId The project identifier.
      * @param smell     The smell instance to insert.
      * @return The generated insertion statement.
      */
-    String smellInsertionStatement(int projectId, Smell smell);
+    ParameterizedStatement smellInsertionStatement(int projectId, Smell smell);
+
+    /**
+     * Insert a smell and return its generated id, no row being returned if the smell already exists.
+     * The renamed smell is looked up if its identifier is not known.
+     *
+     * @param projectId The project identifier.
+     * @param smell     The smell instance to insert.
+     * @return The generated insertion statement, returning the id and renamed_from columns.
+     */
+    ParameterizedStatement smellInsertionReturningStatement(int projectId, Smell smell);
 
     /**
      * Generate a statement inserting a {@link Smell} introduction, presence, or refactor into the persistence.
@@ -37,7 +50,7 @@ public interface SmellQueries {
      * @param category  The {@link SmellCategory} to insert the smell into.
      * @return The generated insertion statement.
      */
-    String smellCategoryInsertionStatement(int projectId, String sha1, Smell smell, SmellCategory category);
+    ParameterizedStatement smellCategoryInsertionStatement(int projectId, String sha1, Smell smell, SmellCategory category);
 
     /**
      * Generate a statement inserting a lost {@link Smell} introduction, or refactor into the persistence.
@@ -49,7 +62,7 @@ public interface SmellQueries {
      * @param until     The upper ordinal of the interval in which the smell it lost.
      * @return The generated insertion statement.
      */
-    String lostSmellCategoryInsertionStatement(int projectId, Smell smell, SmellCategory category, int since, int until);
+    ParameterizedStatement lostSmellCategoryInsertionStatement(int projectId, Smell smell, SmellCategory category, int since, int until);
 
     /**
      * Query the identifier of a smell.
@@ -65,6 +78,8 @@ public interface SmellQueries {
 
     /**
      * Query the {@link Smell} instances for a specific commit identifier.
+     * <p>
+     * The presence is read from both the per commit and the interval storage.
      *
      * @param projectId The project identifier.
      * @param commitId  Commit identifier or query returning the commit identifier between parenthesis.
@@ -81,9 +96,26 @@ public interface SmellQueries {
      */
     String lastSmellIdQuery(int projectId);
 
+    /**
+     * Query the identifier and unicity tuple of every {@link Smell} of a project with the given type.
+     *
+     * @param projectId The project identifier.
+     * @param smellType The smell type.
+     * @return The generated query statement.
+     */
+    String smellIdentitiesQuery(int projectId, String smellType);
+
+    /**
+     * Reserve a block of {@link Smell} identifiers from the smell table sequence.
+     *
+     * @param count Number of identifiers to reserve.
+     * @return The generated query statement.
+     */
+    String reserveSmellIdsQuery(int count);
+
     /**
      * Return the all instances of refactored smells for the project
-     * with their matching commit's sha1.
+     * with their matching commit's sha1, ordered by commit.
      *
      * @param projectId The project identifier.
      * @return The generated query statement.
@@ -99,4 +131,13 @@ public interface SmellQueries {
      * @return The generated query statement.
      */
     String setAsDeleted(int projectId, int refactoringId, boolean deleted);
+
+    /**
+     * Set multiple smell_refactoring entries as deleted in a single statement.
+     *
+     * @param projectId The project identifier.
+     * @param deletions The deleted value to set, by refactoring id.
+     * @return The generated query statement.
+     */
+    String setAsDeleted(int projectId, Map<Integer, Boolean> deletions);
 }
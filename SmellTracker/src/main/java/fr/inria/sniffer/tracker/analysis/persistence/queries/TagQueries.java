@@ -28,4 +28,14 @@ public interface TagQueries {
      * @return The generated insertion statement.
      */
     String tagInsertionStatement(int projectId, Tag tag);
+
+    /**
+     * Generate a statement inserting the {@link Tag} into the persistence.
+     *
+     * @param projectId The project identifier.
+     * @param commitId  Identifier of the tagged commit.
+     * @param tag       The {@link Tag} to insert.
+     * @return The generated insertion statement.
+     */
+    String tagInsertionStatement(int projectId, int commitId, Tag tag);
 }
@@ -19,7 +19,11 @@ package fr.inria.sniffer.tracker.analysis.query.branch;
 
 import fr.inria.sniffer.tracker.analysis.model.Branch;
 import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.CommitGraph;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.query.PersistenceAnalyzer;
 import fr.inria.sniffer.tracker.analysis.query.Query;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
@@ -29,54 +33,151 @@ import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 /**
  * Build a branch tree in the Persistence for the given project.
  */
 public class BranchQuery extends PersistenceAnalyzer implements Query {
+    /**
+     * The commit has no such parent.
+     */
+    private static final int NONE = -1;
+
     private final Repository repository;
     private final BranchQueries branchQueries;
+    private final CommitIdDictionary commitIds;
+    private final AnalysisCheckpoint checkpoint;
 
     private int branchCounter;
 
     public BranchQuery(int projectId, Repository repository,
                        Persistence persistence, CommitQueries commitQueries, BranchQueries branchQueries) {
+        this(projectId, repository, persistence, commitQueries, branchQueries,
+                new CommitIdDictionary(projectId, persistence, commitQueries), null);
+    }
+
+    /**
+     * @param checkpoint If not null, only persist the branches of the commits missing from this previous analysis,
+     *                   the principal branch being extended if the new commits follow its last commit.
+     */
+    public BranchQuery(int projectId, Repository repository,
+                       Persistence persistence, CommitQueries commitQueries, BranchQueries branchQueries,
+                       CommitIdDictionary commitIds, AnalysisCheckpoint checkpoint) {
         super(LoggerFactory.getLogger(BranchQuery.class.getName()), projectId, persistence, commitQueries);
         this.repository = repository;
         this.branchQueries = branchQueries;
+        this.commitIds = commitIds;
+        this.checkpoint = checkpoint;
         branchCounter = 0;
     }
 
     @Override
     public void query() throws QueryException {
         logger.info("[" + projectId + "] Starting Branches insertion");
-        Commit commit = retrieveHeadCommit();
+        CommitGraph graph;
+        try {
+            // The whole history is parsed once, parents are then read from memory.
+            graph = repository.loadCommitGraph();
+        } catch (IOException e) {
+            throw new QueryException(logger.getName(), e);
+        }
+        int head = retrieveHeadCommit(graph);
+        logger.debug("[" + projectId + "] => Loaded commits graph of size: " + graph.size());
 
-        List<Branch> branches = buildBranchTree(null, commit);
-        for (Branch branch : branches) {
-            persistBranch(branch);
+        BitSet assigned = new BitSet(graph.size());
+        if (checkpoint == null) {
+            for (Branch branch : buildBranchTree(graph, head, assigned, branchCounter++)) {
+                persistBranch(branch);
+            }
+        } else {
+            persistNewBranches(graph, head, assigned);
         }
         persistence.commit();
     }
 
+    /**
+     * Persist the branches of the commits missing from the checkpoint.
+     * <p>
+     * The analyzed commits are considered as already belonging to a branch,
+     * new branches are numbered after the existing ones and if the principal branch
+     * reaches the checkpoint principal branch head, its commits are appended to the latter.
+     *
+     * @param graph    The commits graph.
+     * @param head     The HEAD commit number.
+     * @param assigned The commits already belonging to a branch.
+     */
+    private void persistNewBranches(CommitGraph graph, int head, BitSet assigned) {
+        for (int node = 0; node < graph.size(); node++) {
+            if (checkpoint.isAnalyzed(graph.sha(node))) {
+                assigned.set(node);
+            }
+        }
+        if (assigned.get(head)) {
+            logger.info("[" + projectId + "] => No new commit since: " + checkpoint.getLastCommitSha());
+            return;
+        }
+
+        branchCounter = checkpoint.getNextBranchOrdinal();
+        Commit mainlineHead = checkpoint.getMainlineHead();
+        int resumed = firstAssignedAncestor(graph, head, assigned);
+        boolean extended = resumed >= 0 && graph.sha(resumed).equals(mainlineHead.sha);
+        if (!extended) {
+            logger.warn("[" + projectId + "] => HEAD does not follow the last analyzed commit ("
+                    + mainlineHead.sha + "), persisting it in a new branch");
+        }
+        int rootOrdinal = extended ? AnalysisCheckpoint.MAINLINE_ORDINAL : branchCounter++;
+        for (Branch branch : buildBranchTree(graph, head, assigned, rootOrdinal)) {
+            if (extended && branch.getOrdinal() == AnalysisCheckpoint.MAINLINE_ORDINAL) {
+                logger.info("[" + projectId + "] => Extending principal branch after: " + mainlineHead.sha);
+                persistBranchCommits(branch, mainlineHead.getBranchOrdinal() + 1);
+            } else {
+                persistBranch(branch);
+            }
+        }
+    }
+
+    /**
+     * Follow the first parents from the HEAD commit until reaching an already assigned commit.
+     *
+     * @param graph    The commits graph.
+     * @param head     The HEAD commit number.
+     * @param assigned The commits already belonging to a branch.
+     * @return The first assigned commit, a negative value if none.
+     */
+    private static int firstAssignedAncestor(CommitGraph graph, int head, BitSet assigned) {
+        int node = head;
+        while (node >= 0 && !assigned.get(node)) {
+            node = parent(graph, node, 0);
+        }
+        return node;
+    }
+
     /**
      * Retrieve the last commit analyzed by Paprika.
      *
-     * @return The first commit to analyze on branch query.
+     * @param graph The commits graph.
+     * @return The number of the first commit to analyze on branch query.
      * @throws QueryException If the commit could not be found.
      */
-    private Commit retrieveHeadCommit() throws QueryException {
-        Commit commit;
+    private int retrieveHeadCommit(CommitGraph graph) throws QueryException {
+        String sha;
         try {
-            commit = repository.getCommitWithParents(repository.getHead().sha);
-            logger.info("[" + projectId + "] => Found HEAD commit: " + commit.sha);
-        } catch (IOException | IndexOutOfBoundsException e) {
+            sha = repository.getHead().sha;
+        } catch (IOException e) {
             throw new QueryException(logger.getName(), e);
         }
-        return commit;
+        int head = graph.indexOf(sha);
+        if (head == CommitGraph.NOT_FOUND) {
+            throw new QueryException(logger.getName(), "HEAD commit not found in commits graph: " + sha);
+        }
+        logger.info("[" + projectId + "] => Found HEAD commit: " + sha);
+        return head;
     }
 
     /**
@@ -85,20 +186,55 @@ public class BranchQuery extends PersistenceAnalyzer implements Query {
      * @param branch The branch to persist.
      */
     private void persistBranch(Branch branch) {
-        String statement = branchQueries.branchInsertionStatement(projectId, branch.getOrdinal(),
-                branch.getParentCommit(), branch.getMergedInto());
-        persistence.addStatements(statement);
+        persistence.addStatements(branchInsertionStatement(branch));
+        persistBranchCommits(branch, 0);
+    }
 
+    /**
+     * Persist the given branch commits, ordered from the oldest.
+     *
+     * @param branch       The branch to persist the commits of.
+     * @param firstOrdinal The ordinal of the oldest commit in the branch.
+     */
+    private void persistBranchCommits(Branch branch, int firstOrdinal) {
+        ParameterizedStatement statement;
+        int commitId;
         List<Commit> commits = branch.getCommits();
         Collections.reverse(commits);
         reverse_ordinal(commits);
         for (Commit commit : commits) {
-            statement = branchQueries.branchCommitInsertionQuery(projectId, branch.getOrdinal(), commit.sha, commit.getBranchOrdinal());
+            commitId = commitIds.idOf(commit.sha);
+            if (commitId != CommitIdDictionary.NO_ID) {
+                statement = branchQueries.branchCommitInsertionQuery(projectId, branch.getOrdinal(), commitId,
+                        firstOrdinal + commit.getBranchOrdinal());
+            } else {
+                statement = branchQueries.branchCommitInsertionQuery(projectId, branch.getOrdinal(), commit.sha,
+                        firstOrdinal + commit.getBranchOrdinal());
+            }
             persistence.addStatements(statement);
 
         }
     }
 
+    /**
+     * Generate the branch insertion, referencing its commits by identifier
+     * unless one of them is missing from the dictionary.
+     *
+     * @param branch The branch to insert.
+     * @return The generated insertion statement.
+     */
+    private ParameterizedStatement branchInsertionStatement(Branch branch) {
+        Commit parentCommit = branch.getParentCommit();
+        Commit mergedInto = branch.getMergedInto();
+        int parentCommitId = parentCommit == null ? CommitIdDictionary.NO_ID : commitIds.idOf(parentCommit.sha);
+        int mergedIntoId = mergedInto == null ? CommitIdDictionary.NO_ID : commitIds.idOf(mergedInto.sha);
+        if ((parentCommit == null || parentCommitId != CommitIdDictionary.NO_ID)
+                && (mergedInto == null || mergedIntoId != CommitIdDictionary.NO_ID)) {
+            return branchQueries.branchInsertionStatement(projectId, branch.getOrdinal(), parentCommitId, mergedIntoId);
+        }
+        return branchQueries.branchInsertionStatement(projectId, branch.getOrdinal(), parentCommit, mergedInto);
+    }
+
     private void reverse_ordinal(List<Commit> commits) {
         List<Integer> ordinals = new ArrayList<>();
         for (Commit commit : commits) {
@@ -111,145 +247,144 @@ public class BranchQuery extends PersistenceAnalyzer implements Query {
     }
 
     /**
-     * Create the Tree of branches from the principal one.
-     * This will parse all merge commits and follow their child branches recursively.
+     * Create the Tree of branches from the principal one, starting at the HEAD commit.
+     * This will parse all merge commits and follow their child branches, depth first.
+     * <p>
+     * A commit belongs to the first branch reaching it, the already assigned commits
+     * are thus tracked in a bitset rather than in the branches.
      *
-     * @param mother The branch on which this branch is built.
-     * @param start  The branch first commit.
-     * @return The list of {@link Branch} in this project.
+     * @param graph       The commits graph.
+     * @param head        The HEAD commit number.
+     * @param assigned    The commits already belonging to a branch, updated with the new branches.
+     * @param rootOrdinal The ordinal of the branch starting at the HEAD commit.
+     * @return The list of {@link Branch} in this project, child branches before their mother.
      */
-    private List<Branch> buildBranchTree(Branch mother, Commit start) {
-        // In the case that a merge commit will send us to already analyzed commits.
-        // It can happen in the case of BranchQueryTest#testContinuingBranches
-        if (isInBranch(mother, start)) {
-            logger.debug("We already analyzed this commit, returning.");
-            return Collections.emptyList();
-        }
-
-        Branch current = buildBranch(mother, start);
-
-        List<Branch> newBranches;
-        List<Branch> branches = new ArrayList<>();
-        Branch traversedCommits = Branch.newMother(mother, current);
-
-        // We build a branch tree for all merge commits of the current branch.
-        for (Commit merge : current.getMerges()) {
-            Commit parentCommit = retrieveParentCommit(merge, 1);
-            if (parentCommit != null) {
-                logger.debug("[" + projectId + "] => Handling merge commit: " + merge.sha);
-                // We set the merge commit to the branch to be able to retrieve it in the child branch.
-                traversedCommits.setMergedInto(merge);
-                newBranches = buildBranchTree(traversedCommits, parentCommit);
-
-                for (Branch traversedBranch : newBranches) {
-                    traversedCommits.addCommits(traversedBranch.getCommits());
+    private List<Branch> buildBranchTree(CommitGraph graph, int head, BitSet assigned, int rootOrdinal) {
+        Deque<BranchFrame> stack = new ArrayDeque<>();
+        stack.push(buildBranch(graph, head, rootOrdinal, null, assigned));
+
+        BranchFrame frame;
+        int merge;
+        int start;
+        while (true) {
+            frame = stack.peek();
+            if (frame.nextMerge < frame.merges.size()) {
+                // We build a branch tree for all merge commits of the current branch.
+                merge = frame.merges.get(frame.nextMerge++);
+                start = parent(graph, merge, 1);
+                if (start < 0) {
+                    continue;
                 }
-                branches.addAll(newBranches);
+                // In the case that a merge commit will send us to already analyzed commits.
+                // It can happen in the case of BranchQueryTest#testContinuingBranches
+                if (assigned.get(start)) {
+                    logger.debug("We already analyzed this commit, returning.");
+                    continue;
+                }
+                logger.debug("[" + projectId + "] => Handling merge commit: " + graph.sha(merge));
+                stack.push(buildBranch(graph, start, branchCounter++, graph.commitWithParents(merge), assigned));
+            } else {
+                stack.pop();
+                frame.branches.add(frame.current);
+                if (stack.isEmpty()) {
+                    return frame.branches;
+                }
+                stack.peek().branches.addAll(frame.branches);
             }
         }
-
-        branches.add(current);
-        return branches;
     }
 
     /**
      * Build a branch with ordered commits.
      *
-     * @param mother The branch from which the current one is forked.
-     * @param start  The starting commit of our current branch.
-     * @return The newly built branch.
+     * @param graph      The commits graph.
+     * @param start      The starting commit of our current branch.
+     * @param ordinal    The ordinal of the new branch.
+     * @param mergedInto The merge commit of the current branch, null for the principal one.
+     * @param assigned   The commits already belonging to a branch, updated with the current one.
+     * @return The newly built branch, with its merge commits.
      */
-    private Branch buildBranch(Branch mother, Commit start) {
-        Branch current = Branch.fromMother(mother, branchCounter++);
+    private BranchFrame buildBranch(CommitGraph graph, int start, int ordinal, Commit mergedInto, BitSet assigned) {
+        BranchFrame frame = new BranchFrame(new Branch(ordinal, mergedInto));
+        Branch current = frame.current;
 
-        Commit commit = start;
+        int node = start;
         int commitOrdinal = 0;
-        while (nextStillInBranch(commit, mother)) {
-            logger.trace("[" + projectId + "] => Handling commit: " + commit.sha);
-            logger.trace("[" + projectId + "] ==> commit parents (" + commit.getParentCount() + "): " + commit.parents);
+        while (nextStillInBranch(graph, node, assigned)) {
+            logger.trace("[" + projectId + "] => Handling commit: " + graph.sha(node));
 
-            current.addCommit(commit, commitOrdinal);
-            if (commit.getParentCount() >= 2) {
-                current.addMerge(commit);
-            }
+            addCommit(frame, graph, node, commitOrdinal, assigned);
 
             // Retrieve the parent commit, and do the same.
-            commit = retrieveParentCommit(commit, 0);
+            node = parent(graph, node, 0);
             // But we increase the ordinal whichever the commit to notify the commit gap
             // in case that Paprika does not know the commit.
             commitOrdinal++;
         }
 
         // Last execution setting parent commit
-        if (commit != null) {
-            if (commit.getParentCount() >= 2) {
-                current.addMerge(commit);
-            }
-            current.addCommit(commit, commitOrdinal);
+        if (node >= 0) {
+            addCommit(frame, graph, node, commitOrdinal, assigned);
             // If the current commit has a parent, we set this parent
             // as the whole branch parent commit.
-            if (commit.getParentCount() >= 1) {
-                current.setParentCommit(retrieveParentCommit(commit, 0));
+            int parent = parent(graph, node, 0);
+            if (parent >= 0) {
+                current.setParentCommit(graph.commitWithParents(parent));
             }
         }
-        return current;
+        return frame;
+    }
+
+    private static void addCommit(BranchFrame frame, CommitGraph graph, int node, int ordinal, BitSet assigned) {
+        Commit commit = graph.commitWithParents(node);
+        frame.current.addCommit(commit, ordinal);
+        assigned.set(node);
+        if (commit.getParentCount() >= 2) {
+            frame.current.addMerge(commit);
+            frame.merges.add(node);
+        }
     }
 
     /**
-     * Retrieve the nth parent of the given commit.
-     * If it could not retrieve the parent for any reason, we log as error the reason and return null.
-     *
-     * @param commit   The commit to retrieve parent from.
+     * @param graph    The commits graph.
+     * @param node     The commit number.
      * @param position The nth parent to fetch.
-     * @return The {@link Commit} if found, null otherwise.
+     * @return The parent number, {@link #NONE} if the commit has no such parent.
      */
-    private Commit retrieveParentCommit(Commit commit, int position) {
-        try {
-            return repository.getCommitWithParents(commit.getParent(position).sha);
-        } catch (IOException e) {
-            logger.error("[" + projectId + "] ==> Unable to fetch parent n°" + position + " (" + commit.getParent(1).sha +
-                    ") for commit: " + commit.sha, e);
-            return null;
-        }
+    private static int parent(CommitGraph graph, int node, int position) {
+        int[] parents = graph.parents(node);
+        return position < parents.length ? parents[position] : NONE;
     }
 
     /**
      * Determine if the next commit (the given commit's parent)
      * is still in the analyzed branch.
      *
-     * @param commit The commit to check.
-     * @param mother The mother of the analyzed branch.
-     * @return False if the commit parent is null or in the mother branch,
+     * @param graph    The commits graph.
+     * @param node     The commit to check.
+     * @param assigned The commits already belonging to a branch.
+     * @return False if the commit is missing, has no parent or if its parent already belongs to a branch,
      * True otherwise.
      */
-    private boolean nextStillInBranch(Commit commit, Branch mother) {
-        return !(isProjectFirstCommit(commit)
-                || isInBranch(mother, commit.getParent(0)));
+    private static boolean nextStillInBranch(CommitGraph graph, int node, BitSet assigned) {
+        if (node < 0) {
+            return false;
+        }
+        int parent = parent(graph, node, 0);
+        return parent >= 0 && !assigned.get(parent);
     }
 
     /**
-     * Determine if the given commit is the origin of the currently parsed branch.
-     *
-     * @param commit The current commit to assert. If the commit is null or has no parent,
-     *               we consider that we reached the end of the commit tree,
-     *               i.e. the original commit of the principal branch.
-     * @return True if the commit is null or has no parent, false otherwise.
+     * A branch being built, with the progress on its merge commits.
      */
-    private boolean isProjectFirstCommit(Commit commit) {
-        return commit == null || commit.getParentCount() == 0;
-    }
+    private static final class BranchFrame {
+        final Branch current;
+        final List<Integer> merges = new ArrayList<>();
+        final List<Branch> branches = new ArrayList<>();
+        int nextMerge = 0;
 
-    /**
-     * Determine if the given commit is contained in the given branch.
-     *
-     * @param branch The mother branch in which we could find the original commit.
-     *               If we are handling the principal branch, this can be null,
-     *               thus the commit will never be part of the mother branch.
-     * @param commit The commit to check.
-     * @return True if the commit is part of the mother branch, false otherwise.
-     */
-    private boolean isInBranch(Branch branch, Commit commit) {
-        return branch != null && branch.contains(commit);
+        BranchFrame(Branch current) {
+            this.current = current;
+        }
     }
-
-}
\ No newline at end of file
+}
@@ -22,6 +22,8 @@ import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
 import fr.inria.sniffer.tracker.analysis.model.GitDiff;
 import fr.inria.sniffer.tracker.analysis.model.GitRename;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.DeveloperQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
@@ -31,12 +33,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Actual analysis and persisting of commits and authors for a project.
@@ -44,6 +53,8 @@ import java.util.Map;
 class CommitsAnalysis implements Query {
     private static final Logger logger = LoggerFactory.getLogger(CommitsAnalysis.class.getName());
     public static final int BATCH_SIZE = 1000;
+    // Number of commits prepared ahead of the persisted one, by thread.
+    private static final int PIPELINE_DEPTH = 16;
 
     private final int projectId;
     private final Repository repository;
@@ -54,6 +65,14 @@ class CommitsAnalysis implements Query {
     private final DeveloperQueries developerQueries;
     private final CommitQueries commitQueries;
     private final boolean paprikaOnly;
+    private final GitLogDetailsStream logStream;
+    private final int threads;
+    private final AnalysisCheckpoint checkpoint;
+
+    private final List<ParameterizedStatement> commitStatements = new ArrayList<>();
+    private final List<ParameterizedStatement> authorStatements = new ArrayList<>();
+    private final List<ParameterizedStatement> renameStatements = new ArrayList<>();
+    private int commitCount = 0;
 
     CommitsAnalysis(int projectId, Persistence persistence, Repository repository,
                     Iterator<Map<String, Object>> commits,
@@ -67,6 +86,24 @@ class CommitsAnalysis implements Query {
                     CommitDetailsChecker detailsChecker,
                     DeveloperQueries developerQueries, CommitQueries commitQueries,
                     boolean paprikaOnly) {
+        this(projectId, persistence, repository, commits, detailsChecker, developerQueries, commitQueries,
+                paprikaOnly, null, 1, null);
+    }
+
+    /**
+     * @param logStream  If not null, the commits and their details are read from this stream
+     *                   instead of the repository log, unless we only analyze Paprika commits.
+     *                   The detailsChecker is then only used for merge commits.
+     * @param threads    Number of threads retrieving the commits and their details ahead of their persistence,
+     *                   the detailsChecker must be thread safe if greater than 1.
+     * @param checkpoint If not null, the commits already analyzed according to this checkpoint are skipped.
+     */
+    CommitsAnalysis(int projectId, Persistence persistence, Repository repository,
+                    Iterator<Map<String, Object>> commits,
+                    CommitDetailsChecker detailsChecker,
+                    DeveloperQueries developerQueries, CommitQueries commitQueries,
+                    boolean paprikaOnly, GitLogDetailsStream logStream, int threads,
+                    AnalysisCheckpoint checkpoint) {
         this.projectId = projectId;
         this.persistence = persistence;
         this.repository = repository;
@@ -75,6 +112,9 @@ class CommitsAnalysis implements Query {
         this.developerQueries = developerQueries;
         this.commitQueries = commitQueries;
         this.paprikaOnly = paprikaOnly;
+        this.logStream = logStream;
+        this.threads = threads;
+        this.checkpoint = checkpoint;
     }
 
     private static Map<String, Commit> mapPaprikaCommits(Iterator<Map<String, Object>> commits) {
@@ -89,65 +129,219 @@ class CommitsAnalysis implements Query {
 
     @Override
     public void query() throws QueryException {
-        List<String> commitStatements = new ArrayList<>();
-        List<String> authorStatements = new ArrayList<>();
-        List<String> renameStatements = new ArrayList<>();
-
-        int commitCount = 0;
-        CommitDetails details;
-        Commit currentCommit;
-        for (String commit : choseCommitsSource()) {
-            currentCommit = fillCommit(commit);
-
-            logger.debug("[" + projectId + "] => Analyzing commit: " + currentCommit.sha);
-            details = detailsChecker.fetch(currentCommit.sha);
-
-            authorStatements.addAll(authorStatements(currentCommit.authorEmail));
-            // GitCommit will not contain the right ordinal.
-            commitStatements.add(commitStatement(currentCommit, details));
-            renameStatements.addAll(fileRenameStatements(currentCommit, details));
-
-            if (++commitCount % BATCH_SIZE == 0) {
-                logger.info("[" + projectId + "] Persist commit batch of size: " + BATCH_SIZE);
-                persistBatch(commitStatements, authorStatements, renameStatements);
-                authorStatements.clear();
-                commitStatements.clear();
-                renameStatements.clear();
+        Iterator<PendingCommit> commits = pendingCommits();
+        try {
+            if (threads > 1) {
+                pipelineCommits(commits);
+            } else {
+                while (commits.hasNext()) {
+                    analyzeCommit(prepareCommit(commits.next()));
+                }
             }
+        } catch (UncheckedIOException e) {
+            // The commits source could not be read, e.g. a broken 'git log' output.
+            throw new QueryException(logger.getName(), e.getCause());
         }
         persistBatch(commitStatements, authorStatements, renameStatements);
+        if (checkpoint != null) {
+            logger.info("[" + projectId + "] Found " + commitCount + " new commits");
+        }
+    }
+
+    /**
+     * List the commits to analyze, in insertion order.
+     *
+     * @return The commits, with their details if already known.
+     * @throws QueryException If anything goes wrong.
+     */
+    private Iterator<PendingCommit> pendingCommits() throws QueryException {
+        if (logStream != null && !paprikaOnly) {
+            return new PendingIterator<GitLogDetailsStream.Entry>(logStream) {
+                @Override
+                String sha(GitLogDetailsStream.Entry entry) {
+                    return entry.sha;
+                }
+
+                @Override
+                CommitDetails details(GitLogDetailsStream.Entry entry) {
+                    return entry.isMerge() ? null : entry.details;
+                }
+            };
+        }
+        return new PendingIterator<String>(choseCommitsSource()) {
+            @Override
+            String sha(String commit) {
+                return commit;
+            }
+
+            @Override
+            CommitDetails details(String commit) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Lazily turn a source of commits into {@link PendingCommit}, skipping the commits already analyzed.
+     *
+     * @param <T> The source entries type.
+     */
+    private abstract class PendingIterator<T> implements Iterator<PendingCommit> {
+        private final Iterator<T> source;
+        private T next;
+
+        PendingIterator(Iterator<T> source) {
+            this.source = source;
+        }
+
+        abstract String sha(T entry);
+
+        abstract CommitDetails details(T entry);
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && source.hasNext()) {
+                T entry = source.next();
+                if (!isAnalyzed(sha(entry))) {
+                    next = entry;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public PendingCommit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T entry = next;
+            next = null;
+            return new PendingCommit(sha(entry), details(entry));
+        }
+    }
+
+    /**
+     * @param sha The commit sha1.
+     * @return True if the commit was persisted by a previous analysis, false otherwise.
+     */
+    private boolean isAnalyzed(String sha) {
+        return checkpoint != null && checkpoint.isAnalyzed(sha);
+    }
+
+    /**
+     * Prepare the commits on a pool of {@link #threads} threads, while analyzing them in insertion order.
+     * <p>
+     * The futures queue acts as a reorder buffer: commits are submitted in order and their
+     * results are awaited in the same order, with at most {@link #PIPELINE_DEPTH} commits
+     * by thread waiting ahead of the analyzed one.
+     *
+     * @param commits The commits to analyze, in insertion order.
+     * @throws QueryException If anything goes wrong.
+     */
+    private void pipelineCommits(Iterator<PendingCommit> commits) throws QueryException {
+        logger.info("[" + projectId + "] Preparing commits on " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<PreparedCommit>> pending = new ArrayDeque<>();
+        try {
+            while (commits.hasNext()) {
+                PendingCommit commit = commits.next();
+                pending.add(executor.submit(() -> prepareCommit(commit)));
+                if (pending.size() >= threads * PIPELINE_DEPTH) {
+                    analyzeCommit(awaitCommit(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                analyzeCommit(awaitCommit(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PreparedCommit awaitCommit(Future<PreparedCommit> future) throws QueryException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryException(logger.getName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryException) {
+                throw (QueryException) e.getCause();
+            }
+            throw new QueryException(logger.getName(), e.getCause());
+        }
+    }
+
+    /**
+     * Retrieve the commit data and its details if not already known.
+     *
+     * @param commit The commit to prepare.
+     * @return The commit ready to be analyzed.
+     * @throws QueryException If anything goes wrong.
+     */
+    private PreparedCommit prepareCommit(PendingCommit commit) throws QueryException {
+        Commit gitCommit = fillCommit(commit.sha);
+        CommitDetails details = commit.details != null ? commit.details : detailsChecker.fetch(commit.sha);
+        return new PreparedCommit(gitCommit, details);
+    }
+
+    /**
+     * Generate the statements for a single commit, and persist them with the previous ones
+     * every {@link #BATCH_SIZE} commits.
+     *
+     * @param commit The commit to analyze.
+     */
+    private void analyzeCommit(PreparedCommit commit) {
+        Commit currentCommit = commit.commit;
+        CommitDetails details = commit.details;
+        logger.debug("[" + projectId + "] => Analyzing commit: " + currentCommit.sha);
+
+        authorStatements.addAll(authorStatements(currentCommit.authorEmail));
+        // GitCommit will not contain the right ordinal.
+        commitStatements.add(commitStatement(currentCommit, details));
+        if (currentCommit.getParentCount() >= 2) {
+            // Batched after the insertions, the merged commit may be inserted by the same statement.
+            commitStatements.add(commitQueries.mergedCommitUpdateStatement(projectId, currentCommit));
+        }
+        renameStatements.addAll(fileRenameStatements(currentCommit, details));
+
+        if (++commitCount % BATCH_SIZE == 0) {
+            logger.info("[" + projectId + "] Persist commit batch of size: " + BATCH_SIZE);
+            persistBatch(commitStatements, authorStatements, renameStatements);
+            authorStatements.clear();
+            commitStatements.clear();
+            renameStatements.clear();
+        }
     }
 
     /**
      * Chose the commits source depending on if we want to query only Paprika
      * commits or not.
      *
-     * @return The list of sha to add to the project.
+     * @return The sha to add to the project, in insertion order.
      * @throws QueryException If anything goes wrong.
      */
-    private List<String> choseCommitsSource() throws QueryException {
+    private Iterator<String> choseCommitsSource() throws QueryException {
         if (paprikaOnly) {
             List<String> shas = new ArrayList<>();
             for (Commit commit : paprikaCommits.values()) {
                 shas.add(commit.sha);
             }
-            return shas;
+            return shas.iterator();
         } else {
-            List<String> list = fetchGitLog();
-            Collections.reverse(list);
-            return list;
+            return fetchGitLog();
         }
     }
 
     /**
-     * Retrieve the git repository's log.
+     * Retrieve the git repository's log, in the order used by Paprika to number the commits.
      *
-     * @return An iterable of SHA1s.
+     * @return An iterator of SHA1s, from the oldest commit.
      * @throws QueryException If anything goes wrong.
      */
-    private List<String> fetchGitLog() throws QueryException {
+    private Iterator<String> fetchGitLog() throws QueryException {
         try {
-            return repository.getLog();
+            return repository.getTopologicalLog();
         } catch (IOException e) {
             throw new QueryException(logger.getName(), e.getMessage());
         }
@@ -195,8 +389,8 @@ class CommitsAnalysis implements Query {
      * @param emailAddress The developer mail.
      * @return The generated statements.
      */
-    private List<String> authorStatements(String emailAddress) {
-        List<String> statements = new ArrayList<>();
+    private List<ParameterizedStatement> authorStatements(String emailAddress) {
+        List<ParameterizedStatement> statements = new ArrayList<>();
 
         // Try to insert the developer if not exist
         statements.add(developerQueries.developerInsertStatement(emailAddress));
@@ -214,7 +408,7 @@ class CommitsAnalysis implements Query {
      * @param details Commit details containing file_rename and {@link GitDiff} info.
      * @return The generated persistence statement.
      */
-    private String commitStatement(Commit commit, CommitDetails details) {
+    private ParameterizedStatement commitStatement(Commit commit, CommitDetails details) {
         return commitQueries.commitInsertionStatement(projectId, commit, details.diff);
     }
 
@@ -225,8 +419,8 @@ class CommitsAnalysis implements Query {
      * @param details The commit details containing FileRename.
      * @return The generated statements.
      */
-    private List<String> fileRenameStatements(Commit commit, CommitDetails details) {
-        List<String> result = new ArrayList<>();
+    private List<ParameterizedStatement> fileRenameStatements(Commit commit, CommitDetails details) {
+        List<ParameterizedStatement> result = new ArrayList<>();
 
         for (GitRename rename : details.renames) {
             if (!(rename.oldFile.endsWith(".java") && rename.newFile.endsWith(".java"))) {
@@ -251,10 +445,38 @@ class CommitsAnalysis implements Query {
      * @param authorStatements Developer to persist.
      * @param renameStatements FileRename to persist.
      */
-    private void persistBatch(List<String> commitStatements, List<String> authorStatements, List<String> renameStatements) {
-        persistence.addStatements(authorStatements.toArray(new String[0]));
-        persistence.addStatements(commitStatements.toArray(new String[0]));
-        persistence.addStatements(renameStatements.toArray(new String[0]));
+    private void persistBatch(List<ParameterizedStatement> commitStatements,
+                              List<ParameterizedStatement> authorStatements,
+                              List<ParameterizedStatement> renameStatements) {
+        persistence.addStatements(authorStatements.toArray(new ParameterizedStatement[0]));
+        persistence.addStatements(commitStatements.toArray(new ParameterizedStatement[0]));
+        persistence.addStatements(renameStatements.toArray(new ParameterizedStatement[0]));
         persistence.commit();
     }
+
+    /**
+     * A commit to analyze, with its details if already known.
+     */
+    private static final class PendingCommit {
+        final String sha;
+        final CommitDetails details;
+
+        PendingCommit(String sha, CommitDetails details) {
+            this.sha = sha;
+            this.details = details;
+        }
+    }
+
+    /**
+     * A commit retrieved from the repository, with its details.
+     */
+    private static final class PreparedCommit {
+        final Commit commit;
+        final CommitDetails details;
+
+        PreparedCommit(Commit commit, CommitDetails details) {
+            this.commit = commit;
+            this.details = details;
+        }
+    }
 }
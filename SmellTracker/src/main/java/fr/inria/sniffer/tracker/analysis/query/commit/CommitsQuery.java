@@ -17,7 +17,9 @@
  */
 package fr.inria.sniffer.tracker.analysis.query.commit;
 
+import fr.inria.sniffer.tracker.analysis.AnalysisOptions;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.DeveloperQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
@@ -28,6 +30,8 @@ import org.neo4j.graphdb.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * Fetch all commits and developers for a project, then provide them to {@link CommitsAnalysis}
  * for actual persisting.
@@ -41,15 +45,33 @@ public class CommitsQuery implements Query {
     private final Persistence persistence;
     private final DeveloperQueries developerQueries;
     private final CommitQueries commitQueries;
+    private final boolean logStream;
+    private final int threads;
+    private final AnalysisCheckpoint checkpoint;
 
     public CommitsQuery(int projectId, String paprikaDB, Repository repository,
                         Persistence persistence, DeveloperQueries developerQueries, CommitQueries commitQueries) {
+        this(projectId, paprikaDB, repository, persistence, developerQueries, commitQueries,
+                AnalysisOptions.DEFAULT, null);
+    }
+
+    /**
+     * @param options    Whether the commits details are read from a single 'git log' execution
+     *                   instead of looking up each commit, and the number of threads retrieving them.
+     * @param checkpoint If not null, only insert the commits missing from this previous analysis.
+     */
+    public CommitsQuery(int projectId, String paprikaDB, Repository repository,
+                        Persistence persistence, DeveloperQueries developerQueries, CommitQueries commitQueries,
+                        AnalysisOptions options, AnalysisCheckpoint checkpoint) {
         this.projectId = projectId;
         this.paprikaDB = paprikaDB;
         this.repository = repository;
         this.persistence = persistence;
         this.developerQueries = developerQueries;
         this.commitQueries = commitQueries;
+        this.logStream = options.isLogStream();
+        this.threads = options.getCommitThreads();
+        this.checkpoint = checkpoint;
     }
 
     @Override
@@ -63,15 +85,28 @@ public class CommitsQuery implements Query {
         }
 
         QueryEngine engine = new QueryEngine(paprikaDB);
-        CommitDetailsChecker detailsChecker = new CommitDetailsChecker(repository.getRepoDir().toString());
-
         Result commits = getCommits(engine);
-        new CommitsAnalysis(projectId, persistence, repository, commits, detailsChecker, developerQueries, commitQueries).query();
+        org.eclipse.jgit.lib.Repository gitRepository = repository.getGitRepository().getRepository();
+        // JGitDetailsChecker is not thread safe, each thread gets its own.
+        try (PerThreadDetailsChecker detailsChecker = new PerThreadDetailsChecker(() -> new JGitDetailsChecker(gitRepository));
+             GitLogDetailsStream stream = logStream ? openLogStream() : null) {
+            new CommitsAnalysis(projectId, persistence, repository, commits, detailsChecker, developerQueries, commitQueries,
+                    false, stream, threads, checkpoint).query();
+        }
 
         engine.shutDown();
         repository.finalizeRepository();
     }
 
+    private GitLogDetailsStream openLogStream() throws QueryException {
+        logger.info("[" + projectId + "] Streaming commits details from git log");
+        try {
+            return new GitLogDetailsStream(repository.getRepoDir().toString());
+        } catch (IOException e) {
+            throw new QueryException(logger.getName(), e);
+        }
+    }
+
     private static Result getCommits(QueryEngine engine) throws QueryException {
         return new fr.inria.sniffer.detector.neo4j.CommitsQuery(engine).streamResult(true, true);
     }
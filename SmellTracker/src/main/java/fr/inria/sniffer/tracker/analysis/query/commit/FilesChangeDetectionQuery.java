@@ -20,6 +20,7 @@ package fr.inria.sniffer.tracker.analysis.query.commit;
 import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
 import fr.inria.sniffer.tracker.analysis.model.GitChangedFile;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
@@ -29,7 +30,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 public class FilesChangeDetectionQuery implements Query {
     private static final Logger logger = LoggerFactory.getLogger(FilesChangeDetectionQuery.class.getName());
@@ -38,12 +38,15 @@ public class FilesChangeDetectionQuery implements Query {
     private final Repository repository;
     private final Persistence persistence;
     private final CommitQueries commitQueries;
+    private final CommitIdDictionary commitIds;
 
-    public FilesChangeDetectionQuery(int appId, Repository repository, Persistence persistence, CommitQueries commitQueries) {
+    public FilesChangeDetectionQuery(int appId, Repository repository, Persistence persistence,
+                                     CommitQueries commitQueries, CommitIdDictionary commitIds) {
         this.appId = appId;
         this.repository = repository;
         this.persistence = persistence;
         this.commitQueries = commitQueries;
+        this.commitIds = commitIds;
     }
 
     @Override
@@ -55,19 +58,19 @@ public class FilesChangeDetectionQuery implements Query {
             throw new QueryException(logger.getName(), e);
         }
 
-        CommitDetailsChecker detailsChecker = new CommitDetailsChecker(repository.getRepoDir().toString());
-
         persistence.execute(createFilesTable());
-        for (String sha1 : log) {
-            CommitDetails details = detailsChecker.fetch(sha1);
-            List<Map<String, Object>> commitId;
-
-            for (GitChangedFile changedFile : details.changedFiles) {
-                commitId = persistence.query(commitQueries.idFromShaQuery(appId, sha1));
-                if (commitId.isEmpty()) {
+        int commitId;
+        try (JGitDetailsChecker detailsChecker = new JGitDetailsChecker(repository.getGitRepository().getRepository())) {
+            for (String sha1 : log) {
+                commitId = commitIds.idOf(sha1);
+                if (commitId == CommitIdDictionary.NO_ID) {
                     logger.warn("Unable to find commit id for project " + appId + " - sha: " + sha1);
-                } else {
-                    persistence.addStatements(commitQueries.fileChangedInsertionStatement(appId, sha1, changedFile));
+                    continue;
+                }
+
+                CommitDetails details = detailsChecker.fetch(sha1);
+                for (GitChangedFile changedFile : details.changedFiles) {
+                    persistence.addStatements(commitQueries.fileChangedInsertionStatement(appId, commitId, changedFile));
                 }
             }
         }
@@ -17,15 +17,7 @@
  */
 package fr.inria.sniffer.tracker.analysis.query.commit;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Execute a command using the host 'git' command.
@@ -33,41 +25,24 @@ import java.util.concurrent.TimeUnit;
  * // TODO: See if we can use Jgit instead of raw calls to git
  */
 class GitExecution {
-    private static final Logger logger = LoggerFactory.getLogger(GitExecution.class.getName());
-
-    public static List<String> execute(String repository, String query) {
-        List<String> result = new ArrayList<>();
-        try {
-            String command = gitCommand(repository, query);
-            Process p = Runtime.getRuntime().exec(command);
-            BufferedReader stdIn = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            try {
-                p.waitFor(2, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-                logger.error("Git execution took too much time, skipping", e);
-                return result;
-            }
-            String line;
-
-            while ((line = stdIn.readLine()) != null) {
-                result.add(line);
-            }
-
-            stdIn.close();
-            p.waitFor(10, TimeUnit.SECONDS);
-            p.destroy();
-        } catch (IOException | InterruptedException e) {
-            logger.error("Unable to execute git command", e);
-        }
-        return result;
-    }
-
-    private static String gitCommand(String repository, String query) {
-        return "git -C " + repository + " " + query;
-    }
-
-    public static List<String> commitSummary(String repository, String commit) {
+    /**
+     * Start a single 'git log' process streaming the summary of every commit, oldest first.
+     * Each commit summary is preceded by a header line made of the given marker,
+     * followed by the commit sha1 and its parents sha1, separated by spaces.
+     * <p>
+     * The caller is responsible for consuming the process output, then either waiting for
+     * the process to check its exit code, or destroying it if the output is not fully read.
+     *
+     * @param repository The repository path.
+     * @param marker     The header line prefix.
+     * @return The started process.
+     * @throws IOException If the process could not be started.
+     */
+    public static Process logSummary(String repository, String marker) throws IOException {
         // stat=800 avoids losing file name when too long (default is 80)
-        return execute(repository, " show " + commit + " -M50% --stat=800 --summary --format=");
+        return new ProcessBuilder("git", "-C", repository, "log", "--reverse", "--topo-order",
+                "-M50%", "--stat=800", "--summary", "--format=" + marker + "%H %P")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
     }
 }
@@ -0,0 +1,195 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.commit;
+
+import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
+import fr.inria.sniffer.tracker.analysis.model.GitSummaryParser;
+import fr.inria.sniffer.tracker.analysis.query.QueryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Stream the details of every commit of a repository, oldest first, out of a single 'git log' execution.
+ * <p>
+ * The output is parsed incrementally, only one commit summary is held in memory at a time.
+ * <p>
+ * Merge commits do not get any summary from 'git log', their details have to be fetched
+ * using a {@link CommitDetailsChecker}, see {@link Entry#isMerge()}.
+ * <p>
+ * A failure while reading the output is rethrown as an {@link UncheckedIOException},
+ * and a 'git log' exiting with an error is reported on {@link #close()},
+ * so that a partial log is never mistaken for the whole history.
+ */
+class GitLogDetailsStream implements Iterator<GitLogDetailsStream.Entry>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GitLogDetailsStream.class.getName());
+    /**
+     * Commit header prefix, the summary lines always start with a space.
+     */
+    static final String MARKER = "@commit ";
+
+    private final Process process;
+    private final BufferedReader reader;
+    private final GitSummaryParser parser = new GitSummaryParser();
+    private String header;
+    private Entry next;
+    private boolean started = false;
+    private boolean exhausted = false;
+
+    GitLogDetailsStream(String repository) throws IOException {
+        this(GitExecution.logSummary(repository, MARKER));
+    }
+
+    GitLogDetailsStream(Process process) {
+        this(process, new InputStreamReader(process.getInputStream()));
+    }
+
+    GitLogDetailsStream(Reader output) {
+        this(null, output);
+    }
+
+    private GitLogDetailsStream(Process process, Reader output) {
+        this.process = process;
+        this.reader = new BufferedReader(output);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = readEntry();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Read the next commit header and summary lines.
+     *
+     * @return The parsed entry, null if the log is over.
+     * @throws UncheckedIOException If the output could not be read.
+     */
+    private Entry readEntry() {
+        try {
+            if (!started) {
+                started = true;
+                // Skip anything before the first commit header.
+                do {
+                    header = reader.readLine();
+                } while (header != null && !header.startsWith(MARKER));
+            }
+            if (header == null) {
+                exhausted = true;
+                return null;
+            }
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null && !line.startsWith(MARKER)) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            String current = header;
+            header = line;
+            return Entry.parse(current, parser.parse(lines));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read git log output", e);
+        }
+    }
+
+    /**
+     * Close the output and wait for the 'git log' process to end.
+     * <p>
+     * If the output was not fully read, the process is destroyed and its exit code ignored.
+     *
+     * @throws QueryException If the process exited with an error after producing its whole output.
+     */
+    @Override
+    public void close() throws QueryException {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close git log output", e);
+        }
+        if (process == null) {
+            return;
+        }
+        if (!exhausted) {
+            process.destroy();
+            return;
+        }
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+            throw new QueryException(logger.getName(), e);
+        }
+        if (exitCode != 0) {
+            throw new QueryException(logger.getName(), "git log exited with code " + exitCode);
+        }
+    }
+
+    /**
+     * A commit sha1 with its parsed details.
+     */
+    static final class Entry {
+        final String sha;
+        final int parentCount;
+        final CommitDetails details;
+
+        private Entry(String sha, int parentCount, CommitDetails details) {
+            this.sha = sha;
+            this.parentCount = parentCount;
+            this.details = details;
+        }
+
+        /**
+         * Since 'git log' does not output any summary for merge commits,
+         * the details of such an entry are empty.
+         *
+         * @return True if the commit has more than one parent.
+         */
+        boolean isMerge() {
+            return parentCount > 1;
+        }
+
+        private static Entry parse(String header, CommitDetails details) {
+            String[] hashes = header.substring(MARKER.length()).trim().split(" ");
+            return new Entry(hashes[0], hashes.length - 1, details);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.commit;
+
+import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
+import fr.inria.sniffer.tracker.analysis.model.GitChangedFile;
+import fr.inria.sniffer.tracker.analysis.model.GitDiff;
+import fr.inria.sniffer.tracker.analysis.model.GitRename;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retrieve all details of a commit in process through JGit,
+ * producing the same data than 'git show -M50% --stat --summary'.
+ * <p>
+ * A single {@link ObjectReader} is used for the whole repository, thus this class is not thread safe
+ * and must be closed once done.
+ */
+class JGitDetailsChecker implements CommitDetailsChecker, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JGitDetailsChecker.class.getName());
+    private static final int RENAME_SCORE = 50;
+
+    private final ObjectReader reader;
+    private final RevWalk walk;
+    private final DiffFormatter formatter;
+
+    JGitDetailsChecker(Repository repository) {
+        this.reader = repository.newObjectReader();
+        this.walk = new RevWalk(reader);
+        // Only the trees and parents are needed.
+        walk.setRetainBody(false);
+        this.formatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+        formatter.setReader(reader, repository.getConfig());
+        formatter.setDiffComparator(RawTextComparator.DEFAULT);
+        formatter.setDetectRenames(true);
+        formatter.getRenameDetector().setRenameScore(RENAME_SCORE);
+    }
+
+    @Override
+    public CommitDetails fetch(String sha1) {
+        List<GitRename> renames = new ArrayList<>();
+        List<GitChangedFile> changedFiles = new ArrayList<>();
+        GitDiff diff = GitDiff.EMPTY;
+
+        try {
+            RevCommit commit = walk.parseCommit(ObjectId.fromString(sha1));
+            // Same as git, the root commit is compared to an empty tree and a merge commit to its first parent.
+            RevTree parentTree = null;
+            if (commit.getParentCount() > 0) {
+                parentTree = walk.parseCommit(commit.getParent(0)).getTree();
+            }
+
+            List<DiffEntry> entries = formatter.scan(parentTree, commit.getTree());
+            int additions = 0;
+            int deletions = 0;
+            for (DiffEntry entry : entries) {
+                FileHeader header = formatter.toFileHeader(entry);
+                int added = 0;
+                int deleted = 0;
+                // Binary files have no edit, and are not listed as changed files by git stat parsing.
+                boolean text = header.getPatchType() == FileHeader.PatchType.UNIFIED;
+                for (Edit edit : header.toEditList()) {
+                    added += edit.getLengthB();
+                    deleted += edit.getLengthA();
+                }
+                additions += added;
+                deletions += deleted;
+
+                if (entry.getChangeType() == DiffEntry.ChangeType.RENAME) {
+                    // Renamed files are written '{old => new}' in git stat, and never parsed as changed files.
+                    renames.add(new GitRename(entry.getOldPath(), entry.getNewPath(), entry.getScore()));
+                } else if (text) {
+                    String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ?
+                            entry.getOldPath() : entry.getNewPath();
+                    changedFiles.add(new GitChangedFile(path, added + deleted));
+                }
+            }
+            if (!entries.isEmpty()) {
+                diff = new GitDiff(additions, deletions, entries.size());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Unable to compute details of commit: " + sha1, e);
+        }
+        return new CommitDetails(diff, renames, changedFiles);
+    }
+
+    @Override
+    public void close() {
+        formatter.close();
+        walk.close();
+        reader.close();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.commit;
+
+import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe {@link CommitDetailsChecker}, delegating to one checker per calling thread.
+ * <p>
+ * The delegates are created on first use in each thread, and closed along with this checker
+ * if they are {@link AutoCloseable}.
+ */
+class PerThreadDetailsChecker implements CommitDetailsChecker, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PerThreadDetailsChecker.class.getName());
+
+    private final Supplier<? extends CommitDetailsChecker> factory;
+    private final List<CommitDetailsChecker> checkers = new ArrayList<>();
+    private final ThreadLocal<CommitDetailsChecker> checker = ThreadLocal.withInitial(this::newChecker);
+
+    PerThreadDetailsChecker(Supplier<? extends CommitDetailsChecker> factory) {
+        this.factory = factory;
+    }
+
+    private CommitDetailsChecker newChecker() {
+        CommitDetailsChecker result = factory.get();
+        synchronized (checkers) {
+            checkers.add(result);
+        }
+        return result;
+    }
+
+    @Override
+    public CommitDetails fetch(String sha1) {
+        return checker.get().fetch(sha1);
+    }
+
+    @Override
+    public void close() {
+        synchronized (checkers) {
+            for (CommitDetailsChecker delegate : checkers) {
+                if (delegate instanceof AutoCloseable) {
+                    try {
+                        ((AutoCloseable) delegate).close();
+                    } catch (Exception e) {
+                        logger.warn("Unable to close commit details checker", e);
+                    }
+                }
+            }
+            checkers.clear();
+        }
+    }
+}
@@ -19,6 +19,7 @@ package fr.inria.sniffer.tracker.analysis.query.project;
 
 import fr.inria.sniffer.tracker.analysis.model.Repository;
 import fr.inria.sniffer.tracker.analysis.model.Tag;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.TagQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
@@ -42,23 +43,31 @@ public class TagQuery implements Query {
     private final Repository repository;
     private final Persistence persistence;
     private final TagQueries tagQueries;
+    private final CommitIdDictionary commitIds;
 
     public TagQuery(int appId, Repository repository, Persistence persistence,
-                    TagQueries tagQueries) {
+                    TagQueries tagQueries, CommitIdDictionary commitIds) {
         this.appId = appId;
         this.repository = repository;
         this.persistence = persistence;
         this.tagQueries = tagQueries;
+        this.commitIds = commitIds;
     }
 
     @Override
     public void query() throws QueryException {
         logger.info("[" + appId + "] Starting Tags insertion");
 
+        int commitId;
         for (Tag tag : fetchTags()) {
-            persistence.addStatements(tagQueries.tagInsertionStatement(appId, tag));
-            persistence.commit();
+            commitId = commitIds.idOf(tag.getSha());
+            if (commitId != CommitIdDictionary.NO_ID) {
+                persistence.addStatements(tagQueries.tagInsertionStatement(appId, commitId, tag));
+            } else {
+                persistence.addStatements(tagQueries.tagInsertionStatement(appId, tag));
+            }
         }
+        persistence.commit();
     }
 
     /**
@@ -41,6 +41,16 @@ interface BranchAnalysis {
      */
     void addMergedSmells(List<Smell> smells);
 
+    /**
+     * Resume the analysis after a commit analyzed by a previous run.
+     * The commit is set as the currently analyzed one, with no introduction nor refactoring
+     * left to persist, the next commits being compared to its smells.
+     *
+     * @param commit The last analyzed {@link Commit}, with its project and branch ordinals.
+     * @param smells The smells present in this commit.
+     */
+    void resumeAfter(Commit commit, List<Smell> smells);
+
     /**
      * Notify the current analyzed commit instance.
      *
@@ -33,7 +33,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Analyze the smell introduction/presence/refactoring for a given branch.
@@ -45,8 +44,8 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
     private final CommitGapHandler gapHandler;
 
     // Analyzer data source
-    private final SmellQueries smellQueries;
     private final SmellDuplicationChecker duplicationChecker;
+    private final SmellWriter smellWriter;
 
     // Those attributes are the class state.
     private Commit previous;
@@ -67,9 +66,16 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
     BranchAnalyzer(int projectId, Persistence persistence, SmellDuplicationChecker duplicationChecker,
                    CommitQueries commitQueries, SmellQueries smellQueries,
                    CommitGapHandler gapHandler, String parentCommitSha) {
+        this(projectId, persistence, duplicationChecker, commitQueries, gapHandler, parentCommitSha,
+                new StatementSmellWriter(projectId, persistence, smellQueries));
+    }
+
+    BranchAnalyzer(int projectId, Persistence persistence, SmellDuplicationChecker duplicationChecker,
+                   CommitQueries commitQueries, CommitGapHandler gapHandler, String parentCommitSha,
+                   SmellWriter smellWriter) {
         super(logger, projectId, persistence, commitQueries);
         this.duplicationChecker = duplicationChecker;
-        this.smellQueries = smellQueries;
+        this.smellWriter = smellWriter;
         this.gapHandler = gapHandler;
 
         previous = Commit.empty();
@@ -102,6 +108,15 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
         underAnalysis.addMergedSmells(smells);
     }
 
+    @Override
+    public void resumeAfter(Commit commit, List<Smell> smells) {
+        commit.addSmells(smells);
+        // Comparing the commit to itself, its changes were persisted by the previous run.
+        previous = commit;
+        underAnalysis = commit;
+        resetLostCommit();
+    }
+
     @Override
     public void notifyCommit(Commit commit) {
         // We handle the commit change in our result dataset.
@@ -132,7 +147,7 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
         // Check if we already inserted smell previously to avoid having too much insert statements.
         // This could be removed and still checked by our unicity constraint.
         if (isNew(smell)) {
-            smell.id = insertSmellInstance(smell);
+            smell.id = smellWriter.insertSmell(smell);
         }
         assert smell.id != -1;
 
@@ -150,10 +165,10 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
      * @return The original, identified smell.
      */
     private Smell fetchIdentifiedSmell(Smell temporary) {
-        Smell strippedTemporary = Smell.copyWithoutParent(temporary);
-        Smell original = previous.getPreviousInstance(strippedTemporary);
+        // The lookups ignore the temporary smell parent.
+        Smell original = previous.getPreviousInstance(temporary);
         if (original.id == -1) {
-            original = underAnalysis.getMergedInstance(strippedTemporary);
+            original = underAnalysis.getMergedInstance(temporary);
         }
         return original.id > -1 ? original : temporary;
     }
@@ -303,17 +318,6 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
         underAnalysis = commit;
     }
 
-    private int insertSmellInstance(Smell smell) {
-        int insertResult = persistence.execute(smellQueries.smellInsertionStatement(projectId, smell));
-        List<Map<String, Object>> result;
-        if (insertResult == 1) {
-            result = persistence.query(smellQueries.lastSmellIdQuery(projectId));
-        } else {
-            result = persistence.query(smellQueries.smellIdQuery(projectId, smell));
-        }
-        return (int) result.get(0).get("id");
-    }
-
     /**
      * Helper method adding Smell- -Presence, -Introduction, or -Refactor statement.
      *
@@ -322,7 +326,7 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
      * @param category The table category, either SmellPresence, SmellIntroduction, or SmellRefactor
      */
     private void insertSmellInCategory(Smell smell, Commit commit, SmellCategory category) {
-        persistence.addStatements(smellQueries.smellCategoryInsertionStatement(projectId, commit.sha, smell, category));
+        smellWriter.insertCategory(smell, commit, category);
     }
 
     /**
@@ -386,8 +390,6 @@ class BranchAnalyzer extends PersistenceAnalyzer implements BranchAnalysis {
      * @param category The table category, either SmellPresence, SmellIntroduction, or SmellRefactor
      */
     private void insertLostSmellInCategory(Smell smell, SmellCategory category, int since, int until) {
-        persistence.addStatements(
-                smellQueries.lostSmellCategoryInsertionStatement(projectId, smell, category, since, until)
-        );
+        smellWriter.insertLostCategory(smell, category, since, until);
     }
 }
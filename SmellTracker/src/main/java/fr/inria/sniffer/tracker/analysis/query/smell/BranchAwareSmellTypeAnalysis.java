@@ -23,6 +23,8 @@ import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
 import fr.inria.sniffer.tracker.analysis.query.branch.BranchQuery;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitTopology;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
@@ -51,15 +53,39 @@ class BranchAwareSmellTypeAnalysis implements Query {
     private final SmellQueries smellQueries;
     private final BranchQueries branchQueries;
     private final SmellDuplicationChecker duplicationChecker;
+    private final SmellWriter smellWriter;
+    private final PresenceIntervalWriter presenceWriter;
+    private final CommitTopology topology;
+    private final AnalysisCheckpoint checkpoint;
+    private final BranchBoundaries boundaries;
 
     // Processed data
     private final Iterator<Map<String, Object>> smells;
     private final Map<Integer, BranchAnalyzer> branchAnalyzers;
-    private final Map<Integer, String> branchLastCommitSha;
+    private Commit commit;
+    private Integer currentBranch;
 
     BranchAwareSmellTypeAnalysis(int projectId, Persistence persistence, Iterator<Map<String, Object>> smells,
                                  String smellType, SmellDuplicationChecker duplicationChecker,
                                  CommitQueries commitQueries, SmellQueries smellQueries, BranchQueries branchQueries) {
+        this(projectId, persistence, smells, smellType, duplicationChecker, commitQueries, smellQueries, branchQueries,
+                new StatementSmellWriter(projectId, persistence, smellQueries), null, null, null,
+                new BranchBoundaries(projectId, persistence, branchQueries));
+    }
+
+    /**
+     * @param presenceWriter Writer storing the smells presence as intervals, null to store a presence per commit.
+     * @param topology       Index of the commits branch, ordinal, and merged commit,
+     *                       null to query them for each commit.
+     * @param checkpoint     If not null, the smells of the commits already analyzed according to this checkpoint
+     *                       are skipped, and the principal branch analysis resumes from the smells of its last commit.
+     * @param boundaries     Cache of the branches parent and last commits, possibly shared with other smell types.
+     */
+    BranchAwareSmellTypeAnalysis(int projectId, Persistence persistence, Iterator<Map<String, Object>> smells,
+                                 String smellType, SmellDuplicationChecker duplicationChecker,
+                                 CommitQueries commitQueries, SmellQueries smellQueries, BranchQueries branchQueries,
+                                 SmellWriter smellWriter, PresenceIntervalWriter presenceWriter,
+                                 CommitTopology topology, AnalysisCheckpoint checkpoint, BranchBoundaries boundaries) {
         this.projectId = projectId;
         this.persistence = persistence;
         this.smells = smells;
@@ -68,60 +94,90 @@ class BranchAwareSmellTypeAnalysis implements Query {
         this.commitQueries = commitQueries;
         this.smellQueries = smellQueries;
         this.branchQueries = branchQueries;
+        this.smellWriter = smellWriter;
+        this.presenceWriter = presenceWriter;
+        this.topology = topology;
+        this.checkpoint = checkpoint;
+        this.boundaries = boundaries;
 
         branchAnalyzers = new HashMap<>();
-        branchLastCommitSha = new HashMap<>();
+        commit = Commit.empty();
+        currentBranch = -1;
     }
 
     @Override
     public void query() throws QueryException {
-        Smell smell;
-        Commit previousCommit;
-        Commit commit = Commit.empty();
-        Integer previousBranch;
-        Integer currentBranch = -1;
-
-        Map<String, Object> instance;
+        start();
         while (smells.hasNext()) {
-            instance = smells.next();
-            previousCommit = commit;
-            previousBranch = currentBranch;
-            commit = Commit.fromInstance(instance);
-            smell = Smell.fromPaprikaInstance(instance, smellType);
-            try {
-                currentBranch = fetchCommitBranch(commit);
-            } catch (BranchNotFoundException e) {
-                logger.warn("[" + projectId + "] ==> Unable to guess branch for commit (" + commit.sha + "), skipping", e.getMessage());
-                continue;
-            }
+            notifyInstance(smells.next());
+        }
+        end();
+    }
 
-            // We create the new BranchAnalyzer if needed.
-            if (!branchAnalyzers.containsKey(currentBranch)) {
-                logger.debug("[" + projectId + "] => Initializing new branch: " + currentBranch);
-                initializeBranch(currentBranch);
-            }
+    /**
+     * Start the analysis, before notifying any instance.
+     */
+    void start() {
+        if (checkpoint != null && checkpoint.isAnalyzed()) {
+            // The principal branch smells may be refactored by new commits holding no smell of this type.
+            initializeBranch(checkpoint.getMainlineId());
+        }
+    }
+
+    /**
+     * Analyze the next smell instance, the instances being notified by commit ordinal.
+     *
+     * @param instance The Paprika smell instance.
+     * @throws QueryException If anything goes wrong.
+     */
+    void notifyInstance(Map<String, Object> instance) throws QueryException {
+        if (isAnalyzed(instance)) {
+            return;
+        }
+        Commit previousCommit = commit;
+        Integer previousBranch = currentBranch;
+        commit = Commit.fromInstance(instance);
+        Smell smell = Smell.fromPaprikaInstance(instance, smellType);
+        try {
+            currentBranch = fetchCommitBranch(commit);
+        } catch (BranchNotFoundException e) {
+            logger.warn("[" + projectId + "] ==> Unable to guess branch for commit (" + commit.sha + "), skipping", e.getMessage());
+            return;
+        }
 
-            // We set the commit ordinal, branch-wise to enable our BranchAnalyzer
-            // to correctly handle gaps.
-            commit.setBranchOrdinal(fetchCommitOrdinal(currentBranch, commit));
-            branchAnalyzers.get(currentBranch).notifyCommit(commit);
+        // We create the new BranchAnalyzer if needed.
+        if (!branchAnalyzers.containsKey(currentBranch)) {
+            logger.debug("[" + projectId + "] => Initializing new branch: " + currentBranch);
+            initializeBranch(currentBranch);
+        }
 
-            // On commit change, we ensure to merge SmellPresence from the merged commit if necessary.
-            if (!previousCommit.equals(commit)) {
-                synchronizeMergeSmells(commit, currentBranch);
-            }
+        // We set the commit ordinal, branch-wise to enable our BranchAnalyzer
+        // to correctly handle gaps.
+        commit.setBranchOrdinal(fetchCommitOrdinal(currentBranch, commit));
+        branchAnalyzers.get(currentBranch).notifyCommit(commit);
 
-            // Once the previous Smells are all set, notify our newly found smell.
-            branchAnalyzers.get(currentBranch).notifySmell(smell);
+        // On commit change, we ensure to merge SmellPresence from the merged commit if necessary.
+        if (!previousCommit.equals(commit)) {
+            synchronizeMergeSmells(commit, currentBranch);
+        }
 
-            // When we are sure that we passed the last branch commit, we will finalize the branch analysis,
-            // i.e. setting introductions and refactoring for the last branch commit.
-            if (!previousCommit.equals(commit) && isLastBranchCommit(previousCommit, previousBranch)) {
-                finalizeBranch(previousBranch);
-                branchAnalyzers.remove(previousBranch);
-            }
+        // Once the previous Smells are all set, notify our newly found smell.
+        branchAnalyzers.get(currentBranch).notifySmell(smell);
+
+        // When we are sure that we passed the last branch commit, we will finalize the branch analysis,
+        // i.e. setting introductions and refactoring for the last branch commit.
+        if (!previousCommit.equals(commit) && isLastBranchCommit(previousCommit, previousBranch)) {
+            finalizeBranch(previousBranch);
+            branchAnalyzers.remove(previousBranch);
         }
+    }
 
+    /**
+     * End the analysis, once every instance is notified.
+     *
+     * @throws QueryException If anything goes wrong.
+     */
+    void end() throws QueryException {
         // We should only perform operations for branch 0 since all other commits are looped around.
         // On top of that, we may have missed some branch finalization because of lost commits.
         for (int branchId : branchAnalyzers.keySet()) {
@@ -139,12 +195,16 @@ class BranchAwareSmellTypeAnalysis implements Query {
     private void synchronizeMergeSmells(Commit commit, Integer currentBranch) {
         Integer mergedCommitId = getMergedCommitId(commit);
         if (mergedCommitId != null) {
-            persistence.commit();
+            commitPresence();
             addSmellsToMergeCommit(mergedCommitId, currentBranch);
         }
     }
 
     private int fetchCommitOrdinal(int branchId, Commit commit) throws QueryException {
+        if (topology != null) {
+            // The branch was found in the same index, thus the ordinal is always there.
+            return topology.branchOrdinalOf(commit.sha);
+        }
         List<Map<String, Object>> result = persistence.query(branchQueries.commitOrdinalQuery(projectId, branchId, commit));
         if (result.isEmpty()) {
             throw new QueryException(logger.getName(), "Unable to find commit (" + commit.sha + ") in branch n°" + branchId);
@@ -172,33 +232,24 @@ class BranchAwareSmellTypeAnalysis implements Query {
      */
     private void initializeBranch(int currentBranch) {
         logger.debug("[" + projectId + "] => Initializing branch: " + currentBranch);
-        persistence.commit();
-        BranchAnalyzer analyzer = new MultiBranchAnalyzer(projectId, persistence, duplicationChecker,
-                commitQueries, smellQueries, branchQueries, currentBranch, retrieveBranchParentSha(currentBranch));
-        analyzer.addExistingSmells(retrieveBranchParentSmells(currentBranch));
-        branchAnalyzers.put(currentBranch, analyzer);
-
-        List<Map<String, Object>> query = persistence.query(branchQueries.lastCommitShaQuery(projectId, currentBranch));
-        if (query.isEmpty()) {
-            logger.warn("No merge commit found for branch: " + currentBranch);
-        } else {
-            branchLastCommitSha.put(currentBranch, (String) query.get(0).get("sha1"));
+        commitPresence();
+        SmellWriter branchWriter = smellWriter;
+        if (presenceWriter != null) {
+            branchWriter = presenceWriter.forBranch(currentBranch, smellWriter);
         }
-    }
-
-    /**
-     * Find the sha of this branch's parent commit.
-     *
-     * @param currentBranch The current branch identifier.
-     * @return The commit sha if found, null if not found.
-     */
-    private String retrieveBranchParentSha(int currentBranch) {
-        List<Map<String, Object>> result = persistence.query(branchQueries.parentCommitShaQuery(projectId, currentBranch));
-        if (result.isEmpty()) {
-            logger.warn("No sha found for parent commit of branch: " + currentBranch);
-            return null;
+        BranchAnalyzer analyzer;
+        if (isResumed(currentBranch)) {
+            Commit head = checkpoint.getMainlineHead();
+            logger.debug("[" + projectId + "] => Resuming branch " + currentBranch + " after commit: " + head.sha);
+            analyzer = new MultiBranchAnalyzer(projectId, persistence, duplicationChecker,
+                    commitQueries, branchQueries, currentBranch, null, branchWriter);
+            analyzer.resumeAfter(head, retrieveCommitSmells("(" + commitQueries.idFromShaQuery(projectId, head.sha) + ")"));
+        } else {
+            analyzer = new MultiBranchAnalyzer(projectId, persistence, duplicationChecker,
+                    commitQueries, branchQueries, currentBranch, boundaries.parentCommitSha(currentBranch), branchWriter);
+            analyzer.addExistingSmells(retrieveBranchParentSmells(currentBranch));
         }
-        return (String) result.get(0).get("sha1");
+        branchAnalyzers.put(currentBranch, analyzer);
     }
 
     /**
@@ -208,7 +259,7 @@ class BranchAwareSmellTypeAnalysis implements Query {
      * @return The last commit sha.
      */
     private String getLastBranchCommit(int branchId) {
-        return branchLastCommitSha.get(branchId);
+        return boundaries.lastCommitSha(branchId);
     }
 
     /**
@@ -225,6 +276,19 @@ class BranchAwareSmellTypeAnalysis implements Query {
         } else {
             branchAnalyzers.get(branchId).notifyEnd();
         }
+        if (presenceWriter != null) {
+            presenceWriter.endBranch(branchId);
+        }
+    }
+
+    /**
+     * Commit the persistence, including the pending presence intervals, to be able to query the smells presence.
+     */
+    private void commitPresence() {
+        if (presenceWriter != null) {
+            presenceWriter.flush();
+        }
+        persistence.commit();
     }
 
     /**
@@ -246,11 +310,42 @@ class BranchAwareSmellTypeAnalysis implements Query {
      * @return A {@link List} of {@link Smell}.
      */
     private List<Smell> retrieveMergedCommitSmells(int mergedCommitId) {
-        String lastCommitSmellsQuery = smellQueries.commitSmellsQuery(projectId, String.valueOf(mergedCommitId), smellType);
-        List<Map<String, Object>> results = persistence.query(lastCommitSmellsQuery);
+        return retrieveCommitSmells(String.valueOf(mergedCommitId));
+    }
+
+    /**
+     * Fetch the SmellPresences of the given commit.
+     *
+     * @param commitId Identifier of the commit, or a sub query returning it.
+     * @return A {@link List} of {@link Smell}.
+     */
+    private List<Smell> retrieveCommitSmells(String commitId) {
+        String commitSmellsQuery = smellQueries.commitSmellsQuery(projectId, commitId, smellType);
+        List<Map<String, Object>> results = persistence.query(commitSmellsQuery);
         return toSmells(results);
     }
 
+    /**
+     * Tells if the smell instance belongs to a commit already analyzed according to the checkpoint.
+     *
+     * @param instance The Paprika smell instance.
+     * @return True if the instance must be skipped, false otherwise.
+     */
+    private boolean isAnalyzed(Map<String, Object> instance) {
+        return checkpoint != null && checkpoint.isAnalyzed((String) instance.get("key"));
+    }
+
+    /**
+     * Tells if the branch analysis resumes from the checkpoint, i.e. the branch is the principal one
+     * and was already analyzed.
+     *
+     * @param branchId The branch identifier.
+     * @return True if the branch analysis must start from the checkpoint last commit, false otherwise.
+     */
+    private boolean isResumed(int branchId) {
+        return checkpoint != null && checkpoint.isAnalyzed() && branchId == checkpoint.getMainlineId();
+    }
+
     /**
      * convert the list of results to a list of Smell.
      *
@@ -272,6 +367,10 @@ class BranchAwareSmellTypeAnalysis implements Query {
      * @return An {@link Integer} identifying the merged commit, null if commit is not a merge commit.
      */
     private Integer getMergedCommitId(Commit commit) {
+        if (topology != null) {
+            int mergedCommitId = topology.mergedCommitIdOf(commit.sha);
+            return mergedCommitId == CommitTopology.NONE ? null : mergedCommitId;
+        }
         List<Map<String, Object>> result = persistence.query(commitQueries.mergedCommitIdQuery(projectId, commit));
         return (result.isEmpty() || result.get(0).isEmpty()) ? null : (Integer) result.get(0).get("id");
     }
@@ -284,7 +383,8 @@ class BranchAwareSmellTypeAnalysis implements Query {
      * @return True if the commit is the last commit of this branch, false otherwise.
      */
     private boolean isLastBranchCommit(Commit commit, int currentBranch) {
-        return branchLastCommitSha.containsKey(currentBranch) && branchLastCommitSha.get(currentBranch).equals(commit.sha);
+        // Only the analyzed branches are looked up, the commit before the first one having no branch.
+        return branchAnalyzers.containsKey(currentBranch) && commit.sha.equals(getLastBranchCommit(currentBranch));
     }
 
     /**
@@ -296,6 +396,13 @@ class BranchAwareSmellTypeAnalysis implements Query {
      *                                 This can happen until there are no commit gap anymore on Paprika result.
      */
     private int fetchCommitBranch(Commit commit) throws BranchNotFoundException {
+        if (topology != null) {
+            int branchId = topology.branchOf(commit.sha);
+            if (branchId == CommitTopology.NONE) {
+                throw new BranchNotFoundException(projectId, commit.sha);
+            }
+            return branchId;
+        }
         List<Map<String, Object>> result = persistence.query(branchQueries.idFromCommitQueryStatement(projectId, commit));
         if (result.isEmpty() || result.get(0).get("id") == null) {
             throw new BranchNotFoundException(projectId, commit.sha);
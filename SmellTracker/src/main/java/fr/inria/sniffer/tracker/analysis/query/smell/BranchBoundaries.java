@@ -0,0 +1,90 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per project cache of the branches parent commit and last commit, queried once for each branch
+ * even when shared by the analyses of several smell types.
+ */
+class BranchBoundaries {
+    private static final Logger logger = LoggerFactory.getLogger(BranchBoundaries.class.getName());
+
+    private final int projectId;
+    private final Persistence persistence;
+    private final BranchQueries branchQueries;
+
+    // Null values are kept, the branch having no such commit.
+    private final Map<Integer, String> parentCommitShas;
+    private final Map<Integer, String> lastCommitShas;
+
+    BranchBoundaries(int projectId, Persistence persistence, BranchQueries branchQueries) {
+        this.projectId = projectId;
+        this.persistence = persistence;
+        this.branchQueries = branchQueries;
+        this.parentCommitShas = new HashMap<>();
+        this.lastCommitShas = new HashMap<>();
+    }
+
+    /**
+     * Find the sha of this branch's parent commit.
+     *
+     * @param branchId The branch identifier.
+     * @return The commit sha if found, null if not found.
+     */
+    String parentCommitSha(int branchId) {
+        if (!parentCommitShas.containsKey(branchId)) {
+            String sha = querySha(branchQueries.parentCommitShaQuery(projectId, branchId));
+            if (sha == null) {
+                logger.warn("No sha found for parent commit of branch: " + branchId);
+            }
+            parentCommitShas.put(branchId, sha);
+        }
+        return parentCommitShas.get(branchId);
+    }
+
+    /**
+     * Find the sha of this branch's last commit.
+     *
+     * @param branchId The branch identifier.
+     * @return The commit sha if found, null if not found.
+     */
+    String lastCommitSha(int branchId) {
+        if (!lastCommitShas.containsKey(branchId)) {
+            String sha = querySha(branchQueries.lastCommitShaQuery(projectId, branchId));
+            if (sha == null) {
+                logger.warn("No merge commit found for branch: " + branchId);
+            }
+            lastCommitShas.put(branchId, sha);
+        }
+        return lastCommitShas.get(branchId);
+    }
+
+    private String querySha(String query) {
+        List<Map<String, Object>> result = persistence.query(query);
+        return result.isEmpty() ? null : (String) result.get(0).get("sha1");
+    }
+}
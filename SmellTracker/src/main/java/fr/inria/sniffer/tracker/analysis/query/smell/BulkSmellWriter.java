@@ -0,0 +1,269 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.AnalysisOptions;
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.CopyStream;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Write the smells and categories of a whole project through COPY streams,
+ * binding them to literal commit identifiers instead of a sub query per row.
+ * <p>
+ * Smells identifiers are reserved by blocks from the smell sequence and cached by unicity tuple,
+ * thus inserting a smell does not need any round trip to the persistence.
+ * The cache is loaded by smell type, a writer dedicated to a single type only loading this one.
+ * <p>
+ * The streams are sent on each {@link Persistence#commit()}, or when reaching their flush size,
+ * the smells always being sent before the categories referencing them.
+ */
+class BulkSmellWriter extends StatementSmellWriter {
+    private static final Logger logger = LoggerFactory.getLogger(BulkSmellWriter.class.getName());
+    public static final int DEFAULT_FLUSH_SIZE = AnalysisOptions.DEFAULT_COPY_FLUSH_SIZE;
+    public static final int ID_BLOCK_SIZE = 1000;
+    private static final String SMELL_COLUMNS = "id, project_id, instance, type, file, renamed_from";
+    private static final String CATEGORY_COLUMNS = "smell_id, project_id, commit_id";
+    private static final String LOST_CATEGORY_COLUMNS = "smell_id, project_id, since, until";
+
+    private final CommitIdDictionary commitIds;
+    private final int flushSize;
+    private final CopyStream smellStream;
+    private final Map<SmellCategory, CopyStream> categoryStreams;
+    private final Map<SmellCategory, CopyStream> lostCategoryStreams;
+    private int bufferedRows;
+
+    private final Map<String, Map<SmellIdentity, Integer>> smellIds;
+    private final Deque<Integer> reservedIds;
+
+    // Smells written in each category for its last commit, avoiding duplicates aborting a whole COPY.
+    private final Map<SmellCategory, Integer> lastCommitIds;
+    private final Map<SmellCategory, Set<Integer>> lastCommitSmells;
+
+    BulkSmellWriter(int projectId, Persistence persistence, CommitIdDictionary commitIds, SmellQueries smellQueries) {
+        this(projectId, persistence, commitIds, smellQueries, DEFAULT_FLUSH_SIZE);
+    }
+
+    BulkSmellWriter(int projectId, Persistence persistence, CommitIdDictionary commitIds, SmellQueries smellQueries,
+                    int flushSize) {
+        super(projectId, persistence, smellQueries);
+        this.commitIds = commitIds;
+        this.flushSize = flushSize;
+        this.bufferedRows = 0;
+        // The category streams are flushed by this writer, after the smells they reference.
+        this.smellStream = persistence.openCopyStream("smell", SMELL_COLUMNS, flushSize);
+        this.categoryStreams = new EnumMap<>(SmellCategory.class);
+        this.lostCategoryStreams = new EnumMap<>(SmellCategory.class);
+        this.lastCommitIds = new EnumMap<>(SmellCategory.class);
+        this.lastCommitSmells = new EnumMap<>(SmellCategory.class);
+        for (SmellCategory category : SmellCategory.values()) {
+            categoryStreams.put(category, persistence.openCopyStream(category.getName(), CATEGORY_COLUMNS, Integer.MAX_VALUE));
+            lastCommitSmells.put(category, new HashSet<>());
+        }
+        this.smellIds = new HashMap<>();
+        this.reservedIds = new ArrayDeque<>();
+    }
+
+    @Override
+    public int insertSmell(Smell smell) {
+        if (smell.parent != null && smell.parent.id == -1) {
+            // Without its parent identifier we can't rely on the cache.
+            flush();
+            return insertRenamedSmell(smell);
+        }
+
+        SmellIdentity identity = new SmellIdentity(smell);
+        Map<SmellIdentity, Integer> typeSmellIds = getSmellIds(smell.type);
+        Integer smellId = typeSmellIds.get(identity);
+        if (smellId == null) {
+            smellId = reserveSmellId();
+            typeSmellIds.put(identity, smellId);
+            smellStream.addRow(smellId, projectId, smell.instance, smell.type, smell.file, identity.parentId);
+        }
+        return smellId;
+    }
+
+    /**
+     * Insert a smell whose parent identifier is unknown, the parent being looked up by the insertion itself.
+     * <p>
+     * The identifier is returned by the insertion rather than guessed afterwards, as other writers may insert
+     * smells of other types concurrently. It is then cached along with the resolved parent identifier.
+     *
+     * @param smell The smell to insert.
+     * @return The smell identifier.
+     */
+    private int insertRenamedSmell(Smell smell) {
+        List<Map<String, Object>> result = persistence.query(
+                smellQueries.smellInsertionReturningStatement(projectId, smell));
+        if (result.isEmpty()) {
+            // The smell already exists, nothing is returned on conflict.
+            result = persistence.query(smellQueries.smellIdQuery(projectId, smell));
+            return (int) result.get(0).get("id");
+        }
+        int smellId = (int) result.get(0).get("id");
+        getSmellIds(smell.type).put(new SmellIdentity(smell.type, smell.instance, smell.file,
+                (Integer) result.get(0).get("renamed_from")), smellId);
+        return smellId;
+    }
+
+    @Override
+    public void insertCategory(Smell smell, Commit commit, SmellCategory category) {
+        int commitId = commitIds.idOf(commit.sha);
+        if (commitId == CommitIdDictionary.NO_ID) {
+            logger.warn("[" + projectId + "] Unable to find commit " + commit.sha + ", skipping " +
+                    category.getName() + " of smell: " + smell);
+            return;
+        }
+
+        Set<Integer> writtenSmells = lastCommitSmells.get(category);
+        Integer lastCommitId = lastCommitIds.get(category);
+        if (lastCommitId == null || lastCommitId != commitId) {
+            lastCommitIds.put(category, commitId);
+            writtenSmells.clear();
+        }
+        if (writtenSmells.add(smell.id)) {
+            categoryStreams.get(category).addRow(smell.id, projectId, commitId);
+            rowAdded();
+        }
+    }
+
+    @Override
+    public void insertLostCategory(Smell smell, SmellCategory category, int since, int until) {
+        int smellId = smell.id;
+        if (smellId == -1 && (smell.parent == null || smell.parent.id > -1)) {
+            smellId = getSmellIds(smell.type).getOrDefault(new SmellIdentity(smell), -1);
+        }
+        if (smellId == -1) {
+            flush();
+            super.insertLostCategory(smell, category, since, until);
+            return;
+        }
+
+        CopyStream stream = lostCategoryStreams.get(category);
+        if (stream == null) {
+            stream = persistence.openCopyStream("lost_" + category.getName(), LOST_CATEGORY_COLUMNS, Integer.MAX_VALUE);
+            lostCategoryStreams.put(category, stream);
+        }
+        stream.addRow(smellId, projectId, since, until);
+        rowAdded();
+    }
+
+    private void rowAdded() {
+        if (++bufferedRows >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the buffered smells, then the buffered categories.
+     */
+    private void flush() {
+        smellStream.flush();
+        for (CopyStream stream : categoryStreams.values()) {
+            stream.flush();
+        }
+        for (CopyStream stream : lostCategoryStreams.values()) {
+            stream.flush();
+        }
+        bufferedRows = 0;
+    }
+
+    /**
+     * Load the project smells identifiers of a type on first use, to handle already persisted smells.
+     *
+     * @param smellType The smell type.
+     * @return The smells identifiers of this type by unicity tuple.
+     */
+    private Map<SmellIdentity, Integer> getSmellIds(String smellType) {
+        Map<SmellIdentity, Integer> typeSmellIds = smellIds.get(smellType);
+        if (typeSmellIds == null) {
+            typeSmellIds = new HashMap<>();
+            List<Map<String, Object>> result = persistence.query(smellQueries.smellIdentitiesQuery(projectId, smellType));
+            for (Map<String, Object> row : result) {
+                typeSmellIds.put(new SmellIdentity((String) row.get("type"), (String) row.get("instance"),
+                        (String) row.get("file"), (Integer) row.get("renamed_from")), (int) row.get("id"));
+            }
+            smellIds.put(smellType, typeSmellIds);
+            logger.debug("[" + projectId + "] Loaded " + typeSmellIds.size() + " smell identifiers of type: "
+                    + smellType);
+        }
+        return typeSmellIds;
+    }
+
+    private int reserveSmellId() {
+        if (reservedIds.isEmpty()) {
+            for (Map<String, Object> row : persistence.query(smellQueries.reserveSmellIdsQuery(ID_BLOCK_SIZE))) {
+                reservedIds.add(((Number) row.get("id")).intValue());
+            }
+        }
+        return reservedIds.poll();
+    }
+
+    /**
+     * Unicity tuple of a smell, as defined by the smell table unique indexes.
+     */
+    private static final class SmellIdentity {
+        private final String type;
+        private final String instance;
+        private final String file;
+        private final Integer parentId;
+
+        SmellIdentity(Smell smell) {
+            this(smell.type, smell.instance, smell.file, smell.parent == null ? null : smell.parent.id);
+        }
+
+        SmellIdentity(String type, String instance, String file, Integer parentId) {
+            this.type = type;
+            this.instance = instance;
+            this.file = file;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SmellIdentity that = (SmellIdentity) o;
+            return Objects.equals(type, that.type) &&
+                    Objects.equals(instance, that.instance) &&
+                    Objects.equals(file, that.file) &&
+                    Objects.equals(parentId, that.parentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, instance, file, parentId);
+        }
+    }
+}
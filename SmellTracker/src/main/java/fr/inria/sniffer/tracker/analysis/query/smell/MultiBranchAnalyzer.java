@@ -42,7 +42,14 @@ class MultiBranchAnalyzer extends BranchAnalyzer {
 
     MultiBranchAnalyzer(int projectId, Persistence persistence, SmellDuplicationChecker duplicationChecker,
                         CommitQueries commitQueries, SmellQueries smellQueries, BranchQueries branchQueries, int branchId, String parentCommitSha) {
-        super(projectId, persistence, duplicationChecker, commitQueries, smellQueries, new MultiBranchGapHandler(projectId, branchId, persistence, branchQueries), parentCommitSha);
+        this(projectId, persistence, duplicationChecker, commitQueries, branchQueries, branchId, parentCommitSha,
+                new StatementSmellWriter(projectId, persistence, smellQueries));
+    }
+
+    MultiBranchAnalyzer(int projectId, Persistence persistence, SmellDuplicationChecker duplicationChecker,
+                        CommitQueries commitQueries, BranchQueries branchQueries, int branchId, String parentCommitSha,
+                        SmellWriter smellWriter) {
+        super(projectId, persistence, duplicationChecker, commitQueries, new MultiBranchGapHandler(projectId, branchId, persistence, branchQueries), parentCommitSha, smellWriter);
         this.branchQueries = branchQueries;
         this.branchId = branchId;
     }
@@ -0,0 +1,172 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.CopyStream;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Store the smells presence as intervals of consecutive branch ordinals,
+ * instead of a row per commit in the smell_presence table.
+ * <p>
+ * An interval is extended as long as the smell is found in the next commit of its branch,
+ * and written in the smell_presence_interval table once the smell misses a commit,
+ * the branch ends, or on {@link #flush()}.
+ * The view smell_presence_all reconstructs the presence of each commit from both storages.
+ */
+class PresenceIntervalWriter {
+    private static final String INTERVAL_COLUMNS = "smell_id, project_id, branch_id, first_ordinal, last_ordinal";
+
+    private final int projectId;
+    private final CopyStream intervalStream;
+
+    // Last interval of each smell, by branch identifier then smell identifier.
+    private final Map<Integer, Map<Integer, Interval>> branchIntervals;
+
+    /**
+     * Open the interval stream, this must be called after opening the smell stream
+     * for the intervals to be sent after the smells they reference.
+     *
+     * @param projectId   The project identifier.
+     * @param persistence The persistence to write into.
+     */
+    PresenceIntervalWriter(int projectId, Persistence persistence) {
+        this.projectId = projectId;
+        // The stream is only sent on commit, thus always after the smell stream.
+        this.intervalStream = persistence.openCopyStream("smell_presence_interval", INTERVAL_COLUMNS, Integer.MAX_VALUE);
+        this.branchIntervals = new HashMap<>();
+    }
+
+    /**
+     * Wrap a {@link SmellWriter} to store the presence of the given branch as intervals.
+     *
+     * @param branchId The branch identifier.
+     * @param writer   The writer used for smells and every other category.
+     * @return A {@link SmellWriter} dedicated to the branch.
+     */
+    SmellWriter forBranch(int branchId, SmellWriter writer) {
+        return new BranchPresenceWriter(branchId, writer);
+    }
+
+    /**
+     * Add the presence of a smell in the commit at the given branch ordinal.
+     *
+     * @param branchId The branch identifier.
+     * @param smellId  The smell identifier.
+     * @param ordinal  The commit ordinal in the branch.
+     */
+    void addPresence(int branchId, int smellId, int ordinal) {
+        Map<Integer, Interval> intervals = branchIntervals.computeIfAbsent(branchId, k -> new HashMap<>());
+        Interval interval = intervals.get(smellId);
+        if (interval == null) {
+            intervals.put(smellId, new Interval(ordinal));
+        } else if (ordinal == interval.last + 1) {
+            interval.last = ordinal;
+        } else if (ordinal != interval.last) {
+            write(branchId, smellId, interval);
+            interval.first = ordinal;
+            interval.last = ordinal;
+        }
+    }
+
+    /**
+     * Write every pending interval, making the presence of the analyzed commits readable after the next commit.
+     * <p>
+     * The intervals stay open, a smell still present in the next commit will start a new interval.
+     */
+    void flush() {
+        for (Map.Entry<Integer, Map<Integer, Interval>> branch : branchIntervals.entrySet()) {
+            for (Map.Entry<Integer, Interval> smell : branch.getValue().entrySet()) {
+                write(branch.getKey(), smell.getKey(), smell.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write the pending intervals of a branch and forget about it.
+     *
+     * @param branchId The branch identifier.
+     */
+    void endBranch(int branchId) {
+        Map<Integer, Interval> intervals = branchIntervals.remove(branchId);
+        if (intervals != null) {
+            for (Map.Entry<Integer, Interval> smell : intervals.entrySet()) {
+                write(branchId, smell.getKey(), smell.getValue());
+            }
+        }
+    }
+
+    private void write(int branchId, int smellId, Interval interval) {
+        if (interval.first <= interval.last) {
+            intervalStream.addRow(smellId, projectId, branchId, interval.first, interval.last);
+            // Nothing is pending anymore, but the interval can still be continued.
+            interval.first = interval.last + 1;
+        }
+    }
+
+    /**
+     * Presence of a smell in consecutive commits of a branch, pending if first is not after last.
+     */
+    private static final class Interval {
+        private int first;
+        private int last;
+
+        Interval(int ordinal) {
+            this.first = ordinal;
+            this.last = ordinal;
+        }
+    }
+
+    /**
+     * {@link SmellWriter} storing the presence of a single branch as intervals.
+     */
+    private final class BranchPresenceWriter implements SmellWriter {
+        private final int branchId;
+        private final SmellWriter writer;
+
+        BranchPresenceWriter(int branchId, SmellWriter writer) {
+            this.branchId = branchId;
+            this.writer = writer;
+        }
+
+        @Override
+        public int insertSmell(Smell smell) {
+            return writer.insertSmell(smell);
+        }
+
+        @Override
+        public void insertCategory(Smell smell, Commit commit, SmellCategory category) {
+            if (category == SmellCategory.PRESENCE) {
+                addPresence(branchId, smell.id, commit.getBranchOrdinal());
+            } else {
+                writer.insertCategory(smell, commit, category);
+            }
+        }
+
+        @Override
+        public void insertLostCategory(Smell smell, SmellCategory category, int since, int until) {
+            writer.insertLostCategory(smell, category, since, until);
+        }
+    }
+}
@@ -18,85 +18,170 @@
 package fr.inria.sniffer.tracker.analysis.query.smell;
 
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.QueryCursor;
+import fr.inria.sniffer.tracker.analysis.persistence.ResultRow;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
-import fr.inria.sniffer.detector.neo4j.IsClassExistingQuery;
-import fr.inria.sniffer.detector.neo4j.IsMethodExistingQuery;
 import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SmellDeletionQuery implements Query {
     private static final Logger logger = LoggerFactory.getLogger(SmellDeletionQuery.class.getName());
+    private static final int FETCH_SIZE = 1000;
+    // Maximum number of instances checked by a single query.
+    static final int GROUP_SIZE = 1000;
+    // Number of groups by thread checked ahead of their persistence.
+    private static final int PIPELINE_DEPTH = 4;
+    // Number of refactorings updated by a single statement.
+    private static final int UPDATE_SIZE = 1000;
+    private static final String INSTANCE = "instance";
+    // Same lookups as IsMethodExistingQuery and IsClassExistingQuery, for multiple instances at once.
+    private static final String METHOD_EXISTENCE_STATEMENT = "UNWIND $instances AS instance " +
+            "MATCH (m:Method {app_key: $sha, full_name: instance}) RETURN DISTINCT instance AS " + INSTANCE;
+    private static final String CLASS_EXISTENCE_STATEMENT = "UNWIND $instances AS instance " +
+            "MATCH (cl:Class {app_key: $sha, name: instance}) RETURN DISTINCT instance AS " + INSTANCE;
     private final String paprikaDB;
     private final Persistence persistence;
     private final int projectId;
     private final SmellQueries smellQueries;
+    private final int threads;
 
     public SmellDeletionQuery(int projectId, String paprikaDB, Persistence persistence,
                               SmellQueries smellQueries) {
+        this(projectId, paprikaDB, persistence, smellQueries, 1);
+    }
+
+    /**
+     * @param threads Number of threads querying the SmellDetector database at once.
+     */
+    public SmellDeletionQuery(int projectId, String paprikaDB, Persistence persistence,
+                              SmellQueries smellQueries, int threads) {
         this.projectId = projectId;
         this.paprikaDB = paprikaDB;
         this.persistence = persistence;
         this.smellQueries = smellQueries;
+        this.threads = threads;
     }
 
     @Override
     public void query() throws QueryException {
-        logger.info("[" + projectId + "] Starting Smells deletion query");
+        logger.info("[" + projectId + "] Starting Smells deletion query on " + threads + " threads");
         QueryEngine queryEngine = new QueryEngine(paprikaDB);
+        analyzeRefactorings(queryEngine);
+        queryEngine.shutDown();
+    }
 
+    /**
+     * Check the deletion of every refactored smell of the project, and persist it.
+     *
+     * @param queryEngine The Harissa's neo4j {@link QueryEngine}.
+     * @throws QueryException If interrupted while waiting for the checks.
+     */
+    void analyzeRefactorings(QueryEngine queryEngine) throws QueryException {
         String refactoredQuery = smellQueries.allRefactoredInstancesWithSha1(projectId);
-        List<Map<String, Object>> result = persistence.query(refactoredQuery);
 
-        int refactoringId;
-        String instance;
-        String type;
-        String sha1;
-        logger.info("[" + projectId + "] Found " + result.size() + " refactoring to analyze");
+        // Read before any update, so that each commit of the deletions is durable on its own.
+        List<Refactoring> refactorings = loadRefactorings(refactoredQuery);
+        logger.info("[" + projectId + "] Found " + refactorings.size() + " refactoring to analyze");
+
+        // The refactorings are ordered by commit, thus grouped while iterating on them.
+        Map<String, RefactoringGroup> commitGroups = new LinkedHashMap<>();
+        String currentSha1 = null;
 
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Map<Integer, Boolean>>> pending = new ArrayDeque<>();
+        Map<Integer, Boolean> deletions = new HashMap<>();
         int index = 0;
-        for (Map<String, Object> refactored : result) {
-            refactoringId = (int) refactored.get("id");
-            sha1 = (String) refactored.get("sha1");
-            instance = (String) refactored.get("instance");
-            type = (String) refactored.get("type");
-            logger.debug("[" + projectId + "] Checking smell: " + instance + " (" + type + ", " + sha1 + ")");
-
-            try {
-                boolean deleted = isDeleted(queryEngine, sha1, instance, type);
-                logger.debug("[" + projectId + "] Setting smell as deleted: " + deleted + " - sha1: " + sha1
-                        + " - instance: " + instance + " (" + type + ")");
-                persistence.addStatements(smellQueries.setAsDeleted(projectId, refactoringId, deleted));
-            } catch (QueryException e) {
-                logger.warn("[" + projectId + "] Unable to set deleted", e);
-            }
+        try {
+            for (Refactoring refactored : refactorings) {
+                logger.debug("[" + projectId + "] Checking smell: " + refactored.instance + " (" + refactored.type
+                        + ", " + refactored.sha1 + ")");
+
+                String statement = existenceStatement(refactored.type);
+                if (statement == null) {
+                    logger.warn("[" + projectId + "] Unable to set deleted, could not recognize smell type: "
+                            + refactored.type);
+                    continue;
+                }
+                if (!Objects.equals(refactored.sha1, currentSha1)) {
+                    for (RefactoringGroup group : commitGroups.values()) {
+                        submit(executor, pending, queryEngine, group);
+                    }
+                    commitGroups.clear();
+                    currentSha1 = refactored.sha1;
+                }
+                RefactoringGroup group = commitGroups.computeIfAbsent(statement,
+                        s -> new RefactoringGroup(refactored.sha1, s));
+                group.add(refactored.id, refactored.instance);
+                if (group.size() >= GROUP_SIZE) {
+                    submit(executor, pending, queryEngine, commitGroups.remove(statement));
+                }
 
-            if (++index % 1000 == 0) {
-                logger.info("[" + projectId + "] Persisting smells deletion (" + index + ")");
-                persistence.commit();
+                while (pending.size() >= threads * PIPELINE_DEPTH) {
+                    index += persistDeletions(deletions, awaitDeletions(pending.poll()), false);
+                }
+            }
+            for (RefactoringGroup group : commitGroups.values()) {
+                submit(executor, pending, queryEngine, group);
+            }
+            while (!pending.isEmpty()) {
+                index += persistDeletions(deletions, awaitDeletions(pending.poll()), false);
             }
+            persistDeletions(deletions, Collections.emptyMap(), true);
+        } finally {
+            executor.shutdownNow();
         }
-        persistence.commit();
+        logger.info("[" + projectId + "] Analyzed " + index + " refactoring");
+    }
 
-        queryEngine.shutDown();
+    /**
+     * Read every refactoring to check, closing the cursor before returning.
+     *
+     * @param refactoredQuery The query of the refactored smells, ordered by commit.
+     * @return The refactorings, in the query order.
+     */
+    private List<Refactoring> loadRefactorings(String refactoredQuery) {
+        List<Refactoring> refactorings = new ArrayList<>();
+        try (QueryCursor cursor = persistence.stream(refactoredQuery, FETCH_SIZE)) {
+            for (ResultRow refactored : cursor) {
+                refactorings.add(new Refactoring(refactored.getInt("id"), refactored.getString("sha1"),
+                        refactored.getString("instance"), refactored.getString("type")));
+            }
+        }
+        return refactorings;
     }
 
     /**
-     * Tells if the entity holding the smell has been deleted in the commit.
+     * Select the statement checking the existence of the entity holding a smell.
      *
-     * @param queryEngine The Harissa's neo4j {@link QueryEngine}.
-     * @param sha1        The commit sha1.
-     * @param instance    The smell instance name, referencing its holding entity.
-     * @param type        The smell type to check.
-     * @return True if the smell has been deleted, False otherwise.
+     * @param type The smell type to check.
+     * @return The statement matching this smell type, null if the smell type is unknown.
      */
-    private boolean isDeleted(QueryEngine queryEngine, String sha1, String instance, String type) throws QueryException {
-        fr.inria.sniffer.detector.neo4j.Query query;
+    private static String existenceStatement(String type) {
+        if (type == null) {
+            return null;
+        }
         switch (type) {
             case "HMU":
             case "IOD":
@@ -105,13 +190,121 @@ public class SmellDeletionQuery implements Query {
             case "UCS":
             case "UHA":
             case "UIO":
-                query = new IsMethodExistingQuery(queryEngine, sha1, instance);
-                return query.fetchResult(false).isEmpty();
+                return METHOD_EXISTENCE_STATEMENT;
             case "LIC":
             case "NLMR":
-                query = new IsClassExistingQuery(queryEngine, sha1, instance);
-                return query.fetchResult(false).isEmpty();
+                return CLASS_EXISTENCE_STATEMENT;
+        }
+        return null;
+    }
+
+    private void submit(ExecutorService executor, Deque<Future<Map<Integer, Boolean>>> pending,
+                        QueryEngine queryEngine, RefactoringGroup group) {
+        pending.add(executor.submit(() -> checkDeletions(queryEngine, group)));
+    }
+
+    /**
+     * Tells which entities holding the smells of a group have been deleted in their commit.
+     *
+     * @param queryEngine The Harissa's neo4j {@link QueryEngine}.
+     * @param group       The refactorings to check, all sharing the same commit and entity kind.
+     * @return The deleted value of each refactoring, by refactoring id.
+     */
+    private Map<Integer, Boolean> checkDeletions(QueryEngine queryEngine, RefactoringGroup group) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("sha", group.sha1);
+        parameters.put("instances", group.instances);
+
+        List<Map<String, Object>> rows;
+        GraphDatabaseService graphDatabaseService = queryEngine.getGraphDatabaseService();
+        try (Transaction ignored = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute(group.statement, parameters);
+            rows = queryEngine.toMap(result);
+        }
+        Set<Object> existing = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            existing.add(row.get(INSTANCE));
+        }
+
+        Map<Integer, Boolean> deletions = new HashMap<>();
+        for (int i = 0; i < group.ids.size(); i++) {
+            boolean deleted = !existing.contains(group.instances.get(i));
+            logger.debug("[" + projectId + "] Setting smell as deleted: " + deleted + " - sha1: " + group.sha1
+                    + " - instance: " + group.instances.get(i));
+            deletions.put(group.ids.get(i), deleted);
+        }
+        return deletions;
+    }
+
+    private Map<Integer, Boolean> awaitDeletions(Future<Map<Integer, Boolean>> future) throws QueryException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryException(logger.getName(), e);
+        } catch (ExecutionException e) {
+            logger.warn("[" + projectId + "] Unable to set deleted", e.getCause());
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Buffer the checked refactorings, and update them with a single statement once enough are buffered.
+     *
+     * @param buffer  The refactorings waiting for their update.
+     * @param checked The newly checked refactorings.
+     * @param flush   Update all the buffered refactorings.
+     * @return The number of newly checked refactorings.
+     */
+    private int persistDeletions(Map<Integer, Boolean> buffer, Map<Integer, Boolean> checked, boolean flush) {
+        buffer.putAll(checked);
+        if (!buffer.isEmpty() && (flush || buffer.size() >= UPDATE_SIZE)) {
+            logger.info("[" + projectId + "] Persisting smells deletion (" + buffer.size() + ")");
+            persistence.addStatements(smellQueries.setAsDeleted(projectId, buffer));
+            persistence.commit();
+            buffer.clear();
+        }
+        return checked.size();
+    }
+
+    /**
+     * Refactored smell instance to check, in a given commit.
+     */
+    private static final class Refactoring {
+        final int id;
+        final String sha1;
+        final String instance;
+        final String type;
+
+        Refactoring(int id, String sha1, String instance, String type) {
+            this.id = id;
+            this.sha1 = sha1;
+            this.instance = instance;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Refactored smells of a single commit, held by the same kind of entity.
+     */
+    private static final class RefactoringGroup {
+        final String sha1;
+        final String statement;
+        final List<Integer> ids = new ArrayList<>();
+        final List<String> instances = new ArrayList<>();
+
+        RefactoringGroup(String sha1, String statement) {
+            this.sha1 = sha1;
+            this.statement = statement;
+        }
+
+        void add(int refactoringId, String instance) {
+            ids.add(refactoringId);
+            instances.add(instance);
+        }
+
+        int size() {
+            return ids.size();
         }
-        throw new QueryException(logger.getName(), "Could not recognize smell type");
     }
 }
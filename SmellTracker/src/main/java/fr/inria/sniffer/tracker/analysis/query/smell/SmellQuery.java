@@ -17,6 +17,10 @@
  */
 package fr.inria.sniffer.tracker.analysis.query.smell;
 
+import fr.inria.sniffer.tracker.analysis.AnalysisOptions;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitTopology;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
 import fr.inria.sniffer.tracker.analysis.query.Query;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
@@ -39,7 +43,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * Retrieve all the smells of a given project for each commits, through Paprika.
@@ -52,15 +66,46 @@ public class SmellQuery implements Query {
     private BranchQueries branchQueries;
     private SmellQueries smellQueries;
     private CommitQueries commitQueries;
+    private CommitIdDictionary commitIds;
+    private final boolean presenceIntervals;
+    private final AnalysisCheckpoint checkpoint;
+    private final int threads;
+    private final Supplier<Persistence> persistences;
+    private final boolean fused;
+    private final int flushSize;
 
     public SmellQuery(int projectId, String paprikaDB, Persistence persistence,
                       CommitQueries commitQueries, SmellQueries smellQueries, BranchQueries branchQueries) {
+        this(projectId, paprikaDB, persistence, commitQueries, smellQueries, branchQueries,
+                new CommitIdDictionary(projectId, persistence, commitQueries), AnalysisOptions.DEFAULT, null, null);
+    }
+
+    /**
+     * @param options      Whether the smells presence is stored as intervals of consecutive branch commits
+     *                     rather than one row per commit, and how the smell types are analyzed:
+     *                     in a single pass merging their Paprika streams if fusedSmells is set,
+     *                     else smellThreads types at once, and the smells COPY streams flush size.
+     * @param checkpoint   If not null, only analyze the smells of the commits missing from this previous analysis.
+     * @param persistences Open a new {@link Persistence} for each thread analyzing smell types in parallel,
+     *                     only used with more than one thread.
+     */
+    public SmellQuery(int projectId, String paprikaDB, Persistence persistence,
+                      CommitQueries commitQueries, SmellQueries smellQueries, BranchQueries branchQueries,
+                      CommitIdDictionary commitIds, AnalysisOptions options, AnalysisCheckpoint checkpoint,
+                      Supplier<Persistence> persistences) {
         this.projectId = projectId;
         this.paprikaDB = paprikaDB;
         this.persistence = persistence;
         this.commitQueries = commitQueries;
         this.smellQueries = smellQueries;
         this.branchQueries = branchQueries;
+        this.commitIds = commitIds;
+        this.presenceIntervals = options.isPresenceIntervals();
+        this.checkpoint = checkpoint;
+        this.threads = options.getSmellThreads();
+        this.persistences = persistences;
+        this.fused = options.isFusedSmells();
+        this.flushSize = options.getCopyFlushSize();
     }
 
     private List<fr.inria.sniffer.detector.neo4j.Query> queries(QueryEngine queryEngine) {
@@ -82,19 +127,172 @@ public class SmellQuery implements Query {
         logger.info("[" + projectId + "] Starting Smells insertion");
         QueryEngine queryEngine = new QueryEngine(paprikaDB);
         SmellDuplicationChecker duplicationChecker = new SmellDuplicationChecker(projectId, persistence, queryEngine);
+        // Shared by every smell type, loaded once the branches are persisted.
+        CommitTopology topology = new CommitTopology(projectId, persistence, branchQueries);
+        analyzeSmellTypes(queries(queryEngine), duplicationChecker, topology);
+        queryEngine.shutDown();
+    }
 
-        for (fr.inria.sniffer.detector.neo4j.Query query : queries(queryEngine)) {
-            logger.info("[" + projectId + "] => Querying Smells of type: " + query.getSmellName());
+    /**
+     * Analyze the given smell types, fused, in parallel, or one after the other depending on the options.
+     *
+     * @param queries            The smell types queries.
+     * @param duplicationChecker The shared {@link SmellDuplicationChecker}.
+     * @param topology           The shared {@link CommitTopology}.
+     * @throws QueryException If any smell type analysis failed.
+     */
+    void analyzeSmellTypes(List<fr.inria.sniffer.detector.neo4j.Query> queries,
+                           SmellDuplicationChecker duplicationChecker, CommitTopology topology)
+            throws QueryException {
+        if (presenceIntervals) {
+            logger.info("[" + projectId + "] Storing smells presence as intervals");
+        }
 
-            Result result = query.streamResult(true, true);
-            logger.trace("[" + projectId + "]   ==> Found smells: " + result);
+        if (fused) {
+            queryFused(queries, duplicationChecker, topology);
+        } else if (threads > 1 && persistences != null) {
+            queryInParallel(queries, duplicationChecker, topology);
+        } else {
+            SmellWriter smellWriter = new BulkSmellWriter(projectId, persistence, commitIds, smellQueries, flushSize);
+            PresenceIntervalWriter presenceWriter = presenceWriter(persistence);
+            for (fr.inria.sniffer.detector.neo4j.Query query : queries) {
+                analyzeSmellType(query, persistence, smellWriter, presenceWriter, duplicationChecker, topology);
+            }
+        }
+    }
 
-            new BranchAwareSmellTypeAnalysis(projectId, persistence, result, query.getSmellName(), duplicationChecker, commitQueries, smellQueries, branchQueries).query();
+    /**
+     * Analyze the smell types on a pool of threads, each type with its own writers.
+     * <p>
+     * The smell types are independent, since the smell identity includes its type.
+     * Each thread opens a single {@link Persistence}, thus at most one connection per thread,
+     * and analyzes the smell types left until none remains.
+     * The threads share the duplication checker and the commits dictionaries, which are only read,
+     * and this method returns once every smell type is persisted.
+     *
+     * @param queries            The smell types queries.
+     * @param duplicationChecker The shared {@link SmellDuplicationChecker}.
+     * @param topology           The shared {@link CommitTopology}.
+     * @throws QueryException If any smell type analysis failed.
+     */
+    private void queryInParallel(List<fr.inria.sniffer.detector.neo4j.Query> queries,
+                                 SmellDuplicationChecker duplicationChecker, CommitTopology topology)
+            throws QueryException {
+        logger.info("[" + projectId + "] Querying smell types on " + threads + " threads");
+        // The other connections must see the commits and branches,
+        // and the lazily loaded dictionaries are filled before being shared.
+        persistence.commit();
+        commitIds.load();
+        topology.load();
 
-            // Calling commit for each smell type to avoid too big request.
-            persistence.commit();
+        Queue<fr.inria.sniffer.detector.neo4j.Query> pending = new ConcurrentLinkedQueue<>(queries);
+        int workers = Math.min(threads, queries.size());
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<Void>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                tasks.add(executor.submit(() -> {
+                    Persistence typePersistence = persistences.get();
+                    try {
+                        fr.inria.sniffer.detector.neo4j.Query query;
+                        while ((query = pending.poll()) != null) {
+                            SmellWriter smellWriter = new BulkSmellWriter(projectId, typePersistence, commitIds,
+                                    smellQueries, flushSize);
+                            analyzeSmellType(query, typePersistence, smellWriter, presenceWriter(typePersistence),
+                                    duplicationChecker, topology);
+                        }
+                    } finally {
+                        typePersistence.close();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> task : tasks) {
+                awaitSmellType(task);
+            }
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        queryEngine.shutDown();
+    /**
+     * Analyze every smell type in a single pass, dispatching the instances of the merged
+     * Paprika streams to the analysis of their type.
+     * <p>
+     * The branches parent and last commits are shared by the analyses.
+     * Each type keeps its own writers, their caches only following one type at a time.
+     * <p>
+     * Unlike the other modes, committing after each smell type, the persistence is only committed
+     * when a branch analysis is initialized and once every type is analyzed. The COPY streams are still
+     * sent on reaching their flush size, but the whole project may be held in a single transaction.
+     *
+     * @param queries            The smell types queries.
+     * @param duplicationChecker The shared {@link SmellDuplicationChecker}.
+     * @param topology           The shared {@link CommitTopology}.
+     * @throws QueryException If anything goes wrong.
+     */
+    private void queryFused(List<fr.inria.sniffer.detector.neo4j.Query> queries,
+                            SmellDuplicationChecker duplicationChecker, CommitTopology topology)
+            throws QueryException {
+        logger.info("[" + projectId + "] Querying all smell types in a single pass");
+        BranchBoundaries boundaries = new BranchBoundaries(projectId, persistence, branchQueries);
+        List<Iterator<Map<String, Object>>> streams = new ArrayList<>();
+        List<BranchAwareSmellTypeAnalysis> analyses = new ArrayList<>();
+        for (fr.inria.sniffer.detector.neo4j.Query query : queries) {
+            streams.add(query.streamResult(true, true));
+            SmellWriter smellWriter = new BulkSmellWriter(projectId, persistence, commitIds, smellQueries, flushSize);
+            analyses.add(new BranchAwareSmellTypeAnalysis(projectId, persistence,
+                    Collections.<Map<String, Object>>emptyIterator(), query.getSmellName(), duplicationChecker,
+                    commitQueries, smellQueries, branchQueries, smellWriter, presenceWriter(persistence), topology,
+                    checkpoint, boundaries));
+        }
+
+        for (BranchAwareSmellTypeAnalysis analysis : analyses) {
+            analysis.start();
+        }
+        SmellStreamMerge instances = new SmellStreamMerge(streams);
+        while (instances.hasNext()) {
+            SmellStreamMerge.Entry entry = instances.next();
+            analyses.get(entry.stream).notifyInstance(entry.instance);
+        }
+        for (BranchAwareSmellTypeAnalysis analysis : analyses) {
+            analysis.end();
+        }
+        persistence.commit();
+    }
+
+    private void awaitSmellType(Future<Void> task) throws QueryException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryException(logger.getName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryException) {
+                throw (QueryException) e.getCause();
+            }
+            throw new QueryException(logger.getName(), e.getCause());
+        }
+    }
+
+    private PresenceIntervalWriter presenceWriter(Persistence persistence) {
+        return presenceIntervals ? new PresenceIntervalWriter(projectId, persistence) : null;
+    }
+
+    private void analyzeSmellType(fr.inria.sniffer.detector.neo4j.Query query, Persistence persistence,
+                                  SmellWriter smellWriter, PresenceIntervalWriter presenceWriter,
+                                  SmellDuplicationChecker duplicationChecker, CommitTopology topology)
+            throws QueryException {
+        logger.info("[" + projectId + "] => Querying Smells of type: " + query.getSmellName());
+
+        Result result = query.streamResult(true, true);
+        logger.trace("[" + projectId + "]   ==> Found smells: " + result);
+
+        new BranchAwareSmellTypeAnalysis(projectId, persistence, result, query.getSmellName(), duplicationChecker,
+                commitQueries, smellQueries, branchQueries, smellWriter, presenceWriter, topology, checkpoint,
+                new BranchBoundaries(projectId, persistence, branchQueries)).query();
+
+        // Calling commit for each smell type to avoid too big request.
+        persistence.commit();
     }
 }
@@ -0,0 +1,89 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merge the smell instances streams of several smell types into a single stream, ordered by commit number.
+ * <p>
+ * Each stream must already be ordered by commit number. The instances of a same commit are given stream
+ * after stream, each stream keeping its own order.
+ */
+class SmellStreamMerge implements Iterator<SmellStreamMerge.Entry> {
+    private static final String COMMIT_NUMBER = "commit_number";
+
+    private final List<? extends Iterator<Map<String, Object>>> streams;
+    // Next instance of each non exhausted stream.
+    private final PriorityQueue<Entry> heads;
+
+    /**
+     * @param streams The smell instances streams, ordered by commit number.
+     */
+    SmellStreamMerge(List<? extends Iterator<Map<String, Object>>> streams) {
+        this.streams = streams;
+        this.heads = new PriorityQueue<>(Math.max(1, streams.size()),
+                Comparator.comparingInt((Entry entry) -> entry.commitNumber).thenComparingInt(entry -> entry.stream));
+        for (int stream = 0; stream < streams.size(); stream++) {
+            advance(stream);
+        }
+    }
+
+    private void advance(int stream) {
+        Iterator<Map<String, Object>> instances = streams.get(stream);
+        if (instances.hasNext()) {
+            heads.add(new Entry(stream, instances.next()));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Entry next() {
+        Entry entry = heads.poll();
+        if (entry == null) {
+            throw new NoSuchElementException();
+        }
+        advance(entry.stream);
+        return entry;
+    }
+
+    /**
+     * A smell instance and the index of its stream.
+     */
+    static final class Entry {
+        final int stream;
+        final Map<String, Object> instance;
+        private final int commitNumber;
+
+        private Entry(int stream, Map<String, Object> instance) {
+            this.stream = stream;
+            this.instance = instance;
+            Integer commitNumber = (Integer) instance.get(COMMIT_NUMBER);
+            this.commitNumber = commitNumber == null ? -1 : commitNumber;
+        }
+    }
+}
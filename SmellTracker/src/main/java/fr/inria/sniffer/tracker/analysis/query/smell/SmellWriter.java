@@ -0,0 +1,54 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+
+/**
+ * Persist the {@link Smell} instances and categories found by a {@link BranchAnalyzer}.
+ */
+interface SmellWriter {
+    /**
+     * Insert the smell instance if it does not exist yet.
+     *
+     * @param smell The smell to insert.
+     * @return The smell identifier.
+     */
+    int insertSmell(Smell smell);
+
+    /**
+     * Insert the smell into a category for the given commit.
+     *
+     * @param smell    The smell to insert, which must be identified.
+     * @param commit   The commit to insert into.
+     * @param category The table category, either SmellPresence, SmellIntroduction, or SmellRefactor.
+     */
+    void insertCategory(Smell smell, Commit commit, SmellCategory category);
+
+    /**
+     * Insert the smell into a lost category.
+     *
+     * @param smell    The smell to insert.
+     * @param category The table category, either SmellIntroduction, or SmellRefactor.
+     * @param since    The lower ordinal of the interval in which the smell it lost.
+     * @param until    The upper ordinal of the interval in which the smell it lost.
+     */
+    void insertLostCategory(Smell smell, SmellCategory category, int since, int until);
+}
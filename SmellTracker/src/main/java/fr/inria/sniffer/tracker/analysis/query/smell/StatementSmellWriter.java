@@ -0,0 +1,66 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write every smell and category through a dedicated insertion statement.
+ */
+class StatementSmellWriter implements SmellWriter {
+    protected final int projectId;
+    protected final Persistence persistence;
+    protected final SmellQueries smellQueries;
+
+    StatementSmellWriter(int projectId, Persistence persistence, SmellQueries smellQueries) {
+        this.projectId = projectId;
+        this.persistence = persistence;
+        this.smellQueries = smellQueries;
+    }
+
+    @Override
+    public int insertSmell(Smell smell) {
+        int insertResult = persistence.execute(smellQueries.smellInsertionStatement(projectId, smell));
+        List<Map<String, Object>> result;
+        if (insertResult == 1) {
+            result = persistence.query(smellQueries.lastSmellIdQuery(projectId));
+        } else {
+            result = persistence.query(smellQueries.smellIdQuery(projectId, smell));
+        }
+        return (int) result.get(0).get("id");
+    }
+
+    @Override
+    public void insertCategory(Smell smell, Commit commit, SmellCategory category) {
+        persistence.addStatements(smellQueries.smellCategoryInsertionStatement(projectId, commit.sha, smell, category));
+    }
+
+    @Override
+    public void insertLostCategory(Smell smell, SmellCategory category, int since, int until) {
+        persistence.addStatements(
+                smellQueries.lostSmellCategoryInsertionStatement(projectId, smell, category, since, until)
+        );
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell.duplication;
+
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolve the class qualified names declared in files of a commit, as known by SmellDetector.
+ * <p>
+ * The last resolved names are kept in a bounded LRU cache, since the same file
+ * is looked up for each smell it contains, in each smell type.
+ * On a cache miss, the original files of all renamings in a commit are resolved with a single query.
+ * <p>
+ * Thread safe, the queries are run outside of the cache lock.
+ */
+class QualifiedNameResolver {
+    private static final Logger logger = LoggerFactory.getLogger(QualifiedNameResolver.class.getName());
+    static final String FILE_PATH = "file_path";
+    // Same lookup as QualifiedNameFromFileQuery, for all files of a commit at once.
+    private static final String QUALIFIED_NAMES_STATEMENT = "UNWIND $files AS file " +
+            "MATCH (cl:Class {app_key: $sha, file_path: file}) " +
+            "RETURN file AS " + FILE_PATH + ", cl.name AS " + SmellDuplicationChecker.QUALIFIED_NAME;
+
+    private final QueryEngine queryEngine;
+    // Guarded by this.
+    private final Map<String, String> qualifiedNames;
+
+    /**
+     * @param queryEngine The SmellDetector database to query.
+     * @param cacheSize   Number of resolved (sha, file) pairs to keep in memory.
+     */
+    QualifiedNameResolver(QueryEngine queryEngine, int cacheSize) {
+        this.queryEngine = queryEngine;
+        this.qualifiedNames = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Retrieve the qualified name of the class declared in a file.
+     *
+     * @param sha   The commit to look into.
+     * @param file  The file containing the queried class.
+     * @param batch The renamings whose original files are resolved along with the queried one on a cache miss.
+     * @return The class fully qualified name if found, an empty String if not.
+     */
+    String resolve(String sha, String file, Collection<SmellDuplicationChecker.FileRenameEntry> batch) {
+        String qualifiedName = cached(sha, file);
+        if (qualifiedName != null) {
+            return qualifiedName;
+        }
+
+        Collection<String> files = missingFiles(sha, file, batch);
+        Map<String, String> resolved = fetchQualifiedNames(sha, files);
+        synchronized (this) {
+            for (String missing : files) {
+                qualifiedNames.put(key(sha, missing), resolved.getOrDefault(missing, ""));
+            }
+        }
+
+        qualifiedName = resolved.getOrDefault(file, "");
+        if (qualifiedName.isEmpty()) {
+            logger.warn("Unable to query qualified name on Paprika for file " + file + " on commit " + sha);
+        }
+        return qualifiedName;
+    }
+
+    private synchronized String cached(String sha, String file) {
+        return qualifiedNames.get(key(sha, file));
+    }
+
+    private synchronized Collection<String> missingFiles(String sha, String file,
+                                                         Collection<SmellDuplicationChecker.FileRenameEntry> batch) {
+        Set<String> files = new LinkedHashSet<>();
+        files.add(file);
+        for (SmellDuplicationChecker.FileRenameEntry renaming : batch) {
+            String other = renaming.oldFile;
+            if (!qualifiedNames.containsKey(key(sha, other))) {
+                files.add(other);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Query SmellDetector for the qualified names of multiple files in one commit.
+     *
+     * @param sha   The commit to look into.
+     * @param files The files to resolve.
+     * @return The first qualified name found for each file, missing files have no entry.
+     */
+    private Map<String, String> fetchQualifiedNames(String sha, Collection<String> files) {
+        List<String> paths = new ArrayList<>(files.size());
+        for (String file : files) {
+            // The files are stored by paprika with a leading '/'
+            paths.add("/" + file);
+        }
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("sha", sha);
+        parameters.put("files", paths);
+
+        List<Map<String, Object>> rows;
+        GraphDatabaseService graphDatabaseService = queryEngine.getGraphDatabaseService();
+        try (Transaction ignored = graphDatabaseService.beginTx()) {
+            Result result = graphDatabaseService.execute(QUALIFIED_NAMES_STATEMENT, parameters);
+            rows = queryEngine.toMap(result);
+        }
+
+        Map<String, String> resolved = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            String path = (String) row.get(FILE_PATH);
+            Object qualifiedName = row.get(SmellDuplicationChecker.QUALIFIED_NAME);
+            if (path != null && qualifiedName != null) {
+                resolved.putIfAbsent(path.startsWith("/") ? path.substring(1) : path, (String) qualifiedName);
+            }
+        }
+        return resolved;
+    }
+
+    private static String key(String sha, String file) {
+        return sha + ":" + file;
+    }
+}
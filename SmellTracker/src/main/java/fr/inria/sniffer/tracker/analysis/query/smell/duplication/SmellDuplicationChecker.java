@@ -21,13 +21,13 @@ import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
-import fr.inria.sniffer.detector.neo4j.QualifiedNameFromFileQuery;
+import fr.inria.sniffer.tracker.analysis.persistence.QueryCursor;
+import fr.inria.sniffer.tracker.analysis.persistence.ResultRow;
 import fr.inria.sniffer.detector.neo4j.QueryEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -43,11 +43,18 @@ public class SmellDuplicationChecker {
 
     private static final Logger logger = LoggerFactory.getLogger(SmellDuplicationChecker.class.getName());
     public static final String QUALIFIED_NAME = "qualified_name";
-    private final List<FileRenameEntry> fileRenamings;
-    private final QueryEngine queryEngine;
+    private static final int FETCH_SIZE = 1000;
+    // Number of (sha, file) qualified names kept in memory.
+    private static final int QUALIFIED_NAME_CACHE_SIZE = 10000;
+    /**
+     * Renamings indexed by commit sha1, then by new file.
+     * Loaded once and only read afterwards, thus safely shared between smell types.
+     */
+    private final Map<String, Map<String, FileRenameEntry>> fileRenamings;
+    private final QualifiedNameResolver qualifiedNames;
 
     public SmellDuplicationChecker(int projectId, Persistence persistence, QueryEngine queryEngine) {
-        this.queryEngine = queryEngine;
+        this.qualifiedNames = new QualifiedNameResolver(queryEngine, QUALIFIED_NAME_CACHE_SIZE);
         fileRenamings = loadFileRename(projectId, persistence);
     }
 
@@ -68,15 +75,31 @@ public class SmellDuplicationChecker {
                 "WHERE file_rename.project_id = '" + projectId + "'";
     }
 
-    private List<FileRenameEntry> loadFileRename(int projectId, Persistence persistence) {
-        List<FileRenameEntry> renaming = new ArrayList<>();
-        List<Map<String, Object>> result = persistence.query(getFileRenameStatement(projectId));
-        for (Map<String, Object> rename : result) {
-            renaming.add(FileRenameEntry.fromDBEntry(rename));
+    private Map<String, Map<String, FileRenameEntry>> loadFileRename(int projectId, Persistence persistence) {
+        Map<String, Map<String, FileRenameEntry>> renaming = new HashMap<>();
+        try (QueryCursor cursor = persistence.stream(getFileRenameStatement(projectId), FETCH_SIZE)) {
+            for (ResultRow row : cursor) {
+                FileRenameEntry rename = FileRenameEntry.fromDBEntry(row);
+                // Keep the first entry of a (sha1, newFile) pair, as the former linear lookup did.
+                renaming.computeIfAbsent(rename.sha1, sha1 -> new HashMap<>())
+                        .putIfAbsent(rename.newFile, rename);
+            }
         }
         return renaming;
     }
 
+    /**
+     * Find the renaming of the given file in a specific commit.
+     *
+     * @param sha1    The commit in which the file may have been renamed.
+     * @param newFile The file after its renaming.
+     * @return The matching renaming, null if the file was not renamed in this commit.
+     */
+    private FileRenameEntry findRenaming(String sha1, String newFile) {
+        Map<String, FileRenameEntry> commitRenamings = fileRenamings.get(sha1);
+        return commitRenamings == null ? null : commitRenamings.get(newFile);
+    }
+
     /**
      * Retrieve the original smell if it is embedded in a renamed file.
      *
@@ -89,10 +112,10 @@ public class SmellDuplicationChecker {
         logger.trace("==> Trying to guess original smell for: " + instance);
 
         // If we find a renaming of the smell file in this specific commit, try to guess the original smell.
-        int index = fileRenamings.indexOf(FileRenameEntry.fromSmell(instance, commit));
-        if (index > -1) {
+        FileRenameEntry renaming = findRenaming(commit.sha, instance.file);
+        if (renaming != null) {
             logger.trace("  ==> Guessing new original smell!");
-            return guessOriginalSmell(instance, previous, fileRenamings.get(index));
+            return guessOriginalSmell(instance, previous, renaming, commit);
         }
 
         logger.trace("  ==> No original smell found");
@@ -108,10 +131,11 @@ public class SmellDuplicationChecker {
      * @param instance Current smell instance name.
      * @param commit   The commit holding the old file.
      * @param renaming Matching renaming entry.
+     * @param renamingCommit The commit in which the renaming took place.
      * @return The guessed original smell.
      */
-    private Smell guessOriginalSmell(Smell instance, Commit commit, FileRenameEntry renaming) {
-        String oldClass = fetchQualifiedName(commit.sha, renaming.oldFile);
+    private Smell guessOriginalSmell(Smell instance, Commit commit, FileRenameEntry renaming, Commit renamingCommit) {
+        String oldClass = fetchQualifiedName(commit.sha, renaming.oldFile, renamingCommit.sha);
         String ending = extractIdentifierEnding(instance.instance);
         String start = extractIdentifierStart(instance.instance);
 
@@ -121,20 +145,17 @@ public class SmellDuplicationChecker {
 
     /**
      * Fetch the class fully qualified name from SmellDetector.
+     * <p>
+     * On a cache miss, the original files of every renaming in the same commit
+     * are resolved along, since their smells are likely to be checked next.
      *
-     * @param sha  The commit to look into.
-     * @param file The file containing the queried class.
+     * @param sha          The commit to look into.
+     * @param file         The file containing the queried class.
+     * @param renamingSha1 The commit in which the file was renamed.
      * @return The class fully qualified name if found, an empty String if not.
      */
-    private String fetchQualifiedName(String sha, String file) {
-        QualifiedNameFromFileQuery query = new QualifiedNameFromFileQuery(queryEngine, sha, "/" + file);
-        List<Map<String, Object>> result = query.fetchResult(false);
-        if (result.isEmpty() || !result.get(0).containsKey(QUALIFIED_NAME)) {
-            logger.warn("Unable to query qualified name on Paprika for file " + file + " on commit " + sha);
-            return "";
-        }
-        return (String) result.get(0).get(QUALIFIED_NAME);
-
+    private String fetchQualifiedName(String sha, String file, String renamingSha1) {
+        return qualifiedNames.resolve(sha, file, fileRenamings.get(renamingSha1).values());
     }
 
 
@@ -186,29 +207,17 @@ public class SmellDuplicationChecker {
             this.newFile = newFile;
         }
 
-        /**
-         * Create a new {@link FileRenameEntry} from a Smell.
-         * This entry can be used to compare it with the other entries in the fileRenamings property, containing the old
-         * file.
-         *
-         * @param smell The smell to create an entry for.
-         * @return The created {@link FileRenameEntry}
-         */
-        static FileRenameEntry fromSmell(Smell smell, Commit commit) {
-            return new FileRenameEntry(commit.sha, "", smell.file);
-        }
-
         /**
          * Create a new {@link FileRenameEntry} from a database entry.
          *
          * @param renameEntry The database entry to create a {@link FileRenameEntry} for.
          * @return The created {@link FileRenameEntry}
          */
-        static FileRenameEntry fromDBEntry(Map<String, Object> renameEntry) {
+        static FileRenameEntry fromDBEntry(ResultRow renameEntry) {
             // Fields returned  by postgresql are always lowercase!
-            String sha1 = (String) renameEntry.get(SHA1_COLUMN);
-            String oldFile = (String) renameEntry.get(OLD_FILE_COLUMN);
-            String newFile = (String) renameEntry.get(NEW_FILE_COLUMN);
+            String sha1 = renameEntry.getString(SHA1_COLUMN);
+            String oldFile = renameEntry.getString(OLD_FILE_COLUMN);
+            String newFile = renameEntry.getString(NEW_FILE_COLUMN);
             return new FileRenameEntry(sha1, oldFile, newFile);
         }
 
@@ -141,6 +141,30 @@ CREATE TABLE IF NOT EXISTS smell_presence (
   FOREIGN KEY (project_id) REFERENCES Project (id)
 );
 
+-- Opt-in storage of the smell presence, as intervals of consecutive commits in a branch
+CREATE TABLE IF NOT EXISTS smell_presence_interval (
+  id            SERIAL NOT NULL PRIMARY KEY,
+  smell_id      INTEGER NOT NULL,
+  project_id    INTEGER NOT NULL,
+  branch_id     INTEGER NOT NULL,
+  first_ordinal INTEGER NOT NULL,
+  last_ordinal  INTEGER NOT NULL,
+  FOREIGN KEY (smell_id) REFERENCES Smell (id),
+  FOREIGN KEY (branch_id) REFERENCES Branch (id),
+  FOREIGN KEY (project_id) REFERENCES Project (id)
+);
+CREATE INDEX IF NOT EXISTS smell_presence_interval__branch_id_ordinals
+ON smell_presence_interval (branch_id, first_ordinal, last_ordinal);
+
+-- Smell presence for each commit, whatever the storage used
+CREATE OR REPLACE VIEW smell_presence_all AS
+  SELECT smell_id, project_id, commit_id FROM smell_presence
+  UNION ALL
+  SELECT smell_presence_interval.smell_id, smell_presence_interval.project_id, branch_commit.commit_id
+  FROM smell_presence_interval
+  JOIN branch_commit ON branch_commit.branch_id = smell_presence_interval.branch_id
+  AND branch_commit.ordinal BETWEEN smell_presence_interval.first_ordinal AND smell_presence_interval.last_ordinal;
+
 CREATE TABLE IF NOT EXISTS smell_introduction (
   id       SERIAL NOT NULL PRIMARY KEY,
   smell_id  INTEGER NOT NULL,
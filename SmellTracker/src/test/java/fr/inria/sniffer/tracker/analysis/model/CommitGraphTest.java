@@ -0,0 +1,195 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommitGraphTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git git;
+
+    @Before
+    public void setUp() throws Exception {
+        git = Git.init().setDirectory(folder.getRoot()).call();
+    }
+
+    @After
+    public void tearDown() {
+        git.close();
+    }
+
+    private RevCommit commit(String file) throws Exception {
+        Files.write(new File(folder.getRoot(), file).toPath(), file.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(".").call();
+        return git.commit().setMessage(file).setAuthor("author", "author@email.com").call();
+    }
+
+    /**
+     * <pre><code>
+     *     * A
+     *     |\
+     *     | * B
+     *     * | C
+     *     |/
+     *     *   D [merge]
+     * </code></pre>
+     */
+    @Test
+    public void parseMergedHistory() throws Exception {
+        RevCommit a = commit("a.txt");
+        git.checkout().setCreateBranch(true).setName("side").call();
+        RevCommit b = commit("b.txt");
+        git.checkout().setName("master").call();
+        RevCommit c = commit("c.txt");
+        MergeResult merge = git.merge().include(b).setMessage("merge").call();
+        RevCommit d = git.getRepository().parseCommit(merge.getNewHead());
+
+        CommitGraph graph = CommitGraph.parse(git.getRepository(), git.getRepository().resolve(Constants.HEAD));
+
+        assertEquals(4, graph.size());
+        assertEquals(CommitGraph.NOT_FOUND, graph.indexOf("0123456789012345678901234567890123456789"));
+        int merged = graph.indexOf(d.name());
+        assertArrayEquals(new int[]{graph.indexOf(c.name()), graph.indexOf(b.name())}, graph.parents(merged));
+        assertArrayEquals(new int[]{graph.indexOf(a.name())}, graph.parents(graph.indexOf(b.name())));
+        assertEquals(0, graph.parents(graph.indexOf(a.name())).length);
+        // Children are numbered before their parents.
+        for (int commit = 0; commit < graph.size(); commit++) {
+            for (int parent : graph.parents(commit)) {
+                assertTrue(parent > commit);
+            }
+        }
+
+        Commit commit = graph.commitWithParents(merged);
+        assertEquals(d.name(), commit.sha);
+        assertEquals(2, commit.getParentCount());
+        assertEquals(c.name(), commit.getParent(0).sha);
+        assertEquals(b.name(), commit.getParent(1).sha);
+        // Parents are only handles on their sha1.
+        assertEquals(0, commit.getParent(0).getParentCount());
+        assertTrue(commit.getParent(0).getSmells().isEmpty());
+        assertFalse(commit.getParent(0).isMerge());
+    }
+
+    @Test
+    public void repositoryServesParentsFromGraph() throws Exception {
+        RevCommit a = commit("a.txt");
+        RevCommit b = commit("b.txt");
+        Repository repository = new Repository(folder.getRoot().getPath());
+        repository.initializeRepository();
+        try {
+            Commit before = repository.getCommitWithParents(b.name());
+            assertEquals(2, repository.loadCommitGraph().size());
+            Commit after = repository.getCommitWithParents(b.name());
+
+            assertEquals(before.sha, after.sha);
+            assertEquals(1, after.getParentCount());
+            assertEquals(a.name(), before.getParent(0).sha);
+            assertEquals(a.name(), after.getParent(0).sha);
+            assertEquals("author@email.com", repository.getCommitWithDetails(b.name()).authorEmail);
+        } finally {
+            repository.finalizeRepository();
+        }
+    }
+
+    /**
+     * <pre><code>
+     *     * A
+     *     |\
+     *     | * B1
+     *     | * B2
+     *     * | C
+     *     |/
+     *     *   D [merge]
+     * </code></pre>
+     */
+    @Test
+    public void topologicalLogKeepsMergedBranchTogether() throws Exception {
+        RevCommit a = commit("a.txt");
+        git.checkout().setCreateBranch(true).setName("side").call();
+        RevCommit b1 = commit("b1.txt");
+        RevCommit b2 = commit("b2.txt");
+        git.checkout().setName("master").call();
+        RevCommit c = commit("c.txt");
+        MergeResult merge = git.merge().include(b2).setMessage("merge").call();
+        Repository repository = new Repository(folder.getRoot().getPath());
+        repository.initializeRepository();
+        try {
+            List<String> log = new ArrayList<>();
+            Iterator<String> iterator = repository.getTopologicalLog();
+            while (iterator.hasNext()) {
+                log.add(iterator.next());
+            }
+
+            // Same order as 'git log --topo-order --reverse', whatever the commit dates.
+            assertEquals(Arrays.asList(a.name(), c.name(), b1.name(), b2.name(), merge.getNewHead().name()), log);
+        } finally {
+            repository.finalizeRepository();
+        }
+    }
+
+    /**
+     * Same history than {@link #parseMergedHistory()}, built from linked commits.
+     */
+    @Test
+    public void buildFromLinkedCommits() {
+        Commit a = new Commit("a", 1);
+        Commit b = new Commit("b", 2, Collections.singletonList(a));
+        Commit c = new Commit("c", 3, Collections.singletonList(a));
+        Commit d = new Commit("d", 4, Arrays.asList(c, b));
+
+        CommitGraph graph = CommitGraph.of(d);
+
+        assertEquals(4, graph.size());
+        assertEquals(0, graph.indexOf("d"));
+        assertEquals(CommitGraph.NOT_FOUND, graph.indexOf("e"));
+        assertArrayEquals(new int[]{graph.indexOf("c"), graph.indexOf("b")}, graph.parents(0));
+        assertArrayEquals(new int[]{graph.indexOf("a")}, graph.parents(graph.indexOf("b")));
+        assertArrayEquals(new int[0], graph.parents(graph.indexOf("a")));
+        for (int commit = 0; commit < graph.size(); commit++) {
+            for (int parent : graph.parents(commit)) {
+                assertTrue(parent > commit);
+            }
+        }
+        assertEquals(2, graph.commitWithParents(0).getParentCount());
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GitSummaryParserTest {
+    private final GitSummaryParser parser = new GitSummaryParser();
+
+    @Test
+    public void parseCommitSummary() {
+        List<String> lines = Arrays.asList(
+                " app/src/main/java/com/nbossard/packlist/{dui => }/AboutActivity.java | 4 ++--",
+                " CHANGES.rst                                                            | 5 +++++",
+                " app/src/main/res/drawable/icon.png                                     | Bin 0 -> 1204 bytes",
+                " 3 files changed, 7 insertions(+), 2 deletions(-)",
+                " create mode 100644 app/src/main/res/drawable/icon.png",
+                " rename app/src/main/java/com/nbossard/packlist/{dui => }/AboutActivity.java (94%)",
+                ""
+        );
+
+        CommitDetails details = parser.parse(lines);
+
+        assertEquals(7, details.diff.getAddition());
+        assertEquals(2, details.diff.getDeletion());
+        assertEquals(3, details.diff.getChangedFiles());
+
+        assertEquals(1, details.changedFiles.size());
+        assertEquals("CHANGES.rst", details.changedFiles.get(0).name);
+        assertEquals(5, details.changedFiles.get(0).changeSize);
+
+        assertEquals(1, details.renames.size());
+        assertEquals("app/src/main/java/com/nbossard/packlist/dui/AboutActivity.java", details.renames.get(0).oldFile);
+        assertEquals("app/src/main/java/com/nbossard/packlist/AboutActivity.java", details.renames.get(0).newFile);
+        assertEquals(94, details.renames.get(0).similarity);
+    }
+
+    @Test
+    public void parseEmptySummary() {
+        CommitDetails details = parser.parse(Collections.emptyList());
+
+        assertEquals(GitDiff.EMPTY, details.diff);
+        assertTrue(details.renames.isEmpty());
+        assertTrue(details.changedFiles.isEmpty());
+    }
+
+    @Test
+    public void sameResultsAsLinesParsers() throws Exception {
+        List<String> lines = Arrays.asList(
+                "3 files changed, 231 insertions(+)",
+                "3 files changed, 5 deletions(-)",
+                " 1 file changed, 3 insertions(+), 2 deletions(-)",
+                "1 file changed, 1 insertion(+)",
+                "SmellTracker/src/main/resources/schema/tracker-sqlite.sql  |  2 ++",
+                "/any/path/to/file.java | 2 +-",
+                "CHANGES.rst          | 127 -----------",
+                "rename a.txt => b.txt (76%)",
+                "rename {a => f}/b/c/d/e.txt (100%)",
+                "rename app/src/main/{groovy => java}/com/nbossard/packlist/gui/NewTripFragment.java (100%)",
+                "Diff a/b/c/d/{z.txt => c.txt} (100%)",
+                " delete mode 100644 README.md"
+        );
+
+        CommitDetails details;
+        for (String line : lines) {
+            details = parser.parse(Collections.singletonList(line));
+            assertEquals(diffOrEmpty(line).toString(), details.diff.toString());
+            assertEquals(String.valueOf(renameOrNull(line)),
+                    details.renames.isEmpty() ? "null" : details.renames.get(0).toString());
+            assertEquals(String.valueOf(changedFileOrNull(line)),
+                    details.changedFiles.isEmpty() ? "null" : details.changedFiles.get(0).toString());
+        }
+    }
+
+    private static GitDiff diffOrEmpty(String line) {
+        try {
+            return GitDiff.parse(line);
+        } catch (Exception e) {
+            return GitDiff.EMPTY;
+        }
+    }
+
+    private static GitRename renameOrNull(String line) {
+        try {
+            return GitRename.parseRenamed(line);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static GitChangedFile changedFileOrNull(String line) {
+        try {
+            return GitChangedFile.parseFileChange(line);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.model;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RepositoryTest {
+    private static final String SLUG = "user/project";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git developer;
+    private CloneCache cache;
+    private Path cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        // The remote is a bare repository, as github would serve it.
+        File remotes = folder.newFolder("remotes");
+        File remote = new File(remotes, SLUG);
+        Git.init().setBare(true).setDirectory(remote).call().close();
+        developer = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(folder.newFolder("dev")).call();
+
+        cacheDir = folder.newFolder("cache").toPath();
+        cache = new CloneCache(cacheDir, remotes.toURI().toString());
+    }
+
+    @After
+    public void tearDown() {
+        developer.close();
+    }
+
+    private RevCommit push(String file) throws Exception {
+        Files.write(new File(developer.getRepository().getWorkTree(), file).toPath(),
+                file.getBytes(StandardCharsets.UTF_8));
+        developer.add().addFilepattern(".").call();
+        RevCommit commit = developer.commit().setMessage(file).setAuthor("author", "author@email.com").call();
+        developer.push().call();
+        return commit;
+    }
+
+    private static List<String> log(Repository repository) throws Exception {
+        List<String> log = new ArrayList<>();
+        Iterator<String> iterator = repository.getTopologicalLog();
+        while (iterator.hasNext()) {
+            log.add(iterator.next());
+        }
+        return log;
+    }
+
+    @Test
+    public void remoteRepositoryIsClonedInCache() throws Exception {
+        RevCommit a = push("a.txt");
+        RevCommit b = push("b.txt");
+
+        Repository repository = new Repository(SLUG, cache);
+        repository.initializeRepository();
+        Path workspace = repository.getRepoDir();
+        try {
+            assertEquals(Arrays.asList(a.name(), b.name()), log(repository));
+            assertEquals(b.name(), repository.getHead().sha);
+            assertEquals("author@email.com", repository.getCommitWithDetails(a.name()).authorEmail);
+            // The objects are only read from the mirror.
+            assertTrue(Files.exists(workspace.resolve("objects").resolve("info").resolve("alternates")));
+        } finally {
+            repository.finalizeRepository();
+        }
+
+        assertFalse(Files.exists(workspace));
+        assertTrue(Files.isDirectory(cacheDir.resolve(SLUG + ".git")));
+    }
+
+    @Test
+    public void cachedRepositoryIsFetched() throws Exception {
+        RevCommit a = push("a.txt");
+        Repository repository = new Repository(SLUG, cache);
+        repository.initializeRepository();
+        repository.finalizeRepository();
+
+        RevCommit b = push("b.txt");
+        repository.initializeRepository();
+        try {
+            assertEquals(Arrays.asList(a.name(), b.name()), log(repository));
+            assertEquals(b.name(), repository.getHead().sha);
+        } finally {
+            repository.finalizeRepository();
+        }
+    }
+}
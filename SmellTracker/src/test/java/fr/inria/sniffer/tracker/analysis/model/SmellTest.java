@@ -69,4 +69,21 @@ public class SmellTest {
         assertEquals(first, myMap.get(third));
         assertTrue(myMap.containsKey(myMap.keySet().toArray()[0]));
     }
+
+    @Test
+    public void testSmellKeyEquality() {
+        assertEquals(SmellKey.of(first), SmellKey.of(second));
+        assertEquals(SmellKey.of(first).hashCode(), SmellKey.of(second).hashCode());
+        assertNotEquals(SmellKey.of(first), SmellKey.of(third));
+
+        second.parent = first;
+        assertNotEquals(SmellKey.of(first), SmellKey.of(second));
+
+        third.parent = second;
+        Smell other = new Smell("d", "b", "c");
+        other.parent = new Smell("a", "b", "c");
+        other.parent.parent = new Smell("a", "b", "c");
+        assertEquals(SmellKey.of(third), SmellKey.of(other));
+        assertEquals(SmellKey.of(third).hashCode(), SmellKey.of(other).hashCode());
+    }
 }
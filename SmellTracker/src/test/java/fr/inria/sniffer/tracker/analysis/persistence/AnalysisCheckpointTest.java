@@ -0,0 +1,144 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class AnalysisCheckpointTest {
+    private static final int PROJECT_ID = 1;
+    private static final int MAINLINE_ID = 7;
+    private static final String LAST_SHA = "cccccccccccccccccccccccccccccccccccccccc";
+    private static final String HEAD_SHA = "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+
+    private Persistence persistence;
+    private CommitQueries commitQueries;
+    private BranchQueries branchQueries;
+
+    @Before
+    public void setUp() {
+        persistence = mock(Persistence.class);
+        commitQueries = mock(CommitQueries.class);
+        branchQueries = mock(BranchQueries.class);
+        doReturn(Collections.emptyList()).when(persistence).query(anyString());
+        doReturn("last").when(commitQueries).lastProjectCommitShaQuery(PROJECT_ID);
+        doReturn("mainline").when(branchQueries).idFromOrdinalQueryStatement(PROJECT_ID, AnalysisCheckpoint.MAINLINE_ORDINAL);
+        doReturn("head").when(branchQueries).lastCommitShaQuery(PROJECT_ID, MAINLINE_ID);
+        doReturn("head branch ordinal").when(branchQueries).commitOrdinalQuery(eq(PROJECT_ID), eq(MAINLINE_ID), any(Commit.class));
+        doReturn("head ordinal").when(commitQueries).ordinalFromShaQuery(PROJECT_ID, HEAD_SHA);
+        doReturn("branches").when(branchQueries).lastOrdinalQuery(PROJECT_ID);
+        doReturn("ids").when(commitQueries).commitIdsQuery(PROJECT_ID);
+    }
+
+    private AnalysisCheckpoint load() {
+        AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(PROJECT_ID, persistence, commitQueries, branchQueries);
+        checkpoint.load();
+        return checkpoint;
+    }
+
+    private void stubRow(String query, String column, Object value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put(column, value);
+        doReturn(Collections.singletonList(row)).when(persistence).query(query);
+    }
+
+    private void stubCompleteAnalysis() {
+        stubRow("last", "sha1", LAST_SHA);
+        stubRow("mainline", "id", MAINLINE_ID);
+        stubRow("head", "sha1", HEAD_SHA);
+        stubRow("head branch ordinal", "ordinal", 1);
+        stubRow("head ordinal", "ordinal", 4);
+        stubRow("branches", "ordinal", 2L);
+        List<Map<String, Object>> ids = new ArrayList<>();
+        for (String sha : new String[]{HEAD_SHA, LAST_SHA}) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("sha1", sha);
+            ids.add(row);
+        }
+        doReturn(ids).when(persistence).query("ids");
+    }
+
+    @Test
+    public void resumesCompleteAnalysis() {
+        stubCompleteAnalysis();
+
+        AnalysisCheckpoint checkpoint = load();
+
+        assertTrue(checkpoint.isAnalyzed());
+        assertTrue(checkpoint.isAnalyzed(HEAD_SHA));
+        assertEquals(LAST_SHA, checkpoint.getLastCommitSha());
+        assertEquals(MAINLINE_ID, checkpoint.getMainlineId());
+        assertEquals(HEAD_SHA, checkpoint.getMainlineHead().sha);
+        assertEquals(4, checkpoint.getMainlineHead().ordinal);
+        assertEquals(1, checkpoint.getMainlineHead().getBranchOrdinal());
+        assertEquals(3, checkpoint.getNextBranchOrdinal());
+    }
+
+    @Test
+    public void newProjectIsNotAnalyzed() {
+        assertFalse(load().isAnalyzed());
+    }
+
+    @Test
+    public void missingMainlineFallsBackToFullAnalysis() {
+        stubCompleteAnalysis();
+        doReturn(Collections.emptyList()).when(persistence).query("mainline");
+
+        AnalysisCheckpoint checkpoint = load();
+
+        assertFalse(checkpoint.isAnalyzed());
+        assertFalse(checkpoint.isAnalyzed(HEAD_SHA));
+    }
+
+    @Test
+    public void emptyMainlineFallsBackToFullAnalysis() {
+        stubCompleteAnalysis();
+        doReturn(Collections.emptyList()).when(persistence).query("head");
+
+        assertFalse(load().isAnalyzed());
+    }
+
+    @Test
+    public void missingHeadOrdinalFallsBackToFullAnalysis() {
+        stubCompleteAnalysis();
+        doReturn(Collections.emptyList()).when(persistence).query("head ordinal");
+
+        AnalysisCheckpoint checkpoint = load();
+
+        assertFalse(checkpoint.isAnalyzed());
+        assertFalse(checkpoint.isAnalyzed(HEAD_SHA));
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class AsyncPersistenceTest {
+    private Persistence delegate;
+    private AsyncPersistence persistence;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = Mockito.mock(Persistence.class);
+        persistence = new AsyncPersistence(delegate, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        persistence.close();
+    }
+
+    @Test
+    public void statementsAreCommittedInOrder() {
+        ParameterizedStatement parameterized = ParameterizedStatement.of("second");
+        persistence.addStatements("first");
+        persistence.addStatements(parameterized);
+        persistence.addStatements("third");
+        persistence.commit();
+        persistence.addStatements("fourth");
+        persistence.commit();
+
+        // Any read waits for the previous commits.
+        persistence.query("query");
+
+        InOrder order = inOrder(delegate);
+        order.verify(delegate).addStatements("first");
+        order.verify(delegate).addStatements(parameterized);
+        order.verify(delegate).addStatements("third");
+        order.verify(delegate).commit();
+        order.verify(delegate).addStatements("fourth");
+        order.verify(delegate).commit();
+        order.verify(delegate).query("query");
+    }
+
+    @Test
+    public void statementsAreOnlySentOnCommit() {
+        persistence.addStatements("first");
+        persistence.query("query");
+
+        verify(delegate, never()).addStatements(anyString());
+    }
+
+    @Test
+    public void queryReturnsDelegateResult() {
+        List<Map<String, Object>> result = Collections.singletonList(Collections.singletonMap("id", 1));
+        doReturn(result).when(delegate).query("query");
+        doReturn(1).when(delegate).execute("statement");
+
+        assertEquals(result, persistence.query("query"));
+        assertEquals(1, persistence.execute("statement"));
+    }
+
+    @Test
+    public void commitBlocksWhenTheQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(delegate).commit();
+
+        persistence.commit();
+        writing.await();
+        // The writer is busy, the next two commits fill the queue.
+        persistence.commit();
+        persistence.commit();
+
+        CountDownLatch committed = new CountDownLatch(1);
+        Thread blocked = new Thread(() -> {
+            persistence.commit();
+            committed.countDown();
+        });
+        blocked.start();
+        // Never returning while the writer holds the delegate.
+        assertFalse(committed.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(committed.await(10, TimeUnit.SECONDS));
+        blocked.join();
+        persistence.query("query");
+        verify(delegate, Mockito.times(4)).commit();
+    }
+
+    @Test
+    public void copyRowsAreSentBeforeCommit() {
+        CopyStream delegateStream = Mockito.mock(CopyStream.class);
+        doReturn(delegateStream).when(delegate).openCopyStream(anyString(), anyString(), anyInt());
+
+        CopyStream stream = persistence.openCopyStream("table", "a, b", 10);
+        stream.addRow(1, "a");
+        stream.addRow(2, "b");
+        verifyZeroInteractions(delegateStream);
+
+        persistence.commit();
+        persistence.query("query");
+
+        InOrder order = inOrder(delegate, delegateStream);
+        order.verify(delegateStream).addRow(1, "a");
+        order.verify(delegateStream).addRow(2, "b");
+        order.verify(delegate).commit();
+    }
+
+    @Test
+    public void copyRowsAreHandedSynchronouslyWhileStreaming() {
+        CopyStream delegateStream = Mockito.mock(CopyStream.class);
+        doReturn(delegateStream).when(delegate).openCopyStream(anyString(), anyString(), anyInt());
+        doReturn(new ListQueryCursor(Collections.emptyList())).when(delegate).stream(anyString(), anyInt());
+
+        CopyStream stream = persistence.openCopyStream("table", "a, b", 1);
+        try (QueryCursor ignored = persistence.stream("query", 10)) {
+            // The delegate is used by the caller thread while the cursor is opened.
+            stream.addRow(1, "a");
+            verify(delegateStream).addRow(1, "a");
+
+            stream.flush();
+            verify(delegateStream).flush();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CommitTopologyTest {
+    private static final int PROJECT_ID = 1;
+    private static final String MISSING_SHA = "ffffffffffffffffffffffffffffffffffffffff";
+
+    private Persistence persistence;
+    private BranchQueries branchQueries;
+    private List<Map<String, Object>> rows;
+
+    @Before
+    public void setUp() {
+        rows = new ArrayList<>();
+        persistence = mock(Persistence.class);
+        branchQueries = mock(BranchQueries.class);
+        doReturn("topologyQuery").when(branchQueries).commitTopologyQuery(PROJECT_ID);
+        doAnswer(invocation -> new ListQueryCursor(rows)).when(persistence).stream(anyString(), anyInt());
+    }
+
+    private static String sha(int value) {
+        return String.format("%040x", value);
+    }
+
+    private void addCommit(String sha, int branchId, int ordinal, Integer mergedCommitId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("sha1", sha);
+        row.put("branch_id", branchId);
+        row.put("ordinal", ordinal);
+        row.put("merged_commit_id", mergedCommitId);
+        rows.add(row);
+    }
+
+    private CommitTopology getTopology() {
+        return new CommitTopology(PROJECT_ID, persistence, branchQueries);
+    }
+
+    @Test
+    public void commitsAreIndexedBySha() {
+        addCommit(sha(1), 0, 0, null);
+        addCommit(sha(2), 0, 1, null);
+        addCommit(sha(3), 1, 0, null);
+        addCommit(sha(4), 0, 2, 3);
+
+        CommitTopology topology = getTopology();
+
+        assertEquals(0, topology.branchOf(sha(2)));
+        assertEquals(1, topology.branchOrdinalOf(sha(2)));
+        assertEquals(1, topology.branchOf(sha(3)));
+        assertEquals(0, topology.branchOrdinalOf(sha(3)));
+        assertEquals(3, topology.mergedCommitIdOf(sha(4)));
+        assertEquals(CommitTopology.NONE, topology.mergedCommitIdOf(sha(1)));
+        assertEquals(4, topology.size());
+    }
+
+    @Test
+    public void missingShaHasNoTopology() {
+        addCommit(sha(1), 0, 0, null);
+
+        CommitTopology topology = getTopology();
+
+        assertEquals(CommitTopology.NONE, topology.branchOf(MISSING_SHA));
+        assertEquals(CommitTopology.NONE, topology.branchOrdinalOf(MISSING_SHA));
+        assertEquals(CommitTopology.NONE, topology.mergedCommitIdOf(MISSING_SHA));
+        assertEquals(CommitTopology.NONE, topology.branchOf(null));
+        assertEquals(CommitTopology.NONE, topology.branchOf("abbreviated"));
+    }
+
+    @Test
+    public void malformedShaAreIgnored() {
+        addCommit("malformed", 0, 0, null);
+        addCommit(sha(1), 0, 1, null);
+
+        CommitTopology topology = getTopology();
+
+        assertEquals(1, topology.size());
+        assertEquals(1, topology.branchOrdinalOf(sha(1)));
+        assertEquals(CommitTopology.NONE, topology.branchOf("malformed"));
+    }
+
+    @Test
+    public void firstBranchOfCommitIsKept() {
+        addCommit(sha(1), 0, 3, null);
+        addCommit(sha(1), 2, 0, null);
+
+        CommitTopology topology = getTopology();
+
+        assertEquals(0, topology.branchOf(sha(1)));
+        assertEquals(3, topology.branchOrdinalOf(sha(1)));
+        assertEquals(1, topology.size());
+    }
+
+    @Test
+    public void topologyIsLoadedOnFirstLookupOnly() {
+        addCommit(sha(1), 0, 0, null);
+
+        CommitTopology topology = getTopology();
+        topology.branchOf(sha(1));
+        topology.branchOrdinalOf(MISSING_SHA);
+        topology.mergedCommitIdOf(sha(1));
+
+        verify(persistence, times(1)).stream(anyString(), anyInt());
+    }
+
+    @Test
+    public void valuesAreKeptWhenGrowing() {
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            addCommit(sha(i), i % 7, i, i % 3 == 0 ? i : null);
+        }
+
+        CommitTopology topology = getTopology();
+
+        assertEquals(count, topology.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i % 7, topology.branchOf(sha(i)));
+            assertEquals(i, topology.branchOrdinalOf(sha(i)));
+            assertEquals(i % 3 == 0 ? i : CommitTopology.NONE, topology.mergedCommitIdOf(sha(i)));
+        }
+    }
+
+    @Test
+    public void loadedTopologyIsSharedBetweenThreads() throws Exception {
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            addCommit(sha(i), i % 5, i, null);
+        }
+        CommitTopology topology = getTopology();
+        // As the smells analysis does before sharing the topology.
+        topology.load();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> lookups = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                lookups.add(executor.submit(() -> {
+                    int mismatches = 0;
+                    for (int i = 0; i < count; i++) {
+                        if (topology.branchOf(sha(i)) != i % 5 || topology.branchOrdinalOf(sha(i)) != i) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<Integer> lookup : lookups) {
+                assertEquals(0, (int) lookup.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(persistence, times(1)).stream(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import fr.inria.sniffer.tracker.analysis.persistence.queries.JDBCProjectQueries;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.ProjectQueries;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class JDBCPersistenceTest extends PostgresTestCase {
+    private ProjectQueries projectQueries;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        projectQueries = new JDBCProjectQueries();
+    }
+
+    @Test
+    public void testStreamRows() {
+        for (int i = 0; i < 5; i++) {
+            createProject("project" + i, projectQueries);
+        }
+
+        List<String> names = new ArrayList<>();
+        ResultRow previous = null;
+        try (QueryCursor cursor = persistence.stream("SELECT id, name, url FROM project ORDER BY id", 2)) {
+            for (ResultRow row : cursor) {
+                // The same row view is reused for the whole cursor.
+                if (previous != null) {
+                    assertSame(previous, row);
+                }
+                previous = row;
+                names.add(row.getString("name"));
+                assertEquals(row.getObject("id"), row.getInteger("id"));
+            }
+        }
+
+        assertEquals(5, names.size());
+        assertEquals("project0", names.get(0));
+        assertEquals("project4", names.get(4));
+    }
+
+    @Test
+    public void testStreamNullValues() {
+        try (QueryCursor cursor = persistence.stream("SELECT NULL::INT AS id, NULL::BOOLEAN AS flag", 10)) {
+            for (ResultRow row : cursor) {
+                assertNull(row.getInteger("id"));
+                assertEquals(0, row.getInt("id"));
+                assertFalse(row.getBoolean("flag"));
+            }
+        }
+    }
+
+    @Test
+    public void testCommitWhileStreaming() {
+        createProject("streamed", projectQueries);
+
+        try (QueryCursor cursor = persistence.stream("SELECT id FROM project", 1)) {
+            for (ResultRow ignored : cursor) {
+                persistence.addStatements(projectQueries.projectInsertStatement("inserted", "url"));
+                persistence.commit();
+            }
+        }
+
+        // The statements are made durable once the cursor is closed.
+        assertEquals(2, countElements("project"));
+    }
+
+    @Test
+    public void testStreamFailureReturnsEmptyCursor() {
+        try (QueryCursor cursor = persistence.stream("SELECT * FROM unknown_table", 10)) {
+            assertFalse(cursor.iterator().hasNext());
+        }
+        // The connection is still usable.
+        createProject("afterFailure", projectQueries);
+        assertEquals(1, countElements("project"));
+    }
+
+    @Test
+    public void testCopyIgnoresExistingRows() {
+        createProject("existing", projectQueries);
+
+        CopyStream stream = persistence.openCopyStream("project", "name, url", 10);
+        stream.addRow("existing", "url");
+        stream.addRow("copied", "url");
+        stream.addRow("copied", "url");
+        stream.addRow("other", null);
+        persistence.commit();
+
+        // The duplicated rows are skipped instead of aborting the whole chunk.
+        assertEquals(3, countElements("project"));
+    }
+
+    @Test
+    public void testCopyFlushesOnFlushSize() {
+        CopyStream stream = persistence.openCopyStream("project", "name, url", 2);
+        stream.addRow("first", "url");
+        assertEquals(0, countElements("project"));
+
+        stream.addRow("second", "url");
+        assertEquals(2, countElements("project"));
+
+        stream.addRow("first", "url");
+        stream.addRow("third", "url");
+        assertEquals(3, countElements("project"));
+    }
+}
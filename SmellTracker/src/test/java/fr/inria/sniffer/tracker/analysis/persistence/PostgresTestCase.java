@@ -37,7 +37,8 @@ public abstract class PostgresTestCase extends PersistenceTestCase {
         final String url = postgres.start("localhost", Network.getFreeServerPort(),
                 "tracker-tests", "tracker", "tracker");
 
-        connection = DriverManager.getConnection(url);
+        // Same driver options as the analysis persistence.
+        connection = DriverManager.getConnection(url + "&reWriteBatchedInserts=true");
         super.setUp();
     }
 
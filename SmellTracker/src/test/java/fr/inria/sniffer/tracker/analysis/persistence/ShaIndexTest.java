@@ -0,0 +1,145 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.persistence;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ShaIndexTest {
+
+    private static String sha(String head, String middle, String tail) {
+        return head + middle + tail;
+    }
+
+    private static String sha(int value) {
+        return String.format("%040x", value);
+    }
+
+    @Test
+    public void positionsFollowInsertionOrder() {
+        ShaIndex index = new ShaIndex();
+        String first = "a2c3c4e6fa3c40cd54b4b0d3ae3d4c6f1f0f0e21";
+        String second = "0123456789abcdef0123456789abcdef01234567";
+
+        assertEquals(0, index.add(first));
+        assertEquals(1, index.add(second));
+        assertEquals(0, index.add(first));
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.indexOf(first));
+        assertEquals(1, index.indexOf(second));
+        assertEquals(ShaIndex.NOT_FOUND, index.indexOf("ffffffffffffffffffffffffffffffffffffffff"));
+    }
+
+    @Test
+    public void hexCaseIsIgnored() {
+        ShaIndex index = new ShaIndex();
+        index.add("a2c3c4e6fa3c40cd54b4b0d3ae3d4c6f1f0f0e21");
+
+        assertEquals(0, index.indexOf("A2C3C4E6FA3C40CD54B4B0D3AE3D4C6F1F0F0E21"));
+    }
+
+    @Test
+    public void malformedShaAreRejected() {
+        ShaIndex index = new ShaIndex();
+
+        assertEquals(ShaIndex.NOT_FOUND, index.add(null));
+        assertEquals(ShaIndex.NOT_FOUND, index.add("a2c3c4e"));
+        assertEquals(ShaIndex.NOT_FOUND, index.add("g2c3c4e6fa3c40cd54b4b0d3ae3d4c6f1f0f0e21"));
+        assertEquals(ShaIndex.NOT_FOUND, index.add("a2c3c4e6fa3c40cd54b4b0d3ae3d4c6f1f0f0e21a"));
+        assertEquals(ShaIndex.NOT_FOUND, index.indexOf(null));
+        assertEquals(ShaIndex.NOT_FOUND, index.indexOf("a2c3c4e"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void collidingShaAreDistinguished() {
+        ShaIndex index = new ShaIndex();
+        // Same head, thus same slot, differing by their middle or tail part.
+        String first = sha("0123456789abcdef", "0000000000000000", "00000000");
+        String sameMiddle = sha("0123456789abcdef", "0000000000000000", "00000001");
+        String sameTail = sha("0123456789abcdef", "0000000000000001", "00000000");
+
+        assertEquals(0, index.add(first));
+        assertEquals(1, index.add(sameMiddle));
+        assertEquals(2, index.add(sameTail));
+
+        assertEquals(0, index.indexOf(first));
+        assertEquals(1, index.indexOf(sameMiddle));
+        assertEquals(2, index.indexOf(sameTail));
+        assertEquals(ShaIndex.NOT_FOUND, index.indexOf(sha("0123456789abcdef", "0000000000000001", "00000001")));
+    }
+
+    @Test
+    public void probingWrapsAroundTheTable() {
+        ShaIndex index = new ShaIndex();
+        // Both mapped to the last slot of the initial table, the second one wrapping to the first slot.
+        String last = sha("00000000000003ff", "0000000000000000", "00000000");
+        String wrapped = sha("00000000000003ff", "0000000000000000", "00000001");
+        String first = sha("0000000000000000", "0000000000000000", "00000000");
+
+        assertEquals(0, index.add(last));
+        assertEquals(1, index.add(wrapped));
+        assertEquals(2, index.add(first));
+
+        assertEquals(0, index.indexOf(last));
+        assertEquals(1, index.indexOf(wrapped));
+        assertEquals(2, index.indexOf(first));
+    }
+
+    @Test
+    public void positionsAreKeptWhenGrowing() {
+        ShaIndex index = new ShaIndex();
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.add(sha(i)));
+        }
+
+        assertEquals(count, index.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.indexOf(sha(i)));
+        }
+        assertEquals(ShaIndex.NOT_FOUND, index.indexOf(sha(count)));
+    }
+
+    @Test
+    public void collidingShaAreKeptWhenGrowing() {
+        ShaIndex index = new ShaIndex();
+        // Every sha1 shares the same head, growing the table with a single probing sequence.
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.add(sha("0123456789abcdef", "0000000000000000", String.format("%08x", i))));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, index.indexOf(sha("0123456789abcdef", "0000000000000000", String.format("%08x", i))));
+        }
+    }
+
+    @Test
+    public void presizedIndexKeepsPositions() {
+        ShaIndex index = new ShaIndex(5000);
+        for (int i = 0; i < 5000; i++) {
+            index.add(sha(i));
+        }
+
+        assertEquals(5000, index.size());
+        assertEquals(4999, index.indexOf(sha(4999)));
+    }
+}
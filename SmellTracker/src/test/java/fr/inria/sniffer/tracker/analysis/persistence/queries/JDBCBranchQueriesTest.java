@@ -34,6 +34,7 @@ import java.util.Map;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class JDBCBranchQueriesTest extends PostgresTestCase {
     private DeveloperQueries developerQueries;
@@ -153,6 +154,26 @@ public class JDBCBranchQueriesTest extends PostgresTestCase {
         assertEquals(count, getBranchCount());
     }
 
+    @Test
+    public void testBatchedBranchInsertionsKeepTheirOrder() {
+        Commit branchCommit = prepareCommit("sha", 1);
+        int branchCommitId = (int) persistence.query(commitQueries.idFromShaQuery(projectId, branchCommit.sha))
+                .get(0).get("id");
+
+        // The principal branch references its commits by identifier.
+        persistence.addStatements(queries.branchInsertionStatement(projectId, 0, originCommitId, mergedIntoCommitId));
+        persistence.addStatements(queries.branchCommitInsertionQuery(projectId, 0, originCommitId, 0));
+        // The next one falls back on their sha, this statement being first used after the branch commits.
+        persistence.addStatements(queries.branchInsertionStatement(projectId, 1, originCommit, mergedIntoCommit));
+        persistence.addStatements(queries.branchCommitInsertionQuery(projectId, 1, branchCommitId, 0));
+        persistence.addStatements(queries.branchInsertionStatement(projectId, 2, originCommitId, -1));
+        persistence.addStatements(queries.branchCommitInsertionQuery(projectId, 2, mergedIntoCommitId, 0));
+        persistence.commit();
+
+        assertEquals(3, getBranchCount());
+        assertEquals(3, getBranchCommitCount());
+    }
+
     @Test
     public void testBranchCommitInsertionQuery() {
         long count = 0;
@@ -233,6 +254,22 @@ public class JDBCBranchQueriesTest extends PostgresTestCase {
         assertEquals(secondBranchID, result.get(0).get("id"));
     }
 
+    @Test
+    public void testLastOrdinalQuery() {
+        List<Map<String, Object>> result;
+
+        // No branch means a null ordinal
+        result = persistence.query(queries.lastOrdinalQuery(projectId));
+        assertNull(result.get(0).get("ordinal"));
+
+        insertBranch(projectId, 0, null, null);
+        insertBranch(projectId, 5, mergedIntoCommit, originCommit);
+        insertBranch(projectId, 4, originCommit, mergedIntoCommit);
+
+        result = persistence.query(queries.lastOrdinalQuery(projectId));
+        assertEquals(5, result.get(0).get("ordinal"));
+    }
+
     @Test
     public void testIdFromCommitQueryStatement() {
         List<Map<String, Object>> result;
@@ -462,6 +499,39 @@ public class JDBCBranchQueriesTest extends PostgresTestCase {
         assertEquals(4, result.get(0).get("ordinal"));
     }
 
+    @Test
+    public void testCommitTopologyQuery() {
+        List<Map<String, Object>> result;
+
+        Commit branchCommit = prepareCommit("sha", 0);
+        Commit anotherCommit = prepareCommit("another", 4);
+
+        // No branch means no result
+        result = persistence.query(queries.commitTopologyQuery(projectId));
+        assertTrue(result.isEmpty());
+
+        int firstBranchID = insertBranch(projectId, 4, originCommit, mergedIntoCommit);
+        int secondBranchID = insertBranch(projectId, 5, mergedIntoCommit, originCommit);
+
+        executeSuccess(queries.branchCommitInsertionQuery(projectId, 5, anotherCommit.sha, 3));
+        executeSuccess(queries.branchCommitInsertionQuery(projectId, 4, branchCommit.sha, 1));
+        executeSuccess(queries.branchCommitInsertionQuery(projectId, 4, anotherCommit.sha, 2));
+
+        // Every branch commit is returned, sorted by branch
+        result = persistence.query(queries.commitTopologyQuery(projectId));
+        assertEquals(3, result.size());
+        assertEquals(firstBranchID, result.get(0).get("branch_id"));
+        assertEquals(firstBranchID, result.get(1).get("branch_id"));
+        assertEquals(secondBranchID, result.get(2).get("branch_id"));
+        assertEquals(anotherCommit.sha, result.get(2).get("sha1"));
+        assertEquals(3, result.get(2).get("ordinal"));
+        assertNull(result.get(2).get("merged_commit_id"));
+
+        // Other projects are not returned
+        result = persistence.query(queries.commitTopologyQuery(projectId + 1));
+        assertTrue(result.isEmpty());
+    }
+
     @Test
     public void testParentCommitSmellsQuery() {
         List<Map<String, Object>> result;
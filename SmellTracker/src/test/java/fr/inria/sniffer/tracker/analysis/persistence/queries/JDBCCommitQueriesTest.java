@@ -199,6 +199,26 @@ public class JDBCCommitQueriesTest extends PostgresTestCase {
         assertEquals(anotherSha.sha, result.get(0).get("sha1"));
     }
 
+    @Test
+    public void testOrdinalFromShaQuery() {
+        List<Map<String, Object>> result;
+
+        // No commit means no result
+        result = persistence.query(queries.ordinalFromShaQuery(projectId, "sha"));
+        assertTrue(result.isEmpty());
+
+        Commit commit = generateCommit("sha", 1);
+        Commit anotherSha = generateCommit("anotherSha", 4);
+        executeSuccess(queries.commitInsertionStatement(projectId, commit, GitDiff.EMPTY));
+        executeSuccess(queries.commitInsertionStatement(projectId, anotherSha, GitDiff.EMPTY));
+
+        // We can query our commit
+        result = persistence.query(queries.ordinalFromShaQuery(projectId, commit.sha));
+        assertEquals(commit.ordinal, result.get(0).get("ordinal"));
+        result = persistence.query(queries.ordinalFromShaQuery(projectId, anotherSha.sha));
+        assertEquals(anotherSha.ordinal, result.get(0).get("ordinal"));
+    }
+
     @Test
     public void testLastProjectCommitShaQuery() {
         List<Map<String, Object>> result;
@@ -260,4 +280,53 @@ public class JDBCCommitQueriesTest extends PostgresTestCase {
         result = persistence.query(queries.mergedCommitIdQuery(projectId, mergeCommit));
         assertEquals(1, result.get(0).get("id"));
     }
+
+    @Test
+    public void testMergedCommitInsertedInSameBatch() {
+        Commit commit = generateCommit("sha", 1);
+        Commit secondCommit = generateCommit("anotherSha", 2);
+        Commit mergeCommit = generateCommit("thirdSha", 3);
+        mergeCommit.setParents(Arrays.asList(secondCommit, commit));
+
+        // The driver rewrites the batch into a single multi-values insert.
+        persistence.addStatements(
+                queries.commitInsertionStatement(projectId, commit, GitDiff.EMPTY),
+                queries.commitInsertionStatement(projectId, secondCommit, GitDiff.EMPTY),
+                queries.commitInsertionStatement(projectId, mergeCommit, GitDiff.EMPTY),
+                queries.mergedCommitUpdateStatement(projectId, mergeCommit));
+        persistence.commit();
+        assertEquals(3, getCommitCount());
+
+        List<Map<String, Object>> expected = persistence.query(queries.idFromShaQuery(projectId, commit.sha));
+        List<Map<String, Object>> result = persistence.query(queries.mergedCommitIdQuery(projectId, mergeCommit));
+        assertEquals(expected.get(0).get("id"), result.get(0).get("id"));
+        result = persistence.query(queries.mergedCommitIdQuery(projectId, secondCommit));
+        assertNull("returned ID is null", result.get(0).get("id"));
+    }
+
+    @Test
+    public void testCommitIdsQuery() {
+        List<Map<String, Object>> result;
+
+        Commit commit = generateCommit("sha", 1);
+        Commit secondCommit = generateCommit("anotherSha", 2);
+
+        // No commit means no result
+        result = persistence.query(queries.commitIdsQuery(projectId));
+        assertTrue(result.isEmpty());
+
+        executeSuccess(queries.commitInsertionStatement(projectId, commit, GitDiff.EMPTY));
+        executeSuccess(queries.commitInsertionStatement(projectId, secondCommit, GitDiff.EMPTY));
+
+        // Commits of another project are not returned
+        int secondProjectID = createProject("anotherProject");
+        executeSuccess(queries.commitInsertionStatement(secondProjectID, commit, GitDiff.EMPTY));
+
+        result = persistence.query(queries.commitIdsQuery(projectId));
+        assertEquals(2, result.size());
+        for (Map<String, Object> row : result) {
+            String sha = (String) row.get("sha1");
+            assertEquals(persistence.query(queries.idFromShaQuery(projectId, sha)).get(0).get("id"), row.get("id"));
+        }
+    }
 }
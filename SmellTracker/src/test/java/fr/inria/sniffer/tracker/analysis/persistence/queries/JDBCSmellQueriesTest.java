@@ -25,12 +25,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 public class JDBCSmellQueriesTest extends PostgresTestCase {
     private SmellQueries queries;
@@ -113,6 +115,41 @@ public class JDBCSmellQueriesTest extends PostgresTestCase {
         assertEquals(++count, getSmellCount());
     }
 
+    @Test
+    public void testSmellIdentitiesQuery() {
+        smell.id = createSmell(projectId, smell, queries);
+        createSmell(projectId, new Smell("MIM", "instance", "file"), queries);
+
+        List<Map<String, Object>> result = persistence.query(queries.smellIdentitiesQuery(projectId, smell.type));
+        assertEquals(1, result.size());
+        assertEquals(smell.id, result.get(0).get("id"));
+        assertEquals(smell.type, result.get(0).get("type"));
+        assertEquals(smell.instance, result.get(0).get("instance"));
+        assertEquals(smell.file, result.get(0).get("file"));
+        assertNull(result.get(0).get("renamed_from"));
+    }
+
+    @Test
+    public void testInsertSmellReturningIdentifier() {
+        List<Map<String, Object>> result = persistence.query(queries.smellInsertionReturningStatement(projectId, smell));
+        assertEquals(1, result.size());
+        smell.id = (int) result.get(0).get("id");
+        assertNull(result.get(0).get("renamed_from"));
+
+        // The unknown parent identifier is looked up.
+        Smell childSmell = new Smell(smell.type, "child", smell.file);
+        childSmell.parent = new Smell(smell.type, smell.instance, smell.file);
+        result = persistence.query(queries.smellInsertionReturningStatement(projectId, childSmell));
+        assertEquals(1, result.size());
+        assertEquals(smell.id, result.get(0).get("renamed_from"));
+        int childId = (int) result.get(0).get("id");
+        assertEquals(childId, persistence.query(queries.smellIdQuery(projectId, childSmell)).get(0).get("id"));
+
+        // Nothing is returned for an existing smell.
+        assertTrue(persistence.query(queries.smellInsertionReturningStatement(projectId, childSmell)).isEmpty());
+        assertEquals(2, getSmellCount());
+    }
+
     @Test
     public void testInsertSmellCategory() {
         smell.id = createSmell(projectId, smell, queries);
@@ -285,4 +322,30 @@ public class JDBCSmellQueriesTest extends PostgresTestCase {
         checkContainsSmells(result, Arrays.asList(anotherSmell, smellOtherCommit));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSetAsDeletedInBulk() {
+        Smell anotherSmell = new Smell("MIM", "another#instance", "file");
+        smell.id = createSmell(projectId, smell, queries);
+        anotherSmell.id = createSmell(projectId, anotherSmell, queries);
+        Commit commit = prepareCommit();
+        Commit secondCommit = prepareCommit("another_sha");
+        executeSuccess(queries.smellCategoryInsertionStatement(projectId, commit.sha, smell, SmellCategory.REFACTOR));
+        executeSuccess(queries.smellCategoryInsertionStatement(projectId, secondCommit.sha, anotherSmell, SmellCategory.REFACTOR));
+
+        List<Map<String, Object>> refactorings = persistence.query(queries.allRefactoredInstancesWithSha1(projectId));
+        assertEquals(2, refactorings.size());
+        assertEquals(commit.sha, refactorings.get(0).get("sha1"));
+        assertEquals(secondCommit.sha, refactorings.get(1).get("sha1"));
+
+        Map<Integer, Boolean> deletions = new HashMap<>();
+        deletions.put((int) refactorings.get(0).get("id"), true);
+        deletions.put((int) refactorings.get(1).get("id"), false);
+        executeExpect(queries.setAsDeleted(projectId, deletions), 2);
+
+        List<Map<String, Object>> result = persistence.query("SELECT smell_id, deleted FROM smell_refactoring");
+        assertEquals(2, result.size());
+        for (Map<String, Object> row : result) {
+            assertEquals(row.get("smell_id").equals(smell.id), row.get("deleted"));
+        }
+    }
+}
@@ -18,7 +18,11 @@
 package fr.inria.sniffer.tracker.analysis.query.branch;
 
 import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.CommitGraph;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
@@ -29,10 +33,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
@@ -41,6 +47,7 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -59,8 +66,10 @@ public class BranchQueryTest {
         persistence = Mockito.mock(Persistence.class);
         branchQueries = Mockito.mock(BranchQueries.class);
         commitQueries = Mockito.mock(CommitQueries.class);
-        doReturn("BranchInsertion").when(branchQueries).branchInsertionStatement(eq(projectId), anyInt(), any(Commit.class), any(Commit.class));
-        doReturn("BranchInsertion").when(branchQueries).branchCommitInsertionQuery(eq(projectId), anyInt(), anyString(), anyInt());
+        doReturn(ParameterizedStatement.of("BranchInsertion")).when(branchQueries).branchInsertionStatement(eq(projectId), anyInt(), any(Commit.class), any(Commit.class));
+        doReturn(ParameterizedStatement.of("BranchInsertion")).when(branchQueries).branchInsertionStatement(eq(projectId), anyInt(), anyInt(), anyInt());
+        doReturn(ParameterizedStatement.of("BranchInsertion")).when(branchQueries).branchCommitInsertionQuery(eq(projectId), anyInt(), anyString(), anyInt());
+        doReturn(ParameterizedStatement.of("BranchInsertion")).when(branchQueries).branchCommitInsertionQuery(eq(projectId), anyInt(), anyInt(), anyInt());
     }
 
     private BranchQuery getQuery() {
@@ -76,14 +85,14 @@ public class BranchQueryTest {
     }
 
     /**
-     * Register all the given commits to be returned by getCommit.
+     * Register the graph of the given commits, the last one being HEAD.
      *
-     * @param commits Input order does not matter as they are referenced by their sha.
+     * @param commits Input order does not matter as they are referenced by their sha, except for HEAD.
      * @throws IOException
      */
     private void initializeMocks(Commit... commits) throws IOException {
+        doReturn(CommitGraph.of(commits[commits.length - 1])).when(repository).loadCommitGraph();
         for (Commit commit : commits) {
-            doReturn(commit).when(repository).getCommitWithParents(commit.sha);
             doReturn(commit.sha).when(commitQueries).idFromShaQuery(projectId, commit.sha);
             doReturn(commit.sha).when(commitQueries).idFromShaQuery(eq(projectId), eq(commit.sha), anyBoolean());
             HashMap<Object, Object> map = new HashMap<>();
@@ -118,8 +127,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(4)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(4)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
@@ -156,14 +165,14 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(8)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, F.sha, 3);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, F);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(F));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
     }
@@ -207,8 +216,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(12)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
@@ -216,10 +225,10 @@ public class BranchQueryTest {
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 5);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, F, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(F), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 0);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, A, F);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(A), inGraph(F));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, E.sha, 1);
     }
@@ -263,8 +272,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(11)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(11)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
@@ -272,7 +281,7 @@ public class BranchQueryTest {
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 5);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
@@ -320,8 +329,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(11)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(11)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, D.sha, 2);
@@ -329,7 +338,7 @@ public class BranchQueryTest {
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 5);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, C.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
@@ -376,8 +385,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(11)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(11)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, D.sha, 2);
@@ -385,7 +394,7 @@ public class BranchQueryTest {
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 5);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, C.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
@@ -429,20 +438,20 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(12)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 3);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 4);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, F.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, D, G);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(D), inGraph(G));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, E.sha, 0);
     }
 
@@ -484,20 +493,20 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(12)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 3);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 4);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, F.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, A, H);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(A), inGraph(H));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, E.sha, 0);
     }
 
@@ -536,19 +545,19 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(11)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(11)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, F.sha, 3);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, B, H);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(B), inGraph(H));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 1);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, A, F);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(A), inGraph(F));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, D.sha, 0);
     }
 
@@ -590,8 +599,8 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(11)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(11)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
@@ -599,7 +608,7 @@ public class BranchQueryTest {
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, H.sha, 4);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 5);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, G.sha, 2);
@@ -644,20 +653,20 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(12)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, B.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, C.sha, 2);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, G.sha, 3);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, I.sha, 4);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, I);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(I));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, D.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, F.sha, 1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, H.sha, 2);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, D, G);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(D), inGraph(G));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, E.sha, 0);
     }
 
@@ -696,22 +705,198 @@ public class BranchQueryTest {
         getQuery().query();
         debugBranchCommitInsertions();
 
-        verify(persistence, times(10)).addStatements(any());
-        verify(branchQueries).branchInsertionStatement(projectId, 0, null, null);
+        verify(persistence, times(10)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, A.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 0, F.sha, 1);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 1, A, F);
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(A), inGraph(F));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, B.sha, 0);
         verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 2, B, E);
+        verify(branchQueries).branchInsertionStatement(projectId, 2, inGraph(B), inGraph(E));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 2, D.sha, 0);
 
-        verify(branchQueries).branchInsertionStatement(projectId, 3, B, D);
+        verify(branchQueries).branchInsertionStatement(projectId, 3, inGraph(B), inGraph(D));
         verify(branchQueries).branchCommitInsertionQuery(projectId, 3, C.sha, 0);
     }
 
+    /**
+     * Testing the commits known by the persistence are referenced by identifier,
+     * on the same branching form than {@link #testSingleMergeCommit()}.
+     *
+     * @throws QueryException
+     * @throws IOException
+     */
+    @Test
+    public void testCommitIdentifiersFromDictionary() throws QueryException, IOException {
+        Commit A = new Commit("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", 1);
+        Commit B = new Commit("bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb", 2, Collections.singletonList(A));
+        Commit C = new Commit("cccccccccccccccccccccccccccccccccccccccc", 3, Collections.singletonList(B));
+        Commit D = new Commit("dddddddddddddddddddddddddddddddddddddddd", 5, Collections.singletonList(A));
+        Commit E = new Commit("eeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeeee", 4, Collections.singletonList(D));
+        Commit F = new Commit("ffffffffffffffffffffffffffffffffffffffff", 6, Arrays.asList(C, E));
+
+        initializeHead(F);
+        initializeMocks(A, B, C, D, E, F);
+        List<Map<String, Object>> commitIds = new ArrayList<>();
+        // E is not known by the persistence and will be looked up by sha.
+        for (Commit commit : Arrays.asList(A, B, C, D, F)) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", commit.ordinal * 10);
+            row.put("sha1", commit.sha);
+            commitIds.add(row);
+        }
+        doReturn("commit ids").when(commitQueries).commitIdsQuery(projectId);
+        doReturn(commitIds).when(persistence).query("commit ids");
+
+        getQuery().query();
+
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
+        verify(persistence, times(1)).query("commit ids");
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, 10, 0);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, 20, 1);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, 30, 2);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, 60, 3);
+
+        verify(branchQueries).branchInsertionStatement(projectId, 1, 10, 60);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 1, 50, 0);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 1, E.sha, 1);
+    }
+
+    /**
+     * Testing a long history of successive merges from a single side branch:
+     * <pre><code>
+     * .     R
+     * |\
+     * | . S0
+     * . | M0 (merge)
+     * | . S1
+     * |/|
+     * . | M1 (merge)
+     * ...
+     * </pre></code>
+     * The whole side branch is handled once, from the last merge.
+     *
+     * @throws QueryException
+     * @throws IOException
+     */
+    @Test
+    public void testLongHistory() throws QueryException, IOException {
+        int merges = 2000;
+        Commit root = new Commit("r", 0);
+        Commit main = root;
+        Commit side = root;
+        for (int i = 0; i < merges; i++) {
+            side = new Commit("s" + i, -1, Collections.singletonList(side));
+            main = new Commit("m" + i, -1, Arrays.asList(main, side));
+        }
+        doReturn(CommitGraph.of(main)).when(repository).loadCommitGraph();
+        doReturn(main).when(repository).getHead();
+
+        getQuery().query();
+
+        // Two branches, and each commit in one of them.
+        verify(persistence, times(2 + 2 * merges + 1)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries).branchInsertionStatement(projectId, 0, -1, -1);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, root.sha, 0);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, main.sha, merges);
+
+        verify(branchQueries).branchInsertionStatement(projectId, 1, inGraph(root), inGraph(main));
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 1, "s0", 0);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 1, side.sha, merges - 1);
+    }
+
+    /**
+     * Testing an incremental analysis, A, B, and C being already analyzed in the principal branch (n°0),
+     * with 3 branches in the project:
+     * <pre><code>
+     * .   E
+     * |\
+     * . | D
+     * | . F
+     * |/
+     * .   C
+     * |
+     * .   B
+     * |
+     * .   A
+     * </code></pre>
+     *
+     * @throws QueryException
+     * @throws IOException
+     */
+    @Test
+    public void testIncrementalExtendsPrincipalBranch() throws QueryException, IOException {
+        Commit A = new Commit(sha('a'), 1);
+        Commit B = new Commit(sha('b'), 2, Collections.singletonList(A));
+        Commit C = new Commit(sha('c'), 3, Collections.singletonList(B));
+        Commit D = new Commit(sha('d'), 4, Collections.singletonList(C));
+        Commit F = new Commit(sha('f'), 5, Collections.singletonList(C));
+        Commit E = new Commit(sha('e'), 6, Arrays.asList(D, F));
+
+        initializeHead(C);
+        initializeMocks(A, B, C, D, F, E);
+        int mainlineId = 7;
+        doReturn("mainline").when(branchQueries).idFromOrdinalQueryStatement(projectId, 0);
+        stubRow("mainline", "id", mainlineId);
+        doReturn("head").when(branchQueries).lastCommitShaQuery(projectId, mainlineId);
+        stubRow("head", "sha1", C.sha);
+        doReturn("head ordinal").when(branchQueries).commitOrdinalQuery(eq(projectId), eq(mainlineId), any(Commit.class));
+        stubRow("head ordinal", "ordinal", 2);
+        doReturn("ordinal").when(commitQueries).ordinalFromShaQuery(projectId, C.sha);
+        stubRow("ordinal", "ordinal", C.ordinal);
+        doReturn("branches").when(branchQueries).lastOrdinalQuery(projectId);
+        stubRow("branches", "ordinal", 2);
+        List<Map<String, Object>> ids = new ArrayList<>();
+        for (Commit commit : Arrays.asList(A, B, C)) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("sha1", commit.sha);
+            row.put("id", commit.ordinal);
+            ids.add(row);
+        }
+        doReturn("ids").when(commitQueries).commitIdsQuery(projectId);
+        doReturn(ids).when(persistence).query("ids");
+
+        AnalysisCheckpoint checkpoint = new AnalysisCheckpoint(projectId, persistence, commitQueries, branchQueries);
+        checkpoint.load();
+        new BranchQuery(projectId, repository, persistence, commitQueries, branchQueries,
+                new CommitIdDictionary(projectId, persistence, commitQueries), checkpoint).query();
+
+        // One new branch, and each new commit in one branch.
+        verify(persistence, times(1 + 3)).addStatements(any(ParameterizedStatement.class));
+        verify(branchQueries, never()).branchInsertionStatement(eq(projectId), eq(0), anyInt(), anyInt());
+        verify(branchQueries, never()).branchInsertionStatement(eq(projectId), eq(0), any(Commit.class), any(Commit.class));
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, D.sha, 3);
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 0, E.sha, 4);
+
+        verify(branchQueries).branchInsertionStatement(projectId, 3, inGraph(C), inGraph(E));
+        verify(branchQueries).branchCommitInsertionQuery(projectId, 3, F.sha, 0);
+    }
+
+    /**
+     * The branches commits are read from the commits graph, without their ordinal.
+     *
+     * @param commit The test commit.
+     * @return The commit as built from the graph.
+     */
+    private static Commit inGraph(Commit commit) {
+        return Commit.handle(commit.sha);
+    }
+
+    private static String sha(char character) {
+        char[] sha = new char[40];
+        Arrays.fill(sha, character);
+        return new String(sha);
+    }
+
+    private void stubRow(String query, String column, Object value) {
+        Map<String, Object> row = new HashMap<>();
+        row.put(column, value);
+        doReturn(Collections.singletonList(row)).when(persistence).query(query);
+    }
+
     // TODO: TEST GAP COMMIT FOR: Merge, Parent, Last branch commit, initial commit, las project commit, random commit
 
     private void debugBranchCommitInsertions() {
@@ -24,11 +24,13 @@ import fr.inria.sniffer.tracker.analysis.model.GitDiff;
 import fr.inria.sniffer.tracker.analysis.model.GitRename;
 import fr.inria.sniffer.tracker.analysis.model.Repository;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.IOException;
@@ -44,6 +46,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -78,13 +81,15 @@ public class CommitsAnalysisTest {
         detailsChecker = Mockito.mock(CommitDetailsChecker.class);
 
         paprikaCommitsList = new ArrayList<>();
-        doReturn("CommitInsertion").when(commitQueries).commitInsertionStatement(
+        doReturn(ParameterizedStatement.of("CommitInsertion")).when(commitQueries).commitInsertionStatement(
                 eq(projectId), any(Commit.class), any(GitDiff.class));
-        doReturn("DeveloperInsertion").when(developerQueries).developerInsertStatement(
+        doReturn(ParameterizedStatement.of("MergedCommitUpdate")).when(commitQueries).mergedCommitUpdateStatement(
+                eq(projectId), any(Commit.class));
+        doReturn(ParameterizedStatement.of("DeveloperInsertion")).when(developerQueries).developerInsertStatement(
                 anyString());
-        doReturn("DeveloperProjectInsertion").when(developerQueries).projectDeveloperInsertStatement(
+        doReturn(ParameterizedStatement.of("DeveloperProjectInsertion")).when(developerQueries).projectDeveloperInsertStatement(
                 eq(projectId), anyString());
-        doReturn("FileRenameInsertion").when(commitQueries).fileRenameInsertionStatement(
+        doReturn(ParameterizedStatement.of("FileRenameInsertion")).when(commitQueries).fileRenameInsertionStatement(
                 eq(projectId), anyString(), any(GitRename.class));
     }
 
@@ -115,7 +120,9 @@ public class CommitsAnalysisTest {
         for (Commit commit : commits) {
             log.add(commit.sha);
         }
-        when(repository.getLog()).thenReturn(log);
+        // The repository streams its log from the oldest commit.
+        Collections.reverse(log);
+        when(repository.getTopologicalLog()).thenAnswer(invocation -> log.iterator());
     }
 
     /**
@@ -155,6 +162,9 @@ public class CommitsAnalysisTest {
         verify(commitQueries).commitInsertionStatement(projectId, merged, dummyDetails.diff);
         verify(commitQueries).commitInsertionStatement(projectId, parent, dummyDetails.diff);
         verify(commitQueries).commitInsertionStatement(projectId, merge, dummyDetails.diff);
+        // Only the merge commit gets its merged commit updated
+        verify(commitQueries, times(1)).mergedCommitUpdateStatement(anyInt(), any(Commit.class));
+        verify(commitQueries).mergedCommitUpdateStatement(projectId, merge);
 
         // Author insertion is brainlessly done at each encounter
         verify(developerQueries, times(3)).developerInsertStatement(anyString());
@@ -301,4 +311,31 @@ public class CommitsAnalysisTest {
         verify(developerQueries, times(2)).projectDeveloperInsertStatement(projectId, A.authorEmail);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelInsertionKeepsOrder() throws Exception {
+        int commitCount = 2 * CommitsAnalysis.BATCH_SIZE + 1;
+        Commit[] commits = new Commit[commitCount];
+        for (int i = 0; i < commitCount; i++) {
+            commits[i] = new Commit("sha" + i, i, new DateTime(i),
+                    "message", "author@email.com", Collections.emptyList());
+            addCommitInPaprika(commits[i]);
+            addCommitInRepository(commits[i]);
+        }
+        // The log is read from the most recent commit.
+        List<Commit> log = new ArrayList<>(Arrays.asList(commits));
+        Collections.reverse(log);
+        prepareGitLog(log.toArray(new Commit[0]));
+
+        new CommitsAnalysis(projectId, persistence, repository, paprikaCommitsList.iterator(), detailsChecker,
+                developerQueries, commitQueries, false, null, 4, null).query();
+
+        InOrder inOrder = inOrder(commitQueries);
+        for (Commit commit : commits) {
+            inOrder.verify(commitQueries).commitInsertionStatement(projectId, commit, dummyDetails.diff);
+        }
+        verify(commitQueries, times(commitCount)).commitInsertionStatement(anyInt(), any(Commit.class), any(GitDiff.class));
+        // Two full batches and the remaining commit.
+        verify(persistence, times(3)).commit();
+    }
+}
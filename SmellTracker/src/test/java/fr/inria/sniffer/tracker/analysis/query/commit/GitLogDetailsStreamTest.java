@@ -0,0 +1,148 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.commit;
+
+import fr.inria.sniffer.tracker.analysis.query.QueryException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GitLogDetailsStreamTest {
+    private static final String LOG = String.join("\n",
+            "@commit aaa",
+            "",
+            " app/src/main/java/com/app/A.java | 3 +++",
+            " 1 file changed, 3 insertions(+)",
+            " create mode 100644 app/src/main/java/com/app/A.java",
+            "@commit bbb aaa",
+            "",
+            " app/src/main/java/com/app/{A.java => B.java} | 2 +-",
+            " README.md                                   | 4 ++--",
+            " 2 files changed, 3 insertions(+), 3 deletions(-)",
+            " rename app/src/main/java/com/app/{A.java => B.java} (90%)",
+            "@commit ccc bbb ddd",
+            "@commit eee ccc",
+            "");
+
+    @Test
+    public void testStreamEntries() throws QueryException {
+        GitLogDetailsStream stream = new GitLogDetailsStream(new StringReader(LOG));
+
+        assertTrue(stream.hasNext());
+        GitLogDetailsStream.Entry entry = stream.next();
+        assertEquals("aaa", entry.sha);
+        assertFalse(entry.isMerge());
+        assertEquals(3, entry.details.diff.getAddition());
+        assertEquals(0, entry.details.diff.getDeletion());
+        assertEquals(1, entry.details.diff.getChangedFiles());
+        assertEquals(1, entry.details.changedFiles.size());
+        assertEquals("app/src/main/java/com/app/A.java", entry.details.changedFiles.get(0).name);
+        assertTrue(entry.details.renames.isEmpty());
+
+        entry = stream.next();
+        assertEquals("bbb", entry.sha);
+        assertFalse(entry.isMerge());
+        assertEquals(3, entry.details.diff.getAddition());
+        assertEquals(3, entry.details.diff.getDeletion());
+        assertEquals(2, entry.details.diff.getChangedFiles());
+        assertEquals(1, entry.details.renames.size());
+        assertEquals("app/src/main/java/com/app/A.java", entry.details.renames.get(0).oldFile);
+        assertEquals("app/src/main/java/com/app/B.java", entry.details.renames.get(0).newFile);
+        assertEquals(90, entry.details.renames.get(0).similarity);
+
+        entry = stream.next();
+        assertEquals("ccc", entry.sha);
+        assertTrue(entry.isMerge());
+        assertEquals(0, entry.details.diff.getChangedFiles());
+
+        entry = stream.next();
+        assertEquals("eee", entry.sha);
+        assertFalse(entry.isMerge());
+        assertEquals(0, entry.details.diff.getChangedFiles());
+
+        assertFalse(stream.hasNext());
+        stream.close();
+    }
+
+    @Test
+    public void testEmptyLog() throws QueryException {
+        GitLogDetailsStream stream = new GitLogDetailsStream(new StringReader(""));
+        assertFalse(stream.hasNext());
+        stream.close();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testReadErrorIsRethrown() throws QueryException {
+        Reader failing = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (GitLogDetailsStream stream = new GitLogDetailsStream(failing)) {
+            stream.hasNext();
+        }
+    }
+
+    @Test
+    public void testProcessSuccess() throws Exception {
+        GitLogDetailsStream stream = new GitLogDetailsStream(shell("printf '@commit aaa\\n'"));
+        assertEquals("aaa", stream.next().sha);
+        assertFalse(stream.hasNext());
+        stream.close();
+    }
+
+    @Test
+    public void testProcessFailureIsReportedOnClose() throws Exception {
+        GitLogDetailsStream stream = new GitLogDetailsStream(shell("printf '@commit aaa\\n'; exit 128"));
+        assertEquals("aaa", stream.next().sha);
+        assertFalse(stream.hasNext());
+        try {
+            stream.close();
+            fail("Expected the git log failure to be reported");
+        } catch (QueryException e) {
+            assertTrue(e.getMessage().contains("128"));
+        }
+    }
+
+    @Test
+    public void testPartiallyReadProcessIsDestroyed() throws Exception {
+        Process process = shell("printf '@commit aaa\\n@commit bbb aaa\\n'; sleep 60; exit 1");
+        GitLogDetailsStream stream = new GitLogDetailsStream(process);
+        assertEquals("aaa", stream.next().sha);
+        stream.close();
+        process.waitFor();
+        assertFalse(process.isAlive());
+    }
+
+    private static Process shell(String script) throws IOException {
+        return new ProcessBuilder("sh", "-c", script).start();
+    }
+}
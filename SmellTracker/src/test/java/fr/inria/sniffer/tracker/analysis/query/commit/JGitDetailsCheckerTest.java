@@ -0,0 +1,148 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.commit;
+
+import fr.inria.sniffer.tracker.analysis.model.CommitDetails;
+import fr.inria.sniffer.tracker.analysis.model.GitChangedFile;
+import fr.inria.sniffer.tracker.analysis.model.GitRename;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JGitDetailsCheckerTest {
+    private static final String CONTENT = "first line\nsecond line\nthird line\nfourth line\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git git;
+    private JGitDetailsChecker checker;
+
+    @Before
+    public void setUp() throws Exception {
+        git = Git.init().setDirectory(folder.getRoot()).call();
+        checker = new JGitDetailsChecker(git.getRepository());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        checker.close();
+        git.close();
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RevCommit commit() throws Exception {
+        git.add().addFilepattern(".").call();
+        git.add().setUpdate(true).addFilepattern(".").call();
+        return git.commit().setMessage("message").setAuthor("author", "author@email.com").call();
+    }
+
+    @Test
+    public void rootCommitIsComparedToEmptyTree() throws Exception {
+        write("a.txt", CONTENT);
+        write("dir/b.txt", "single line\n");
+        RevCommit commit = commit();
+
+        CommitDetails details = checker.fetch(commit.name());
+
+        assertEquals(2, details.diff.getChangedFiles());
+        assertEquals(5, details.diff.getAddition());
+        assertEquals(0, details.diff.getDeletion());
+        assertTrue(details.renames.isEmpty());
+        assertEquals(2, details.changedFiles.size());
+        assertChangedFile(details.changedFiles.get(0), "a.txt", 4);
+        assertChangedFile(details.changedFiles.get(1), "dir/b.txt", 1);
+    }
+
+    @Test
+    public void renamesAndModificationsAreDetected() throws Exception {
+        write("a.txt", CONTENT);
+        write("dir/b.txt", "single line\n");
+        commit();
+
+        new File(folder.getRoot(), "a.txt").delete();
+        write("moved/a.txt", CONTENT.replace("third", "3rd"));
+        write("dir/b.txt", "another line\n");
+        RevCommit commit = commit();
+
+        CommitDetails details = checker.fetch(commit.name());
+
+        assertEquals(2, details.diff.getChangedFiles());
+        assertEquals(2, details.diff.getAddition());
+        assertEquals(2, details.diff.getDeletion());
+
+        assertEquals(1, details.renames.size());
+        GitRename rename = details.renames.get(0);
+        assertEquals("a.txt", rename.oldFile);
+        assertEquals("moved/a.txt", rename.newFile);
+        assertTrue(rename.similarity >= 50);
+
+        // Same as the git stat parsing, renamed files are not listed.
+        assertEquals(1, details.changedFiles.size());
+        assertChangedFile(details.changedFiles.get(0), "dir/b.txt", 2);
+    }
+
+    @Test
+    public void deletedFileUsesOldPath() throws Exception {
+        write("a.txt", CONTENT);
+        commit();
+
+        new File(folder.getRoot(), "a.txt").delete();
+        write("other.txt", "unrelated\n");
+        RevCommit commit = commit();
+
+        CommitDetails details = checker.fetch(commit.name());
+
+        assertEquals(2, details.diff.getChangedFiles());
+        assertEquals(1, details.diff.getAddition());
+        assertEquals(4, details.diff.getDeletion());
+        assertTrue(details.renames.isEmpty());
+        assertEquals(2, details.changedFiles.size());
+    }
+
+    @Test
+    public void unknownCommitGivesEmptyDetails() {
+        CommitDetails details = checker.fetch("0123456789012345678901234567890123456789");
+
+        assertEquals(0, details.diff.getChangedFiles());
+        assertTrue(details.renames.isEmpty());
+        assertTrue(details.changedFiles.isEmpty());
+    }
+
+    private static void assertChangedFile(GitChangedFile changedFile, String name, int size) {
+        assertEquals(name, changedFile.name);
+        assertEquals(size, changedFile.changeSize);
+    }
+}
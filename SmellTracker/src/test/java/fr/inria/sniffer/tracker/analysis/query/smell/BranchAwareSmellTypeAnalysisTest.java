@@ -19,6 +19,8 @@ package fr.inria.sniffer.tracker.analysis.query.smell;
 
 import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.AnalysisCheckpoint;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
 import org.junit.Before;
@@ -39,7 +41,11 @@ import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -233,10 +239,10 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, firstCommit);
         getAnalysis().query();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(2)).addStatements(any());
+        verify(persistence, times(2)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
     }
@@ -262,10 +268,10 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, lastCommitSha, firstSmell, SmellCategory.REFACTOR);
@@ -290,11 +296,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, secondCommit);
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(5)).addStatements(any());
+        verify(persistence, times(5)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -323,11 +329,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, secondCommit);
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(5)).addStatements(any());
+        verify(persistence, times(5)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -356,11 +362,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, secondCommit);
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(6)).addStatements(any());
+        verify(persistence, times(6)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, secondSmell, SmellCategory.PRESENCE);
@@ -389,11 +395,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, secondCommit);
         getAnalysis().query();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         // We have only one smell insertion here since we check for existence in the previous commit.
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, secondCommit.sha, firstSmell, SmellCategory.PRESENCE);
@@ -424,11 +430,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(6)).addStatements(any());
+        verify(persistence, times(6)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, someCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, someCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, someCommit.sha, secondSmell, SmellCategory.PRESENCE);
@@ -464,7 +470,7 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockLastBranchCommit(0, secondCommit.sha);
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         // We introduce the new smell instance definition with renamed_from filled in.
         // Since we use a captor we have to check all invocations of smellInsertionStatement...
@@ -475,7 +481,7 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         assertEquals(expectedSecondSmell, renamed);
         assertEquals(firstSmell, renamed.parent);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, secondCommit.sha, expectedSecondSmell, SmellCategory.PRESENCE);
@@ -511,7 +517,7 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         // We introduce the new smell instance definition with renamed_from filled in.
         // Since we use a captor we have to check all invocations of smellInsertionStatement...
@@ -521,7 +527,7 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         assertEquals(expectedSecondSmell, renamed);
         assertEquals(firstSmell, renamed.parent);
 
-        verify(persistence, times(4)).addStatements(any());
+        verify(persistence, times(4)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -545,10 +551,10 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(2)).addStatements(any());
+        verify(persistence, times(2)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, thirdCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, thirdCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
     }
@@ -600,12 +606,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(15)).addStatements(any());
+        verify(persistence, times(15)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A0.sha, thirdSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A0.sha, thirdSmell, SmellCategory.INTRODUCTION);
@@ -692,12 +698,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(18)).addStatements(any());
+        verify(persistence, times(18)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -788,12 +794,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(17)).addStatements(any());
+        verify(persistence, times(17)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -877,12 +883,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         mockBranchParentCommitSmells(2, firstSmell);
 
         getAnalysis().query();
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(17)).addStatements(any());
+        verify(persistence, times(17)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -970,12 +976,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(19)).addStatements(any());
+        verify(persistence, times(19)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1062,11 +1068,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(12)).addStatements(any());
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1149,12 +1155,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(17)).addStatements(any());
+        verify(persistence, times(17)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, B.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, B.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1242,11 +1248,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
-        verify(persistence, times(17)).addStatements(any());
+        verify(persistence, times(17)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1332,12 +1338,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
 
-        verify(persistence, times(15)).addStatements(any());
+        verify(persistence, times(15)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1413,11 +1419,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
 
         getAnalysis().query();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(12)).addStatements(any());
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1495,11 +1501,11 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(12)).addStatements(any());
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1577,12 +1583,12 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, expectedSecondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, expectedRenamedFirstSmell);
 
-        verify(persistence, times(8)).addStatements(any());
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -1631,14 +1637,14 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         getAnalysis().query();
 
 
-        verify(persistence, times(4)).execute(any());
+        verify(persistence, times(4)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, thirdSmell);
         verify(smellQueries).smellInsertionStatement(projectId, fourthSmell);
 
 
-        verify(persistence, times(12)).addStatements(any());
+        verify(persistence, times(12)).addStatements(any(ParameterizedStatement.class));
         // Initial branch
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
@@ -1658,4 +1664,79 @@ public class BranchAwareSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase
         verify(smellQueries).smellCategoryInsertionStatement(projectId, C.sha, fourthSmell, SmellCategory.INTRODUCTION);
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Resuming after B, as left by a previous analysis, gives the same results on C as a full analysis.
+     * <pre><code>
+     * * A (1   )
+     * |
+     * * B (1, 2) [checkpoint]
+     * |
+     * * C (   2)
+     * </pre></code>
+     *
+     * @throws QueryException
+     */
+    @Test
+    public void testResumeAfterCheckpointMatchesFullAnalysis() throws QueryException {
+        addSmell(firstCommit, firstSmell);
+        addSmell(secondCommit, firstSmell);
+        addSmell(secondCommit, secondSmell);
+        addSmell(thirdCommit, secondSmell);
+        mockCommitBranch(firstCommit, 0, 0);
+        mockCommitBranch(secondCommit, 0, 1);
+        mockCommitBranch(thirdCommit, 0, 2);
+        mockLastBranchCommit(0, thirdCommit);
+
+        getAnalysis().query();
+        List<String> full = new ArrayList<>();
+        for (String insertion : categoryInsertions()) {
+            if (insertion.startsWith(thirdCommit.sha + " ")) {
+                full.add(insertion);
+            }
+        }
+        clearInvocations(smellQueries);
+
+        AnalysisCheckpoint checkpoint = mock(AnalysisCheckpoint.class);
+        Commit head = new Commit(secondCommit.sha, secondCommit.ordinal);
+        head.setBranchOrdinal(1);
+        doReturn(true).when(checkpoint).isAnalyzed();
+        doReturn(true).when(checkpoint).isAnalyzed(firstCommit.sha);
+        doReturn(true).when(checkpoint).isAnalyzed(secondCommit.sha);
+        doReturn(0).when(checkpoint).getMainlineId();
+        doReturn(head).when(checkpoint).getMainlineHead();
+        doReturn("headId").when(commitQueries).idFromShaQuery(projectId, secondCommit.sha);
+        doReturn("headSmells").when(smellQueries).commitSmellsQuery(projectId, "(headId)", smellType);
+        doReturn(generateSmellsMap(Arrays.asList(firstSmell, secondSmell))).when(persistence).query("headSmells");
+
+        new BranchAwareSmellTypeAnalysis(projectId, persistence, smellList.iterator(), smellType,
+                duplicationChecker, commitQueries, smellQueries, branchQueries,
+                new StatementSmellWriter(projectId, persistence, smellQueries), null, null, checkpoint,
+                new BranchBoundaries(projectId, persistence, branchQueries)).query();
+
+        assertEquals(Arrays.asList(
+                thirdCommit.sha + " " + firstSmell.instance + " " + SmellCategory.REFACTOR,
+                thirdCommit.sha + " " + secondSmell.instance + " " + SmellCategory.PRESENCE), full);
+        assertEquals(full, categoryInsertions());
+        verify(smellQueries, never()).lostSmellCategoryInsertionStatement(anyInt(), any(Smell.class),
+                any(SmellCategory.class), anyInt(), anyInt());
+    }
+
+    /**
+     * @return The smell categories insertions, as "sha instance category", sorted.
+     */
+    private List<String> categoryInsertions() {
+        ArgumentCaptor<String> shaCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Smell> smellCaptor = ArgumentCaptor.forClass(Smell.class);
+        ArgumentCaptor<SmellCategory> categoryCaptor = ArgumentCaptor.forClass(SmellCategory.class);
+        verify(smellQueries, atLeastOnce()).smellCategoryInsertionStatement(eq(projectId),
+                shaCaptor.capture(), smellCaptor.capture(), categoryCaptor.capture());
+        List<String> insertions = new ArrayList<>();
+        for (int i = 0; i < shaCaptor.getAllValues().size(); i++) {
+            insertions.add(shaCaptor.getAllValues().get(i) + " " + smellCaptor.getAllValues().get(i).instance
+                    + " " + categoryCaptor.getAllValues().get(i));
+        }
+        Collections.sort(insertions);
+        return insertions;
+    }
+}
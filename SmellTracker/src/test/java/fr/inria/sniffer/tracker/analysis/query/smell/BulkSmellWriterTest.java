@@ -0,0 +1,247 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.CopyStream;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.CommitQueries;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+public class BulkSmellWriterTest {
+    private final int projectId = 1;
+
+    private Persistence persistence;
+    private CommitQueries commitQueries;
+    private SmellQueries smellQueries;
+    private Map<SmellCategory, CopyStream> streams;
+    private List<Map<String, Object>> commitIds;
+    private List<Map<String, Object>> smellIdentities;
+    private CopyStream smellStream;
+
+    private Smell smell;
+    private Commit commit;
+
+    @Before
+    public void setUp() throws Exception {
+        persistence = Mockito.mock(Persistence.class);
+        commitQueries = Mockito.mock(CommitQueries.class);
+        smellQueries = Mockito.mock(SmellQueries.class);
+
+        streams = new HashMap<>();
+        for (SmellCategory category : SmellCategory.values()) {
+            CopyStream stream = Mockito.mock(CopyStream.class);
+            doReturn(stream).when(persistence).openCopyStream(eq(category.getName()), any(), anyInt());
+            streams.put(category, stream);
+        }
+
+        smellStream = Mockito.mock(CopyStream.class);
+        doReturn(smellStream).when(persistence).openCopyStream(eq("smell"), any(), anyInt());
+
+        smellIdentities = new ArrayList<>();
+        doReturn("smell-identities").when(smellQueries).smellIdentitiesQuery(projectId, "TEST");
+        doReturn(smellIdentities).when(persistence).query("smell-identities");
+        List<Map<String, Object>> reservedIds = new ArrayList<>();
+        for (int id = 100; id < 103; id++) {
+            reservedIds.add(Collections.singletonMap("id", (long) id));
+        }
+        doReturn("reserve-ids").when(smellQueries).reserveSmellIdsQuery(anyInt());
+        doReturn(reservedIds).when(persistence).query("reserve-ids");
+
+        commitIds = new ArrayList<>();
+        doReturn("commit-ids").when(commitQueries).commitIdsQuery(projectId);
+        doReturn(commitIds).when(persistence).query("commit-ids");
+
+        smell = new Smell("TEST", "instance", "file");
+        smell.id = 12;
+        commit = new Commit("0123456789abcdef0123456789abcdef01234567", 0);
+        mockCommitId(commit, 42);
+    }
+
+    private void mockCommitId(Commit commit, int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("sha1", commit.sha);
+        commitIds.add(row);
+    }
+
+    private BulkSmellWriter getWriter() {
+        return new BulkSmellWriter(projectId, persistence,
+                new CommitIdDictionary(projectId, persistence, commitQueries), smellQueries);
+    }
+
+    @Test
+    public void categoryIsCopiedWithCommitIdentifier() {
+        BulkSmellWriter writer = getWriter();
+
+        writer.insertCategory(smell, commit, SmellCategory.PRESENCE);
+        writer.insertCategory(smell, commit, SmellCategory.INTRODUCTION);
+
+        verify(streams.get(SmellCategory.PRESENCE)).addRow(smell.id, projectId, 42);
+        verify(streams.get(SmellCategory.INTRODUCTION)).addRow(smell.id, projectId, 42);
+        verify(streams.get(SmellCategory.REFACTOR), never()).addRow(any());
+        verify(smellQueries, never()).smellCategoryInsertionStatement(anyInt(), any(), any(), any());
+
+        // The commit identifiers are only queried once.
+        verify(persistence, times(1)).query("commit-ids");
+    }
+
+    @Test
+    public void duplicateCategoryIsCopiedOnce() {
+        BulkSmellWriter writer = getWriter();
+        Commit anotherCommit = new Commit("fedcba9876543210fedcba9876543210fedcba98", 1);
+        mockCommitId(anotherCommit, 43);
+
+        writer.insertCategory(smell, commit, SmellCategory.PRESENCE);
+        writer.insertCategory(smell, commit, SmellCategory.PRESENCE);
+        writer.insertCategory(smell, anotherCommit, SmellCategory.PRESENCE);
+
+        verify(streams.get(SmellCategory.PRESENCE), times(1)).addRow(smell.id, projectId, 42);
+        verify(streams.get(SmellCategory.PRESENCE), times(1)).addRow(smell.id, projectId, 43);
+    }
+
+    @Test
+    public void unknownCommitIsSkipped() {
+        BulkSmellWriter writer = getWriter();
+
+        writer.insertCategory(smell, new Commit("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", 3), SmellCategory.PRESENCE);
+        writer.insertCategory(smell, new Commit("unknown", 4), SmellCategory.PRESENCE);
+
+        verify(streams.get(SmellCategory.PRESENCE), never()).addRow(any());
+    }
+
+    @Test
+    public void newSmellIsCopiedWithReservedIdentifier() {
+        BulkSmellWriter writer = getWriter();
+        Smell first = new Smell("TEST", "first", "file");
+        Smell second = new Smell("TEST", "second", "file");
+        second.parent = smell;
+
+        assertEquals(100, writer.insertSmell(first));
+        assertEquals(101, writer.insertSmell(second));
+        // The same smell is only copied once.
+        assertEquals(100, writer.insertSmell(new Smell("TEST", "first", "file")));
+
+        verify(smellStream).addRow(100, projectId, "first", "TEST", "file", null);
+        verify(smellStream).addRow(101, projectId, "second", "TEST", "file", smell.id);
+        verifyNoMoreInteractions(smellStream);
+        verify(persistence, times(1)).query("smell-identities");
+        verify(persistence, times(1)).query("reserve-ids");
+        verify(persistence, never()).execute(any(ParameterizedStatement.class));
+    }
+
+    @Test
+    public void persistedSmellIsNotCopied() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 7);
+        row.put("type", "TEST");
+        row.put("instance", "persisted");
+        row.put("file", "file");
+        row.put("renamed_from", null);
+        smellIdentities.add(row);
+        BulkSmellWriter writer = getWriter();
+
+        assertEquals(7, writer.insertSmell(new Smell("TEST", "persisted", "file")));
+
+        verify(smellStream, never()).addRow(any());
+        verify(persistence, never()).query("reserve-ids");
+    }
+
+    @Test
+    public void smellIdentifiersAreLoadedByType() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 8);
+        row.put("type", "OTHER");
+        row.put("instance", "persisted");
+        row.put("file", "file");
+        row.put("renamed_from", null);
+        doReturn("other-identities").when(smellQueries).smellIdentitiesQuery(projectId, "OTHER");
+        doReturn(Collections.singletonList(row)).when(persistence).query("other-identities");
+        BulkSmellWriter writer = getWriter();
+
+        assertEquals(100, writer.insertSmell(new Smell("TEST", "persisted", "file")));
+        assertEquals(8, writer.insertSmell(new Smell("OTHER", "persisted", "file")));
+        assertEquals(101, writer.insertSmell(new Smell("TEST", "other", "file")));
+
+        verify(persistence, times(1)).query("smell-identities");
+        verify(persistence, times(1)).query("other-identities");
+    }
+
+    @Test
+    public void smellWithUnknownParentIsInsertedReturningItsIdentifier() {
+        Smell parent = new Smell("TEST", "parent", "file");
+        Smell renamed = new Smell("TEST", "renamed", "file");
+        renamed.parent = parent;
+        ParameterizedStatement insertion = ParameterizedStatement.of("insert-renamed");
+        doReturn(insertion).when(smellQueries).smellInsertionReturningStatement(projectId, renamed);
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", 57);
+        row.put("renamed_from", 9);
+        doReturn(Collections.singletonList(row)).when(persistence).query(insertion);
+        BulkSmellWriter writer = getWriter();
+
+        assertEquals(57, writer.insertSmell(renamed));
+
+        // The returned identifier is cached with the resolved parent.
+        Smell resolved = new Smell("TEST", "renamed", "file");
+        resolved.parent = new Smell("TEST", "parent", "file");
+        resolved.parent.id = 9;
+        assertEquals(57, writer.insertSmell(resolved));
+        verify(persistence, times(1)).query(insertion);
+        verify(smellQueries, never()).lastSmellIdQuery(anyInt());
+        verify(smellStream, never()).addRow(any());
+    }
+
+    @Test
+    public void existingSmellWithUnknownParentIsLookedUp() {
+        Smell parent = new Smell("TEST", "parent", "file");
+        Smell renamed = new Smell("TEST", "renamed", "file");
+        renamed.parent = parent;
+        ParameterizedStatement insertion = ParameterizedStatement.of("insert-renamed");
+        doReturn(insertion).when(smellQueries).smellInsertionReturningStatement(projectId, renamed);
+        doReturn(Collections.emptyList()).when(persistence).query(insertion);
+        doReturn("renamed-id").when(smellQueries).smellIdQuery(projectId, renamed);
+        doReturn(Collections.singletonList(Collections.singletonMap("id", 33))).when(persistence).query("renamed-id");
+
+        assertEquals(33, getWriter().insertSmell(renamed));
+        verify(smellQueries, never()).lastSmellIdQuery(anyInt());
+    }
+}
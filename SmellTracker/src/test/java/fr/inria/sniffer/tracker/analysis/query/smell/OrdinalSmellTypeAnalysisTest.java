@@ -19,6 +19,7 @@ package fr.inria.sniffer.tracker.analysis.query.smell;
 
 import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
 import fr.inria.sniffer.tracker.analysis.query.QueryException;
 import org.junit.Before;
@@ -66,10 +67,10 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(2)).addStatements(any());
+        verify(persistence, times(2)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
     }
@@ -93,10 +94,10 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, lastCommitSha, firstSmell, SmellCategory.REFACTOR);
@@ -120,11 +121,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(5)).addStatements(any());
+        verify(persistence, times(5)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -152,11 +153,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(5)).addStatements(any());
+        verify(persistence, times(5)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -186,11 +187,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
 
 
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(6)).addStatements(any());
+        verify(persistence, times(6)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, secondSmell, SmellCategory.PRESENCE);
@@ -218,10 +219,10 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, secondCommit.sha, firstSmell, SmellCategory.PRESENCE);
@@ -251,11 +252,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         debugSmellInsertions();
 
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries, times(2)).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(8)).addStatements(any());
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         // The 1st and 3rd commits will insert the secondSmell since 3rd has no idea it existed.
@@ -301,11 +302,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries, times(2)).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(8)).addStatements(any());
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         // The 1st and Nth commits will insert the secondSmell since 3rd has no idea it existed.
@@ -343,11 +344,11 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, secondSmell);
 
-        verify(persistence, times(6)).addStatements(any());
+        verify(persistence, times(6)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
         // The 1st and Nth commits will insert the secondSmell since 3rd has no idea it existed.
@@ -382,7 +383,7 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries, times(2)).smellInsertionStatement(eq(projectId), smellCaptor.capture());
         // Check that the renamed commit has a set parent
@@ -390,7 +391,7 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         assertEquals(expectedSecondSmell, renamed);
         assertEquals(firstSmell, renamed.parent);
 
-        verify(persistence, times(3)).addStatements(any());
+        verify(persistence, times(3)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -427,7 +428,7 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(2)).execute(any());
+        verify(persistence, times(2)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries, times(2)).smellInsertionStatement(eq(projectId), smellCaptor.capture());
         // Check that the renamed commit has a set parent
@@ -435,7 +436,7 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         assertEquals(expectedSecondSmell, renamed);
         assertEquals(firstSmell, renamed.parent);
 
-        verify(persistence, times(4)).addStatements(any());
+        verify(persistence, times(4)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, firstCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
 
@@ -456,10 +457,10 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         mockEndCommit(thirdCommit.sha);
         getAnalysis().query();
 
-        verify(persistence, times(1)).execute(any());
+        verify(persistence, times(1)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
 
-        verify(persistence, times(2)).addStatements(any());
+        verify(persistence, times(2)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, thirdCommit.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, thirdCommit.sha, firstSmell, SmellCategory.INTRODUCTION);
     }
@@ -518,12 +519,12 @@ public class OrdinalSmellTypeAnalysisTest extends SmellTypeAnalysisTestCase {
         getAnalysis().query();
         debugSmellInsertions();
 
-        verify(persistence, times(3)).execute(any());
+        verify(persistence, times(3)).execute(any(ParameterizedStatement.class));
         verify(smellQueries).smellInsertionStatement(projectId, firstSmell);
         verify(smellQueries).smellInsertionStatement(projectId, expectedSecondSmell);
         verify(smellQueries).smellInsertionStatement(projectId, expectedRenamedFirstSmell);
 
-        verify(persistence, times(8)).addStatements(any());
+        verify(persistence, times(8)).addStatements(any(ParameterizedStatement.class));
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.PRESENCE);
         verify(smellQueries).smellCategoryInsertionStatement(projectId, A.sha, firstSmell, SmellCategory.INTRODUCTION);
 
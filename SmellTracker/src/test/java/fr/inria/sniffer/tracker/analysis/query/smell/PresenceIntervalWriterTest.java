@@ -0,0 +1,127 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.CopyStream;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class PresenceIntervalWriterTest {
+    private final int projectId = 1;
+    private final int branchId = 3;
+
+    private CopyStream intervalStream;
+    private SmellWriter delegate;
+    private PresenceIntervalWriter presenceWriter;
+    private SmellWriter writer;
+    private Smell smell;
+
+    @Before
+    public void setUp() throws Exception {
+        Persistence persistence = Mockito.mock(Persistence.class);
+        intervalStream = Mockito.mock(CopyStream.class);
+        doReturn(intervalStream).when(persistence).openCopyStream(eq("smell_presence_interval"), any(), anyInt());
+        delegate = Mockito.mock(SmellWriter.class);
+
+        presenceWriter = new PresenceIntervalWriter(projectId, persistence);
+        writer = presenceWriter.forBranch(branchId, delegate);
+
+        smell = new Smell("MIM", "instance", "file");
+        smell.id = 42;
+    }
+
+    private void addPresence(int branchOrdinal) {
+        Commit commit = new Commit("sha" + branchOrdinal, branchOrdinal + 10);
+        commit.setBranchOrdinal(branchOrdinal);
+        writer.insertCategory(smell, commit, SmellCategory.PRESENCE);
+    }
+
+    @Test
+    public void consecutivePresenceIsWrittenAsSingleInterval() {
+        addPresence(1);
+        addPresence(2);
+        addPresence(2);
+        addPresence(3);
+        verifyZeroInteractions(intervalStream);
+
+        presenceWriter.endBranch(branchId);
+
+        verify(intervalStream).addRow(smell.id, projectId, branchId, 1, 3);
+        verifyNoMoreInteractions(intervalStream);
+        verifyZeroInteractions(delegate);
+    }
+
+    @Test
+    public void missingCommitSplitsInterval() {
+        addPresence(1);
+        addPresence(2);
+        addPresence(5);
+
+        verify(intervalStream).addRow(smell.id, projectId, branchId, 1, 2);
+
+        presenceWriter.endBranch(branchId);
+
+        verify(intervalStream).addRow(smell.id, projectId, branchId, 5, 5);
+        verifyNoMoreInteractions(intervalStream);
+    }
+
+    @Test
+    public void flushKeepsIntervalOpen() {
+        addPresence(1);
+        addPresence(2);
+        presenceWriter.flush();
+        verify(intervalStream).addRow(smell.id, projectId, branchId, 1, 2);
+
+        // Nothing pending anymore.
+        presenceWriter.flush();
+        verifyNoMoreInteractions(intervalStream);
+
+        addPresence(3);
+        addPresence(4);
+        presenceWriter.endBranch(branchId);
+
+        verify(intervalStream).addRow(smell.id, projectId, branchId, 3, 4);
+        verifyNoMoreInteractions(intervalStream);
+    }
+
+    @Test
+    public void otherCategoriesAreDelegated() {
+        Commit commit = new Commit("sha", 1);
+        writer.insertSmell(smell);
+        writer.insertCategory(smell, commit, SmellCategory.INTRODUCTION);
+        writer.insertLostCategory(smell, SmellCategory.REFACTOR, 1, 4);
+
+        verify(delegate).insertSmell(smell);
+        verify(delegate).insertCategory(smell, commit, SmellCategory.INTRODUCTION);
+        verify(delegate).insertLostCategory(smell, SmellCategory.REFACTOR, 1, 4);
+        verifyZeroInteractions(intervalStream);
+    }
+}
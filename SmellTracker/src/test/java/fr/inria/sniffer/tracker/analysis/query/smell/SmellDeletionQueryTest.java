@@ -0,0 +1,221 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.detector.neo4j.QueryEngine;
+import fr.inria.sniffer.tracker.analysis.persistence.ListQueryCursor;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SmellDeletionQueryTest {
+    private static final int PROJECT_ID = 1;
+    private static final String SHA_A = "sha-a";
+    private static final String SHA_B = "sha-b";
+
+    private Persistence persistence;
+    private SmellQueries smellQueries;
+    private QueryEngine queryEngine;
+    private GraphDatabaseService graphDatabaseService;
+
+    private List<Map<String, Object>> refactorings;
+    // Instances existing in the SmellDetector database, by commit.
+    private Map<String, Set<String>> existing;
+    // Commits failing their existence check.
+    private Set<String> failingCommits;
+    // Checked instances, in the order of the existence queries.
+    private List<List<String>> checkedGroups;
+    private Map<Integer, Boolean> persistedDeletions;
+    private int updates;
+
+    @Before
+    public void setUp() {
+        refactorings = new ArrayList<>();
+        existing = new HashMap<>();
+        failingCommits = new HashSet<>();
+        checkedGroups = Collections.synchronizedList(new ArrayList<>());
+        persistedDeletions = new HashMap<>();
+        updates = 0;
+
+        persistence = mock(Persistence.class);
+        doAnswer(invocation -> new ListQueryCursor(refactorings)).when(persistence).stream(anyString(), anyInt());
+
+        smellQueries = mock(SmellQueries.class);
+        doReturn("refactoredQuery").when(smellQueries).allRefactoredInstancesWithSha1(PROJECT_ID);
+        doAnswer(invocation -> {
+            // The buffered deletions are cleared once persisted.
+            persistedDeletions.putAll(invocation.getArgument(1));
+            updates++;
+            return "update";
+        }).when(smellQueries).setAsDeleted(anyInt(), anyMap());
+
+        queryEngine = mock(QueryEngine.class);
+        graphDatabaseService = mock(GraphDatabaseService.class);
+        doReturn(graphDatabaseService).when(queryEngine).getGraphDatabaseService();
+        doReturn(mock(Transaction.class)).when(graphDatabaseService).beginTx();
+        Map<Result, List<Map<String, Object>>> results = Collections.synchronizedMap(new HashMap<>());
+        doAnswer(invocation -> {
+            Map<String, Object> parameters = invocation.getArgument(1);
+            String sha = (String) parameters.get("sha");
+            @SuppressWarnings("unchecked")
+            List<String> instances = (List<String>) parameters.get("instances");
+            checkedGroups.add(new ArrayList<>(instances));
+            if (failingCommits.contains(sha)) {
+                throw new RuntimeException("Unable to query commit " + sha);
+            }
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (String instance : instances) {
+                if (existing.getOrDefault(sha, Collections.emptySet()).contains(instance)) {
+                    rows.add(Collections.singletonMap("instance", instance));
+                }
+            }
+            Result result = mock(Result.class);
+            results.put(result, rows);
+            return result;
+        }).when(graphDatabaseService).execute(anyString(), anyMap());
+        doAnswer(invocation -> results.get(invocation.<Result>getArgument(0)))
+                .when(queryEngine).toMap(any(Result.class));
+    }
+
+    private void addRefactoring(int id, String sha1, String instance, String type) {
+        Map<String, Object> refactoring = new HashMap<>();
+        refactoring.put("id", id);
+        refactoring.put("sha1", sha1);
+        refactoring.put("instance", instance);
+        refactoring.put("type", type);
+        refactorings.add(refactoring);
+    }
+
+    private void addExisting(String sha1, String... instances) {
+        existing.computeIfAbsent(sha1, sha -> new HashSet<>()).addAll(Arrays.asList(instances));
+    }
+
+    private void analyze(int threads) throws Exception {
+        new SmellDeletionQuery(PROJECT_ID, "db", persistence, smellQueries, threads).analyzeRefactorings(queryEngine);
+    }
+
+    @Test
+    public void refactoringsAreGroupedByCommitAndEntity() throws Exception {
+        addRefactoring(1, SHA_A, "m1#a.B", "MIM");
+        addRefactoring(2, SHA_A, "a.B", "LIC");
+        addRefactoring(3, SHA_A, "m2#a.B", "IOD");
+        addRefactoring(4, SHA_A, "a.C", "NLMR");
+        addRefactoring(5, SHA_B, "m1#a.B", "MIM");
+        addExisting(SHA_A, "m1#a.B", "a.C");
+
+        analyze(1);
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("m1#a.B", "m2#a.B"),
+                Arrays.asList("a.B", "a.C"),
+                Collections.singletonList("m1#a.B")), checkedGroups);
+        Map<Integer, Boolean> expected = new HashMap<>();
+        expected.put(1, false);
+        expected.put(2, true);
+        expected.put(3, true);
+        expected.put(4, false);
+        expected.put(5, true);
+        assertEquals(expected, persistedDeletions);
+        // Every deletion is persisted by a single update, once the refactorings cursor is closed.
+        assertEquals(1, updates);
+        verify(persistence).addStatements("update");
+    }
+
+    @Test
+    public void groupsAreSplitOnGroupSize() throws Exception {
+        int count = SmellDeletionQuery.GROUP_SIZE + 1;
+        for (int i = 0; i < count; i++) {
+            addRefactoring(i, SHA_A, "m" + i + "#a.B", "MIM");
+        }
+
+        analyze(2);
+
+        // The groups are checked concurrently, thus in any order.
+        List<Integer> groupSizes = new ArrayList<>();
+        for (List<String> group : checkedGroups) {
+            groupSizes.add(group.size());
+        }
+        Collections.sort(groupSizes);
+        assertEquals(Arrays.asList(1, SmellDeletionQuery.GROUP_SIZE), groupSizes);
+        assertEquals(count, persistedDeletions.size());
+        for (boolean deleted : persistedDeletions.values()) {
+            assertTrue(deleted);
+        }
+    }
+
+    @Test
+    public void unknownTypesAreSkipped() throws Exception {
+        addRefactoring(1, SHA_A, "m1#a.B", "UNKNOWN");
+        addRefactoring(2, SHA_A, "a.B", null);
+        addRefactoring(3, SHA_A, "m2#a.B", "UIO");
+
+        analyze(1);
+
+        assertEquals(Collections.singletonList(Collections.singletonList("m2#a.B")), checkedGroups);
+        assertEquals(Collections.singletonMap(3, true), persistedDeletions);
+    }
+
+    @Test
+    public void failedGroupIsSkipped() throws Exception {
+        addRefactoring(1, SHA_A, "m1#a.B", "MIM");
+        addRefactoring(2, SHA_A, "a.B", "LIC");
+        addRefactoring(3, SHA_B, "m1#a.B", "MIM");
+        addExisting(SHA_A, "a.B");
+        failingCommits.add(SHA_B);
+
+        analyze(2);
+
+        Map<Integer, Boolean> expected = new HashMap<>();
+        expected.put(1, true);
+        expected.put(2, false);
+        assertEquals(expected, persistedDeletions);
+    }
+
+    @Test
+    public void nothingIsPersistedWithoutRefactorings() throws Exception {
+        analyze(1);
+
+        verify(smellQueries, never()).setAsDeleted(anyInt(), anyMap());
+        verify(graphDatabaseService, never()).execute(anyString(), anyMap());
+    }
+}
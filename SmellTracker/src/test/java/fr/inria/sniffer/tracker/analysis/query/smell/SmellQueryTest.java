@@ -0,0 +1,262 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import fr.inria.sniffer.tracker.analysis.AnalysisOptions;
+import fr.inria.sniffer.tracker.analysis.model.Commit;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitIdDictionary;
+import fr.inria.sniffer.tracker.analysis.persistence.CommitTopology;
+import fr.inria.sniffer.tracker.analysis.persistence.CopyStream;
+import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
+import fr.inria.sniffer.tracker.analysis.query.QueryException;
+import fr.inria.sniffer.detector.neo4j.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Result;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SmellQueryTest extends SmellTypeAnalysisTestCase {
+    private static final String OTHER_TYPE = "OTHER";
+    private static final String THIRD_TYPE = "THIRD";
+    private static final String RESERVE_IDS_STATEMENT = "ReserveIdsStatement";
+    private static final String LAST_COMMIT_STATEMENT = "LastCommitStatement";
+
+    private CommitIdDictionary commitIds;
+    private CommitTopology topology;
+    private List<Map<String, Object>> otherSmellList;
+    private List<Persistence> openedPersistences;
+
+    private AtomicInteger smellSequence;
+    // Rows copied through every persistence, prefixed by their table.
+    private List<List<Object>> copiedRows;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        smellSequence = new AtomicInteger(1);
+        copiedRows = Collections.synchronizedList(new ArrayList<>());
+        openedPersistences = Collections.synchronizedList(new ArrayList<>());
+
+        commitIds = mock(CommitIdDictionary.class);
+        topology = mock(CommitTopology.class);
+        doReturn(CommitTopology.NONE).when(topology).mergedCommitIdOf(anyString());
+        mockCommit(firstCommit, 10);
+        mockCommit(secondCommit, 11);
+        mockCommit(thirdCommit, 12);
+
+        doReturn(RESERVE_IDS_STATEMENT).when(smellQueries).reserveSmellIdsQuery(anyInt());
+        doReturn(LAST_COMMIT_STATEMENT).when(branchQueries).lastCommitShaQuery(projectId, 0);
+        mockPersistence(persistence);
+
+        addSmell(firstCommit, firstSmell);
+        addSmell(firstCommit, secondSmell);
+        addSmell(secondCommit, firstSmell);
+        addSmell(thirdCommit, firstSmell);
+        addSmell(thirdCommit, thirdSmell);
+
+        // The Paprika instances hold no type, the same helper fills the other type's instances.
+        List<Map<String, Object>> testSmellList = smellList;
+        smellList = new ArrayList<>();
+        addSmell(firstCommit, firstSmell);
+        addSmell(secondCommit, firstSmell);
+        addSmell(secondCommit, secondSmell);
+        addSmell(thirdCommit, secondSmell);
+        otherSmellList = smellList;
+        smellList = testSmellList;
+    }
+
+    private void mockCommit(Commit commit, int id) {
+        doReturn(id).when(commitIds).idOf(commit.sha);
+        doReturn(0).when(topology).branchOf(commit.sha);
+        doReturn(commit.ordinal).when(topology).branchOrdinalOf(commit.sha);
+    }
+
+    /**
+     * Record the persistence COPY rows and reserve its smells identifiers from a shared sequence.
+     */
+    private void mockPersistence(Persistence persistence) {
+        doAnswer(invocation -> new RecordingStream(invocation.getArgument(0)))
+                .when(persistence).openCopyStream(anyString(), anyString(), anyInt());
+        doAnswer(invocation -> {
+            int first = smellSequence.getAndAdd(BulkSmellWriter.ID_BLOCK_SIZE);
+            List<Map<String, Object>> ids = new ArrayList<>();
+            for (int id = first; id < first + BulkSmellWriter.ID_BLOCK_SIZE; id++) {
+                ids.add(Collections.singletonMap("id", id));
+            }
+            return ids;
+        }).when(persistence).query(RESERVE_IDS_STATEMENT);
+        doReturn(Collections.singletonList(Collections.singletonMap("sha1", thirdCommit.sha)))
+                .when(persistence).query(LAST_COMMIT_STATEMENT);
+    }
+
+    private Persistence typePersistence() {
+        Persistence typePersistence = mock(Persistence.class);
+        mockPersistence(typePersistence);
+        return typePersistence;
+    }
+
+    private static Query smellTypeQuery(String smellType, List<Map<String, Object>> instances) {
+        Query query = mock(Query.class);
+        doReturn(smellType).when(query).getSmellName();
+        Iterator<Map<String, Object>> iterator = instances.iterator();
+        Result result = mock(Result.class);
+        doAnswer(invocation -> iterator.hasNext()).when(result).hasNext();
+        doAnswer(invocation -> iterator.next()).when(result).next();
+        doReturn(result).when(query).streamResult(true, true);
+        return query;
+    }
+
+    private List<Query> smellTypeQueries() {
+        return Arrays.asList(smellTypeQuery(smellType, smellList), smellTypeQuery(OTHER_TYPE, otherSmellList),
+                smellTypeQuery(THIRD_TYPE, otherSmellList));
+    }
+
+    private void analyze(AnalysisOptions options, List<Query> queries) throws QueryException {
+        // One persistence is created up front for each thread, the analysis threads only polling them.
+        Queue<Persistence> persistences = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < options.getSmellThreads(); i++) {
+            persistences.add(typePersistence());
+        }
+        openedPersistences.clear();
+        new SmellQuery(projectId, "paprikaDB", persistence, commitQueries, smellQueries, branchQueries,
+                commitIds, options, null, () -> {
+            Persistence typePersistence = persistences.remove();
+            openedPersistences.add(typePersistence);
+            return typePersistence;
+        }).analyzeSmellTypes(queries, duplicationChecker, topology);
+    }
+
+    /**
+     * @return The copied category rows, binding their smells by type and instance rather than by identifier.
+     */
+    private List<String> copiedCategories() {
+        Map<Object, String> smells = new HashMap<>();
+        for (List<Object> row : copiedRows) {
+            if (row.get(0).equals("smell")) {
+                smells.put(row.get(1), row.get(4) + " " + row.get(3));
+            }
+        }
+        List<String> categories = new ArrayList<>();
+        for (List<Object> row : copiedRows) {
+            if (!row.get(0).equals("smell")) {
+                StringBuilder category = new StringBuilder(row.get(0) + " " + smells.get(row.get(1)));
+                for (Object value : row.subList(3, row.size())) {
+                    category.append(" ").append(value);
+                }
+                categories.add(category.toString());
+            }
+        }
+        Collections.sort(categories);
+        return categories;
+    }
+
+    @Test
+    public void parallelAnalysisMatchesSequentialAnalysis() throws Exception {
+        analyze(AnalysisOptions.DEFAULT, smellTypeQueries());
+        List<String> sequential = copiedCategories();
+
+        copiedRows.clear();
+        analyze(AnalysisOptions.builder().smellThreads(2).build(), smellTypeQueries());
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, copiedCategories());
+        // The three types are analyzed on at most two connections.
+        assertFalse(openedPersistences.isEmpty());
+        assertTrue(openedPersistences.size() <= 2);
+        for (Persistence typePersistence : openedPersistences) {
+            verify(typePersistence).close();
+        }
+    }
+
+    @Test
+    public void fusedAnalysisMatchesSequentialAnalysis() throws Exception {
+        analyze(AnalysisOptions.DEFAULT, smellTypeQueries());
+        List<String> sequential = copiedCategories();
+
+        copiedRows.clear();
+        analyze(AnalysisOptions.builder().fusedSmells(true).build(), smellTypeQueries());
+
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, copiedCategories());
+        verify(persistence, atLeastOnce()).commit();
+    }
+
+    @Test
+    public void failingSmellTypeIsReportedByParallelAnalysis() throws Exception {
+        IllegalStateException failure = new IllegalStateException("Unable to stream smells");
+        Query failingQuery = mock(Query.class);
+        doReturn(OTHER_TYPE).when(failingQuery).getSmellName();
+        doThrow(failure).when(failingQuery).streamResult(true, true);
+
+        try {
+            analyze(AnalysisOptions.builder().smellThreads(2).build(),
+                    Arrays.asList(smellTypeQuery(smellType, smellList), failingQuery));
+            fail("The smell type failure should be reported");
+        } catch (QueryException e) {
+            assertSame(failure, e.getCause());
+        }
+        for (Persistence typePersistence : openedPersistences) {
+            verify(typePersistence).close();
+        }
+    }
+
+    private class RecordingStream implements CopyStream {
+        private final String table;
+
+        RecordingStream(String table) {
+            this.table = table;
+        }
+
+        @Override
+        public void addRow(Object... values) {
+            List<Object> row = new ArrayList<>();
+            row.add(table);
+            row.addAll(Arrays.asList(values));
+            copiedRows.add(row);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
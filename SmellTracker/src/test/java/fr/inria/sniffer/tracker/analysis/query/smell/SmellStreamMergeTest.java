@@ -0,0 +1,68 @@
+/**
+ *   Sniffer - Analyze the history of Android code smells at scale.
+ *   Copyright (C) 2019 Sarra Habchi
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package fr.inria.sniffer.tracker.analysis.query.smell;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SmellStreamMergeTest {
+
+    private static Map<String, Object> instance(int commitNumber, String name) {
+        Map<String, Object> instance = new HashMap<>();
+        instance.put("commit_number", commitNumber);
+        instance.put("instance", name);
+        return instance;
+    }
+
+    private static List<String> merge(List<Iterator<Map<String, Object>>> streams) {
+        List<String> merged = new ArrayList<>();
+        SmellStreamMerge merge = new SmellStreamMerge(streams);
+        while (merge.hasNext()) {
+            SmellStreamMerge.Entry entry = merge.next();
+            merged.add(entry.stream + ":" + entry.instance.get("instance"));
+        }
+        return merged;
+    }
+
+    @Test
+    public void instancesAreMergedByCommitNumber() {
+        List<Iterator<Map<String, Object>>> streams = Arrays.asList(
+                Arrays.asList(instance(1, "a"), instance(1, "b"), instance(4, "c")).iterator(),
+                Collections.<Map<String, Object>>emptyIterator(),
+                Arrays.asList(instance(0, "d"), instance(1, "e"), instance(3, "f"), instance(5, "g")).iterator()
+        );
+
+        // A commit instances are given stream after stream, in their stream order.
+        assertEquals(Arrays.asList("2:d", "0:a", "0:b", "2:e", "2:f", "0:c", "2:g"), merge(streams));
+    }
+
+    @Test
+    public void noStream() {
+        assertFalse(new SmellStreamMerge(Collections.<Iterator<Map<String, Object>>>emptyList()).hasNext());
+    }
+}
@@ -20,6 +20,7 @@ package fr.inria.sniffer.tracker.analysis.query.smell;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.SmellQueries;
 import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ParameterizedStatement;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import fr.inria.sniffer.tracker.analysis.persistence.SmellCategory;
 import fr.inria.sniffer.tracker.analysis.persistence.queries.BranchQueries;
@@ -39,7 +40,6 @@ import java.util.Map;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
@@ -87,7 +87,7 @@ public abstract class SmellTypeAnalysisTestCase {
         when(smellQueries.smellIdQuery(anyInt(), any(Smell.class))).then((Answer<String>)
                 invocation -> smellIdQueryStatement(invocation.getArgument(0),
                         invocation.getArgument(1)));
-        doReturn(0).when(persistence).execute(anyString());
+        doReturn(0).when(persistence).execute(any(ParameterizedStatement.class));
 
         firstSmell = new Smell(smellType, "instance", "/file");
         secondSmell = new Smell(smellType, "secondInstance", "/file");
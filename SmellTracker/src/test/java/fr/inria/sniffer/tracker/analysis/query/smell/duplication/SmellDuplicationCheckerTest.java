@@ -20,6 +20,7 @@ package fr.inria.sniffer.tracker.analysis.query.smell.duplication;
 import fr.inria.sniffer.detector.neo4j.QueryEngine;
 import fr.inria.sniffer.tracker.analysis.model.Commit;
 import fr.inria.sniffer.tracker.analysis.model.Smell;
+import fr.inria.sniffer.tracker.analysis.persistence.ListQueryCursor;
 import fr.inria.sniffer.tracker.analysis.persistence.Persistence;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -29,6 +30,7 @@ import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -39,9 +41,13 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SmellDuplicationCheckerTest {
@@ -56,6 +62,7 @@ public class SmellDuplicationCheckerTest {
     private List<Map<String, Object>> filesRenames;
     private Commit parent;
     private QueryEngine queryEngine;
+    private GraphDatabaseService graphDatabaseService;
 
     @BeforeClass
     public static void setUpClass() throws Exception {
@@ -85,22 +92,29 @@ public class SmellDuplicationCheckerTest {
         addRenameEntry(fileRename, sameCommit, sameOldFile, j2gRename, g2jRename);
         this.parent = new Commit(sameCommit.sha1, 0);
         this.queryEngine = mock(QueryEngine.class);
-        GraphDatabaseService graphDatabaseService = mock(GraphDatabaseService.class);
+        graphDatabaseService = mock(GraphDatabaseService.class);
         doReturn(graphDatabaseService).when(queryEngine).getGraphDatabaseService();
         doReturn(mock(Result.class)).when(graphDatabaseService).execute(anyString());
+        doReturn(mock(Result.class)).when(graphDatabaseService).execute(anyString(), anyMap());
         doReturn(mock(Transaction.class)).when(graphDatabaseService).beginTx();
     }
 
     private SmellDuplicationChecker getDuplicationChecker() {
         Persistence persistence = mock(Persistence.class);
-        when(persistence.query(anyString())).thenReturn(filesRenames);
+        when(persistence.stream(anyString(), anyInt())).thenReturn(new ListQueryCursor(filesRenames));
         return new SmellDuplicationChecker(1, persistence, queryEngine);
     }
 
-    private void mockPreviousQualifiedName(String qualifiedName) {
+    private static Map<String, Object> qualifiedNameRow(String file, String qualifiedName) {
         Map<String, Object> resultMap = new HashMap<>();
+        resultMap.put(QualifiedNameResolver.FILE_PATH, "/" + file);
         resultMap.put(SmellDuplicationChecker.QUALIFIED_NAME, qualifiedName);
-        doReturn(Collections.singletonList(resultMap)).when(queryEngine).toMap(any(Result.class));
+        return resultMap;
+    }
+
+    private void mockPreviousQualifiedName(String file, String qualifiedName) {
+        doReturn(Collections.singletonList(qualifiedNameRow(file, qualifiedName)))
+                .when(queryEngine).toMap(any(Result.class));
     }
 
     @Test
@@ -155,7 +169,7 @@ public class SmellDuplicationCheckerTest {
         Smell instance = new Smell("MIM", "method#a.b.d$myInnerClass$AnotherInnerClass", fileRename.newFile);
         Commit commit = new Commit(sameCommit.sha1, 1);
 
-        mockPreviousQualifiedName("a.b.c");
+        mockPreviousQualifiedName(fileRename.oldFile, "a.b.c");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -170,7 +184,7 @@ public class SmellDuplicationCheckerTest {
         Smell instance = new Smell("MIM", "method#d.e.f", sameOldFile.newFile);
         Commit commit = new Commit(sameOldFile.sha1, 1);
 
-        mockPreviousQualifiedName("a.b.c");
+        mockPreviousQualifiedName(sameOldFile.oldFile, "a.b.c");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -185,7 +199,7 @@ public class SmellDuplicationCheckerTest {
         Smell instance = new Smell("MIM", "d.e.f$myInnerClass$AnotherInnerClass", sameOldFile.newFile);
         Commit commit = new Commit(sameOldFile.sha1, 1);
 
-        mockPreviousQualifiedName("a.b.c");
+        mockPreviousQualifiedName(sameOldFile.oldFile, "a.b.c");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -200,7 +214,7 @@ public class SmellDuplicationCheckerTest {
         Smell instance = new Smell("MIM", "g.h.i", sameCommit.newFile);
         Commit commit = new Commit(sameCommit.sha1, 1);
 
-        mockPreviousQualifiedName("d.e.f");
+        mockPreviousQualifiedName(sameCommit.oldFile, "d.e.f");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -236,12 +250,12 @@ public class SmellDuplicationCheckerTest {
         Smell renameEqualToFirst = new Smell("MIM", original.instance, original.file);
         Commit commit = new Commit(sameCommit.sha1, 1);
 
-        mockPreviousQualifiedName("d.e.f");
+        mockPreviousQualifiedName(sameCommit.oldFile, "d.e.f");
         SmellDuplicationChecker checker = getDuplicationChecker();
         // The original guess will create a cache that is used between commits
         Smell expectedOriginal = checker.original(firstRename, commit, parent);
 
-        mockPreviousQualifiedName("g.h.i");
+        mockPreviousQualifiedName(sameCommit.newFile, "g.h.i");
         Commit new_commit = new Commit(anotherSha, 2);
         Smell expectedFirstRename = checker.original(renameEqualToFirst, new_commit, commit);
 
@@ -259,7 +273,7 @@ public class SmellDuplicationCheckerTest {
                 j2gRename.newFile);
         Commit commit = new Commit(j2gRename.sha1, 1);
 
-        mockPreviousQualifiedName("a.b.c");
+        mockPreviousQualifiedName(j2gRename.oldFile, "a.b.c");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -275,7 +289,7 @@ public class SmellDuplicationCheckerTest {
                 g2jRename.newFile);
         Commit commit = new Commit(g2jRename.sha1, 1);
 
-        mockPreviousQualifiedName("a.b.c");
+        mockPreviousQualifiedName(g2jRename.oldFile, "a.b.c");
         SmellDuplicationChecker checker = getDuplicationChecker();
         Smell original = checker.original(instance, commit, parent);
 
@@ -283,4 +297,39 @@ public class SmellDuplicationCheckerTest {
         assertEquals("method#a.b.c$myInnerClass$AnotherInnerClass", original.instance);
         assertEquals(g2jRename.oldFile, original.file);
     }
+
+    @Test
+    public void duplicatedRenamingUsesFirstEntry() {
+        addRenameEntry(new SmellDuplicationChecker.FileRenameEntry(sameCommit.sha1,
+                "java/x/y/z.java", sameCommit.newFile));
+        Smell instance = new Smell("MIM", "g.h.i", sameCommit.newFile);
+        Commit commit = new Commit(sameCommit.sha1, 1);
+
+        mockPreviousQualifiedName(sameCommit.oldFile, "d.e.f");
+        SmellDuplicationChecker checker = getDuplicationChecker();
+        Smell original = checker.original(instance, commit, parent);
+
+        assertNotNull(original);
+        assertEquals(sameCommit.oldFile, original.file);
+    }
+
+    @Test
+    public void qualifiedNamesAreQueriedOncePerRenamingCommit() {
+        Smell firstInstance = new Smell("MIM", "method#a.b.d", fileRename.newFile);
+        Smell secondInstance = new Smell("MIM", "g.h.i", sameCommit.newFile);
+        Smell otherType = new Smell("HMU", "a.b.d", fileRename.newFile);
+        Commit commit = new Commit(sameCommit.sha1, 1);
+
+        doReturn(Arrays.asList(qualifiedNameRow(fileRename.oldFile, "a.b.c"), qualifiedNameRow(sameCommit.oldFile, "d.e.f")))
+                .when(queryEngine).toMap(any(Result.class));
+        SmellDuplicationChecker checker = getDuplicationChecker();
+        Smell firstOriginal = checker.original(firstInstance, commit, parent);
+        Smell secondOriginal = checker.original(secondInstance, commit, parent);
+        Smell otherTypeOriginal = checker.original(otherType, commit, parent);
+
+        assertEquals("method#a.b.c", firstOriginal.instance);
+        assertEquals("d.e.f", secondOriginal.instance);
+        assertEquals("a.b.c", otherTypeOriginal.instance);
+        verify(graphDatabaseService, times(1)).execute(anyString(), anyMap());
+    }
 }